@@ -0,0 +1,101 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/***
+ * Generator of the benchmarks input: a dictionary of names and big.txt like lines that contain some of them.
+ * The generation is seeded, so every run (and every commit) benchmark the same input.
+ */
+final class BenchmarkCorpus {
+    //region CONSTANTS
+    private static final long SEED = 42;
+    private static final double NAME_PROBABILITY = 0.02;  // The probability of a word to be a dictionary name
+    private static final String[] COMMON_WORDS = ("the of and to a in that is was he for it with as his on be at by " +
+            "had not are but from or have an they which one you were her all she there would their we him been has " +
+            "when who will more no if out so said what up its about into than them can only other new some could " +
+            "time these two may then do first any my now such like our over man me even most made after also did " +
+            "many before must through back years where much your way well down should because each just those " +
+            "people Mr how too little state good very make world still own see men work long get here between both").split(" ");
+    private static final String[] PUNCTUATION = {"", "", "", ",", ".", ";", "!", "'s"};
+    //endregion CONSTANTS
+
+    private BenchmarkCorpus() {
+    }
+
+    /***
+     * @param size how many names to create
+     * @return set of unique capitalized names
+     */
+    static Set<String> createDictionary(int size) {
+        Random random = new Random(SEED);
+        Set<String> dictionary = new LinkedHashSet<>();
+
+        while (dictionary.size() < size) {
+            int nameLength = 3 + random.nextInt(7);
+            StringBuilder name = new StringBuilder(nameLength);
+
+            name.append((char) ('A' + random.nextInt(26)));
+            for (int i = 1; i < nameLength; i++) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+
+            dictionary.add(name.toString());
+        }
+
+        return dictionary;
+    }
+
+    /***
+     * @param linesCount how many lines to create
+     * @param lineLength the approximate length (in chars) of every line
+     * @param dictionary the names that may appear in the lines
+     * @return the lines
+     */
+    static List<String> createLines(int linesCount, int lineLength, Set<String> dictionary) {
+        Random random = new Random(SEED);
+        String[] names = dictionary.toArray(new String[0]);
+        List<String> lines = new ArrayList<>(linesCount);
+
+        for (int i = 0; i < linesCount; i++) {
+            StringBuilder line = new StringBuilder(lineLength + 16);
+
+            while (line.length() < lineLength) {
+                if (line.length() > 0) {
+                    line.append(' ');
+                }
+
+                boolean isName = random.nextDouble() < NAME_PROBABILITY;
+                line.append(isName ? names[random.nextInt(names.length)] : COMMON_WORDS[random.nextInt(COMMON_WORDS.length)]);
+                line.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+            }
+
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+
+    /***
+     * Write a big.txt like corpus to a temporary file
+     * @param linesCount how many lines to write
+     * @param dictionary the names that may appear in the lines
+     * @return the path of the created file, deleted when the JVM exit
+     * @throws IOException in case of failure in writing the file
+     */
+    static Path createCorpusFile(int linesCount, Set<String> dictionary) throws IOException {
+        Path corpusFile = Files.createTempFile("big-id-corpus", ".txt");
+
+        corpusFile.toFile().deleteOnExit();
+        Files.write(corpusFile, createLines(linesCount, 70, dictionary), StandardCharsets.UTF_8);
+
+        return corpusFile;
+    }
+}
@@ -0,0 +1,31 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * Entry point of the benchmarks jar.
+ * Run the benchmarks with the given JMH command line arguments and always publish the results as JSON,
+ * so the results of different commits can be compared.
+ */
+public class BenchmarksRunner {
+    //region CONSTANTS
+    private static final String RESULTS_FILE_PROPERTY = "benchmarks.results";
+    private static final String DEFAULT_RESULTS_FILE = "target/jmh-result.json";
+    //endregion CONSTANTS
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty(RESULTS_FILE_PROPERTY, DEFAULT_RESULTS_FILE))
+                .build();
+
+        new Runner(options).run();
+    }
+}
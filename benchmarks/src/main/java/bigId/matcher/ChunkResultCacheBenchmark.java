@@ -0,0 +1,90 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of the chunk result cache: a scan without a cache, a scan with an empty cache (hashing and keeping
+ * every chunk) and a rescan of the same input with a full cache (every chunk is taken from the cache).
+ * The StdOut and StdErr are silenced during the benchmark, the output and cache files are temporary files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkResultCacheBenchmark {
+    @Param({"130000"})  // About the size of big.txt
+    public int linesCount;
+
+    @Param({"50", "1000"})  // Only the first 50 names appear in the corpus
+    public int dictionarySize;
+
+    private Set<String> fDictionary;
+    private Path fCorpusFile;
+    private Path fOutputFile;
+    private Path fColdCacheFile;
+    private Path fWarmCacheFile;
+    private PrintStream fOriginalStdOut;
+    private PrintStream fOriginalStdErr;
+
+    @Setup
+    public void setup() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(dictionarySize);
+        fCorpusFile = BenchmarkCorpus.createCorpusFile(linesCount, BenchmarkCorpus.createDictionary(50));
+        fOutputFile = Files.createTempFile("big-id-output", ".txt");
+        fColdCacheFile = Files.createTempFile("big-id-cold-cache", ".bin");
+        fWarmCacheFile = Files.createTempFile("big-id-warm-cache", ".bin");
+        Files.delete(fWarmCacheFile);
+
+        fOriginalStdOut = System.out;
+        fOriginalStdErr = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        scan(fWarmCacheFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(fOriginalStdOut);
+        System.setErr(fOriginalStdErr);
+        Files.deleteIfExists(fOutputFile);
+        Files.deleteIfExists(fColdCacheFile);
+        Files.deleteIfExists(fWarmCacheFile);
+    }
+
+    /***
+     * The scan without a cache, the baseline
+     */
+    @Benchmark
+    public void scan() {
+        scan(null);
+    }
+
+    @Benchmark
+    public void coldCacheScan() throws IOException {
+        Files.deleteIfExists(fColdCacheFile);
+        scan(fColdCacheFile);
+    }
+
+    @Benchmark
+    public void warmCacheScan() {
+        scan(fWarmCacheFile);
+    }
+
+    private void scan(Path cacheFile) {
+        MatchFinderOptions options = new MatchFinderOptions();
+
+        options.setResultCacheFilePath(cacheFile != null ? cacheFile.toString() : null);
+        new MatchFinderManager(fDictionary, fCorpusFile.toString(), fOutputFile.toString(), options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of the ChunksAggregator accumulation of the chunks and the formatting of the output.
+ * The chunks keep their matches by the output mode (only counted or sampled in the summary output modes).
+ * The StdOut is silenced during the benchmark, the output file is a temporary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunksAggregatorBenchmark {
+    @Param({"1000"})
+    public int chunksCount;
+
+    @Param({"10", "200"})
+    public int matchesPerChunk;
+
+    @Param({"GROUPED_BY_NAME", "CHUNK_ORDER", "MATCH_COUNTS", "SAMPLED_LOCATIONS"})
+    public OutputMode outputMode;
+
+    private MatchingEngine fMatchingEngine;
+    private MatchFinderOptions fOptions;
+    private List<ChunkMatches> fChunks;
+    private Path fOutputFile;
+    private PrintStream fOriginalStdOut;
+
+    @Setup
+    public void setup() throws IOException {
+        Set<String> dictionary = BenchmarkCorpus.createDictionary(50);
+        Random random = new Random(42);
+
+        fMatchingEngine = MatchingEngineType.AHO_CORASICK.createEngine(dictionary);
+        fOptions = new MatchFinderOptions();
+        fOptions.setOutputMode(outputMode);
+        fChunks = new ArrayList<>(chunksCount);
+        for (int chunk = 0; chunk < chunksCount; chunk++) {
+            ChunkMatchesBuilder chunkMatchesBuilder = new ChunkMatchesBuilder(chunk,
+                    (long) chunk * MatchFinderManager.CHUNK_SIZE, fMatchingEngine.getTextToFindCount(),
+                    fOptions.getMaxLocationsPerText());
+            int matchStart = 0;
+
+            for (int i = 0; i < matchesPerChunk; i++) {
+                matchStart += 1 + random.nextInt(500);
+                chunkMatchesBuilder.onMatch(random.nextInt(fMatchingEngine.getTextToFindCount()), matchStart);
+            }
+
+            fChunks.add(chunkMatchesBuilder.build(matchStart));
+        }
+
+        fOutputFile = Files.createTempFile("big-id-output", ".txt");
+        fOriginalStdOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(fOriginalStdOut);
+        Files.deleteIfExists(fOutputFile);
+    }
+
+    @Benchmark
+    public void aggregateAndWrite() {
+        ChunksAggregator chunksAggregator = new ChunksAggregator(fMatchingEngine, fOutputFile.toString(), outputMode);
+
+        chunksAggregator.setSummarySizes(fOptions.getTopMatchCountsSize(), fOptions.getMaxLocationsPerText());
+        chunksAggregator.aggregateAndWrite(fChunks);
+    }
+}
@@ -0,0 +1,125 @@
+package bigId.matcher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * End to end benchmark of MatchFinderManager.run on a generated big.txt like corpus,
+ * read from a local file or from a local http stub (with range requests support).
+ * The StdOut is silenced during the benchmark, the output file is a temporary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchFinderManagerBenchmark {
+    //region CONSTANTS
+    private static final String CORPUS_CONTEXT = "/big.txt";
+    //endregion CONSTANTS
+
+    public enum InputSource {
+        FILE,
+        HTTP
+    }
+
+    @Param({"FILE", "HTTP"})
+    public InputSource inputSource;
+
+    @Param({"1", "4"})
+    public int downloadConnections;
+
+    @Param({"130000"})  // About the size of big.txt
+    public int linesCount;
+
+    @Param({"false", "true"})  // The cost of the runtime metrics
+    public boolean metricsEnabled;
+
+    private Set<String> fDictionary;
+    private Path fCorpusFile;
+    private Path fOutputFile;
+    private HttpServer fHttpServer;
+    private String fTextToReadUrl;
+    private PrintStream fOriginalStdOut;
+    private PrintStream fOriginalStdErr;
+
+    @Setup
+    public void setup() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(50);
+        fCorpusFile = BenchmarkCorpus.createCorpusFile(linesCount, fDictionary);
+        fOutputFile = Files.createTempFile("big-id-output", ".txt");
+        fTextToReadUrl = inputSource == InputSource.FILE ? fCorpusFile.toString() : startHttpServer();
+        fOriginalStdOut = System.out;
+        fOriginalStdErr = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /***
+     * Start a http server that serve the corpus and support single bytes range requests
+     * @return the url of the corpus
+     */
+    private String startHttpServer() throws IOException {
+        byte[] corpus = Files.readAllBytes(fCorpusFile);
+
+        fHttpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        fHttpServer.createContext(CORPUS_CONTEXT, exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(corpus.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else if (range != null) {
+                String[] rangeBounds = range.substring("bytes=".length()).split("-");
+                int rangeStart = Integer.parseInt(rangeBounds[0]);
+                int rangeEnd = Math.min(Integer.parseInt(rangeBounds[1]), corpus.length - 1);
+
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + rangeStart + "-" + rangeEnd + "/" + corpus.length);
+                exchange.sendResponseHeaders(206, rangeEnd - rangeStart + 1);
+                exchange.getResponseBody().write(corpus, rangeStart, rangeEnd - rangeStart + 1);
+            } else {
+                exchange.sendResponseHeaders(200, corpus.length);
+                exchange.getResponseBody().write(corpus);
+            }
+
+            exchange.close();
+        });
+        fHttpServer.start();
+
+        return "http://" + fHttpServer.getAddress().getHostString() + ":" + fHttpServer.getAddress().getPort() + CORPUS_CONTEXT;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(fOriginalStdOut);
+        System.setErr(fOriginalStdErr);
+
+        if (fHttpServer != null) {
+            fHttpServer.stop(0);
+        }
+
+        Files.deleteIfExists(fOutputFile);
+    }
+
+    @Benchmark
+    public void run() {
+        MatchFinderOptions options = new MatchFinderOptions();
+
+        options.setParallelDownloadConnections(downloadConnections);
+        options.setMetricsEnabled(metricsEnabled);
+        new MatchFinderManager(fDictionary, fTextToReadUrl, fOutputFile.toString(), options).run();
+    }
+}
@@ -0,0 +1,81 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of the match comparison and sorting (merging of the per chunk runs)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchLocationsBenchmark {
+    @Param({"1000"})
+    public int runsCount;
+
+    @Param({"10", "100"})
+    public int matchesPerRun;
+
+    private List<MatchLocations> fChunkRuns;  // A run per chunk, the runs don't overlap
+    private List<MatchLocations> fOverlappingRuns;  // Runs that must be merged match by match
+    private MatchLocations fAllMatches;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        fChunkRuns = new ArrayList<>(runsCount);
+        fOverlappingRuns = new ArrayList<>(runsCount);
+        for (int run = 0; run < runsCount; run++) {
+            MatchLocations chunkRun = new MatchLocations(matchesPerRun);
+            MatchLocations overlappingRun = new MatchLocations(matchesPerRun);
+            long charOffset = 0;
+
+            for (int i = 0; i < matchesPerRun; i++) {
+                charOffset += 1 + random.nextInt(1000);
+                chunkRun.add((long) run * MatchFinderManager.CHUNK_SIZE, charOffset);
+                overlappingRun.add(0, random.nextInt(1000) + (long) i * 1000);
+            }
+
+            fChunkRuns.add(chunkRun);
+            fOverlappingRuns.add(overlappingRun);
+        }
+
+        Collections.shuffle(fChunkRuns, random);  // The chunks arrive out of order
+        fAllMatches = MatchLocations.merge(new ArrayList<>(fChunkRuns));
+    }
+
+    @Benchmark
+    public MatchLocations mergeChunkRuns() {
+        return MatchLocations.merge(new ArrayList<>(fChunkRuns));
+    }
+
+    @Benchmark
+    public MatchLocations mergeOverlappingRuns() {
+        return MatchLocations.merge(new ArrayList<>(fOverlappingRuns));
+    }
+
+    @Benchmark
+    public int compareAdjacentMatches() {
+        int orderedPairs = 0;
+
+        for (int i = 1; i < fAllMatches.size(); i++) {
+            int compareResult = MatchLocations.compare(fAllMatches.getLineOffset(i - 1), fAllMatches.getCharOffset(i - 1),
+                    fAllMatches.getLineOffset(i), fAllMatches.getCharOffset(i));
+
+            if (compareResult <= 0) {
+                orderedPairs++;
+            }
+        }
+
+        return orderedPairs;
+    }
+}
@@ -0,0 +1,54 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of a single MatchSearcher task (a chunk of 1000 lines) by the dictionary size, the line length
+ * and the matching engine, with and without the LinePreFilter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchSearcherBenchmark {
+    @Param({"50", "1000", "10000"})
+    public int dictionarySize;
+
+    @Param({"80", "2000"})
+    public int lineLength;
+
+    @Param({"AHO_CORASICK", "REGEX", "FUZZY"})
+    public MatchingEngineType engineType;
+
+    @Param({"false", "true"})
+    public boolean linePreFilter;
+
+    private MatchingEngine fMatchingEngine;
+    private LinePreFilter fLinePreFilter;
+    private TextChunk fTextChunk;
+    private ChunkSizeTuner fChunkSizeTuner;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = BenchmarkCorpus.createDictionary(dictionarySize);
+
+        fMatchingEngine = engineType.createEngine(dictionary);
+        fLinePreFilter = linePreFilter ? LinePreFilter.create(fMatchingEngine) : null;
+        List<String> lines = BenchmarkCorpus.createLines(MatchFinderManager.CHUNK_SIZE, lineLength, dictionary);
+        fTextChunk = new LinesTextChunk(0, 0, lines, lines.stream().mapToLong(String::length).sum());
+        fChunkSizeTuner = new ChunkSizeTuner(new MatchFinderOptions());
+    }
+
+    @Benchmark
+    public void searchSingleChunk(Blackhole blackhole) {
+        new MatchSearcher(blackhole::consume, fTextChunk, fMatchingEngine, fLinePreFilter, fChunkSizeTuner,
+                MatchFinderMetrics.DISABLED).run();
+    }
+}
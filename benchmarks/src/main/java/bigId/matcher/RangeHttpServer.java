@@ -0,0 +1,144 @@
+package bigId.matcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Benchmarks and tests fixture: a local http server that serve a single input with HEAD and bytes range requests
+ * (with If-Range by the ETag), like the servers the RangeRequestTextSource download from.
+ * Every request is handled on its own thread, and the bytes of every response may be throttled to a given rate,
+ * like a remote server that limit every connection, so a parallel download is faster than a single stream.
+ * It count the range requests, so a test can check the input was really downloaded by ranges.
+ */
+final class RangeHttpServer implements AutoCloseable {
+    //region CONSTANTS
+    private static final String INPUT_PATH = "/input.txt";
+    private static final String ETAG = "\"input-1\"";
+    private static final String BYTES_RANGE_PREFIX = "bytes=";
+    private static final int NO_BODY = -1;
+    private static final int WRITE_BLOCK_SIZE = 64 * 1024;
+    static final long NOT_THROTTLED = 0;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final byte[] fInput;
+    private final long fBytesPerSecondPerConnection;  // NOT_THROTTLED for no limit
+    private final ExecutorService fHandlersExecutor;
+    private final HttpServer fServer;
+    private final AtomicInteger fRangeRequestsCount;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * Start the server on a free port of the loopback address
+     * @param input the bytes of the served input
+     * @throws IOException in case of failure in starting the server
+     */
+    public RangeHttpServer(byte[] input) throws IOException {
+        this(input, NOT_THROTTLED);
+    }
+
+    /***
+     * Start the server on a free port of the loopback address
+     * @param input the bytes of the served input
+     * @param bytesPerSecondPerConnection the rate every response is written in, or NOT_THROTTLED
+     * @throws IOException in case of failure in starting the server
+     */
+    public RangeHttpServer(byte[] input, long bytesPerSecondPerConnection) throws IOException {
+        fInput = input;
+        fBytesPerSecondPerConnection = bytesPerSecondPerConnection;
+        fRangeRequestsCount = new AtomicInteger();
+        fHandlersExecutor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "range-http-server");
+            thread.setDaemon(true);  // Never keep the process alive
+            return thread;
+        });
+        fServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        fServer.createContext(INPUT_PATH, this::handle);
+        fServer.setExecutor(fHandlersExecutor);  // Otherwise the ranges are served one after the other
+        fServer.start();
+    }
+    //endregion Constructor
+
+    public String getUrl() {
+        return "http://" + fServer.getAddress().getHostString() + ":" + fServer.getAddress().getPort() + INPUT_PATH;
+    }
+
+    public int getRangeRequestsCount() {
+        return fRangeRequestsCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        boolean isRangeReturned = range != null && range.startsWith(BYTES_RANGE_PREFIX) &&
+                (ifRange == null || ifRange.equals(ETAG));
+        int first = 0;
+        int last = fInput.length - 1;
+
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", ETAG);
+
+        if (isRangeReturned) {
+            String[] firstAndLast = range.substring(BYTES_RANGE_PREFIX.length()).split("-", -1);
+            first = Integer.parseInt(firstAndLast[0]);
+            last = firstAndLast[1].isEmpty() ? last : Math.min(Integer.parseInt(firstAndLast[1]), last);
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + first + "-" + last + "/" + fInput.length);
+            fRangeRequestsCount.incrementAndGet();
+        }
+
+        int statusCode = isRangeReturned ? 206 : 200;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", Integer.toString(fInput.length));
+            exchange.sendResponseHeaders(statusCode, NO_BODY);
+            exchange.close();
+            return;
+        }
+
+        exchange.sendResponseHeaders(statusCode, last + 1 - first);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            writeThrottled(responseBody, first, last + 1);
+        }
+    }
+
+    /***
+     * Write the bytes of the input in blocks, and when the server is throttled wait before every block
+     * until the rate of the response is below the limit
+     */
+    private void writeThrottled(OutputStream responseBody, int start, int end) throws IOException {
+        long startNanos = System.nanoTime();
+
+        for (int blockStart = start; blockStart < end; blockStart += WRITE_BLOCK_SIZE) {
+            if (fBytesPerSecondPerConnection != NOT_THROTTLED) {
+                long allowedNanos = TimeUnit.SECONDS.toNanos(blockStart - start) / fBytesPerSecondPerConnection;
+                long waitNanos = startNanos + allowedNanos - System.nanoTime();
+
+                if (waitNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            }
+
+            responseBody.write(fInput, blockStart, Math.min(WRITE_BLOCK_SIZE, end - blockStart));
+        }
+    }
+
+    @Override
+    public void close() {
+        fServer.stop(0);
+        fHandlersExecutor.shutdownNow();
+    }
+}
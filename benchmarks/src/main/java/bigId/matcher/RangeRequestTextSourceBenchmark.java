@@ -0,0 +1,72 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of the download of a http input by a single stream (UrlTextSource) against parallel range requests
+ * (RangeRequestTextSource) of a few connections.
+ * The input is served by a local RangeHttpServer that throttle every connection, like a remote server,
+ * and is only read and split to chunks (not searched), so the benchmark measure the download throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RangeRequestTextSourceBenchmark {
+    @Param({"700000"})  // About 50MB, a few ranges for every connection
+    public int linesCount;
+
+    @Param({"1", "4", "8"})  // 1 is the single stream
+    public int connectionsCount;
+
+    @Param({"67108864"})  // 64MB per second per connection
+    public long bytesPerSecondPerConnection;
+
+    private RangeHttpServer fServer;
+    private MatchFinderOptions fOptions;
+
+    @Setup
+    public void setup() throws IOException {
+        Set<String> dictionary = BenchmarkCorpus.createDictionary(50);
+        Path corpusFile = BenchmarkCorpus.createCorpusFile(linesCount, dictionary);
+
+        try {
+            fServer = new RangeHttpServer(Files.readAllBytes(corpusFile), bytesPerSecondPerConnection);
+        } finally {
+            Files.deleteIfExists(corpusFile);
+        }
+
+        fOptions = new MatchFinderOptions();
+        fOptions.setChunkingMode(ChunkingMode.FIXED_BYTES);
+        fOptions.setParallelDownloadConnections(connectionsCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fServer.close();
+    }
+
+    /***
+     * @return the bytes of all the chunks, so the chunks are not optimized away
+     */
+    @Benchmark
+    public long download() throws IOException {
+        long[] downloadedBytes = new long[1];
+
+        try (TextSource textSource = TextSources.create(fServer.getUrl(), fOptions,
+                new TextChunker(new ChunkSizeTuner(fOptions)))) {
+            textSource.open();
+            textSource.readChunks(textChunk -> downloadedBytes[0] += textChunk.getSize());
+        }
+
+        return downloadedBytes[0];
+    }
+}
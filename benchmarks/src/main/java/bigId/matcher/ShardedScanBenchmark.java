@@ -0,0 +1,74 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of a single scan against a sharded scan of the same file by a few ShardWorker processes.
+ * The sharded scan include the start of the worker JVMs and the lines counting of the file.
+ * The StdOut and StdErr are silenced during the benchmark, the output files are temporary files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShardedScanBenchmark {
+    @Param({"1300000"})  // About 10 times the size of big.txt
+    public int linesCount;
+
+    @Param({"1", "2", "4"})
+    public int workersCount;
+
+    private Set<String> fDictionary;
+    private Path fCorpusFile;
+    private Path fOutputFile;
+    private PrintStream fOriginalStdOut;
+    private PrintStream fOriginalStdErr;
+
+    @Setup
+    public void setup() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(50);
+        fCorpusFile = BenchmarkCorpus.createCorpusFile(linesCount, fDictionary);
+        fOutputFile = Files.createTempFile("big-id-output", ".txt");
+
+        fOriginalStdOut = System.out;
+        fOriginalStdErr = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(fOriginalStdOut);
+        System.setErr(fOriginalStdErr);
+        Files.deleteIfExists(fOutputFile);
+    }
+
+    /***
+     * The scan in a single JVM, the baseline
+     */
+    @Benchmark
+    public void scan() {
+        new MatchFinderManager(fDictionary, fCorpusFile.toString(), fOutputFile.toString()).run();
+    }
+
+    @Benchmark
+    public void shardedScan() {
+        MatchFinderOptions options = new MatchFinderOptions();
+        options.setShardWorkersCount(workersCount);
+        options.setShardBytes(16L * 1024 * 1024);
+
+        ShardedScanCoordinator coordinator = new ShardedScanCoordinator(fDictionary, options);
+        coordinator.addInput(fCorpusFile.toString(), fOutputFile.toString());
+        coordinator.run();
+    }
+}
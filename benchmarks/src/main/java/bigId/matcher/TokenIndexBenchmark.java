@@ -0,0 +1,92 @@
+package bigId.matcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmark of the token index: the build of the index during a scan (compared to the same scan without an index),
+ * and the latency of answering a dictionary from the index, for single word names and for "Mr Name" phrases.
+ * The StdOut and StdErr are silenced during the benchmark, the output and index files are temporary files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenIndexBenchmark {
+    @Param({"130000"})  // About the size of big.txt
+    public int linesCount;
+
+    @Param({"50", "1000"})  // Only the first 50 names appear in the corpus
+    public int dictionarySize;
+
+    private Set<String> fDictionary;
+    private Set<String> fQueryTexts;
+    private Path fCorpusFile;
+    private Path fOutputFile;
+    private Path fIndexFile;
+    private TokenIndex fTokenIndex;
+    private PrintStream fOriginalStdOut;
+    private PrintStream fOriginalStdErr;
+
+    @Setup
+    public void setup() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(50);
+        fCorpusFile = BenchmarkCorpus.createCorpusFile(linesCount, fDictionary);
+        fOutputFile = Files.createTempFile("big-id-output", ".txt");
+        fIndexFile = Files.createTempFile("big-id-index", ".idx");
+        fQueryTexts = new LinkedHashSet<>();
+        for (String name : BenchmarkCorpus.createDictionary(dictionarySize)) {
+            fQueryTexts.add(name);
+            fQueryTexts.add("Mr " + name);
+        }
+
+        fOriginalStdOut = System.out;
+        fOriginalStdErr = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        buildIndex();
+        fTokenIndex = TokenIndex.open(fIndexFile.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(fOriginalStdOut);
+        System.setErr(fOriginalStdErr);
+        fTokenIndex.close();
+        Files.deleteIfExists(fOutputFile);
+        Files.deleteIfExists(fIndexFile);
+    }
+
+    /***
+     * The scan without an index, the baseline of buildIndex
+     */
+    @Benchmark
+    public void scan() {
+        new MatchFinderManager(fDictionary, fCorpusFile.toString(), fOutputFile.toString(),
+                new MatchFinderOptions()).run();
+    }
+
+    @Benchmark
+    public void buildIndex() {
+        MatchFinderOptions options = new MatchFinderOptions();
+
+        options.setIndexFilePath(fIndexFile.toString());
+        new MatchFinderManager(fDictionary, fCorpusFile.toString(), fOutputFile.toString(), options).run();
+    }
+
+    @Benchmark
+    public void query() throws IOException {
+        fTokenIndex.writeMatches(fQueryTexts, fOutputFile.toString());
+    }
+}
@@ -0,0 +1,79 @@
+package bigId.matcher;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/***
+ * Test that an input downloaded by parallel range requests give the same output as the same input read by a single
+ * stream, the input is served by a local RangeHttpServer and is big enough for a few ranges (so chunks cross the
+ * end of a range).
+ * The input is scanned by a MatchFinderService, so a failure fail the test (instead of exiting the JVM).
+ * The throughput of the two is compared by the RangeRequestTextSourceBenchmark.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RangeRequestTextSourceTest {
+    //region CONSTANTS
+    private static final int LINES_COUNT = 300_000;  // About 21MB, a few ranges of 8MB
+    private static final int CONNECTIONS_COUNT = 4;
+    //endregion CONSTANTS
+
+    //region Fields
+    private Set<String> fDictionary;
+    private RangeHttpServer fServer;
+    //endregion Fields
+
+    @BeforeAll
+    void startServer() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(50);
+        Path corpusFile = BenchmarkCorpus.createCorpusFile(LINES_COUNT, fDictionary);
+        fServer = new RangeHttpServer(Files.readAllBytes(corpusFile));
+    }
+
+    @AfterAll
+    void stopServer() {
+        fServer.close();
+    }
+
+    @Test
+    void parallelDownloadHasTheSameOutputAsSingleStream() throws IOException, InterruptedException,
+            ExecutionException {
+        for (OutputMode outputMode : new OutputMode[]{OutputMode.GROUPED_BY_NAME, OutputMode.CHUNK_ORDER}) {
+            byte[] singleStreamOutput = scan(outputMode, 1);
+            int rangeRequestsBefore = fServer.getRangeRequestsCount();
+            byte[] parallelDownloadOutput = scan(outputMode, CONNECTIONS_COUNT);
+
+            assertTrue(fServer.getRangeRequestsCount() - rangeRequestsBefore > 1, "Not downloaded by ranges");
+            assertArrayEquals(singleStreamOutput, parallelDownloadOutput, outputMode + " output is different");
+        }
+    }
+
+    private byte[] scan(OutputMode outputMode, int connectionsCount) throws IOException, InterruptedException,
+            ExecutionException {
+        Path outputFile = Files.createTempFile("big-id-output", ".txt");
+
+        try {
+            MatchFinderOptions options = new MatchFinderOptions();
+            options.setOutputMode(outputMode);
+            options.setChunkingMode(ChunkingMode.FIXED_BYTES);  // Chunks that cross the end of a range
+            options.setParallelDownloadConnections(connectionsCount);
+
+            try (MatchFinderService service = new MatchFinderService(fDictionary, options)) {
+                service.submit(MatchInput.fromUrl(fServer.getUrl()), outputFile.toString()).get();
+            }
+            return Files.readAllBytes(outputFile);
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+}
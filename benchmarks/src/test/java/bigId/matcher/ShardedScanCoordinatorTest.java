@@ -0,0 +1,124 @@
+package bigId.matcher;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/***
+ * Test that a sharded scan with a few ShardWorker processes give the same output as a single scan,
+ * also when one of the workers is killed in the middle of the scan (its shard must be given to another worker
+ * and the worker must be replaced).
+ * The killed worker is one that the coordinator report as searching a shard, so the kill always lose a shard.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardedScanCoordinatorTest {
+    //region CONSTANTS
+    private static final int LINES_COUNT = 500_000;  // About 35MB, many shards
+    private static final int WORKERS_COUNT = 3;
+    private static final long SHARD_BYTES = 4 * 1024 * 1024;  // A few shards for every worker, each take a while
+    private static final long WORKERS_START_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    //endregion CONSTANTS
+
+    //region Fields
+    private Set<String> fDictionary;
+    private Path fCorpusFile;
+    private byte[] fSingleScanOutput;
+    //endregion Fields
+
+    @BeforeAll
+    void scanOnce() throws IOException {
+        fDictionary = BenchmarkCorpus.createDictionary(50);
+        fCorpusFile = BenchmarkCorpus.createCorpusFile(LINES_COUNT, fDictionary);
+
+        Path outputFile = Files.createTempFile("big-id-output", ".txt");
+        try {
+            new MatchFinderManager(fDictionary, fCorpusFile.toString(), outputFile.toString(), createOptions()).run();
+            fSingleScanOutput = Files.readAllBytes(outputFile);
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    @AfterAll
+    void deleteCorpus() throws IOException {
+        Files.deleteIfExists(fCorpusFile);
+    }
+
+    @Test
+    void shardedScanHasTheSameOutputAsSingleScan() throws Exception {
+        assertArrayEquals(fSingleScanOutput, shardedScan(false));
+    }
+
+    @Test
+    void shardedScanWithAKilledWorkerHasTheSameOutputAsSingleScan() throws Exception {
+        assertArrayEquals(fSingleScanOutput, shardedScan(true));
+    }
+
+    /***
+     * @param isWorkerKilled true to kill one of the workers while it search a shard
+     * @return the output of the sharded scan
+     */
+    private byte[] shardedScan(boolean isWorkerKilled) throws Exception {
+        Path outputFile = Files.createTempFile("big-id-output", ".txt");
+
+        try {
+            MatchFinderOptions options = createOptions();
+            options.setShardWorkersCount(WORKERS_COUNT);
+            options.setShardBytes(SHARD_BYTES);
+
+            ShardedScanCoordinator coordinator = new ShardedScanCoordinator(fDictionary, options);
+            coordinator.addInput(fCorpusFile.toString(), outputFile.toString());
+            Thread coordinatorThread = new Thread(coordinator::run);
+            coordinatorThread.start();
+
+            if (isWorkerKilled) {
+                awaitWorkerWithShard(coordinator).destroyForcibly();
+            }
+
+            coordinatorThread.join();
+            if (isWorkerKilled) {
+                assertTrue(coordinator.getRetriesCount() > 0, "The shard of the killed worker was not retried");
+                assertTrue(coordinator.getRestartsCount() > 0, "The killed worker was not replaced");
+            }
+            return Files.readAllBytes(outputFile);
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    /***
+     * @return a worker process that the coordinator report as searching a shard
+     */
+    private static ProcessHandle awaitWorkerWithShard(ShardedScanCoordinator coordinator) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WORKERS_START_TIMEOUT_MILLIS);
+        List<ProcessHandle> workersWithShards = List.of();
+
+        while (workersWithShards.isEmpty() && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+            workersWithShards = coordinator.getWorkersWithShards();
+        }
+
+        assertFalse(workersWithShards.isEmpty(), "No shard worker searched a shard");
+        return workersWithShards.get(0);
+    }
+
+    private static MatchFinderOptions createOptions() {
+        MatchFinderOptions options = new MatchFinderOptions();
+        options.setOutputMode(OutputMode.GROUPED_BY_NAME);
+
+        return options;
+    }
+}
@@ -0,0 +1,19 @@
+package bigId.matcher;
+
+/***
+ * The way the matches of all the chunks are collected
+ */
+public enum AggregationMode {
+    /***
+     * The chunks are sent through a bounded queue to a single ChunksAggregator thread (the default),
+     * one core is reserved for the aggregator
+     */
+    AGGREGATOR_THREAD,
+
+    /***
+     * The MatchSearcher tasks store the chunks directly in a concurrent structure slotted by the chunk index,
+     * the chunks are merged (per text, in parallel) only when all the tasks are done.
+     * No core is reserved for an aggregator.
+     */
+    CONCURRENT
+}
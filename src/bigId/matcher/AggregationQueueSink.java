@@ -0,0 +1,42 @@
+package bigId.matcher;
+
+import java.util.concurrent.BlockingQueue;
+
+/***
+ * ChunkMatchesSink that send the chunks to the ChunksAggregator thread through the bounded aggregation queue
+ */
+class AggregationQueueSink implements ChunkMatchesSink {
+    //region Fields
+    private final BlockingQueue<ChunkMatches> fMatchingPairsToAggregate;
+    private final PipelineStatistics fPipelineStatistics;
+    //endregion Fields
+
+    //region Constructor
+    public AggregationQueueSink(BlockingQueue<ChunkMatches> matchingPairsToAggregate,
+                                PipelineStatistics pipelineStatistics) {
+        fMatchingPairsToAggregate = matchingPairsToAggregate;
+        fPipelineStatistics = pipelineStatistics;
+    }
+    //endregion Constructor
+
+    /***
+     * Send the chunk matches to the aggregator, when the aggregation queue is full
+     * the calling task is blocked until the aggregator take a chunk from it
+     * @param chunkMatches all the matches of the chunk
+     */
+    @Override
+    public void accept(ChunkMatches chunkMatches) {
+        long stallStart = System.nanoTime();
+
+        try {
+            fMatchingPairsToAggregate.put(chunkMatches);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            fPipelineStatistics.addSearcherStall(System.nanoTime() - stallStart);
+            fPipelineStatistics.updateAggregationQueueDepth(fMatchingPairsToAggregate.size());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package bigId.matcher;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/***
+ * This class is the Aho-Corasick automaton that is shared by the Aho-Corasick based engines.
+ * The automaton is kept as a full transition table (state X symbol), where the symbols are only the chars
+ * that appear in the texts to find and all the other chars are mapped to a single 'unknown' symbol.
+ * The texts are plain char sequences, the byte engine build it from the encoded texts (a char per byte).
+ * Once built the automaton is immutable and can be shared between threads.
+ */
+final class AhoCorasickAutomaton {
+    //region CONSTANTS
+    static final int ROOT_STATE = 0;
+    static final int NO_TEXT = -1;
+    static final int NO_OVERLAP_SLOT = -1;
+    private static final int NO_STATE = -1;
+    private static final char UNKNOWN_SYMBOL = 0;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String[] fTexts;
+    private final char[] fCharToSymbol;  // Map each char to its symbol in the automaton
+    private final int fSymbolsCount;
+    private int[] fTransitions;  // fTransitions[state * fSymbolsCount + symbol] = next state
+    private int[] fTextAtState;  // Index of the text that end in the state, or NO_TEXT
+    private int[] fOutputLink;  // Closest suffix state that have a text that end in it, ROOT_STATE if none
+    private int[] fFirstOutputState;  // The state itself if a text end in it, otherwise its output link
+    private final int[] fOverlapSlot;  // Slot of texts that can overlap themselves, or NO_OVERLAP_SLOT
+    private final int fOverlappingTextsCount;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * @param texts the texts to find, a null or an empty text is never matched
+     * @param maxChar the biggest char that can appear in the texts and in the searched input
+     */
+    public AhoCorasickAutomaton(String[] texts, char maxChar) {
+        fTexts = texts;
+        fCharToSymbol = new char[maxChar + 1];
+        fSymbolsCount = initializeSymbols();
+        fOverlapSlot = new int[fTexts.length];
+        fOverlappingTextsCount = initializeOverlapSlots();
+        buildAutomaton();
+    }
+
+    private static boolean isSearchable(String text) {
+        return text != null && !text.isEmpty();
+    }
+
+    /***
+     * Give a symbol to every char that appear in one of the texts to find
+     * @return how many symbols there are (including the unknown symbol)
+     */
+    private int initializeSymbols() {
+        int symbolsCount = UNKNOWN_SYMBOL + 1;
+
+        for (String text : fTexts) {
+            if (!isSearchable(text)) {
+                continue;
+            }
+
+            for (int i = 0; i < text.length(); i++) {
+                char currentChar = text.charAt(i);
+
+                if (fCharToSymbol[currentChar] == UNKNOWN_SYMBOL) {
+                    fCharToSymbol[currentChar] = (char) symbolsCount++;
+                }
+            }
+        }
+
+        return symbolsCount;
+    }
+
+    /***
+     * Texts that have a prefix that is also their suffix (e.g. 'a a') can overlap themselves,
+     * only for those texts we need to track the last match end while searching.
+     * @return how many texts can overlap themselves
+     */
+    private int initializeOverlapSlots() {
+        int overlappingTextsCount = 0;
+
+        for (int i = 0; i < fTexts.length; i++) {
+            fOverlapSlot[i] = isSearchable(fTexts[i]) && hasBorder(fTexts[i]) ? overlappingTextsCount++ : NO_OVERLAP_SLOT;
+        }
+
+        return overlappingTextsCount;
+    }
+
+    private static boolean hasBorder(String text) {
+        int[] prefixFunction = new int[text.length()];
+
+        for (int i = 1; i < text.length(); i++) {
+            int border = prefixFunction[i - 1];
+
+            while (border > 0 && text.charAt(i) != text.charAt(border)) {
+                border = prefixFunction[border - 1];
+            }
+
+            if (text.charAt(i) == text.charAt(border)) {
+                border++;
+            }
+
+            prefixFunction[i] = border;
+        }
+
+        return prefixFunction[text.length() - 1] > 0;
+    }
+
+    /***
+     * Build the trie of all the texts to find and then turn it into a full automaton
+     * by following the failure links (BFS order)
+     */
+    private void buildAutomaton() {
+        int statesCount = buildTrie();
+        int[] failureLinks = new int[statesCount];
+        Queue<Integer> statesQueue = new ArrayDeque<>();
+
+        fOutputLink = new int[statesCount];
+        fFirstOutputState = new int[statesCount];
+        for (int symbol = 0; symbol < fSymbolsCount; symbol++) {
+            int nextState = fTransitions[symbol];
+
+            if (nextState == NO_STATE) {
+                fTransitions[symbol] = ROOT_STATE;
+            } else {
+                failureLinks[nextState] = ROOT_STATE;
+                statesQueue.add(nextState);
+            }
+        }
+
+        while (!statesQueue.isEmpty()) {
+            int state = statesQueue.poll();
+            int failureState = failureLinks[state];
+
+            fOutputLink[state] = fTextAtState[failureState] != NO_TEXT ? failureState : fOutputLink[failureState];
+            fFirstOutputState[state] = fTextAtState[state] != NO_TEXT ? state : fOutputLink[state];
+
+            for (int symbol = 0; symbol < fSymbolsCount; symbol++) {
+                int transitionIndex = state * fSymbolsCount + symbol;
+                int nextState = fTransitions[transitionIndex];
+                int failureNextState = fTransitions[failureState * fSymbolsCount + symbol];
+
+                if (nextState == NO_STATE) {
+                    fTransitions[transitionIndex] = failureNextState;
+                } else {
+                    failureLinks[nextState] = failureNextState;
+                    statesQueue.add(nextState);
+                }
+            }
+        }
+    }
+
+    /***
+     * Insert all the texts to find into a trie, missing transitions are marked with NO_STATE
+     * @return how many states the trie have
+     */
+    private int buildTrie() {
+        int maxStatesCount = 1;
+        for (String text : fTexts) {
+            maxStatesCount += isSearchable(text) ? text.length() : 0;
+        }
+
+        fTransitions = new int[maxStatesCount * fSymbolsCount];
+        fTextAtState = new int[maxStatesCount];
+        Arrays.fill(fTransitions, NO_STATE);
+        Arrays.fill(fTextAtState, NO_TEXT);
+
+        int statesCount = 1;
+        for (int textIndex = 0; textIndex < fTexts.length; textIndex++) {
+            String text = fTexts[textIndex];
+            if (!isSearchable(text)) {
+                continue;  // An empty text has no meaning as a name, ignore it
+            }
+
+            int state = ROOT_STATE;
+            for (int i = 0; i < text.length(); i++) {
+                int transitionIndex = state * fSymbolsCount + fCharToSymbol[text.charAt(i)];
+
+                if (fTransitions[transitionIndex] == NO_STATE) {
+                    fTransitions[transitionIndex] = statesCount++;
+                }
+
+                state = fTransitions[transitionIndex];
+            }
+
+            fTextAtState[state] = textIndex;
+        }
+
+        fTransitions = Arrays.copyOf(fTransitions, statesCount * fSymbolsCount);
+        fTextAtState = Arrays.copyOf(fTextAtState, statesCount);
+
+        return statesCount;
+    }
+    //endregion Constructor
+
+    //region Searching
+    public int nextState(int state, char currentChar) {
+        return fTransitions[state * fSymbolsCount + fCharToSymbol[currentChar]];
+    }
+
+    /***
+     * @return the first state in the output chain of the given state (the state itself if a text end in it),
+     * ROOT_STATE if no text end in the state or in one of its suffixes
+     */
+    public int firstOutputState(int state) {
+        return fFirstOutputState[state];
+    }
+
+    /***
+     * @return the next state in the output chain, ROOT_STATE when the chain is over
+     */
+    public int nextOutputState(int outputState) {
+        return fOutputLink[outputState];
+    }
+
+    public int getTextAtState(int state) {
+        return fTextAtState[state];
+    }
+
+    public int getTextLength(int textIndex) {
+        return fTexts[textIndex].length();
+    }
+
+    /***
+     * @return the slot of the text in the last match ends array, NO_OVERLAP_SLOT if the text can't overlap itself
+     */
+    public int getOverlapSlot(int textIndex) {
+        return fOverlapSlot[textIndex];
+    }
+
+    /***
+     * @return the size of the last match ends array that is needed while searching a line
+     */
+    public int getOverlappingTextsCount() {
+        return fOverlappingTextsCount;
+    }
+    //endregion Searching
+}
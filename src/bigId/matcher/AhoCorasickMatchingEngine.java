@@ -0,0 +1,86 @@
+package bigId.matcher;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * This class is the Aho-Corasick based MatchingEngine.
+ * The automaton is built once from all the texts to find and then each line is scanned only once
+ * for all of them, so the search time stay roughly the same when the dictionary grow.
+ * Chunks that are still encoded (UTF-8 or US-ASCII) are searched by a ByteMatchingEngine that is built
+ * from the same texts, once for every charset.
+ * Once built the engine is immutable and can be shared between threads.
+ */
+class AhoCorasickMatchingEngine implements MatchingEngine {
+    //region Fields
+    private final String[] fTextsToFind;
+    private final AhoCorasickAutomaton fAutomaton;
+    private final Map<Charset, Optional<ByteMatchingEngine>> fByteMatchingEngines;  // Empty if not supported
+    //endregion Fields
+
+    //region Constructor
+    public AhoCorasickMatchingEngine(Set<String> textToFindSet) {
+        fTextsToFind = textToFindSet.toArray(new String[0]);
+        fAutomaton = new AhoCorasickAutomaton(fTextsToFind, Character.MAX_VALUE);
+        fByteMatchingEngines = new ConcurrentHashMap<>();
+    }
+    //endregion Constructor
+
+    @Override
+    public int getTextToFindCount() {
+        return fTextsToFind.length;
+    }
+
+    @Override
+    public String getTextToFind(int textToFindIndex) {
+        return fTextsToFind[textToFindIndex];
+    }
+
+    @Override
+    public void findMatches(CharSequence line, MatchListener listener) {
+        int[] lastMatchEnds = null;  // Created only when a text that can overlap itself is found
+        int state = AhoCorasickAutomaton.ROOT_STATE;
+
+        for (int i = 0; i < line.length(); i++) {
+            state = fAutomaton.nextState(state, line.charAt(i));
+
+            int outputState = fAutomaton.firstOutputState(state);
+            while (outputState != AhoCorasickAutomaton.ROOT_STATE) {
+                int textIndex = fAutomaton.getTextAtState(outputState);
+                int matchEnd = i + 1;
+                int matchStart = matchEnd - fAutomaton.getTextLength(textIndex);
+
+                if (WordBoundary.isMatchBounded(line, matchStart, matchEnd)) {
+                    int overlapSlot = fAutomaton.getOverlapSlot(textIndex);
+
+                    if (overlapSlot == AhoCorasickAutomaton.NO_OVERLAP_SLOT) {
+                        listener.onMatch(textIndex, matchStart);
+                    } else {
+                        if (lastMatchEnds == null) {
+                            lastMatchEnds = new int[fAutomaton.getOverlappingTextsCount()];
+                        }
+
+                        if (matchStart >= lastMatchEnds[overlapSlot]) {
+                            lastMatchEnds[overlapSlot] = matchEnd;
+                            listener.onMatch(textIndex, matchStart);
+                        }
+                    }
+                }
+
+                outputState = fAutomaton.nextOutputState(outputState);
+            }
+        }
+    }
+
+    /***
+     * The byte engine is built on the first call for a charset, and then shared by all the searching tasks
+     */
+    @Override
+    public ByteMatchingEngine getByteMatchingEngine(Charset charset) {
+        return fByteMatchingEngines.computeIfAbsent(charset, key -> ByteMatchingEngine.isSupported(fTextsToFind, key) ?
+                Optional.of(new ByteMatchingEngine(fTextsToFind, key)) : Optional.empty()).orElse(null);
+    }
+}
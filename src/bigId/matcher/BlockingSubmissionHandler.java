@@ -0,0 +1,38 @@
+package bigId.matcher;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/***
+ * RejectedExecutionHandler that block the submitting thread until there is a room in the executor queue,
+ * this is how the reader get backpressure from a bounded searching tasks queue.
+ */
+class BlockingSubmissionHandler implements RejectedExecutionHandler {
+    //region Fields
+    private final PipelineStatistics fPipelineStatistics;
+    //endregion Fields
+
+    //region Constructor
+    public BlockingSubmissionHandler(PipelineStatistics pipelineStatistics) {
+        fPipelineStatistics = pipelineStatistics;
+    }
+    //endregion Constructor
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor was shut down");
+        }
+
+        long stallStart = System.nanoTime();
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        } finally {
+            fPipelineStatistics.addReaderStall(System.nanoTime() - stallStart);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package bigId.matcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * ExecutorService that run the tasks on another executor, but never more than a given number of them at the same time.
+ * A task above the limit wait in a queue (not on a thread) and is given to the other executor when a running task
+ * end, so the tasks start by the order they were executed (with a limit of 1 they run one after the other).
+ * The other executor is shut down when this executor was shut down and all its queued tasks ended.
+ */
+class BoundedExecutorService extends AbstractExecutorService {
+    //region Fields
+    private final ExecutorService fExecutor;
+    private final int fMaxConcurrentTasks;
+    private final Queue<Runnable> fWaitingTasks;  // All the state below is guarded by the executor lock
+    private int fRunningTasksCount;
+    private boolean fIsShutdown;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * @param executor the executor that run the tasks, shut down with this executor
+     * @param maxConcurrentTasks how many tasks may run at the same time
+     */
+    public BoundedExecutorService(ExecutorService executor, int maxConcurrentTasks) {
+        fExecutor = executor;
+        fMaxConcurrentTasks = maxConcurrentTasks;
+        fWaitingTasks = new ArrayDeque<>();
+        fRunningTasksCount = 0;
+        fIsShutdown = false;
+    }
+    //endregion Constructor
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (fIsShutdown) {
+                throw new RejectedExecutionException("The executor was shut down");
+            }
+
+            if (fRunningTasksCount == fMaxConcurrentTasks) {
+                fWaitingTasks.add(task);
+                return;
+            }
+
+            fRunningTasksCount++;
+        }
+
+        start(task);
+    }
+
+    private void start(Runnable task) {
+        fExecutor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                onTaskEnd();
+            }
+        });
+    }
+
+    /***
+     * Start the next waiting task instead of the task that ended, or shut down the other executor
+     * when this executor was shut down and there are no tasks left
+     */
+    private void onTaskEnd() {
+        Runnable nextTask;
+
+        synchronized (this) {
+            nextTask = fWaitingTasks.poll();
+            if (nextTask == null) {
+                fRunningTasksCount--;
+                if (fIsShutdown && fRunningTasksCount == 0) {
+                    fExecutor.shutdown();
+                }
+                return;
+            }
+        }
+
+        start(nextTask);
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        fIsShutdown = true;
+
+        if (fRunningTasksCount == 0) {
+            fExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> neverStartedTasks;
+
+        synchronized (this) {
+            fIsShutdown = true;
+            neverStartedTasks = new ArrayList<>(fWaitingTasks);
+            fWaitingTasks.clear();
+        }
+
+        neverStartedTasks.addAll(fExecutor.shutdownNow());
+        return neverStartedTasks;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return fIsShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return fExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return fExecutor.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,465 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * This class search the texts to find directly in the encoded bytes of a chunk (UTF-8 or US-ASCII),
+ * so the chunk is never decoded into chars.
+ * The Aho-Corasick automaton is built from the encoded texts (a symbol per byte) and the word boundaries are checked
+ * on the bytes around the match. The chars are counted while scanning (a char per byte that is not a UTF-8
+ * continuation byte), and the bytes are validated when a match is found after a non ASCII byte (and once in the chunk end).
+ * It find exactly the same matches (and the same char offsets) as searching the decoded lines,
+ * when a malformed UTF-8 sequence is found in the chunk the search give up and the chunk must be decoded.
+ * When the LinePreFilter is used every line is first checked by a filter of the encoded texts, and a line
+ * without a candidate is only counted (its chars) and never scanned by the automaton.
+ */
+final class ByteMatchingEngine {
+    //region CONSTANTS
+    private static final char MAX_BYTE_CHAR = 0xFF;
+    static final long MALFORMED_CHUNK = -1;
+    private static final int MALFORMED = -1;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final char REPLACEMENT_CHAR = '\uFFFD';  // Malformed input is decoded to this char
+    private static final int[] MIN_CODE_POINT_BY_LENGTH = {0, 0, 0x80, 0x800, 0x10000};
+
+    // Results of the word boundaries check
+    private static final int NOT_BOUNDED = 0;
+    private static final int BOUNDED = 1;
+    private static final int BOUNDARY_MALFORMED = 2;
+
+    private static final int NO_POSITION = -1;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final Charset fCharset;
+    private final boolean fIsUtf8;  // false for US-ASCII, where every byte is a single char
+    private final AhoCorasickAutomaton fAutomaton;
+    private final LinePreFilter fLinePreFilter;
+    private final int[] fTextCharsCount;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * @param textsToFind the texts to find, by their index in the MatchingEngine
+     * @param charset UTF-8 or US-ASCII (see isSupported)
+     */
+    public ByteMatchingEngine(String[] textsToFind, Charset charset) {
+        fCharset = charset;
+        fIsUtf8 = charset.equals(StandardCharsets.UTF_8);
+        fTextCharsCount = new int[textsToFind.length];
+        String[] encodedTexts = encodeTexts(textsToFind);
+        fAutomaton = new AhoCorasickAutomaton(encodedTexts, MAX_BYTE_CHAR);
+        fLinePreFilter = new LinePreFilter(encodedTexts);
+    }
+
+    /***
+     * A byte search is possible only when the chunk bytes can be decoded without a decoder, and no text
+     * can be matched by the replacement char of malformed input
+     * @param textsToFind all the texts to find
+     * @param charset the charset of the chunks
+     * @return true if a ByteMatchingEngine can be used for the charset
+     */
+    static boolean isSupported(String[] textsToFind, Charset charset) {
+        if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII)) {
+            return false;
+        }
+
+        for (String textToFind : textsToFind) {
+            if (textToFind.indexOf(REPLACEMENT_CHAR) >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /***
+     * Encode every text to a String of a char per byte, a text that can't be encoded can never be found
+     * in the decoded input either (it is left null, so it is not a part of the automaton)
+     */
+    private String[] encodeTexts(String[] textsToFind) {
+        CharsetEncoder encoder = fCharset.newEncoder();
+        String[] encodedTexts = new String[textsToFind.length];
+
+        for (int i = 0; i < textsToFind.length; i++) {
+            String textToFind = textsToFind[i];
+            if (textToFind.isEmpty() || !encoder.canEncode(textToFind)) {
+                continue;
+            }
+
+            encodedTexts[i] = new String(textToFind.getBytes(fCharset), StandardCharsets.ISO_8859_1);
+            fTextCharsCount[i] = textToFind.length();
+        }
+
+        return encodedTexts;
+    }
+    //endregion Constructor
+
+    //region Searching
+    /***
+     * Search all the texts to find in the encoded chunk, the chunk lines are split the same way
+     * as BufferedReader.readLine (by '\n', '\r' or "\r\n").
+     * The builder get a startLine call for every line, and the match start that is given to it
+     * is the char offset of the match comparing to the line start (the same as MatchingEngine.findMatches).
+     * @param bytes the chunk bytes, from the buffer position to its limit
+     * @param builder the builder that will get all the lines and matches
+     * @param isPreFilterUsed true to skip the lines that have no candidate by the LinePreFilter
+     * @return how many chars the chunk lines have (without the line terminators), or MALFORMED_CHUNK
+     * if the chunk has malformed input that change the chars count (some matches may already have been reported),
+     * the chunk must be searched again after it is decoded
+     */
+    public long findMatches(ByteBuffer bytes, ChunkMatchesBuilder builder, boolean isPreFilterUsed) {
+        ChunkScan scan = new ChunkScan(bytes.slice());
+        int[] lastMatchEnds = null;  // Byte indexes only grow, so the last match ends never need to be reset per line
+        int state = AhoCorasickAutomaton.ROOT_STATE;
+        long chars = 0;  // Chars until the current byte (including it), without the line terminators
+        boolean isLineStart = scan.fLimit > 0;
+
+        if (isLineStart) {
+            builder.startLine(0);
+        }
+
+        for (int i = 0; i < scan.fLimit; i++) {
+            if (isLineStart) {
+                isLineStart = false;
+
+                int filteredLineEnd = isPreFilterUsed ? scan.skipLineWithoutCandidates(i) : NO_POSITION;
+                if (filteredLineEnd != NO_POSITION) {
+                    chars += scan.fSkippedLineChars;
+                    builder.onLineFiltered();
+                    i = filteredLineEnd - 1;  // The line terminator (if any) is handled by the next iteration
+                    continue;
+                }
+            }
+
+            byte currentByte = scan.fBytes.get(i);
+
+            if (currentByte >= 0 || !fIsUtf8) {
+                if (isLineTerminator(currentByte)) {
+                    boolean isCarriageReturnLineFeed = currentByte == CARRIAGE_RETURN && i + 1 < scan.fLimit &&
+                            scan.fBytes.get(i + 1) == LINE_FEED;
+                    if (isCarriageReturnLineFeed) {
+                        i++;
+                    }
+
+                    state = AhoCorasickAutomaton.ROOT_STATE;
+                    scan.startLine(i + 1, chars);
+                    if (i + 1 < scan.fLimit) {
+                        builder.startLine(chars);
+                        isLineStart = true;
+                    }
+                    continue;
+                }
+
+                chars++;
+            } else {
+                scan.markNonAscii(i);
+                chars += getCharsCount(currentByte);
+            }
+
+            state = fAutomaton.nextState(state, (char) (currentByte & 0xFF));
+
+            int outputState = fAutomaton.firstOutputState(state);
+            while (outputState != AhoCorasickAutomaton.ROOT_STATE) {
+                int textIndex = fAutomaton.getTextAtState(outputState);
+                int matchEnd = i + 1;
+                int matchStart = matchEnd - fAutomaton.getTextLength(textIndex);
+                long matchStartChars = chars - fTextCharsCount[textIndex];
+                int boundaries = checkWordBoundaries(scan, textIndex, matchStart, matchEnd, matchStartChars);
+
+                if (boundaries == BOUNDARY_MALFORMED) {
+                    return MALFORMED_CHUNK;
+                }
+
+                if (boundaries == BOUNDED) {
+                    int overlapSlot = fAutomaton.getOverlapSlot(textIndex);
+                    boolean isOverlapping = false;
+
+                    if (overlapSlot != AhoCorasickAutomaton.NO_OVERLAP_SLOT) {
+                        if (lastMatchEnds == null) {
+                            lastMatchEnds = new int[fAutomaton.getOverlappingTextsCount()];
+                        }
+
+                        isOverlapping = matchStart < lastMatchEnds[overlapSlot];
+                        if (!isOverlapping) {
+                            lastMatchEnds[overlapSlot] = matchEnd;
+                        }
+                    }
+
+                    if (!isOverlapping) {
+                        // The counted chars are right only if all the bytes before the match are valid
+                        if (!scan.validateBefore(matchStart, matchEnd)) {
+                            return MALFORMED_CHUNK;
+                        }
+
+                        builder.onMatch(textIndex, (int) (matchStartChars - scan.fLineStartChars));
+                    }
+                }
+
+                outputState = fAutomaton.nextOutputState(outputState);
+            }
+        }
+
+        // The chars count of the chunk is right only if all its bytes are valid
+        return scan.validateBefore(scan.fLimit, scan.fLimit) ? chars : MALFORMED_CHUNK;
+    }
+
+    /***
+     * Check the word boundaries in both sides of the match (the same as WordBoundary.isMatchBounded
+     * on the decoded line), the line is decoded only when a non spacing mark is next to a match edge
+     * @return BOUNDED, NOT_BOUNDED or BOUNDARY_MALFORMED if the bytes around the match are malformed
+     */
+    private int checkWordBoundaries(ChunkScan scan, int textIndex, int matchStart, int matchEnd, long matchStartChars) {
+        int charAfter = scan.codePointAt(matchEnd);
+        if (charAfter == MALFORMED) {
+            return BOUNDARY_MALFORMED;
+        }
+
+        boolean isSingleByteBefore = matchStart == scan.fLineStart || scan.fBytes.get(matchStart - 1) >= 0;
+        if (!isSingleByteBefore && !scan.validateBefore(matchStart, matchEnd)) {
+            return BOUNDARY_MALFORMED;
+        }
+
+        int charBefore = scan.codePointBefore(matchStart);
+
+        boolean isComplex = isNonSpacingMark(charBefore) || isNonSpacingMark(charAfter);  // Attached to a word?
+        if (isComplex) {
+            if (!scan.validateBefore(matchStart, matchEnd)) {
+                return BOUNDARY_MALFORMED;
+            }
+
+            return checkDecodedWordBoundaries(scan, textIndex, matchStart, matchEnd, matchStartChars);
+        }
+
+        return !WordBoundary.isWord(charBefore) && !WordBoundary.isWord(charAfter) ? BOUNDED : NOT_BOUNDED;
+    }
+
+    /***
+     * Decode the line until the char after the match and check the word boundaries on the decoded chars
+     */
+    private int checkDecodedWordBoundaries(ChunkScan scan, int textIndex, int matchStart, int matchEnd,
+                                           long matchStartChars) {
+        int decodeEnd = matchEnd;
+        if (decodeEnd < scan.fLimit && !isLineTerminator(scan.fBytes.get(decodeEnd))) {
+            decodeEnd += getSequenceLength(scan.fBytes.get(decodeEnd));
+        }
+
+        ByteBuffer lineBytes = scan.fBytes.duplicate();
+        lineBytes.position(scan.fLineStart).limit(decodeEnd);
+        CharBuffer lineChars = fCharset.decode(lineBytes);
+        int matchStartInLine = (int) (matchStartChars - scan.fLineStartChars);
+        int matchEndInLine = matchStartInLine + fTextCharsCount[textIndex];
+
+        return WordBoundary.isMatchBounded(lineChars, matchStartInLine, matchEndInLine) ? BOUNDED : NOT_BOUNDED;
+    }
+
+    private static boolean isNonSpacingMark(int codePoint) {
+        return codePoint > 0x7F && Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    private static boolean isLineTerminator(byte currentByte) {
+        return currentByte == LINE_FEED || currentByte == CARRIAGE_RETURN;
+    }
+
+    /***
+     * @return how many chars a non ASCII UTF-8 byte add, when it is a part of a valid sequence
+     */
+    private static int getCharsCount(byte nonAsciiByte) {
+        int unsignedByte = nonAsciiByte & 0xFF;
+
+        return unsignedByte >= 0xF0 ? 2 : unsignedByte >= 0xC0 ? 1 : 0;  // A continuation byte add nothing
+    }
+
+    private static int getSequenceLength(byte leadByte) {
+        int lead = leadByte & 0xFF;
+
+        if (lead < 0x80) {
+            return 1;
+        }
+
+        return lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+    }
+    //endregion Searching
+
+    /***
+     * The state of a single chunk search: the current line and the bytes that were not validated yet
+     */
+    private final class ChunkScan {
+        //region Fields
+        private final ByteBuffer fBytes;
+        private final int fLimit;
+        private int fLineStart;  // Byte index of the current line first byte
+        private long fLineStartChars;  // Chars before the current line
+        private int fFirstNotValidated;  // First non ASCII byte that was not validated yet, or NO_POSITION
+        private long fSkippedLineChars;  // Chars of the last line that was skipped by skipLineWithoutCandidates
+        //endregion Fields
+
+        private ChunkScan(ByteBuffer bytes) {
+            fBytes = bytes;
+            fLimit = bytes.limit();
+            fFirstNotValidated = NO_POSITION;
+        }
+
+        private void startLine(int lineStart, long lineStartChars) {
+            fLineStart = lineStart;
+            fLineStartChars = lineStartChars;
+        }
+
+        /***
+         * Check the line by the LinePreFilter, and count its chars (the same as the automaton scan) when
+         * it has no candidate
+         * @param lineStart byte index of the line first byte
+         * @return index of the line terminator (or the limit) if the line has no candidate,
+         * NO_POSITION if the line must be scanned
+         */
+        private int skipLineWithoutCandidates(int lineStart) {
+            int firstNonAscii = NO_POSITION;
+            long lineChars = 0;
+            int i = lineStart;
+
+            for (; i < fLimit; i++) {
+                byte currentByte = fBytes.get(i);
+
+                if (isLineTerminator(currentByte)) {
+                    break;
+                }
+
+                if (fLinePreFilter.isCandidate(fBytes, i, fLimit)) {
+                    return NO_POSITION;
+                }
+
+                if (currentByte >= 0 || !fIsUtf8) {
+                    lineChars++;
+                } else {
+                    firstNonAscii = firstNonAscii == NO_POSITION ? i : firstNonAscii;
+                    lineChars += getCharsCount(currentByte);
+                }
+            }
+
+            if (firstNonAscii != NO_POSITION) {
+                markNonAscii(firstNonAscii);
+            }
+
+            fSkippedLineChars = lineChars;
+            return i;
+        }
+
+        private void markNonAscii(int position) {
+            if (fFirstNotValidated == NO_POSITION) {
+                fFirstNotValidated = position;
+            }
+        }
+
+        /***
+         * Validate all the UTF-8 sequences before the given position (with the same validation as the JDK decoder)
+         * @param position byte index that start a char
+         * @param scannedEnd byte index after the last byte that was scanned
+         * @return false if a malformed sequence was found
+         */
+        private boolean validateBefore(int position, int scannedEnd) {
+            if (fFirstNotValidated == NO_POSITION || fFirstNotValidated >= position) {
+                return true;
+            }
+
+            int i = fFirstNotValidated;
+            while (i < position) {
+                byte currentByte = fBytes.get(i);
+
+                if (currentByte >= 0) {
+                    i++;
+                } else if (decode(i) == MALFORMED) {
+                    return false;
+                } else {
+                    i += getSequenceLength(currentByte);
+                }
+            }
+
+            fFirstNotValidated = NO_POSITION;
+            for (int j = position; j < scannedEnd && fFirstNotValidated == NO_POSITION; j++) {
+                if (fBytes.get(j) < 0) {
+                    fFirstNotValidated = j;
+                }
+            }
+
+            return true;
+        }
+
+        /***
+         * Must be called only after the bytes before the position were validated (or the byte before is ASCII)
+         * @return the code point that end right before the given position in the current line,
+         * the line start is returned as a line feed (same as the line end)
+         */
+        private int codePointBefore(int position) {
+            if (position == fLineStart) {
+                return LINE_FEED;
+            }
+
+            byte previousByte = fBytes.get(position - 1);
+            if (previousByte >= 0) {
+                return previousByte;
+            }
+
+            if (!fIsUtf8) {
+                return REPLACEMENT_CHAR;
+            }
+
+            int sequenceStart = position - 1;
+            while (sequenceStart > fLineStart && (fBytes.get(sequenceStart) & 0xC0) == 0x80) {
+                sequenceStart--;
+            }
+
+            return decode(sequenceStart);
+        }
+
+        /***
+         * @return the code point that start in the given position in the current line,
+         * the line end is returned as a line feed, and a malformed sequence as MALFORMED
+         */
+        private int codePointAt(int position) {
+            if (position == fLimit) {
+                return LINE_FEED;
+            }
+
+            byte currentByte = fBytes.get(position);
+            if (currentByte >= 0) {
+                return currentByte;
+            }
+
+            return fIsUtf8 ? decode(position) : REPLACEMENT_CHAR;
+        }
+
+        /***
+         * Decode a single UTF-8 sequence, with the same validation as the JDK decoder
+         * (no overlong sequences, no surrogates and nothing after U+10FFFF)
+         */
+        private int decode(int position) {
+            int lead = fBytes.get(position) & 0xFF;
+            int length = getSequenceLength((byte) lead);
+
+            if (length == 1 || lead > 0xF4 || position + length > fLimit) {
+                return MALFORMED;
+            }
+
+            int codePoint = lead & (0x7F >> length);
+            for (int i = 1; i < length; i++) {
+                int continuation = fBytes.get(position + i) & 0xFF;
+
+                if ((continuation & 0xC0) != 0x80) {
+                    return MALFORMED;
+                }
+
+                codePoint = (codePoint << 6) | (continuation & 0x3F);
+            }
+
+            boolean isValid = codePoint >= MIN_CODE_POINT_BY_LENGTH[length] && codePoint <= Character.MAX_CODE_POINT &&
+                    !(codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE);
+
+            return isValid ? codePoint : MALFORMED;
+        }
+    }
+}
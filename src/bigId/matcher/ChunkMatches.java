@@ -0,0 +1,157 @@
+package bigId.matcher;
+
+/***
+ * This class represent all the matches that were found in a single chunk,
+ * every MatchSearcher task send a single ChunkMatches to the ChunksAggregator (even when nothing was found,
+ * so the aggregator can tell when all the chunks before a certain chunk have arrived).
+ * The matches are kept only for the texts that were found, the text is identified by its MatchingEngine index.
+ * Every found text has its matches count, in the summary output modes only the first locations of every text
+ * (or none of them) are kept, so the chunk size doesn't depend on how many matches were found.
+ * When a token index is built the chunk also carry the ChunkTokens of all its lines.
+ */
+class ChunkMatches {
+    //region CONSTANTS
+    static final ChunkMatches POISON_PILL = new ChunkMatches(-1, -1, 0, TextChunk.UNKNOWN_POSITION, -1, 0,
+            new int[0], new MatchLocations[0], new int[0], null);  // Using to kill aggregator thread
+    private static final long REFRESH_END_LINE_OFFSET = -2;
+    private static final long SEARCH_FAILED_LINE_OFFSET = -3;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final long fChunkIndex;
+    private final long fFirstLineOffset;
+    private final long fLinesCount;
+    private final long fEndPosition;  // Byte position in the input after the chunk, or UNKNOWN_POSITION
+    private final long fLastBlockLineOffset;  // First line of the block of the chunk last line
+    private final long fLastBlockCharsCount;  // Chars of the last block that are in the chunk
+    private final int[] fTextIndexes;  // The index of every text that was found in the chunk
+    private final MatchLocations[] fMatchLocations;  // fMatchLocations[i] are the matches of fTextIndexes[i]
+    private final int[] fMatchesCounts;  // fMatchesCounts[i] is how many times fTextIndexes[i] was found
+    private final ChunkTokens fChunkTokens;  // null when no token index is built
+    //endregion Fields
+
+    //region Constructor
+    public ChunkMatches(long chunkIndex, long firstLineOffset, long linesCount, long endPosition,
+                        long lastBlockLineOffset, long lastBlockCharsCount,
+                        int[] textIndexes, MatchLocations[] matchLocations, int[] matchesCounts,
+                        ChunkTokens chunkTokens) {
+        fChunkIndex = chunkIndex;
+        fFirstLineOffset = firstLineOffset;
+        fLinesCount = linesCount;
+        fEndPosition = endPosition;
+        fLastBlockLineOffset = lastBlockLineOffset;
+        fLastBlockCharsCount = lastBlockCharsCount;
+        fTextIndexes = textIndexes;
+        fMatchLocations = matchLocations;
+        fMatchesCounts = matchesCounts;
+        fChunkTokens = chunkTokens;
+    }
+    //endregion Constructor
+
+    /***
+     * Create the marker of a refresh end in follow mode, the aggregator write the new results of the refresh
+     * when all the chunks before the given index were handled
+     * @param nextChunkIndex the index of the first chunk after the refresh
+     * @return a marker that is not a chunk
+     */
+    static ChunkMatches createRefreshEnd(long nextChunkIndex) {
+        return new ChunkMatches(nextChunkIndex, REFRESH_END_LINE_OFFSET, 0, TextChunk.UNKNOWN_POSITION, -1, 0,
+                new int[0], new MatchLocations[0], new int[0], null);
+    }
+
+    /***
+     * @return true if this is the marker of a refresh end (and not a chunk)
+     */
+    public boolean isRefreshEnd() {
+        return fFirstLineOffset == REFRESH_END_LINE_OFFSET;
+    }
+
+    /***
+     * Create the marker of a chunk that its search failed, it is sent instead of the chunk results
+     * so the aggregator know the chunk will never arrive
+     * @param chunkIndex the index of the chunk that was not searched
+     * @return a marker that is not a chunk
+     */
+    static ChunkMatches createSearchFailed(long chunkIndex) {
+        return new ChunkMatches(chunkIndex, SEARCH_FAILED_LINE_OFFSET, 0, TextChunk.UNKNOWN_POSITION, -1, 0,
+                new int[0], new MatchLocations[0], new int[0], null);
+    }
+
+    /***
+     * @return true if this is the marker of a chunk that its search failed (and not the chunk results)
+     */
+    public boolean isSearchFailed() {
+        return fFirstLineOffset == SEARCH_FAILED_LINE_OFFSET;
+    }
+
+    public long getChunkIndex() {
+        return fChunkIndex;
+    }
+
+    public long getFirstLineOffset() {
+        return fFirstLineOffset;
+    }
+
+    public long getLinesCount() {
+        return fLinesCount;
+    }
+
+    /***
+     * @return the byte position in the input right after the chunk, TextChunk.UNKNOWN_POSITION if it is not known
+     */
+    public long getEndPosition() {
+        return fEndPosition;
+    }
+
+    /***
+     * @return true if the chunk first line is not the first line of a block (of 1000 lines),
+     * so the char offsets of its first block are comparing to the chunk start
+     */
+    public boolean isStartInsideBlock() {
+        return fFirstLineOffset % MatchFinderManager.CHUNK_SIZE != 0;
+    }
+
+    public long getLastBlockLineOffset() {
+        return fLastBlockLineOffset;
+    }
+
+    public long getLastBlockCharsCount() {
+        return fLastBlockCharsCount;
+    }
+
+    /***
+     * @return how many different texts were found in the chunk
+     */
+    public int getFoundTextsCount() {
+        return fTextIndexes.length;
+    }
+
+    public int getTextIndex(int foundTextIndex) {
+        return fTextIndexes[foundTextIndex];
+    }
+
+    /***
+     * @return the kept matches of the text, in the summary output modes only the first of them (or none)
+     */
+    public MatchLocations getMatchLocations(int foundTextIndex) {
+        return fMatchLocations[foundTextIndex];
+    }
+
+    /***
+     * @return how many times the text was found in the chunk (including the matches that were not kept)
+     */
+    public int getMatchesCount(int foundTextIndex) {
+        return fMatchesCounts[foundTextIndex];
+    }
+
+    /***
+     * @return the tokens of the chunk lines, null when no token index is built
+     */
+    public ChunkTokens getChunkTokens() {
+        return fChunkTokens;
+    }
+
+    public boolean isEmpty() {
+        return fTextIndexes.length == 0;
+    }
+}
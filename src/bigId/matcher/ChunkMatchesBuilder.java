@@ -0,0 +1,204 @@
+package bigId.matcher;
+
+import java.util.Arrays;
+
+/***
+ * This class collect the matches of a single chunk, as reported by the MatchingEngine, into a ChunkMatches.
+ * Only the texts that were found get a MatchLocations, the mapping from a text index to its MatchLocations
+ * is kept in a per thread array, so building a chunk doesn't allocate anything per dictionary text.
+ * The per thread array is cleared by build, or by releaseSlots when the chunk search failed before build.
+ * Every match is counted, but only the first matches of every text are kept up to a limit
+ * (by the summary output modes, none of them in the counts modes), the rest are dropped at the source.
+ */
+class ChunkMatchesBuilder implements MatchingEngine.MatchListener {
+    //region CONSTANTS
+    private static final int NO_SLOT = 0;
+    private static final ThreadLocal<int[]> SLOT_BY_TEXT_INDEX = ThreadLocal.withInitial(() -> new int[0]);
+    private static final MatchLocations NO_LOCATIONS = new MatchLocations(0);  // Never added to
+    //endregion CONSTANTS
+
+    //region Fields
+    private final long fChunkIndex;
+    private final long fFirstLineOffset;
+    private final int[] fSlotByTextIndex;  // slot + 1 of every text that was found, NO_SLOT otherwise
+    private final int fMaxLocationsPerText;
+    private int[] fTextIndexes;
+    private MatchLocations[] fMatchLocations;
+    private int[] fMatchesCounts;
+    private int fFoundTextsCount;
+    private long fNextLineOffset;
+    private long fBlockLineOffset;  // First line of the block of the current line
+    private long fBlockFirstCharOffset;  // Chunk char offset of the block first line (or of the chunk start)
+    private long fLineFirstCharOffset;  // Char offset of the current line comparing to its block
+    private int fFilteredLinesCount;  // Lines that were dropped by the LinePreFilter
+    //endregion Fields
+
+    //region Constructor
+    public ChunkMatchesBuilder(long chunkIndex, long firstLineOffset, int textsCount) {
+        this(chunkIndex, firstLineOffset, textsCount, Integer.MAX_VALUE);
+    }
+
+    /***
+     * @param chunkIndex the chunk index
+     * @param firstLineOffset the chunk first line
+     * @param textsCount how many texts the MatchingEngine has
+     * @param maxLocationsPerText how many matches of every text are kept (the rest are only counted)
+     */
+    public ChunkMatchesBuilder(long chunkIndex, long firstLineOffset, int textsCount, int maxLocationsPerText) {
+        fChunkIndex = chunkIndex;
+        fFirstLineOffset = firstLineOffset;
+        startChunk();
+        fSlotByTextIndex = getSlotByTextIndex(textsCount);
+        fMaxLocationsPerText = maxLocationsPerText;
+        fTextIndexes = new int[4];
+        fMatchLocations = new MatchLocations[4];
+        fMatchesCounts = new int[4];
+        fFoundTextsCount = 0;
+    }
+
+    private static int[] getSlotByTextIndex(int textsCount) {
+        int[] slotByTextIndex = SLOT_BY_TEXT_INDEX.get();
+
+        if (slotByTextIndex.length < textsCount) {
+            slotByTextIndex = new int[textsCount];
+            SLOT_BY_TEXT_INDEX.set(slotByTextIndex);
+        }
+
+        return slotByTextIndex;
+    }
+    //endregion Constructor
+
+    private void startChunk() {
+        fNextLineOffset = fFirstLineOffset;
+        fBlockLineOffset = fFirstLineOffset - fFirstLineOffset % MatchFinderManager.CHUNK_SIZE;
+        fBlockFirstCharOffset = 0;
+        fLineFirstCharOffset = 0;
+        fFilteredLinesCount = 0;
+    }
+
+    /***
+     * Must be called before the matches of every line are reported (in the order of the lines)
+     * @param lineFirstCharOffset the line relative offset comparing to the chunk
+     */
+    public void startLine(long lineFirstCharOffset) {
+        long lineOffset = fNextLineOffset++;
+
+        if (lineOffset % MatchFinderManager.CHUNK_SIZE == 0) {
+            fBlockLineOffset = lineOffset;
+            fBlockFirstCharOffset = lineFirstCharOffset;
+        }
+
+        fLineFirstCharOffset = lineFirstCharOffset - fBlockFirstCharOffset;
+    }
+
+    /***
+     * Called after startLine when the line was dropped by the LinePreFilter (it has no matches)
+     */
+    public void onLineFiltered() {
+        fFilteredLinesCount++;
+    }
+
+    /***
+     * @return how many lines were started so far
+     */
+    public long getLinesCount() {
+        return fNextLineOffset - fFirstLineOffset;
+    }
+
+    public int getFilteredLinesCount() {
+        return fFilteredLinesCount;
+    }
+
+    @Override
+    public void onMatch(int textToFindIndex, int matchStart) {
+        int slot = fSlotByTextIndex[textToFindIndex] - 1;
+
+        if (slot < 0) {
+            slot = addFoundText(textToFindIndex);
+        }
+
+        if (fMatchesCounts[slot]++ < fMaxLocationsPerText) {
+            fMatchLocations[slot].add(fBlockLineOffset, fLineFirstCharOffset + matchStart);
+        }
+    }
+
+    private int addFoundText(int textToFindIndex) {
+        if (fFoundTextsCount == fTextIndexes.length) {
+            fTextIndexes = Arrays.copyOf(fTextIndexes, fFoundTextsCount * 2);
+            fMatchLocations = Arrays.copyOf(fMatchLocations, fFoundTextsCount * 2);
+            fMatchesCounts = Arrays.copyOf(fMatchesCounts, fFoundTextsCount * 2);
+        }
+
+        int slot = fFoundTextsCount++;
+        fTextIndexes[slot] = textToFindIndex;
+        fMatchLocations[slot] = fMaxLocationsPerText > 0 ? new MatchLocations() : NO_LOCATIONS;
+        fMatchesCounts[slot] = 0;
+        fSlotByTextIndex[textToFindIndex] = slot + 1;
+
+        return slot;
+    }
+
+    /***
+     * Forget all the matches and lines that were reported so far, so the chunk can be searched again
+     */
+    public void reset() {
+        clearSlots();
+        fFoundTextsCount = 0;
+        startChunk();
+    }
+
+    /***
+     * Create the ChunkMatches of a chunk that its byte position in the input is not known
+     * @param charsCount how many chars the chunk lines have (without the line terminators)
+     * @return ChunkMatches with all the reported matches
+     */
+    public ChunkMatches build(long charsCount) {
+        return build(charsCount, TextChunk.UNKNOWN_POSITION);
+    }
+
+    /***
+     * Create the ChunkMatches, this builder can't be used after this call
+     * @param charsCount how many chars the chunk lines have (without the line terminators)
+     * @param endPosition the byte position in the input right after the chunk
+     * @return ChunkMatches with all the reported matches
+     */
+    public ChunkMatches build(long charsCount, long endPosition) {
+        return build(charsCount, endPosition, null);
+    }
+
+    /***
+     * Create the ChunkMatches, this builder can't be used after this call
+     * @param charsCount how many chars the chunk lines have (without the line terminators)
+     * @param endPosition the byte position in the input right after the chunk
+     * @param chunkTokens the tokens of the chunk lines, null when no token index is built
+     * @return ChunkMatches with all the reported matches
+     */
+    public ChunkMatches build(long charsCount, long endPosition, ChunkTokens chunkTokens) {
+        clearSlots();
+
+        return new ChunkMatches(fChunkIndex,
+                fFirstLineOffset,
+                getLinesCount(),
+                endPosition,
+                fBlockLineOffset,
+                charsCount - fBlockFirstCharOffset,
+                Arrays.copyOf(fTextIndexes, fFoundTextsCount),
+                Arrays.copyOf(fMatchLocations, fFoundTextsCount),
+                Arrays.copyOf(fMatchesCounts, fFoundTextsCount),
+                chunkTokens);
+    }
+
+    /***
+     * Clear the slots of the found texts in the per thread array, so the next chunk of the thread doesn't see them.
+     * Must be called when the search of the chunk failed before build, calling it again is harmless
+     */
+    public void releaseSlots() {
+        clearSlots();
+    }
+
+    private void clearSlots() {
+        for (int slot = 0; slot < fFoundTextsCount; slot++) {
+            fSlotByTextIndex[fTextIndexes[slot]] = NO_SLOT;  // Leave the per thread array clean for the next chunk
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package bigId.matcher;
+
+import java.util.Arrays;
+
+/***
+ * Utils for the compact binary form of the results of a single chunk (a ChunkMatches without its tokens),
+ * used by the ChunkResultCache and by the results a ShardWorker send to the coordinator.
+ * The offsets are relative to the first block of the chunk, so the results don't depend on where the chunk is
+ * (only on the line of the chunk start inside its block). The binary form is VarLongs of:
+ *      lines count, last block line, last block chars count, found texts count,
+ *      and for every found text: text index, matches count, kept matches count,
+ *      and the kept matches as (line offset delta, char offset or char offset delta in the same line)
+ */
+final class ChunkMatchesCodec {
+    private ChunkMatchesCodec() {
+    }
+
+    /***
+     * @param chunkMatches the results of a chunk
+     * @return the results with their offsets relative to the first block of the chunk
+     */
+    static byte[] encode(ChunkMatches chunkMatches) {
+        long blockBase = getBlockBase(chunkMatches.getFirstLineOffset());
+        int longsCount = 4;
+        for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+            longsCount += 3 + chunkMatches.getMatchLocations(i).size() * 2;
+        }
+
+        byte[] results = new byte[longsCount * VarLongs.MAX_BYTES];
+        int offset = VarLongs.write(results, 0, chunkMatches.getLinesCount());
+        offset = VarLongs.write(results, offset, chunkMatches.getLastBlockLineOffset() - blockBase);
+        offset = VarLongs.write(results, offset, chunkMatches.getLastBlockCharsCount());
+        offset = VarLongs.write(results, offset, chunkMatches.getFoundTextsCount());
+
+        for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+            MatchLocations matchLocations = chunkMatches.getMatchLocations(i);
+            long previousLineOffset = blockBase;
+            long previousCharOffset = 0;
+
+            offset = VarLongs.write(results, offset, chunkMatches.getTextIndex(i));
+            offset = VarLongs.write(results, offset, chunkMatches.getMatchesCount(i));
+            offset = VarLongs.write(results, offset, matchLocations.size());
+            for (int match = 0; match < matchLocations.size(); match++) {
+                long lineOffsetDelta = matchLocations.getLineOffset(match) - previousLineOffset;
+                long charOffset = matchLocations.getCharOffset(match);
+                long charOffsetDelta = lineOffsetDelta == 0 ? charOffset - previousCharOffset : charOffset;
+
+                offset = VarLongs.write(results, offset, lineOffsetDelta);
+                offset = VarLongs.write(results, offset, charOffsetDelta);
+                previousLineOffset = matchLocations.getLineOffset(match);
+                previousCharOffset = charOffset;
+            }
+        }
+
+        return Arrays.copyOf(results, offset);
+    }
+
+    /***
+     * @param bytes the array that hold the encoded results
+     * @param offset the index of the results first byte
+     * @param chunkIndex the index of the chunk
+     * @param firstLineOffset the chunk first line
+     * @param endPosition the byte position in the input right after the chunk, or UNKNOWN_POSITION
+     * @param chunkTokens the tokens of the chunk lines, null when no token index is built
+     * @return the results of the chunk
+     */
+    static ChunkMatches decode(byte[] bytes, int offset, long chunkIndex, long firstLineOffset, long endPosition,
+                               ChunkTokens chunkTokens) {
+        Reader reader = new Reader(bytes, offset);
+        long blockBase = getBlockBase(firstLineOffset);
+        long linesCount = reader.next();
+        long lastBlockLineOffset = blockBase + reader.next();
+        long lastBlockCharsCount = reader.next();
+        int foundTextsCount = (int) reader.next();
+        int[] textIndexes = new int[foundTextsCount];
+        MatchLocations[] matchLocations = new MatchLocations[foundTextsCount];
+        int[] matchesCounts = new int[foundTextsCount];
+
+        for (int i = 0; i < foundTextsCount; i++) {
+            textIndexes[i] = (int) reader.next();
+            matchesCounts[i] = (int) reader.next();
+
+            int keptMatchesCount = (int) reader.next();
+            long lineOffset = blockBase;
+            long charOffset = 0;
+            matchLocations[i] = new MatchLocations(keptMatchesCount);
+            for (int match = 0; match < keptMatchesCount; match++) {
+                long lineOffsetDelta = reader.next();
+
+                lineOffset += lineOffsetDelta;
+                charOffset = lineOffsetDelta == 0 ? charOffset + reader.next() : reader.next();
+                matchLocations[i].add(lineOffset, charOffset);
+            }
+        }
+
+        return new ChunkMatches(chunkIndex, firstLineOffset, linesCount, endPosition,
+                lastBlockLineOffset, lastBlockCharsCount, textIndexes, matchLocations, matchesCounts, chunkTokens);
+    }
+
+    /***
+     * @return the first line of the block of the given line
+     */
+    private static long getBlockBase(long lineOffset) {
+        return lineOffset - lineOffset % MatchFinderManager.CHUNK_SIZE;
+    }
+
+    /***
+     * Read VarLongs one after the other
+     */
+    static class Reader {
+        private final byte[] fBytes;
+        private int fOffset;
+
+        Reader(byte[] bytes, int offset) {
+            fBytes = bytes;
+            fOffset = offset;
+        }
+
+        long next() {
+            long value = VarLongs.read(fBytes, fOffset);
+            fOffset += VarLongs.length(fBytes, fOffset);
+            return value;
+        }
+
+        int getOffset() {
+            return fOffset;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package bigId.matcher;
+
+/***
+ * This interface represent the destination of the matches that every MatchSearcher task found
+ */
+interface ChunkMatchesSink {
+    /***
+     * Receive the matches of a single chunk, called once for every chunk (even when nothing was found)
+     * @param chunkMatches all the matches of the chunk
+     */
+    void accept(ChunkMatches chunkMatches);
+}
@@ -0,0 +1,70 @@
+package bigId.matcher;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/***
+ * This class bound the bytes of the chunks that were read and wait for a searching thread (in the searching tasks
+ * queue) by the pipeline memory budget, no matter how big the chunks or their lines are.
+ * The reader take the bytes of every chunk before its task is executed, and is blocked while the budget is used,
+ * the bytes are given back as soon as a searching thread take the task.
+ * A chunk is always admitted when no bytes are taken, so a chunk that is bigger than the budget doesn't block
+ * the reader forever.
+ */
+class ChunkMemoryBudget {
+    //region Fields
+    private final long fBudgetBytes;
+    private final PipelineStatistics fPipelineStatistics;
+    private long fTakenBytes;  // Guarded by the budget lock
+    //endregion Fields
+
+    //region Constructor
+    public ChunkMemoryBudget(long budgetBytes, PipelineStatistics pipelineStatistics) {
+        fBudgetBytes = budgetBytes;
+        fPipelineStatistics = pipelineStatistics;
+        fTakenBytes = 0;
+    }
+    //endregion Constructor
+
+    /***
+     * Execute the searching task of a chunk when its bytes are in the budget, the calling reader is blocked until then
+     * @param executor the searching tasks executor
+     * @param chunkBytes the size of the chunk in bytes
+     * @param task the searching task of the chunk
+     */
+    public void execute(Executor executor, long chunkBytes, Runnable task) {
+        take(chunkBytes);
+
+        try {
+            executor.execute(() -> {
+                giveBack(chunkBytes);  // The chunk is not waiting any more
+                task.run();
+            });
+        } catch (RuntimeException e) {
+            giveBack(chunkBytes);
+            throw e;
+        }
+    }
+
+    private synchronized void take(long chunkBytes) {
+        long stallStart = System.nanoTime();
+
+        try {
+            while (fTakenBytes > 0 && fTakenBytes + chunkBytes > fBudgetBytes) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        } finally {
+            fPipelineStatistics.addReaderStall(System.nanoTime() - stallStart);
+        }
+
+        fTakenBytes += chunkBytes;
+    }
+
+    private synchronized void giveBack(long chunkBytes) {
+        fTakenBytes -= chunkBytes;
+        notifyAll();
+    }
+}
@@ -0,0 +1,266 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * This class is an on disk cache of the search results of chunks, so a rescan of an input that changed only a bit
+ * search only the chunks that changed, and take the results of the other chunks from the cache.
+ * A chunk is identified by a hash of its content, its size, the line of the chunk start inside its block of
+ * 1000 lines (the offsets of the results depend on it) and a fingerprint of the search: the texts in the order of
+ * their indexes, the matching engine, the charset and the kept locations of every text (by the output mode).
+ * The results are kept in the compact binary form of the ChunkMatchesCodec (the offsets relative to the chunk
+ * first block), up to a size limit, the least recently used chunks are evicted first.
+ * The cache is loaded when a run start and written back (by the least recently used order) when it end,
+ * the results of other dictionaries stay in the cache until they are evicted.
+ * Limitation: the chunk boundaries are not content defined (they are by lines or bytes count from the input start),
+ * and the key hold the line of the chunk start inside its block, so only the chunks before the first inserted or
+ * removed line (or byte, for FIXED_BYTES) are hit, all the chunks after it move and are searched again.
+ * The cache help for an input that was edited in place (the same lines count) or only appended to.
+ * The hit rate is reported at the end of the run and in the MatchFinderMetrics, so a low rate can be noticed.
+ * The binary format is:
+ *      magic, version, entries count,
+ *      and for every entry: content hash, size, block line, fingerprint, results length, results
+ */
+class ChunkResultCache {
+    //region CONSTANTS
+    private static final int MAGIC = 0x42494452;  // "BIDR"
+    private static final int VERSION = 1;
+    private static final int ENTRY_OVERHEAD = 64;  // Estimated bytes of the key and the map entry
+    //endregion CONSTANTS
+
+    //region Fields
+    private final Path fCacheFilePath;
+    private final long fMaxBytes;
+    private final long fFingerprint;
+    private final LinkedHashMap<Key, byte[]> fEntries;  // By access order, the least recently used first
+    private final LongAdder fHitsCount = new LongAdder();
+    private final LongAdder fMissesCount = new LongAdder();
+    private long fBytes;
+    private long fEvictedCount;
+    //endregion Fields
+
+    //region Constructor
+    public ChunkResultCache(MatchFinderOptions options, MatchingEngine matchingEngine) {
+        fCacheFilePath = Paths.get(options.getResultCacheFilePath());
+        fMaxBytes = options.getResultCacheMaxBytes();
+        fFingerprint = getSearchFingerprint(options, matchingEngine);
+        fEntries = new LinkedHashMap<>(16, 0.75f, true);
+        fBytes = 0;
+        fEvictedCount = 0;
+    }
+
+    /***
+     * @return a fingerprint of everything but the chunk content that the results of a chunk depend on
+     */
+    private static long getSearchFingerprint(MatchFinderOptions options, MatchingEngine matchingEngine) {
+        List<CharSequence> searchParams = new ArrayList<>();
+
+        searchParams.add(options.getMatchingEngineType().name());
+        searchParams.add(options.getCharset().name());
+        searchParams.add(Integer.toString(options.getMaxLocationsPerText()));
+        for (int textIndex = 0; textIndex < matchingEngine.getTextToFindCount(); textIndex++) {
+            searchParams.add(matchingEngine.getTextToFind(textIndex));  // By order, the results hold the indexes
+        }
+
+        return ContentHashes.hash(searchParams);
+    }
+    //endregion Constructor
+
+    //region Lookup
+    /***
+     * @param textChunk a chunk that is about to be searched
+     * @return the key of the chunk results
+     */
+    public Key createKey(TextChunk textChunk) {
+        return new Key(textChunk.getContentHash(), textChunk.getSize(),
+                textChunk.getFirstLineOffset() % MatchFinderManager.CHUNK_SIZE, fFingerprint);
+    }
+
+    /***
+     * @param key the key of the chunk
+     * @param textChunk the chunk, the results get its index, lines and position
+     * @param chunkTokens the tokens of the chunk lines, null when no token index is built
+     * @return the results of the chunk, or null when they are not in the cache
+     */
+    public ChunkMatches get(Key key, TextChunk textChunk, ChunkTokens chunkTokens) {
+        byte[] results;
+        synchronized (this) {
+            results = fEntries.get(key);
+        }
+
+        if (results == null) {
+            fMissesCount.increment();
+            return null;
+        }
+
+        fHitsCount.increment();
+        return ChunkMatchesCodec.decode(results, 0, textChunk.getChunkIndex(), textChunk.getFirstLineOffset(),
+                textChunk.getEndPosition(), chunkTokens);
+    }
+
+    /***
+     * Keep the results of a chunk that was searched, evicting the least recently used chunks when the cache is full
+     * @param key the key of the chunk
+     * @param chunkMatches the results of the chunk
+     */
+    public void put(Key key, ChunkMatches chunkMatches) {
+        put(key, ChunkMatchesCodec.encode(chunkMatches));
+    }
+
+    private synchronized void put(Key key, byte[] results) {
+        byte[] replacedResults = fEntries.put(key, results);
+
+        fBytes += getEntryBytes(results) - (replacedResults != null ? getEntryBytes(replacedResults) : 0);
+        evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<byte[]> leastRecentlyUsed = fEntries.values().iterator();
+
+        while (fBytes > fMaxBytes && leastRecentlyUsed.hasNext()) {
+            fBytes -= getEntryBytes(leastRecentlyUsed.next());
+            leastRecentlyUsed.remove();
+            fEvictedCount++;
+        }
+    }
+
+    private static long getEntryBytes(byte[] results) {
+        return results.length + ENTRY_OVERHEAD;
+    }
+    //endregion Lookup
+
+    //region Cache file
+    /***
+     * Load the cache file (if there is one), a cache file that can't be read is reported and the cache start empty
+     */
+    public synchronized void load() {
+        if (!Files.exists(fCacheFilePath)) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(fCacheFilePath)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a result cache file of this version");
+            }
+
+            int entriesCount = input.readInt();
+            for (int entry = 0; entry < entriesCount; entry++) {
+                Key key = new Key(input.readLong(), VarLongs.read(input), VarLongs.read(input), input.readLong());
+                byte[] results = new byte[(int) VarLongs.read(input)];
+
+                input.readFully(results);
+                put(key, results);  // The least recently used first, so the cache limit evict them first
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read result cache " + fCacheFilePath + ", starting empty: " + e.getMessage());
+            fEntries.clear();
+            fBytes = 0;
+        }
+
+        fEvictedCount = 0;  // Count only the evictions of this run
+    }
+
+    /***
+     * Write the cache to a temporary file that is moved over the cache file, a failure in writing is reported
+     */
+    public synchronized void save() {
+        Path temporaryFilePath = fCacheFilePath.resolveSibling(fCacheFilePath.getFileName() + ".tmp");
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryFilePath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(fEntries.size());
+
+                for (Map.Entry<Key, byte[]> entry : fEntries.entrySet()) {
+                    Key key = entry.getKey();
+
+                    output.writeLong(key.fContentHash);
+                    VarLongs.write(output, key.fSize);
+                    VarLongs.write(output, key.fBlockLine);
+                    output.writeLong(key.fFingerprint);
+                    VarLongs.write(output, entry.getValue().length);
+                    output.write(entry.getValue());
+                }
+            }
+
+            Files.move(temporaryFilePath, fCacheFilePath,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write result cache " + fCacheFilePath + ": " + e.getMessage());
+        }
+    }
+    //endregion Cache file
+
+    //region Statistics
+    public long getHitsCount() {
+        return fHitsCount.sum();
+    }
+
+    public long getMissesCount() {
+        return fMissesCount.sum();
+    }
+
+    /***
+     * @return the percent of the looked up chunks that were in the cache
+     */
+    public double getHitRatePercent() {
+        long lookupsCount = getHitsCount() + getMissesCount();
+
+        return lookupsCount > 0 ? getHitsCount() * 100.0 / lookupsCount : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits=%d (%.1f%%), misses=%d (%.1f%%), entries=%d, sizeBytes=%d, evicted=%d",
+                getHitsCount(), getHitRatePercent(), getMissesCount(),
+                getHitsCount() + getMissesCount() > 0 ? 100 - getHitRatePercent() : 0,
+                fEntries.size(), fBytes, fEvictedCount);
+    }
+    //endregion Statistics
+
+    /***
+     * The key of the results of a single chunk
+     */
+    static final class Key {
+        private final long fContentHash;
+        private final long fSize;
+        private final long fBlockLine;  // The line of the chunk start inside its block
+        private final long fFingerprint;
+
+        Key(long contentHash, long size, long blockLine, long fingerprint) {
+            fContentHash = contentHash;
+            fSize = size;
+            fBlockLine = blockLine;
+            fFingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key otherKey = (Key) other;
+            return fContentHash == otherKey.fContentHash && fSize == otherKey.fSize &&
+                    fBlockLine == otherKey.fBlockLine && fFingerprint == otherKey.fFingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fContentHash ^ fFingerprint * 31);
+        }
+    }
+}
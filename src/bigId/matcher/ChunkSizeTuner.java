@@ -0,0 +1,90 @@
+package bigId.matcher;
+
+/***
+ * This class hold the target size of the chunks that the TextChunker create.
+ * In ADAPTIVE chunking mode every MatchSearcher task report how long it took to search its chunk,
+ * the search speed is smoothed and the target size is set so a single task take about TARGET_TASK_NANOS.
+ * The adaptive target never grow above a part of the pipeline memory budget (MIN_CHUNKS_IN_BUDGET chunks of the
+ * biggest size fit in it), and the queues are sized by that biggest size, so full queues stay in the budget.
+ * The tuner is shared by the reader (that read the target) and the searching threads (that report).
+ */
+class ChunkSizeTuner {
+    //region CONSTANTS
+    private static final long TARGET_TASK_NANOS = 2_000_000;  // Long enough to hide the per task overhead
+    private static final long MIN_CHUNK_BYTES = 16 * 1024;
+    private static final long MAX_CHUNK_BYTES = 16 * 1024 * 1024;
+    private static final long MIN_CHUNKS_IN_BUDGET = 16;  // Both queues together
+    private static final double SMOOTHING_FACTOR = 0.2;  // Weight of the last task in the smoothed speed
+    //endregion CONSTANTS
+
+    //region Fields
+    private final ChunkingMode fChunkingMode;
+    private final long fInitialChunkBytes;
+    private final long fMaxChunkBytes;  // The biggest adaptive target, by the pipeline memory budget
+    private volatile long fTargetChunkBytes;
+    private double fNanosPerByte;  // Smoothed search speed, 0 until the first task reported
+    //endregion Fields
+
+    //region Constructor
+    public ChunkSizeTuner(MatchFinderOptions options) {
+        fChunkingMode = options.getChunkingMode();
+        fMaxChunkBytes = Math.max(MIN_CHUNK_BYTES,
+                Math.min(options.getPipelineMemoryBudget() / MIN_CHUNKS_IN_BUDGET, MAX_CHUNK_BYTES));
+        fInitialChunkBytes = fChunkingMode == ChunkingMode.ADAPTIVE ?
+                Math.min(options.getTargetChunkBytes(), fMaxChunkBytes) : options.getTargetChunkBytes();
+        fTargetChunkBytes = fInitialChunkBytes;
+    }
+    //endregion Constructor
+
+    public ChunkingMode getChunkingMode() {
+        return fChunkingMode;
+    }
+
+    /***
+     * @return how many bytes (whole lines) a chunk should have, not used in FIXED_LINES chunking mode
+     */
+    public long getTargetChunkBytes() {
+        return fTargetChunkBytes;
+    }
+
+    /***
+     * @return the estimated memory of a single chunk that wait in the pipeline, in bytes
+     * (in ADAPTIVE chunking mode the biggest chunk the tuner may ask for, not the current target)
+     */
+    public long getEstimatedChunkMemory() {
+        switch (fChunkingMode) {
+            case FIXED_LINES:
+                return MatchFinderManager.ESTIMATED_CHUNK_MEMORY;
+            case ADAPTIVE:
+                return fMaxChunkBytes;
+            default:
+                return fInitialChunkBytes;
+        }
+    }
+
+    /***
+     * Called by a MatchSearcher task when its chunk was searched, only the ADAPTIVE chunking mode use it
+     * @param chunkBytes the size of the chunk in bytes
+     * @param searchNanos how long the search took
+     */
+    public void onChunkSearched(long chunkBytes, long searchNanos) {
+        if (fChunkingMode != ChunkingMode.ADAPTIVE || chunkBytes == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            double nanosPerByte = (double) searchNanos / chunkBytes;
+            fNanosPerByte = fNanosPerByte == 0 ? nanosPerByte :
+                    SMOOTHING_FACTOR * nanosPerByte + (1 - SMOOTHING_FACTOR) * fNanosPerByte;
+
+            long targetChunkBytes = (long) (TARGET_TASK_NANOS / Math.max(fNanosPerByte, Double.MIN_VALUE));
+            fTargetChunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(targetChunkBytes, fMaxChunkBytes));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fChunkingMode == ChunkingMode.FIXED_LINES ? fChunkingMode + " (" + MatchFinderManager.CHUNK_SIZE + " lines)" :
+                fChunkingMode + " (" + fTargetChunkBytes + " bytes)";
+    }
+}
@@ -0,0 +1,73 @@
+package bigId.matcher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * This class hold the TokenIndex postings of all the tokens of a single chunk, the MatchSearcher task collect them
+ * (when the index is built) and they go with the ChunkMatches to the ChunksAggregator.
+ * The char offsets are comparing to the block of 1000 lines, the same as the offsets of the matches,
+ * so the offsets of the chunk first block are aligned by the aggregator the same way.
+ */
+class ChunkTokens {
+    //region Fields
+    private final Map<String, TokenPostings> fPostingsByToken;
+    //endregion Fields
+
+    //region Constructor
+    private ChunkTokens() {
+        fPostingsByToken = new HashMap<>();
+    }
+
+    /***
+     * Tokenize all the lines of the chunk
+     * @param textChunk the chunk (it is decoded even if its matches were found in its encoded bytes)
+     * @param lineTokenizer the shared tokenizer of the run
+     * @return the postings of every token of the chunk
+     */
+    static ChunkTokens tokenize(TextChunk textChunk, LineTokenizer lineTokenizer) {
+        ChunkTokens chunkTokens = new ChunkTokens();
+        long lineOffset = textChunk.getFirstLineOffset();
+        long blockLineOffset = lineOffset - lineOffset % MatchFinderManager.CHUNK_SIZE;
+        long blockFirstCharOffset = 0;  // Chunk char offset of the block first line (or of the chunk start)
+        long lineFirstCharOffset = 0;
+
+        for (CharSequence line : textChunk) {
+            if (lineOffset % MatchFinderManager.CHUNK_SIZE == 0) {
+                blockLineOffset = lineOffset;
+                blockFirstCharOffset = lineFirstCharOffset;
+            }
+
+            long tokenBlockLineOffset = blockLineOffset;
+            long lineBlockCharOffset = lineFirstCharOffset - blockFirstCharOffset;
+            lineTokenizer.tokenize(line, (tokenLine, tokenStart, tokenEnd, separatorId) ->
+                    chunkTokens.add(tokenLine.subSequence(tokenStart, tokenEnd).toString(),
+                            tokenBlockLineOffset, lineBlockCharOffset + tokenStart, separatorId));
+
+            lineFirstCharOffset += line.length();
+            lineOffset++;
+        }
+
+        return chunkTokens;
+    }
+    //endregion Constructor
+
+    private void add(String token, long lineOffset, long charOffset, int separatorId) {
+        fPostingsByToken.computeIfAbsent(token, key -> new TokenPostings()).add(lineOffset, charOffset, separatorId);
+    }
+
+    /***
+     * Add a delta to the char offsets of all the tokens in the given line offset (the chunk first block)
+     * @param lineOffset the first line of the chunk first block
+     * @param delta the chars of the block that were in the chunks before
+     */
+    public void addToCharOffsets(long lineOffset, long delta) {
+        for (TokenPostings tokenPostings : fPostingsByToken.values()) {
+            tokenPostings.addToCharOffsets(lineOffset, delta);
+        }
+    }
+
+    public Map<String, TokenPostings> getPostingsByToken() {
+        return fPostingsByToken;
+    }
+}
@@ -0,0 +1,24 @@
+package bigId.matcher;
+
+/***
+ * The way the input is split to the chunks that are searched by the MatchSearcher tasks.
+ * The output is always reported by chunks of 1000 lines, no matter how the input was split to tasks.
+ */
+public enum ChunkingMode {
+    /***
+     * Every task search 1000 lines (the default)
+     */
+    FIXED_LINES,
+
+    /***
+     * Every task search whole lines until it has the target chunk size in bytes,
+     * so short lines don't create many tiny tasks and long lines don't create a few huge ones
+     */
+    FIXED_BYTES,
+
+    /***
+     * Like FIXED_BYTES, but the target chunk size is tuned while running from the measured search time of the tasks,
+     * so every task take about the same time
+     */
+    ADAPTIVE
+}
@@ -1,55 +1,295 @@
 package bigId.matcher;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /***
  * This class responsible to get Matching pairs from different chunks
  * and aggregate them together in order to create full matching pairs
  * this class is also responsible to provide the final output of the Matcher
+ * Every chunk is handled only when all the chunks before it have arrived, so a chunk that start
+ * in the middle of a block of 1000 lines can get the chars of the block that were in the chunks before it.
+ * In CHUNK_ORDER output mode the chunks are not aggregated, each chunk is written as soon as it is handled.
+ * In the summary output modes only the matches count of every text is kept (the counts of the chunks are added),
+ * and in SAMPLED_LOCATIONS mode also its first matches, so the aggregation doesn't depend on the matches count.
+ * In CONCURRENT aggregation mode there is no aggregator thread, the already collected chunks are given
+ * to aggregateAndWrite when all the searching tasks are done.
+ * Every handled chunk and the time of every write to the output are reported to the MatchFinderMetrics.
+ * When checkpoints are enabled the aggregator write a ScanCheckpoint of the handled chunks every interval,
+ * and a final one instead of the results when the input failed, so a later scan can resume from it.
+ * A resumed aggregator start from the checkpoint chunk, block chars, output position and partial results.
+ * When a token index is built the tokens of every chunk are aligned the same way as its matches and given
+ * to the TokenIndexWriter by the chunks order, the index file is written after the results.
+ * In follow mode the input is searched by refreshes, at the end of every refresh the aggregator write only the new
+ * results of the refresh (merged into the results it already has), and flush them.
+ * A followed scan with checkpoints write a final checkpoint instead of deleting it, so following the same file
+ * again resume after the lines that were already scanned.
+ * A chunk that its search failed never arrive (its failure marker arrive instead), so the aggregation is failed:
+ * the chunks after it are dropped, and when the aggregation end the aggregator write a final checkpoint
+ * (as when the input failed) instead of the results, and isCompleted stay false.
  */
 class ChunksAggregator implements Runnable{
+    //region CONSTANTS
+    private static final long NO_REFRESH_END = -1;
+    private static final long NO_FAILED_CHUNK = Long.MAX_VALUE;
+    //endregion CONSTANTS
+
     //region Fields
-    private final BlockingQueue<Map<String, List<MatchInLineLocation>>> fMatchingPairsToAggregate;
-    private Map<String, SortedSet<MatchInLineLocation>> fAllPairs;
+    private final BlockingQueue<ChunkMatches> fMatchingPairsToAggregate;
+    private final MatchingEngine fMatchingEngine;
+    private final List<List<MatchLocations>> fAllPairs;  // The sorted runs (one per chunk) by text index
+    private final Map<Long, ChunkMatches> fOutOfOrderChunks;  // Chunks that wait for an earlier chunk
+    private long fNextChunkIndex;
+    private long fLastBlockCharsCount;  // Chars of the last block that were in the chunks that were handled
+    private final OutputMode fOutputMode;
     private String fOutputFilePath;
+    private final boolean fIsStdOutUsed;  // False when the results are written only to the output file
+    private MatchResultsWriter fResultsWriter;
+    private final MatchFinderMetrics fMetrics;
+    private ScanCheckpointer fCheckpointer;  // null when checkpoints are disabled
+    private long fNextLineOffset;  // The line after the chunks that were handled
+    private long fNextPosition;  // The input byte position after the chunks that were handled
+    private long fResumeOutputPosition;  // The output file position of the checkpoint that was resumed
+    private volatile boolean fIsInputFailed;
+    private TokenIndexWriter fTokenIndexWriter;  // null when no token index is built
+    private final long[] fMatchesCounts;  // By text index, null when the output mode is not a summary mode
+    private final MatchLocations[] fSampledLocations;  // By text index, used only in SAMPLED_LOCATIONS output mode
+    private int fTopMatchCountsSize;
+    private int fSampledLocationsCount;
+    private final BitSet fRefreshFoundTexts;  // The texts that were found since the last refresh (summary modes)
+    private boolean fIsFollowing;
+    private int[] fRefreshFirstRuns;  // By text index, the first run that was not written yet (follow mode)
+    private long fRefreshEndChunkIndex;  // The chunk after the refresh that wait to be written, or NO_REFRESH_END
+    private long fFailedChunkIndex;  // The first chunk that its search failed, or NO_FAILED_CHUNK
+    private volatile boolean fIsCompleted;
     //endregion Fields
 
+    /***
+     * A single aggregation action that may fail in writing the results
+     */
+    private interface AggregationAction {
+        void aggregate() throws IOException;
+    }
+
     //region Constructor
-    public ChunksAggregator(BlockingQueue<Map<String, List<MatchInLineLocation>>> matchingPairsToAggregate,
-                            String outputFilePath){
+    public ChunksAggregator(MatchingEngine matchingEngine, String outputFilePath, OutputMode outputMode){
+        this(matchingEngine, outputFilePath, outputMode, true, MatchFinderMetrics.DISABLED);
+    }
+
+    public ChunksAggregator(MatchingEngine matchingEngine, String outputFilePath, OutputMode outputMode,
+                            boolean isStdOutUsed, MatchFinderMetrics metrics){
+        this(null, matchingEngine, outputFilePath, outputMode, isStdOutUsed, metrics);
+    }
+
+    public ChunksAggregator(BlockingQueue<ChunkMatches> matchingPairsToAggregate,
+                            MatchingEngine matchingEngine,
+                            String outputFilePath,
+                            OutputMode outputMode,
+                            MatchFinderMetrics metrics){
+        this(matchingPairsToAggregate, matchingEngine, outputFilePath, outputMode, true, metrics);
+    }
+
+    private ChunksAggregator(BlockingQueue<ChunkMatches> matchingPairsToAggregate,
+                             MatchingEngine matchingEngine,
+                             String outputFilePath,
+                             OutputMode outputMode,
+                             boolean isStdOutUsed,
+                             MatchFinderMetrics metrics){
         fMatchingPairsToAggregate = matchingPairsToAggregate;
-        fAllPairs = new HashMap<>();
+        fMatchingEngine = matchingEngine;
+        fAllPairs = new ArrayList<>(Collections.nCopies(matchingEngine.getTextToFindCount(), null));
+        fOutOfOrderChunks = new HashMap<>();
+        fNextChunkIndex = 0;
+        fLastBlockCharsCount = 0;
+        fOutputMode = outputMode;
         fOutputFilePath = outputFilePath;
+        fIsStdOutUsed = isStdOutUsed;
+        fMetrics = metrics;
+        fNextLineOffset = 0;
+        fNextPosition = 0;
+        fResumeOutputPosition = 0;
+        fIsInputFailed = false;
+        fMatchesCounts = outputMode.isSummary() ? new long[matchingEngine.getTextToFindCount()] : null;
+        fSampledLocations = outputMode == OutputMode.SAMPLED_LOCATIONS ?
+                new MatchLocations[matchingEngine.getTextToFindCount()] : null;
+        fTopMatchCountsSize = Integer.MAX_VALUE;
+        fSampledLocationsCount = Integer.MAX_VALUE;
+        fRefreshFoundTexts = new BitSet();
+        fIsFollowing = false;
+        fRefreshEndChunkIndex = NO_REFRESH_END;
+        fFailedChunkIndex = NO_FAILED_CHUNK;
+        fIsCompleted = false;
+    }
+
+    /***
+     * Set the sizes of the summary output modes, must be called before the aggregation start
+     * @param topMatchCountsSize how many texts are written in TOP_MATCH_COUNTS output mode
+     * @param sampledLocationsCount how many of the first matches of every text are kept in SAMPLED_LOCATIONS mode
+     */
+    public void setSummarySizes(int topMatchCountsSize, int sampledLocationsCount) {
+        fTopMatchCountsSize = topMatchCountsSize;
+        fSampledLocationsCount = sampledLocationsCount;
+    }
+
+    /***
+     * Enable the checkpoints, must be called before the aggregation start
+     * @param checkpointer write the checkpoints of the scan
+     * @param resumeCheckpoint the checkpoint the scan resume from, or null when the scan start from the beginning
+     */
+    public void enableCheckpoints(ScanCheckpointer checkpointer, ScanCheckpoint resumeCheckpoint) {
+        fCheckpointer = checkpointer;
+
+        if (resumeCheckpoint != null) {
+            fNextChunkIndex = resumeCheckpoint.getNextChunkIndex();
+            fNextLineOffset = resumeCheckpoint.getNextLineOffset();
+            fNextPosition = resumeCheckpoint.getInputPosition();
+            fLastBlockCharsCount = resumeCheckpoint.getLastBlockCharsCount();
+            fResumeOutputPosition = resumeCheckpoint.getOutputPosition();
+            restorePartialResults(resumeCheckpoint.getPartialResults());
+        }
+
+        if (fIsFollowing) {
+            markRunsWritten();  // The results of the checkpoint were written by the scan that left it
+        }
+    }
+
+    /***
+     * Keep the partial results of the checkpoint as the first run of every text
+     * @param partialResults the merged matches of every text that was found before the checkpoint
+     */
+    private void restorePartialResults(Map<String, MatchLocations> partialResults) {
+        for (int textIndex = 0; textIndex < fAllPairs.size(); textIndex++) {
+            MatchLocations textResults = partialResults.get(fMatchingEngine.getTextToFind(textIndex));
+
+            if (textResults != null) {
+                accumulateSinglePair(textIndex, textResults);
+            }
+        }
+    }
+
+    /***
+     * Build a token index of the chunks, must be called before the aggregation start
+     * @param tokenIndexWriter the writer of the index file
+     */
+    public void enableTokenIndex(TokenIndexWriter tokenIndexWriter) {
+        fTokenIndexWriter = tokenIndexWriter;
+    }
+
+    /***
+     * Write the results by refreshes (follow mode), must be called before the aggregation start
+     */
+    public void enableFollowing() {
+        fIsFollowing = true;
+        fRefreshFirstRuns = new int[fAllPairs.size()];
+        markRunsWritten();
+    }
+
+    private void markRunsWritten() {
+        for (int textIndex = 0; textIndex < fAllPairs.size(); textIndex++) {
+            List<MatchLocations> runs = fAllPairs.get(textIndex);
+            fRefreshFirstRuns[textIndex] = runs != null ? runs.size() : 0;
+        }
+    }
+
+    /***
+     * Announce that reading the input failed, so when the aggregation end the aggregator write
+     * a final checkpoint (when checkpoints are enabled) instead of the partial results
+     */
+    public void markInputFailed() {
+        fIsInputFailed = true;
+    }
+
+    /***
+     * @return true if all the chunks were handled and the results were written,
+     * false when the aggregation failed or didn't end yet
+     */
+    public boolean isCompleted() {
+        return fIsCompleted;
     }
     //endregion Constructor
 
     @Override
     public void run() {
-        aggregateAllPairs();
-        writeResults();
+        aggregateAndWrite(this::aggregateAllPairs);
+    }
+
+    /***
+     * Aggregate chunks that were already collected and write the results, on the calling thread
+     * @param chunksInOrder all the chunks, ordered by their chunk index
+     */
+    public void aggregateAndWrite(List<ChunkMatches> chunksInOrder) {
+        aggregateAndWrite(() -> {
+            for (ChunkMatches chunkMatches : chunksInOrder) {
+                aggregateSingleChunk(chunkMatches);
+            }
+        });
+    }
+
+    private void aggregateAndWrite(AggregationAction aggregationAction) {
+        fResultsWriter = new MatchResultsWriter(fOutputFilePath, fIsStdOutUsed, fResumeOutputPosition);
+
+        try {
+            aggregationAction.aggregate();
+
+            boolean isChunkMissing = fFailedChunkIndex != NO_FAILED_CHUNK || !fOutOfOrderChunks.isEmpty();
+            if (isChunkMissing) {
+                System.err.println("Chunk " + fNextChunkIndex + " was not searched, the results are not complete");
+            }
+
+            if (fIsInputFailed || isChunkMissing) {
+                if (fIsFollowing) {
+                    writeResults();  // The results of the handled chunks are written, the checkpoint is after them
+                }
+                writeCheckpoint();
+            } else {
+                long writeStartNanos = System.nanoTime();
+                writeResults();
+                fMetrics.addOutputWriteTime(System.nanoTime() - writeStartNanos);
+                fIsCompleted = true;
+                if (fIsFollowing) {
+                    writeCheckpoint();  // Following the file again resume after the lines that were scanned
+                }
+                writeTokenIndex();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeResultsWriter();
+            if (fTokenIndexWriter != null) {
+                fTokenIndexWriter.deleteSegments();  // Left only when the index was not written
+            }
+        }
+
+        if (fIsCompleted && fCheckpointer != null && !fIsFollowing) {
+            fCheckpointer.deleteCheckpoint();
+        }
     }
 
     //region Aggregation action
     /***
      * While there are more producers, the aggregator is waiting for more input to come.
      * when a input is entering the queue this method will start the process of accumulate
-     * all the pairs to a single pair mapping by keeping the Set of Match data sorted
+     * all the pairs to a single pair mapping
      * It will stop waiting to the producers when getting the poison pill.
+     * @throws IOException in case of failure in writing a chunk (CHUNK_ORDER mode)
      */
-    private void aggregateAllPairs() {
+    private void aggregateAllPairs() throws IOException {
         boolean isThereMoreProducers = true;
         while(isThereMoreProducers) {
             try {
-                Map<String, List<MatchInLineLocation>> singlePairChunk = fMatchingPairsToAggregate.take();
+                ChunkMatches singlePairChunk = fMatchingPairsToAggregate.take();
 
-                if(singlePairChunk.containsKey(MatchFinderManager.POISON_PILL)){
+                if(singlePairChunk == ChunkMatches.POISON_PILL){
                     isThereMoreProducers = false;
-                }else {
-                    accumulatePairsChunk(singlePairChunk);
+                } else if (singlePairChunk.isRefreshEnd()) {
+                    fRefreshEndChunkIndex = Math.max(fRefreshEndChunkIndex, singlePairChunk.getChunkIndex());
+                    writeRefreshIfDone();
+                } else {
+                    aggregateSingleChunk(singlePairChunk);
                 }
             } catch (InterruptedException e) {
                 e.printStackTrace();
@@ -59,15 +299,109 @@ class ChunksAggregator implements Runnable{
         }
     }
 
+    /***
+     * Keep the chunk until all the chunks before it have arrived,
+     * then handle it and every waiting chunk that follow it.
+     * The chunks after a chunk that its search failed can never be handled, they are dropped
+     * @param singlePairChunk the chunk that just arrived
+     * @throws IOException in case of failure in writing the chunks (CHUNK_ORDER mode)
+     */
+    private void aggregateSingleChunk(ChunkMatches singlePairChunk) throws IOException {
+        if (singlePairChunk.isSearchFailed()) {
+            fFailedChunkIndex = Math.min(fFailedChunkIndex, singlePairChunk.getChunkIndex());
+            fOutOfOrderChunks.keySet().removeIf(chunkIndex -> chunkIndex > fFailedChunkIndex);
+            return;
+        }
+        if (singlePairChunk.getChunkIndex() > fFailedChunkIndex) {
+            return;
+        }
+
+        fOutOfOrderChunks.put(singlePairChunk.getChunkIndex(), singlePairChunk);
+
+        ChunkMatches nextChunk;
+        while ((nextChunk = fOutOfOrderChunks.remove(fNextChunkIndex)) != null) {
+            alignCharOffsets(nextChunk);
+            if (fTokenIndexWriter != null && nextChunk.getChunkTokens() != null) {
+                fTokenIndexWriter.addChunk(nextChunk.getChunkTokens());
+            }
+
+            if(fOutputMode == OutputMode.CHUNK_ORDER){
+                long writeStartNanos = System.nanoTime();
+                writeChunk(nextChunk);
+                fMetrics.addOutputWriteTime(System.nanoTime() - writeStartNanos);
+            } else if (fMatchesCounts != null) {
+                accumulateSummaryChunk(nextChunk);
+            } else {
+                accumulatePairsChunk(nextChunk);
+            }
+
+            fMetrics.onChunkAggregated();
+            fNextChunkIndex++;
+            fNextLineOffset = nextChunk.getFirstLineOffset() + nextChunk.getLinesCount();
+            fNextPosition = nextChunk.getEndPosition();
+        }
+
+        if (fIsFollowing) {
+            writeRefreshIfDone();
+        } else if (fCheckpointer != null && fCheckpointer.isCheckpointDue()) {
+            writeCheckpoint();
+        }
+    }
+
+    /***
+     * When all the chunks of the refresh were handled, write and flush the new results (follow mode).
+     * The checkpoints of a followed scan are written only between refreshes, when all the results were written
+     * @throws IOException in case of failure in writing the results
+     */
+    private void writeRefreshIfDone() throws IOException {
+        if (fRefreshEndChunkIndex == NO_REFRESH_END || fNextChunkIndex < fRefreshEndChunkIndex) {
+            return;
+        }
+
+        long writeStartNanos = System.nanoTime();
+        fRefreshEndChunkIndex = NO_REFRESH_END;
+        writeResults();
+        fResultsWriter.flush();
+        fMetrics.addOutputWriteTime(System.nanoTime() - writeStartNanos);
+
+        if (fCheckpointer != null && fCheckpointer.isCheckpointDue()) {
+            writeCheckpoint();
+        }
+    }
+
+    /***
+     * Make the char offsets of the chunk first block comparing to the block start (and not to the chunk start),
+     * and keep how many chars of its last block the chunks so far have
+     * @param chunkMatches the next chunk by the chunks order
+     */
+    private void alignCharOffsets(ChunkMatches chunkMatches) {
+        long firstLineOffset = chunkMatches.getFirstLineOffset();
+        long firstBlockLineOffset = firstLineOffset - firstLineOffset % MatchFinderManager.CHUNK_SIZE;
+        boolean isStartInsideBlock = chunkMatches.isStartInsideBlock();
+
+        if (isStartInsideBlock && fLastBlockCharsCount > 0) {
+            for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+                chunkMatches.getMatchLocations(i).addToCharOffsets(firstBlockLineOffset, fLastBlockCharsCount);
+            }
+            if (chunkMatches.getChunkTokens() != null) {
+                chunkMatches.getChunkTokens().addToCharOffsets(firstBlockLineOffset, fLastBlockCharsCount);
+            }
+        }
+
+        boolean isSingleBlockContinued = isStartInsideBlock &&
+                chunkMatches.getLastBlockLineOffset() == firstBlockLineOffset;
+        fLastBlockCharsCount = isSingleBlockContinued ? fLastBlockCharsCount + chunkMatches.getLastBlockCharsCount() :
+                chunkMatches.getLastBlockCharsCount();
+    }
+
     /***
      * This method iterate over a lines chunk and accumulate it to the final pair mapping
-     * doing so by keeping the match data sorted
-     * @param singlePairChunk single mapping between text to find and a list of matching data
+     * @param singlePairChunk the matches of every text that was found in the chunk
      */
-    private void accumulatePairsChunk(Map<String, List<MatchInLineLocation>> singlePairChunk) {
-        for (Map.Entry<String, List<MatchInLineLocation>> singlePair : singlePairChunk.entrySet()) {
-            String key = singlePair.getKey();
-            List<MatchInLineLocation> value = singlePair.getValue();
+    private void accumulatePairsChunk(ChunkMatches singlePairChunk) {
+        for (int i = 0; i < singlePairChunk.getFoundTextsCount(); i++) {
+            int key = singlePairChunk.getTextIndex(i);
+            MatchLocations value = singlePairChunk.getMatchLocations(i);
 
             accumulateSinglePair(key, value);
         }
@@ -75,87 +409,279 @@ class ChunksAggregator implements Runnable{
 
     /***
      * This method perform the actual accumulation between tha pairs of the text to find that
-     * already known to the ChunkAggregator and the pairs that are in the current chunk
-     * it doing so while maintaining the match data sorted
-     * @param key String that we find a match to
-     * @param value list of all matches to that string in the current chunk
+     * already known to the ChunkAggregator and the pairs that are in the current chunk.
+     * The chunk matches are kept as a sorted run, the runs are merged only when the results are written
+     * @param key index of the text that we find a match to
+     * @param value all matches to that text in the current chunk
      */
-    private void accumulateSinglePair(String key, List<MatchInLineLocation> value) {
-        SortedSet<MatchInLineLocation> listToModify = fAllPairs.getOrDefault(key, new TreeSet<>());
+    private void accumulateSinglePair(int key, MatchLocations value) {
+        List<MatchLocations> runs = fAllPairs.get(key);
+
+        if (runs == null) {
+            runs = new ArrayList<>();
+            fAllPairs.set(key, runs);
+        }
 
-        listToModify.addAll(value);
-        fAllPairs.put(key, listToModify);
+        runs.add(value);
+    }
+
+    /***
+     * Add the matches count of every text that was found in the chunk, and in SAMPLED_LOCATIONS output mode
+     * keep its matches until the text has all its first matches (the chunks are handled by their order)
+     * @param chunkMatches the next chunk by the chunks order
+     */
+    private void accumulateSummaryChunk(ChunkMatches chunkMatches) {
+        for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+            int textIndex = chunkMatches.getTextIndex(i);
+
+            fMatchesCounts[textIndex] += chunkMatches.getMatchesCount(i);
+            fRefreshFoundTexts.set(textIndex);
+            if (fSampledLocations != null) {
+                sampleLocations(textIndex, chunkMatches.getMatchLocations(i));
+            }
+        }
+    }
+
+    private void sampleLocations(int textIndex, MatchLocations chunkLocations) {
+        MatchLocations sampledLocations = fSampledLocations[textIndex];
+
+        if (sampledLocations == null) {
+            sampledLocations = new MatchLocations(Math.min(chunkLocations.size(), fSampledLocationsCount));
+            fSampledLocations[textIndex] = sampledLocations;
+        }
+
+        for (int i = 0; i < chunkLocations.size() && sampledLocations.size() < fSampledLocationsCount; i++) {
+            sampledLocations.add(chunkLocations.getLineOffset(i), chunkLocations.getCharOffset(i));
+        }
+    }
+
+    /***
+     * Write the matches of a single chunk
+     * @param chunkMatches the next chunk by the chunks order
+     * @throws IOException in case of failure in writing the chunk
+     */
+    private void writeChunk(ChunkMatches chunkMatches) throws IOException {
+        for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+            fResultsWriter.writeLine(fMatchingEngine.getTextToFind(chunkMatches.getTextIndex(i)),
+                    chunkMatches.getMatchLocations(i));
+        }
     }
     //endregion Aggregation action
 
-    //region Aggregation results
+    //region Checkpoints
     /***
-     * This class takes all the pairs after aggregation and formatting it
-     * to a specific string result
-     * @return String of formatted  results
+     * Write a checkpoint of the chunks that were handled so far. The runs of every text are merged to a single run,
+     * so the next checkpoints merge only the runs that were added since.
+     * Nothing is written when the checkpoints are disabled or when the input position is not known
+     * (the input was decoded line by line)
+     * @throws IOException in case of failure in flushing the chunks that were written (CHUNK_ORDER mode)
      */
-    private String getResults() {
-        StringBuilder output = new StringBuilder();
+    private void writeCheckpoint() throws IOException {
+        if (fCheckpointer == null || fNextPosition == TextChunk.UNKNOWN_POSITION) {
+            return;
+        }
 
-        for(Map.Entry<String, SortedSet<MatchInLineLocation>> singlePair : fAllPairs.entrySet()){
-            String key = singlePair.getKey();
-            SortedSet<MatchInLineLocation> value = singlePair.getValue();
+        Map<String, MatchLocations> partialResults = new LinkedHashMap<>();
+        for (int textIndex = 0; textIndex < fAllPairs.size(); textIndex++) {
+            List<MatchLocations> runs = fAllPairs.get(textIndex);
 
-            output.append(key).append(" --> ").append("[");
+            if (runs != null) {
+                MatchLocations mergedRuns = runs.size() == 1 ? runs.get(0) : MatchLocations.merge(runs);
 
-            for(MatchInLineLocation item : value){
-                output.append(item).append(",");
+                runs.clear();
+                runs.add(mergedRuns);
+                if (fIsFollowing) {
+                    fRefreshFirstRuns[textIndex] = runs.size();  // Checkpoints are written only between refreshes
+                }
+                partialResults.put(fMatchingEngine.getTextToFind(textIndex), mergedRuns);
             }
+        }
 
-            output.replace(output.length() - 1, output.length(), "");  // Remove last ','
-            output.append("]").append('\n');
+        long outputPosition = 0;
+        if (fOutputMode == OutputMode.CHUNK_ORDER || fIsFollowing) {  // The output is written incrementally
+            fResultsWriter.flush();  // The checkpoint must not cover chunks that are only in the buffer
+            outputPosition = fResultsWriter.getOutputFilePosition();
         }
 
-        return output.toString();
+        fCheckpointer.writeCheckpoint(fNextChunkIndex, fNextLineOffset, fNextPosition, fLastBlockCharsCount,
+                outputPosition, partialResults);
     }
+    //endregion Checkpoints
 
+    //region Aggregation results
     /***
      * This method responsible of writing the final results of the Matches
-     * once to the StdIn and second to the give File output
+     * once to the StdOut and second to the give File output.
+     * The runs of every text are merged in parallel (each text is independent).
+     * The texts are written by the iteration order of a HashMap that is filled by the order of the texts
+     * first match, so the output doesn't depend on the order in which the chunks arrived.
+     * In follow mode only the runs of the refresh are merged and written, they are kept as a single run
+     * after the runs of the earlier refreshes
+     * @throws IOException in case of failure in writing the results
      */
-    private void writeResults() {
-        try {
-            String results = getResults();
-            writeResultsToStdIn(results);
-            writeResultsToOutputFile(results);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void writeResults() throws IOException {
+        if (fMatchesCounts != null) {
+            writeSummaryResults();
+            return;
+        }
+
+        MatchLocations[] mergedPairs = new MatchLocations[fAllPairs.size()];
+
+        IntStream.range(0, fAllPairs.size()).parallel()
+                .filter(textIndex -> getUnwrittenRuns(textIndex) != null)
+                .forEach(textIndex -> mergedPairs[textIndex] = MatchLocations.merge(getUnwrittenRuns(textIndex)));
+
+        Map<String, MatchLocations> foundPairs = getResultsByFirstMatch(mergedPairs, fMatchingEngine::getTextToFind);
+        for(Map.Entry<String, MatchLocations> singlePair : foundPairs.entrySet()){
+            fResultsWriter.writeLine(singlePair.getKey(), singlePair.getValue());
+        }
+
+        if (fIsFollowing) {
+            keepRefreshResults(mergedPairs);
         }
     }
 
-    private void writeResultsToStdIn(String results) {
-        System.out.println(results);
+    /***
+     * @return the runs of the text that were not written yet (all its runs unless following),
+     * null when there are none
+     */
+    private List<MatchLocations> getUnwrittenRuns(int textIndex) {
+        List<MatchLocations> runs = fAllPairs.get(textIndex);
+        int firstRun = fIsFollowing ? fRefreshFirstRuns[textIndex] : 0;
+
+        return runs != null && firstRun < runs.size() ? runs.subList(firstRun, runs.size()) : null;
     }
 
-    private void writeResultsToOutputFile(String results) throws IOException {
-        File outputFile =  getOutputFile();
+    /***
+     * Replace the runs of the refresh by their merged run, so the results so far are a run per refresh
+     * @param refreshPairs the merged runs of the refresh by text index, null when the text was not found in it
+     */
+    private void keepRefreshResults(MatchLocations[] refreshPairs) {
+        for (int textIndex = 0; textIndex < refreshPairs.length; textIndex++) {
+            if (refreshPairs[textIndex] != null) {
+                List<MatchLocations> runs = fAllPairs.get(textIndex);
 
-        boolean isOutputFileExists = outputFile != null;
-        if(isOutputFileExists) {
-            try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile)) {
-                fileOutputStream.write(results.getBytes());
+                runs.subList(fRefreshFirstRuns[textIndex], runs.size()).clear();
+                runs.add(refreshPairs[textIndex]);
+                fRefreshFirstRuns[textIndex] = runs.size();
             }
         }
     }
 
-    private File getOutputFile() throws IOException {
-        File outPutFile = new File(fOutputFilePath);
+    /***
+     * Put the found texts in a HashMap by the order of their first match (and by the text index when the first
+     * matches are the same), the results are written by the iteration order of the map
+     * @param textsMatches the merged matches of every text by its index, null when the text was not found
+     * @param textByIndex the text of every index
+     * @return the found texts and their matches, in the results order
+     */
+    static Map<String, MatchLocations> getResultsByFirstMatch(MatchLocations[] textsMatches,
+                                                              IntFunction<String> textByIndex) {
+        Map<String, MatchLocations> foundPairs = new HashMap<>();
 
-        boolean isOutputFileExists = outPutFile.exists();
-        if(!isOutputFileExists){
-            isOutputFileExists  = outPutFile.createNewFile();
+        for (int textIndex : getFoundTextsByFirstMatch(textsMatches)) {
+            foundPairs.put(textByIndex.apply(textIndex), textsMatches[textIndex]);
         }
 
-        if(!isOutputFileExists){
-            outPutFile = null;
+        return foundPairs;
+    }
+
+    /***
+     * @param textsMatches the matches of every text by its index, null when the text was not found
+     * @return the indexes of the found texts, sorted by their first match (and by the text index)
+     */
+    private static List<Integer> getFoundTextsByFirstMatch(MatchLocations[] textsMatches) {
+        List<Integer> foundTextIndexes = new ArrayList<>();
+
+        for (int textIndex = 0; textIndex < textsMatches.length; textIndex++) {
+            if (textsMatches[textIndex] != null) {
+                foundTextIndexes.add(textIndex);
+            }
         }
 
-        return outPutFile;
+        foundTextIndexes.sort((first, second) -> MatchLocations.compare(
+                textsMatches[first].getLineOffset(0), textsMatches[first].getCharOffset(0),
+                textsMatches[second].getLineOffset(0), textsMatches[second].getCharOffset(0)));
+
+        return foundTextIndexes;
+    }
+
+    /***
+     * Write the results of the summary output modes:
+     * in SAMPLED_LOCATIONS mode the texts by the order of their first match, with their count and first matches,
+     * otherwise the texts by their count (the most found first, and by the text index), with only their count.
+     * The top texts are selected by a heap that is bounded to the TOP_MATCH_COUNTS size
+     * (in MATCH_COUNTS mode it is not bounded).
+     * In follow mode only the texts that were found in the refresh are written (with their total count),
+     * except TOP_MATCH_COUNTS mode that write the whole top when any text was found
+     * @throws IOException in case of failure in writing the results
+     */
+    private void writeSummaryResults() throws IOException {
+        if (fRefreshFoundTexts.isEmpty()) {
+            return;
+        }
+
+        if (fSampledLocations != null) {
+            MatchLocations[] refreshSampledLocations = new MatchLocations[fSampledLocations.length];
+            fRefreshFoundTexts.stream().forEach(textIndex ->
+                    refreshSampledLocations[textIndex] = fSampledLocations[textIndex]);
+
+            for (int textIndex : getFoundTextsByFirstMatch(refreshSampledLocations)) {
+                fResultsWriter.writeSampledLine(fMatchingEngine.getTextToFind(textIndex),
+                        fMatchesCounts[textIndex], fSampledLocations[textIndex]);
+            }
+            fRefreshFoundTexts.clear();
+            return;
+        }
+
+        int topTextsCount = fOutputMode == OutputMode.TOP_MATCH_COUNTS ? fTopMatchCountsSize : Integer.MAX_VALUE;
+        Comparator<Integer> byMatchesCount = Comparator.comparingLong((Integer textIndex) -> fMatchesCounts[textIndex])
+                .thenComparing(Comparator.reverseOrder());
+        PriorityQueue<Integer> topTexts = new PriorityQueue<>(byMatchesCount);  // The least found text at the head
+
+        boolean isTopWritten = fOutputMode == OutputMode.TOP_MATCH_COUNTS;
+        for (int textIndex = 0; textIndex < fMatchesCounts.length && topTextsCount > 0; textIndex++) {
+            if (isTopWritten ? fMatchesCounts[textIndex] > 0 : fRefreshFoundTexts.get(textIndex)) {
+                topTexts.add(textIndex);
+                if (topTexts.size() > topTextsCount) {
+                    topTexts.poll();
+                }
+            }
+        }
+
+        List<Integer> sortedTopTexts = new ArrayList<>(topTexts);
+        sortedTopTexts.sort(byMatchesCount.reversed());
+        for (int textIndex : sortedTopTexts) {
+            fResultsWriter.writeCountLine(fMatchingEngine.getTextToFind(textIndex), fMatchesCounts[textIndex]);
+        }
+        fRefreshFoundTexts.clear();
+    }
+
+    /***
+     * Write the token index file of all the chunks (when a token index is built)
+     * @throws IOException in case of failure in writing the index file
+     */
+    private void writeTokenIndex() throws IOException {
+        if (fTokenIndexWriter == null) {
+            return;
+        }
+
+        long writeStartNanos = System.nanoTime();
+        fTokenIndexWriter.finish();
+        System.err.println("Token index written in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - writeStartNanos) + " ms");
+    }
+
+    private void closeResultsWriter() {
+        long writeStartNanos = System.nanoTime();
+
+        try {
+            fResultsWriter.close();  // Flush the last results
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            fMetrics.addOutputWriteTime(System.nanoTime() - writeStartNanos);
+        }
     }
     //endregion Aggregation results
 }
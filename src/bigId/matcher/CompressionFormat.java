@@ -0,0 +1,99 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/***
+ * The compression of an input, detected by the extension of its url (or path) or by the http Content-Encoding.
+ * A compressed input is decompressed while it is read, straight into the chunking of the TextSource.
+ */
+enum CompressionFormat {
+    /***
+     * Not compressed
+     */
+    NONE {
+        @Override
+        InputStream decode(InputStream compressedStream) {
+            return compressedStream;
+        }
+    },
+
+    /***
+     * gzip (a single member or many members), the members of a blocked gzip (BGZF) are decoded in parallel
+     */
+    GZIP {
+        @Override
+        InputStream decode(InputStream compressedStream) throws IOException {
+            return new ParallelGzipInputStream(compressedStream);
+        }
+    },
+
+    /***
+     * Zstandard, detected only to fail with a clear message: the JDK has no zstd decoder
+     */
+    ZSTD {
+        @Override
+        InputStream decode(InputStream compressedStream) throws IOException {
+            throw new IOException("zstd compressed input is not supported (there is no zstd decoder in the JDK), " +
+                    "recompress it with gzip or bgzip");
+        }
+    };
+
+    //region CONSTANTS
+    private static final String[] GZIP_EXTENSIONS = {".gz", ".gzip", ".bgz"};
+    private static final String[] ZSTD_EXTENSIONS = {".zst", ".zstd"};
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String X_GZIP_ENCODING = "x-gzip";
+    private static final String ZSTD_ENCODING = "zstd";
+    //endregion CONSTANTS
+
+    /***
+     * Wrap the compressed stream by a stream of the decompressed bytes
+     * @param compressedStream the input as it was read
+     * @return stream of the decompressed input
+     * @throws IOException in case the format can't be decoded
+     */
+    abstract InputStream decode(InputStream compressedStream) throws IOException;
+
+    /***
+     * @param textToReadUrl a url or a local path
+     * @return the compression of the url by its extension (the query and fragment are ignored)
+     */
+    static CompressionFormat fromUrl(String textToReadUrl) {
+        String path = textToReadUrl.split("[?#]", 2)[0].toLowerCase(Locale.ROOT);
+
+        if (hasExtension(path, GZIP_EXTENSIONS)) {
+            return GZIP;
+        }
+
+        return hasExtension(path, ZSTD_EXTENSIONS) ? ZSTD : NONE;
+    }
+
+    /***
+     * @param contentEncoding the Content-Encoding of a http response, may be null
+     * @return the compression of the response body
+     */
+    static CompressionFormat fromContentEncoding(String contentEncoding) {
+        if (contentEncoding == null) {
+            return NONE;
+        }
+
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (encoding.equals(GZIP_ENCODING) || encoding.equals(X_GZIP_ENCODING)) {
+            return GZIP;
+        }
+
+        return encoding.equals(ZSTD_ENCODING) ? ZSTD : NONE;
+    }
+
+    private static boolean hasExtension(String path, String[] extensions) {
+        for (String extension : extensions) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package bigId.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * ChunkMatchesSink that let the MatchSearcher tasks store their results directly, without an aggregator thread.
+ * Every chunk has its own slot (by the chunk index) so the tasks never wait for each other,
+ * the chunks are ordered only once, when all the tasks are done.
+ */
+class ConcurrentChunkResults implements ChunkMatchesSink {
+    //region Fields
+    private final Map<Long, ChunkMatches> fChunksByIndex;
+    //endregion Fields
+
+    //region Constructor
+    public ConcurrentChunkResults() {
+        fChunksByIndex = new ConcurrentHashMap<>();
+    }
+    //endregion Constructor
+
+    @Override
+    public void accept(ChunkMatches chunkMatches) {
+        fChunksByIndex.put(chunkMatches.getChunkIndex(), chunkMatches);
+    }
+
+    /***
+     * Must be called only after all the tasks are done
+     * @return all the chunks, ordered by the chunk index
+     */
+    public List<ChunkMatches> getChunksInOrder() {
+        List<ChunkMatches> chunks = new ArrayList<>(fChunksByIndex.values());
+
+        chunks.sort((first, second) -> Long.compare(first.getChunkIndex(), second.getChunkIndex()));
+        return chunks;
+    }
+}
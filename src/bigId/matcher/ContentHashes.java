@@ -0,0 +1,87 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * Utils for the 64 bits content hash of a chunk (the key of the ChunkResultCache).
+ * The content is mixed 8 bytes (or 4 chars) at a time, with the mixing steps of MurmurHash3,
+ * so hashing a chunk cost much less than searching it. It is not a cryptographic hash.
+ */
+final class ContentHashes {
+    //region CONSTANTS
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long MULTIPLIER_1 = 0x87C37B91114253D5L;
+    private static final long MULTIPLIER_2 = 0x4CF5AD432745937FL;
+    private static final long LINE_END = 0xA5A0;  // In the last word of every line, so the lines split is hashed too
+    //endregion CONSTANTS
+
+    private ContentHashes() {
+    }
+
+    /***
+     * @param bytes the bytes to hash, from their position to their limit (the buffer itself is not changed)
+     * @return hash of the bytes
+     */
+    static long hash(ByteBuffer bytes) {
+        ByteBuffer words = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long hash = SEED;
+
+        while (words.remaining() >= Long.BYTES) {
+            hash = mix(hash, words.getLong());
+        }
+
+        long lastWord = 0;
+        for (int shift = 0; words.hasRemaining(); shift += Byte.SIZE) {
+            lastWord |= (words.get() & 0xFFL) << shift;
+        }
+
+        return finish(mix(hash, lastWord), bytes.remaining());
+    }
+
+    /***
+     * @param lines the lines to hash
+     * @return hash of the chars of the lines and of the lines split
+     */
+    static long hash(Iterable<CharSequence> lines) {
+        long hash = SEED;
+        long length = 0;
+
+        for (CharSequence line : lines) {
+            int index = 0;
+
+            for (; index + 4 <= line.length(); index += 4) {
+                hash = mix(hash, (long) line.charAt(index) | (long) line.charAt(index + 1) << 16 |
+                        (long) line.charAt(index + 2) << 32 | (long) line.charAt(index + 3) << 48);
+            }
+
+            long lastWord = (LINE_END | line.length() - index) << 48;  // Up to 3 chars are left
+            for (int shift = 0; index < line.length(); index++, shift += Character.SIZE) {
+                lastWord |= (long) line.charAt(index) << shift;
+            }
+
+            hash = mix(hash, lastWord);
+            length += line.length() + 1;
+        }
+
+        return finish(hash, length);
+    }
+
+    private static long mix(long hash, long word) {
+        word *= MULTIPLIER_1;
+        word = Long.rotateLeft(word, 31);
+        word *= MULTIPLIER_2;
+
+        return Long.rotateLeft(hash ^ word, 27) * 5 + 0x52DCE729;
+    }
+
+    private static long finish(long hash, long length) {
+        hash ^= length;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+
+        return hash ^ hash >>> 33;
+    }
+}
@@ -0,0 +1,135 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * This class hold the state of a single document that is searched by the MatchFinderService.
+ * Every document collect its chunks in its own ConcurrentChunkResults, and count the work that is still pending:
+ * one for the reading of the document and one for every MatchSearcher task.
+ * Whoever finish the last pending work (the reader or the last task) hand the document to the writer.
+ * Every pending work is finished even when it failed (a task that its search failed send a failure marker),
+ * the document is then handed to the writer with its first failure, and its future is completed exceptionally.
+ */
+class DocumentSearch implements ChunkMatchesSink {
+    //region Fields
+    private final MatchInput fMatchInput;
+    private final String fOutputFilePath;
+    private final ConcurrentChunkResults fChunkResults;
+    private final AtomicInteger fPendingWorkCount;
+    private final CompletableFuture<Void> fCompletion;
+    private final DocumentListener fDocumentListener;
+    private volatile Throwable fFailure;
+    //endregion Fields
+
+    /***
+     * Called once, when the document was read and all its chunks were searched
+     */
+    interface DocumentListener {
+        void onDocumentSearched(DocumentSearch documentSearch);
+    }
+
+    //region Constructor
+    public DocumentSearch(MatchInput matchInput, String outputFilePath, DocumentListener documentListener) {
+        fMatchInput = matchInput;
+        fOutputFilePath = outputFilePath;
+        fDocumentListener = documentListener;
+        fChunkResults = new ConcurrentChunkResults();
+        fPendingWorkCount = new AtomicInteger(1);  // The reading of the document
+        fCompletion = new CompletableFuture<>();
+    }
+    //endregion Constructor
+
+    /***
+     * Must be called before a MatchSearcher task of the document is executed
+     */
+    public void startSearchingTask() {
+        fPendingWorkCount.incrementAndGet();
+    }
+
+    @Override
+    public void accept(ChunkMatches chunkMatches) {
+        try {
+            if (chunkMatches.isSearchFailed()) {
+                addFailure(new IOException("The search of chunk " + chunkMatches.getChunkIndex() + " failed"));
+            } else {
+                fChunkResults.accept(chunkMatches);
+            }
+        } finally {
+            finishPendingWork();
+        }
+    }
+
+    /***
+     * Must be called once, when the reading of the document is done
+     * @param failure the failure of the reading, or null if the document was fully read
+     */
+    public void finishReading(Throwable failure) {
+        try {
+            if (failure != null) {
+                addFailure(failure);
+            }
+        } finally {
+            finishPendingWork();
+        }
+    }
+
+    /***
+     * Must be called when a task that startSearchingTask was called for could not be executed
+     * @param failure the reason the task was not executed
+     */
+    public void cancelSearchingTask(Throwable failure) {
+        try {
+            addFailure(failure);
+        } finally {
+            finishPendingWork();
+        }
+    }
+
+    private synchronized void addFailure(Throwable failure) {
+        if (fFailure == null) {
+            fFailure = failure;  // Only the first failure is reported
+        }
+    }
+
+    /***
+     * Hand the document to the listener when the last pending work is finished,
+     * if the listener failed the document future is completed exceptionally (so no caller wait for it forever)
+     */
+    private void finishPendingWork() {
+        if (fPendingWorkCount.decrementAndGet() != 0) {
+            return;
+        }
+
+        try {
+            fDocumentListener.onDocumentSearched(this);
+        } catch (RuntimeException e) {
+            fCompletion.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public MatchInput getMatchInput() {
+        return fMatchInput;
+    }
+
+    public String getOutputFilePath() {
+        return fOutputFilePath;
+    }
+
+    public ConcurrentChunkResults getChunkResults() {
+        return fChunkResults;
+    }
+
+    /***
+     * @return the first failure of the reading or of a search, or null if the document was fully read and searched
+     */
+    public Throwable getFailure() {
+        return fFailure;
+    }
+
+    public CompletableFuture<Void> getCompletion() {
+        return fCompletion;
+    }
+}
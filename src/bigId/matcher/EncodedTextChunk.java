@@ -0,0 +1,114 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/***
+ * TextChunk of raw (still encoded) bytes, for example a slice of a memory mapped file.
+ * The bytes are decoded only when the chunk is iterated, so the decoding is done by the searching task
+ * and not by the thread that read the input.
+ * When the MatchingEngine support the chunk charset the bytes are searched directly and never decoded.
+ * The bytes must start in a beginning of a line and end right after a line terminator (or in the end of the input).
+ */
+class EncodedTextChunk extends TextChunk {
+    //region Fields
+    private final ByteBuffer fBytes;
+    private final Charset fCharset;
+    //endregion Fields
+
+    //region Constructor
+    public EncodedTextChunk(long chunkIndex, long firstLineOffset, int linesCount, long endPosition,
+                            ByteBuffer bytes, Charset charset) {
+        super(chunkIndex, firstLineOffset, linesCount, endPosition);
+        fBytes = bytes;
+        fCharset = charset;
+    }
+    //endregion Constructor
+
+    @Override
+    public long getSize() {
+        return fBytes.remaining();
+    }
+
+    /***
+     * @return hash of the encoded bytes, the chunk is not decoded
+     */
+    @Override
+    public long getContentHash() {
+        return ContentHashes.hash(fBytes);
+    }
+
+    /***
+     * Search the encoded bytes with the engine ByteMatchingEngine, the chunk is decoded and searched line by line
+     * only if there is no ByteMatchingEngine for the charset or the bytes are malformed.
+     * The byte engine has its own LinePreFilter (of the encoded texts), it is used when the given filter is not null
+     */
+    @Override
+    public long findMatches(MatchingEngine matchingEngine, LinePreFilter linePreFilter,
+                            ChunkMatchesBuilder chunkMatchesBuilder) {
+        ByteMatchingEngine byteMatchingEngine = matchingEngine.getByteMatchingEngine(fCharset);
+
+        if (byteMatchingEngine != null) {
+            long charsCount = byteMatchingEngine.findMatches(fBytes.duplicate(), chunkMatchesBuilder,
+                    linePreFilter != null);
+            if (charsCount != ByteMatchingEngine.MALFORMED_CHUNK) {
+                return charsCount;
+            }
+
+            chunkMatchesBuilder.reset();
+        }
+
+        return super.findMatches(matchingEngine, linePreFilter, chunkMatchesBuilder);
+    }
+
+    /***
+     * Decode the chunk and iterate over its lines, the lines are split the same way as BufferedReader.readLine
+     * (by '\n', '\r' or "\r\n")
+     * @return iterator over views of the decoded lines (without the line terminators)
+     */
+    @Override
+    public Iterator<CharSequence> iterator() {
+        CharBuffer chars = fCharset.decode(fBytes.duplicate());
+
+        return new Iterator<CharSequence>() {
+            private int fPosition = 0;
+
+            @Override
+            public boolean hasNext() {
+                return fPosition < chars.length();
+            }
+
+            @Override
+            public CharSequence next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                int lineStart = fPosition;
+                int lineEnd = lineStart;
+                while (lineEnd < chars.length() && !isLineTerminator(chars.get(lineEnd))) {
+                    lineEnd++;
+                }
+
+                fPosition = lineEnd;
+                if (fPosition < chars.length()) {
+                    boolean isCarriageReturn = chars.get(fPosition) == '\r';
+                    fPosition++;
+
+                    if (isCarriageReturn && fPosition < chars.length() && chars.get(fPosition) == '\n') {
+                        fPosition++;
+                    }
+                }
+
+                return chars.subSequence(lineStart, lineEnd);
+            }
+        };
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,80 @@
+package bigId.matcher;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***
+ * The threads that are used for the I/O bound work (fetching and reading the input): the reader of a
+ * MatchFinderManager, the readers of the documents of a MatchFinderService and the range downloads of
+ * a RangeRequestTextSource.
+ * The searching is CPU bound and always use a fixed pool of platform threads.
+ */
+public enum ExecutionModel {
+    /***
+     * A fixed pool of platform threads, one thread for each allowed connection (the default)
+     */
+    PLATFORM_THREADS {
+        @Override
+        ExecutorService createIoExecutor(int maxConcurrentTasks) {
+            return Executors.newFixedThreadPool(maxConcurrentTasks);
+        }
+    },
+
+    /***
+     * A new virtual thread for every I/O task, so a task that is blocked on the network doesn't hold a platform thread.
+     * No more than the allowed tasks run at the same time, the rest wait in a queue (without a thread).
+     * Virtual threads exist only from java 21, the model is rejected by MatchFinderOptions.setExecutionModel
+     * on older runtimes (it never silently run on platform threads).
+     */
+    VIRTUAL_THREADS {
+        @Override
+        boolean isSupported() {
+            return getVirtualThreadExecutorFactory() != null;
+        }
+
+        @Override
+        ExecutorService createIoExecutor(int maxConcurrentTasks) {
+            Method factoryMethod = getVirtualThreadExecutorFactory();
+            if (factoryMethod == null) {
+                throw new UnsupportedOperationException(UNSUPPORTED_VIRTUAL_THREADS_MESSAGE + Runtime.version());
+            }
+
+            try {
+                return new BoundedExecutorService((ExecutorService) factoryMethod.invoke(null), maxConcurrentTasks);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException(UNSUPPORTED_VIRTUAL_THREADS_MESSAGE + Runtime.version(), e);
+            }
+        }
+    };
+
+    private static final String VIRTUAL_THREAD_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    static final String UNSUPPORTED_VIRTUAL_THREADS_MESSAGE = "Virtual threads need java 21 or later, the runtime is ";
+
+    /***
+     * @return the factory of the virtual threads executor (compiled for java 17, so it is found by reflection),
+     * or null when the runtime has no virtual threads
+     */
+    private static Method getVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_FACTORY);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /***
+     * @return true if the model can run on this runtime
+     */
+    boolean isSupported() {
+        return true;
+    }
+
+    /***
+     * Create the executor of the I/O bound tasks
+     * @param maxConcurrentTasks how many tasks may run at the same time (e.g. how many connections may be open),
+     * more tasks can be submitted but they wait until a running task end
+     * @return new ExecutorService that the caller must shut down
+     */
+    abstract ExecutorService createIoExecutor(int maxConcurrentTasks);
+}
@@ -0,0 +1,433 @@
+package bigId.matcher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/***
+ * This class is the approximate MatchingEngine: it ignore the case and the diacritics (by the TextNormalizer)
+ * and allow a single typo (a char that was added, removed, replaced, or two adjacent chars that were swapped)
+ * in names of at least MIN_TYPO_LENGTH chars, so "JOHN", "Jon" and "Jhon" are all matches of John.
+ * The line is split to words, and every word is looked up once in a deletion neighborhood index that is built
+ * once from the dictionary: the index hold the first word of every name and every form of it with a single char
+ * deleted, a word is a candidate of a name when the word (or the word with a single char deleted) is in the
+ * index, and every candidate is verified by comparing it to the name. So the search time doesn't grow with
+ * the dictionary, and the words that are too short or too long to be a name are not looked up at all.
+ * The hashes of the deleted forms of a word are computed from its prefix hashes, without creating the forms.
+ * A name of a few words match the same count of words in the line (with any separators between them),
+ * with a single typo in all its words. A word may match a few names, the match is reported for every one of
+ * them, so the output say which dictionary name every match is of.
+ * Once built the engine is immutable and can be shared between threads.
+ */
+class FuzzyMatchingEngine implements MatchingEngine {
+    //region CONSTANTS
+    static final int MIN_TYPO_LENGTH = 4;  // A shorter name is matched only when its normalized form is equal
+    private static final long HASH_BASE = 0x100000001B3L;
+    private static final int NO_ENTRY = -1;
+    private static final int EXACT = 0;
+    private static final int SINGLE_TYPO = 1;
+    private static final int NOT_MATCHED = 2;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String[] fTextsToFind;
+    private final char[][][] fNameWords;  // The normalized words of every text, empty if it has no words
+    private final long[] fHashPowers;  // HASH_BASE powers up to the longest word that is looked up
+    private final int fMinWordLength;  // The shortest and the longest first word that can be matched
+    private final int fMaxWordLength;
+    private final int fMaxNameWordLength;  // The longest word of any name (not only the first words)
+    private final long[] fSlotKeys;  // Open addressing table of the index keys
+    private final int[] fSlotFirstEntries;  // The first entry of every key, NO_ENTRY for an empty slot
+    private final int[] fEntryTexts;  // The text of every entry
+    private final int[] fNextEntries;  // The next entry with the same key, NO_ENTRY for the last one
+    //endregion Fields
+
+    //region Constructor
+    public FuzzyMatchingEngine(Set<String> textToFindSet) {
+        fTextsToFind = textToFindSet.toArray(new String[0]);
+        fNameWords = new char[fTextsToFind.length][][];
+
+        int minWordLength = Integer.MAX_VALUE;
+        int maxWordLength = 0;
+        int maxNameWordLength = 0;
+        int entriesCount = 0;
+        for (int textIndex = 0; textIndex < fTextsToFind.length; textIndex++) {
+            List<String> words = TextNormalizer.normalizeWords(fTextsToFind[textIndex]);
+
+            fNameWords[textIndex] = new char[words.size()][];
+            for (int word = 0; word < words.size(); word++) {
+                fNameWords[textIndex][word] = words.get(word).toCharArray();
+                maxNameWordLength = Math.max(maxNameWordLength, fNameWords[textIndex][word].length);
+            }
+
+            if (!words.isEmpty()) {
+                int firstWordLength = words.get(0).length();
+                minWordLength = Math.min(minWordLength, firstWordLength);
+                maxWordLength = Math.max(maxWordLength, firstWordLength);
+                entriesCount += 1 + (firstWordLength >= MIN_TYPO_LENGTH ? firstWordLength : 0);
+            }
+        }
+
+        fMinWordLength = minWordLength;
+        fMaxWordLength = maxWordLength;
+        fMaxNameWordLength = maxNameWordLength;
+        fHashPowers = new long[maxWordLength + 2];
+        fHashPowers[0] = 1;
+        for (int power = 1; power < fHashPowers.length; power++) {
+            fHashPowers[power] = fHashPowers[power - 1] * HASH_BASE;
+        }
+
+        int slotsCount = Integer.highestOneBit(Math.max(entriesCount, 1) * 2 - 1) * 2;
+        fSlotKeys = new long[slotsCount];
+        fSlotFirstEntries = new int[slotsCount];
+        fEntryTexts = new int[entriesCount];
+        fNextEntries = new int[entriesCount];
+        Arrays.fill(fSlotFirstEntries, NO_ENTRY);
+        buildIndex();
+    }
+
+    /***
+     * Add the first word of every name, and every form of it with a single char deleted, to the index
+     */
+    private void buildIndex() {
+        int entry = 0;
+
+        for (int textIndex = 0; textIndex < fTextsToFind.length; textIndex++) {
+            if (fNameWords[textIndex].length == 0) {
+                continue;  // A text without words (an empty text) is never matched
+            }
+
+            char[] firstWord = fNameWords[textIndex][0];
+            long wordHash = hash(firstWord, firstWord.length);
+            addEntry(createKey(wordHash, firstWord.length), textIndex, entry++);
+
+            if (firstWord.length >= MIN_TYPO_LENGTH) {
+                long prefixHash = 0;
+                for (int deleted = 0; deleted < firstWord.length; deleted++) {
+                    long nextPrefixHash = prefixHash * HASH_BASE + firstWord[deleted];
+                    long deletedHash = getDeletedHash(wordHash, prefixHash, nextPrefixHash, firstWord.length, deleted);
+
+                    addEntry(createKey(deletedHash, firstWord.length - 1), textIndex, entry++);
+                    prefixHash = nextPrefixHash;
+                }
+            }
+        }
+    }
+
+    private void addEntry(long key, int textIndex, int entry) {
+        int slot = findSlot(key);
+
+        fSlotKeys[slot] = key;
+        fEntryTexts[entry] = textIndex;
+        fNextEntries[entry] = fSlotFirstEntries[slot];
+        fSlotFirstEntries[slot] = entry;
+    }
+    //endregion Constructor
+
+    @Override
+    public int getTextToFindCount() {
+        return fTextsToFind.length;
+    }
+
+    @Override
+    public String getTextToFind(int textToFindIndex) {
+        return fTextsToFind[textToFindIndex];
+    }
+
+    /***
+     * A typo or a different case don't start with the same chars as the text, so the LinePreFilter can't be used
+     */
+    @Override
+    public boolean isLinePreFilterSupported() {
+        return false;
+    }
+
+    @Override
+    public void findMatches(CharSequence line, MatchListener listener) {
+        if (fMaxWordLength == 0) {
+            return;  // No text has words
+        }
+
+        LineMatches lineMatches = new LineMatches(line, listener);
+        int wordStart = 0;
+
+        while ((wordStart = TextNormalizer.findWordStart(line, wordStart)) < line.length()) {
+            int wordEnd = TextNormalizer.findWordEnd(line, wordStart);
+            int wordLength = normalizeWord(line, wordStart, wordEnd, lineMatches.fWord);
+
+            boolean isCandidateLength = wordLength >= fMinWordLength - 1 && wordLength <= fMaxWordLength + 1;
+            if (isCandidateLength) {
+                lookupWord(lineMatches, wordStart, wordEnd, wordLength);
+            }
+
+            wordStart = wordEnd;
+        }
+    }
+
+    //region Lookup
+    /***
+     * Look up the word and all its forms with a single char deleted, and report every name it match
+     */
+    private void lookupWord(LineMatches lineMatches, int wordStart, int wordEnd, int wordLength) {
+        char[] word = lineMatches.fWord;
+        long wordHash = hash(word, wordLength);
+
+        lineMatches.fReportedCount = 0;
+        lookupKey(lineMatches, createKey(wordHash, wordLength), wordStart, wordEnd, wordLength);
+
+        long prefixHash = 0;
+        for (int deleted = 0; deleted < wordLength; deleted++) {
+            long nextPrefixHash = prefixHash * HASH_BASE + word[deleted];
+            boolean isSameDeletedForm = deleted > 0 && word[deleted] == word[deleted - 1];
+
+            if (!isSameDeletedForm) {
+                long deletedHash = getDeletedHash(wordHash, prefixHash, nextPrefixHash, wordLength, deleted);
+                lookupKey(lineMatches, createKey(deletedHash, wordLength - 1), wordStart, wordEnd, wordLength);
+            }
+            prefixHash = nextPrefixHash;
+        }
+    }
+
+    private void lookupKey(LineMatches lineMatches, long key, int wordStart, int wordEnd, int wordLength) {
+        int slot = findSlot(key);
+
+        for (int entry = fSlotFirstEntries[slot]; entry != NO_ENTRY; entry = fNextEntries[entry]) {
+            int textIndex = fEntryTexts[entry];
+
+            if (!lineMatches.isReported(textIndex)) {
+                int typos = compareWords(lineMatches.fWord, wordLength, fNameWords[textIndex][0]);
+                if (typos != NOT_MATCHED) {
+                    lineMatches.setReported(textIndex);
+                    reportMatch(lineMatches, textIndex, wordStart, wordEnd, typos);
+                }
+            }
+        }
+    }
+
+    /***
+     * Report a name whose first word matched, a name of a few words is reported only if its other words
+     * match the next words of the line
+     */
+    private void reportMatch(LineMatches lineMatches, int textIndex, int wordStart, int wordEnd, int typos) {
+        char[][] nameWords = fNameWords[textIndex];
+
+        if (nameWords.length == 1) {
+            lineMatches.fListener.onMatch(textIndex, wordStart);
+            return;
+        }
+
+        CharSequence line = lineMatches.fLine;
+        char[] nextWord = lineMatches.getNextWord();
+        int nextWordEnd = wordEnd;
+        for (int word = 1; word < nameWords.length && typos <= SINGLE_TYPO; word++) {
+            int nextWordStart = TextNormalizer.findWordStart(line, nextWordEnd);
+            if (nextWordStart == line.length()) {
+                return;
+            }
+
+            nextWordEnd = TextNormalizer.findWordEnd(line, nextWordStart);
+            int nextWordLength = normalizeWord(line, nextWordStart, nextWordEnd, nextWord);
+            typos += compareWords(nextWord, nextWordLength, nameWords[word]);
+        }
+
+        if (typos <= SINGLE_TYPO && lineMatches.isAfterLastMatch(textIndex, wordStart)) {
+            lineMatches.setLastMatchEnd(textIndex, nextWordEnd);
+            lineMatches.fListener.onMatch(textIndex, wordStart);
+        }
+    }
+
+    /***
+     * @param word the normalized word of the line
+     * @param wordLength the length of the word
+     * @param nameWord a normalized word of a name
+     * @return EXACT, SINGLE_TYPO (only for a name word of at least MIN_TYPO_LENGTH chars) or NOT_MATCHED
+     */
+    private static int compareWords(char[] word, int wordLength, char[] nameWord) {
+        int lengthDifference = wordLength - nameWord.length;
+        if (lengthDifference > 1 || lengthDifference < -1) {
+            return NOT_MATCHED;
+        }
+
+        int commonLength = Math.min(wordLength, nameWord.length);
+        int prefixLength = 0;
+        while (prefixLength < commonLength && word[prefixLength] == nameWord[prefixLength]) {
+            prefixLength++;
+        }
+
+        if (prefixLength == wordLength && prefixLength == nameWord.length) {
+            return EXACT;
+        }
+
+        if (nameWord.length < MIN_TYPO_LENGTH) {
+            return NOT_MATCHED;
+        }
+
+        boolean isSingleTypo;
+        if (lengthDifference == 0) {
+            isSingleTypo = isSameChars(word, prefixLength + 1, nameWord, prefixLength + 1) ||
+                    isAdjacentSwap(word, nameWord, prefixLength);
+        } else if (lengthDifference > 0) {
+            isSingleTypo = isSameChars(word, prefixLength + 1, nameWord, prefixLength);  // A char was added
+        } else {
+            isSingleTypo = isSameChars(word, prefixLength, nameWord, prefixLength + 1);  // A char was removed
+        }
+
+        return isSingleTypo ? SINGLE_TYPO : NOT_MATCHED;
+    }
+
+    /***
+     * @return true if the rest of the word from the word index is the same as the rest of the name word
+     * from the name index (the lengths of the rests are known to be equal)
+     */
+    private static boolean isSameChars(char[] word, int wordIndex, char[] nameWord, int nameIndex) {
+        for (; nameIndex < nameWord.length; wordIndex++, nameIndex++) {
+            if (word[wordIndex] != nameWord[nameIndex]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isAdjacentSwap(char[] word, char[] nameWord, int index) {
+        return index + 1 < nameWord.length && word[index] == nameWord[index + 1] &&
+                word[index + 1] == nameWord[index] && isSameChars(word, index + 2, nameWord, index + 2);
+    }
+    //endregion Lookup
+
+    //region Hashing
+    /***
+     * Write the normalized word to the given array
+     * @return the length of the normalized word, it may be longer than the array (only the first chars are written)
+     */
+    private static int normalizeWord(CharSequence line, int wordStart, int wordEnd, char[] word) {
+        int wordLength = 0;
+
+        for (int index = wordStart; index < wordEnd; index++) {
+            char foldedChar = TextNormalizer.fold(line.charAt(index));
+
+            if (foldedChar != TextNormalizer.DROPPED_CHAR) {
+                if (wordLength < word.length) {
+                    word[wordLength] = foldedChar;
+                }
+                wordLength++;
+            }
+        }
+
+        return wordLength;
+    }
+
+    private static long hash(char[] word, int wordLength) {
+        long hash = 0;
+
+        for (int index = 0; index < wordLength; index++) {
+            hash = hash * HASH_BASE + word[index];
+        }
+
+        return hash;
+    }
+
+    /***
+     * The word hash is the sum of its prefix hash (multiplied by the power of the rest of the word) and the hash
+     * of the rest of the word, so the deleted form hash is the sum of the prefix before the deleted char and the
+     * rest of the word after it
+     */
+    private long getDeletedHash(long wordHash, long prefixHash, long nextPrefixHash, int wordLength, int deleted) {
+        long restPower = fHashPowers[wordLength - 1 - deleted];
+
+        return prefixHash * restPower + (wordHash - nextPrefixHash * restPower);
+    }
+
+    /***
+     * @return the index key of a word hash, mixed with the word length (the steps of the MurmurHash3 finalizer)
+     */
+    private static long createKey(long hash, int length) {
+        long key = hash ^ (long) length << 56;
+
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        return key ^ key >>> 33;
+    }
+
+    /***
+     * @return the slot of the key, or the empty slot where it should be added
+     */
+    private int findSlot(long key) {
+        int mask = fSlotKeys.length - 1;
+        int slot = (int) key & mask;
+
+        while (fSlotFirstEntries[slot] != NO_ENTRY && fSlotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+    //endregion Hashing
+
+    /***
+     * The state of the search of a single line: the normalized word, the names that were already reported
+     * for the current word, and the end of the last match of every name of a few words (so the matches of the
+     * same name never overlap)
+     */
+    private final class LineMatches {
+        private final CharSequence fLine;
+        private final MatchListener fListener;
+        private final char[] fWord;
+        private int[] fReported;
+        private int fReportedCount;
+        private int[] fLastMatchEnds;  // Created only when a name of a few words is matched
+        private char[] fNextWord;  // Created only when a name of a few words is matched
+
+        LineMatches(CharSequence line, MatchListener listener) {
+            fLine = line;
+            fListener = listener;
+            fWord = new char[fMaxWordLength + 1];
+            fReported = new int[4];
+            fReportedCount = 0;
+        }
+
+        boolean isReported(int textIndex) {
+            for (int reported = 0; reported < fReportedCount; reported++) {
+                if (fReported[reported] == textIndex) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        void setReported(int textIndex) {
+            if (fReportedCount == fReported.length) {
+                fReported = Arrays.copyOf(fReported, fReportedCount * 2);
+            }
+
+            fReported[fReportedCount++] = textIndex;
+        }
+
+        boolean isAfterLastMatch(int textIndex, int matchStart) {
+            if (fLastMatchEnds == null) {
+                fLastMatchEnds = new int[fTextsToFind.length];
+            }
+
+            return matchStart >= fLastMatchEnds[textIndex];
+        }
+
+        void setLastMatchEnd(int textIndex, int matchEnd) {
+            fLastMatchEnds[textIndex] = matchEnd;
+        }
+
+        /***
+         * @return the array the next words of the line are normalized to, a word longer than every name word
+         * by more than 1 char never match (only its length is compared), so the array is reused for all of them
+         */
+        char[] getNextWord() {
+            if (fNextWord == null) {
+                fNextWord = new char[fMaxNameWordLength + 1];
+            }
+
+            return fNextWord;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * This class represent a part of an input that is searched by a single ShardWorker.
+ * A local file that is memory mapped is split to byte ranges, every range start in a beginning of a block of
+ * 1000 lines (so the worker know the line offset of its first line, and its chunks report the same blocks
+ * as a single scan), any other input (a url, a compressed file) is a single shard of the whole input.
+ * When the worker is done the shard keep the results of its chunks by their order, every chunk as:
+ *      first line offset, end position and the ChunkMatchesCodec bytes of its results
+ */
+class InputShard {
+    //region CONSTANTS
+    static final long INPUT_END = MappedFileTextSource.FILE_END;  // The end position of the last shard
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;  // In bytes, of the lines counting
+    //endregion CONSTANTS
+
+    //region Fields
+    private final ShardedInput fShardedInput;
+    private final long fStartPosition;
+    private final long fStartLineOffset;
+    private final long fEndPosition;  // INPUT_END for the last shard
+    private int fAttemptsCount;
+    private List<byte[]> fChunkResults;  // null until the shard was searched
+    //endregion Fields
+
+    //region Constructor
+    InputShard(ShardedInput shardedInput, long startPosition, long startLineOffset, long endPosition) {
+        fShardedInput = shardedInput;
+        fStartPosition = startPosition;
+        fStartLineOffset = startLineOffset;
+        fEndPosition = endPosition;
+        fAttemptsCount = 0;
+        fChunkResults = null;
+    }
+    //endregion Constructor
+
+    /***
+     * Split the input to shards of about shardBytes, an input that is not read as a mapped file is a single shard.
+     * The lines of a mapped file are counted in a pass over the file (only the line terminators are searched),
+     * a shard end in the first beginning of a block after shardBytes
+     * @param shardedInput the input to split
+     * @param options the options of the run
+     * @return the shards of the input by their order
+     * @throws IOException in case of failure in reading the file, or if a single line doesn't fit even in a window
+     * of the max size (2GB)
+     */
+    static List<InputShard> split(ShardedInput shardedInput, MatchFinderOptions options) throws IOException {
+        Path filePath = TextSources.getMappedFilePath(shardedInput.getTextToReadUrl(), options);
+        List<InputShard> shards = new ArrayList<>();
+
+        if (filePath == null) {
+            shards.add(new InputShard(shardedInput, 0, 0, INPUT_END));
+            return shards;
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            long shardStart = 0;
+            long shardStartLineOffset = 0;
+            long lineOffset = 0;
+            long windowStart = 0;
+            int windowSize = WINDOW_SIZE;
+
+            while (windowStart < fileSize) {
+                int windowLength = (int) Math.min(windowSize, fileSize - windowStart);
+                boolean isLastWindow = windowStart + windowLength == fileSize;
+                ByteBuffer window = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int lineStart = 0;
+                int lineEnd;
+
+                while ((lineEnd = LineTerminators.findLineEnd(window, lineStart, windowLength, isLastWindow)) >
+                        lineStart) {
+                    long shardEnd = windowStart + lineEnd;
+
+                    lineStart = lineEnd;
+                    lineOffset++;
+                    boolean isShardEnd = lineOffset % MatchFinderManager.CHUNK_SIZE == 0 &&
+                            shardEnd - shardStart >= options.getShardBytes() && shardEnd < fileSize;
+                    if (isShardEnd) {
+                        shards.add(new InputShard(shardedInput, shardStart, shardStartLineOffset, shardEnd));
+                        shardStart = shardEnd;
+                        shardStartLineOffset = lineOffset;
+                    }
+                }
+
+                boolean isWindowTooSmall = lineStart == 0 && !isLastWindow;
+                if (isWindowTooSmall) {
+                    if (windowSize == Integer.MAX_VALUE) {
+                        throw new IOException("No line end was found in " + windowSize + " bytes of " + filePath +
+                                " from position " + windowStart + " (a line that can't be mapped)");
+                    }
+
+                    windowSize = (int) Math.min(2L * windowSize, Integer.MAX_VALUE);
+                }
+
+                windowStart += lineStart;
+            }
+
+            shards.add(new InputShard(shardedInput, shardStart, shardStartLineOffset, INPUT_END));
+            return shards;
+        }
+    }
+
+    //region Chunk results
+    /***
+     * @param chunkMatches the results of a chunk of the shard (on the worker)
+     * @return the results as they are sent to the coordinator and kept by the shard
+     */
+    static byte[] encodeChunkResults(ChunkMatches chunkMatches) {
+        byte[] results = ChunkMatchesCodec.encode(chunkMatches);
+        byte[] chunkResults = new byte[2 * VarLongs.MAX_BYTES + results.length];
+        int offset = VarLongs.write(chunkResults, 0, chunkMatches.getFirstLineOffset());
+
+        offset = VarLongs.write(chunkResults, offset, chunkMatches.getEndPosition());
+        System.arraycopy(results, 0, chunkResults, offset, results.length);
+        return Arrays.copyOf(chunkResults, offset + results.length);
+    }
+
+    /***
+     * @param chunkResults the results of a chunk as they are kept by the shard
+     * @param chunkIndex the index of the chunk in the whole input
+     * @return the results of the chunk
+     */
+    static ChunkMatches decodeChunkResults(byte[] chunkResults, long chunkIndex) {
+        ChunkMatchesCodec.Reader reader = new ChunkMatchesCodec.Reader(chunkResults, 0);
+        long firstLineOffset = reader.next();
+        long endPosition = reader.next();
+
+        return ChunkMatchesCodec.decode(chunkResults, reader.getOffset(), chunkIndex, firstLineOffset, endPosition,
+                null);
+    }
+    //endregion Chunk results
+
+    public ShardedInput getShardedInput() {
+        return fShardedInput;
+    }
+
+    public long getStartPosition() {
+        return fStartPosition;
+    }
+
+    public long getStartLineOffset() {
+        return fStartLineOffset;
+    }
+
+    public long getEndPosition() {
+        return fEndPosition;
+    }
+
+    /***
+     * @return true if the shard is the whole input (read by the TextSource that fit its url)
+     */
+    public boolean isWholeInput() {
+        return fStartPosition == 0 && fEndPosition == INPUT_END;
+    }
+
+    /***
+     * Count an attempt to search the shard (by a worker that failed or crashed)
+     * @return how many attempts failed so far
+     */
+    int addFailedAttempt() {
+        return ++fAttemptsCount;
+    }
+
+    List<byte[]> getChunkResults() {
+        return fChunkResults;
+    }
+
+    void setChunkResults(List<byte[]> chunkResults) {
+        fChunkResults = chunkResults;
+    }
+
+    @Override
+    public String toString() {
+        return fShardedInput.getTextToReadUrl() + " [" + fStartPosition + ", " +
+                (fEndPosition == INPUT_END ? "end" : fEndPosition) + ")";
+    }
+}
@@ -0,0 +1,127 @@
+package bigId.matcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/***
+ * TextSource that read the input text from an InputStream.
+ * When the line terminators can be found directly in the bytes of the charset the stream is split to chunks
+ * of still encoded bytes (that are searched in their bytes when possible), otherwise it is read line by line.
+ */
+class InputStreamTextSource implements TextSource {
+    //region CONSTANTS
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;  // In bytes
+    //endregion CONSTANTS
+
+    //region Fields
+    private final InputStream fInputStream;
+    private final Charset fCharset;
+    private final TextChunker fTextChunker;
+    //endregion Fields
+
+    //region Constructor
+    public InputStreamTextSource(InputStream inputStream, Charset charset, TextChunker textChunker) {
+        fInputStream = inputStream;
+        fCharset = charset;
+        fTextChunker = textChunker;
+    }
+    //endregion Constructor
+
+    @Override
+    public void open() {
+        // The stream is already open
+    }
+
+    /***
+     * Read chunks of data from the InputStream
+     * @throws IOException in case of failure in reading the stream
+     */
+    @Override
+    public void readChunks(TextChunkConsumer consumer) throws IOException {
+        if (LineTerminators.isAsciiCompatible(fCharset)) {
+            readEncodedChunks(consumer);
+        } else {
+            readLinesChunks(consumer);
+        }
+    }
+
+    /***
+     * Read the stream into a buffer and split it to chunks by the line terminators bytes,
+     * a chunk that is not completed in the buffer is moved to the buffer start before the next read
+     * (the buffer is doubled if even a single chunk doesn't fit in it)
+     */
+    private void readEncodedChunks(TextChunkConsumer consumer) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int bufferedBytes = 0;
+        boolean isEndOfInput = false;
+
+        while (!isEndOfInput) {
+            if (bufferedBytes == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            int readBytes = fInputStream.read(buffer, bufferedBytes, buffer.length - bufferedBytes);
+            if (readBytes < 0) {
+                isEndOfInput = true;
+            } else {
+                bufferedBytes += readBytes;
+            }
+
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, bufferedBytes);
+            int chunkStart = 0;
+            int chunkEnd;
+
+            while (chunkStart < bufferedBytes &&
+                    (chunkEnd = fTextChunker.findChunkEnd(bytes, chunkStart, bufferedBytes, isEndOfInput))
+                            != LineTerminators.LINE_END_NOT_FOUND) {
+                ByteBuffer chunkBytes = ByteBuffer.wrap(Arrays.copyOfRange(buffer, chunkStart, chunkEnd));
+
+                consumer.accept(fTextChunker.createEncodedChunk(chunkBytes, fCharset));
+                chunkStart = chunkEnd;
+            }
+
+            System.arraycopy(buffer, chunkStart, buffer, 0, bufferedBytes - chunkStart);
+            bufferedBytes -= chunkStart;
+        }
+    }
+
+    /***
+     * Decode the stream and read it line by line
+     */
+    private void readLinesChunks(TextChunkConsumer consumer) throws IOException {
+        String line;
+        long chunkChars = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(fInputStream, fCharset));
+        ArrayList<String> textChunk = new ArrayList<>(MatchFinderManager.CHUNK_SIZE);
+
+        while ((line = reader.readLine()) != null)
+        {
+            textChunk.add(line);
+            chunkChars += line.length();
+
+            boolean isChunkSizeReached = fTextChunker.isLinesChunkFull(textChunk.size(), chunkChars);
+            if(isChunkSizeReached){
+                consumer.accept(fTextChunker.createLinesChunk(textChunk, chunkChars));
+                // Update to the next task params
+                chunkChars = 0;
+                textChunk = new ArrayList<>(MatchFinderManager.CHUNK_SIZE);
+            }
+        }
+
+        boolean isAnotherTaskNeeded = textChunk.size() > 0;
+        if(isAnotherTaskNeeded){
+            consumer.accept(fTextChunker.createLinesChunk(textChunk, chunkChars));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fInputStream.close();
+    }
+}
@@ -0,0 +1,172 @@
+package bigId.matcher;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/***
+ * This class identify a version of an input, so a scan is resumed from a ScanCheckpoint only when the input was not
+ * changed since the checkpoint was taken.
+ * A http input is identified by the ETag, Last-Modified and length of its response, a local file by its size and
+ * last modified time. A part that is not known (e.g. the server didn't send an ETag) is not compared,
+ * so an input with no known part at all (e.g. a ftp url) can't be validated and is always resumed.
+ */
+final class InputValidator {
+    //region CONSTANTS
+    private static final String NO_ETAG = "";
+    private static final long UNKNOWN_TIME = 0;  // As URLConnection.getLastModified
+    private static final long UNKNOWN_SIZE = -1;
+    static final InputValidator UNKNOWN = new InputValidator(NO_ETAG, UNKNOWN_TIME, UNKNOWN_SIZE);
+    private static final String ETAG_HEADER = "ETag";
+    private static final String WEAK_ETAG_PREFIX = "W/";  // A weak ETag can't be used in a If-Range header
+    private static final String CONTENT_RANGE_HEADER = "Content-Range";
+    private static final String PROBE_REQUEST_METHOD = "HEAD";
+    private static final String HTTP_URL_PREFIX = "http";  // Match both http and https
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String fETag;
+    private final long fLastModified;  // In MS since the epoch
+    private final long fSize;  // In bytes
+    //endregion Fields
+
+    //region Constructor
+    private InputValidator(String eTag, long lastModified, long size) {
+        fETag = eTag;
+        fLastModified = lastModified;
+        fSize = size;
+    }
+    //endregion Constructor
+
+    /***
+     * @param textToReadUrl the url (or local path) to read
+     * @return the validator of the input as it is now: by a HEAD request for a http url,
+     * by the file attributes for a local file, otherwise UNKNOWN
+     * @throws IOException in case of failure in the request or in reading the file attributes
+     */
+    static InputValidator probe(String textToReadUrl) throws IOException {
+        Path localFilePath = TextSources.getLocalFilePath(textToReadUrl);
+        if (localFilePath != null) {
+            return fromFile(localFilePath);
+        }
+
+        if (!textToReadUrl.startsWith(HTTP_URL_PREFIX)) {
+            return UNKNOWN;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(textToReadUrl).openConnection();
+        try {
+            connection.setRequestMethod(PROBE_REQUEST_METHOD);
+            connection.setConnectTimeout(UrlTextSource.CONNECTION_TIMEOUT);
+            connection.setReadTimeout(UrlTextSource.READ_TIMEOUT);
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Probe request failed, response code: " + connection.getResponseCode());
+            }
+
+            return fromResponse(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /***
+     * @param filePath a local file
+     * @return the validator of the file by its size and last modified time
+     * @throws IOException in case of failure in reading the file attributes
+     */
+    static InputValidator fromFile(Path filePath) throws IOException {
+        return new InputValidator(NO_ETAG, Files.getLastModifiedTime(filePath).toMillis(), Files.size(filePath));
+    }
+
+    /***
+     * @param connection a connection that its response headers were received
+     * @return the validator of the input by the response headers, the size is the length of the whole input
+     * (the total of the Content-Range of a partial response), unknown when the response is encoded
+     * @throws IOException in case of failure in getting the response
+     */
+    static InputValidator fromResponse(URLConnection connection) throws IOException {
+        String eTag = connection.getHeaderField(ETAG_HEADER);
+        long size = UNKNOWN_SIZE;
+
+        if (connection.getContentEncoding() == null) {
+            boolean isPartial = connection instanceof HttpURLConnection &&
+                    ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+
+            size = isPartial ? getContentRangeTotal(connection.getHeaderField(CONTENT_RANGE_HEADER)) :
+                    connection.getContentLengthLong();
+        }
+
+        return new InputValidator(eTag != null ? eTag : NO_ETAG, connection.getLastModified(), size);
+    }
+
+    /***
+     * @param contentRange the Content-Range header, as "bytes first-last/total"
+     * @return the total, or UNKNOWN_SIZE when it is not known
+     */
+    private static long getContentRangeTotal(String contentRange) {
+        int totalStart = contentRange != null ? contentRange.lastIndexOf('/') + 1 : 0;
+
+        try {
+            return totalStart > 0 ? Long.parseLong(contentRange.substring(totalStart).trim()) : UNKNOWN_SIZE;
+        } catch (NumberFormatException e) {
+            return UNKNOWN_SIZE;  // "*"
+        }
+    }
+
+    /***
+     * @param other the validator of the input when the checkpoint was taken
+     * @return true if all the parts that both validators know are equal
+     */
+    boolean isSameInput(InputValidator other) {
+        return (fETag.equals(NO_ETAG) || other.fETag.equals(NO_ETAG) || fETag.equals(other.fETag)) &&
+                (fLastModified == UNKNOWN_TIME || other.fLastModified == UNKNOWN_TIME ||
+                        fLastModified == other.fLastModified) &&
+                (fSize == UNKNOWN_SIZE || other.fSize == UNKNOWN_SIZE || fSize == other.fSize);
+    }
+
+    /***
+     * @param other the validator of a followed input (that only grow) when the checkpoint was taken
+     * @return true if the input is not shorter than it was (its ETag and last modified time change when it grow)
+     */
+    boolean isGrownInput(InputValidator other) {
+        return fSize == UNKNOWN_SIZE || other.fSize == UNKNOWN_SIZE || fSize >= other.fSize;
+    }
+
+    /***
+     * @return the value of a If-Range header that ask for a range of this input only, the strong ETag or
+     * otherwise the last modified time, or null when there is none
+     */
+    String getIfRangeValue() {
+        if (!fETag.equals(NO_ETAG) && !fETag.startsWith(WEAK_ETAG_PREFIX)) {
+            return fETag;
+        }
+
+        if (fLastModified == UNKNOWN_TIME) {
+            return null;
+        }
+
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(fLastModified).atOffset(ZoneOffset.UTC));
+    }
+
+    //region Binary format
+    void write(DataOutput output) throws IOException {
+        output.writeUTF(fETag);
+        output.writeLong(fLastModified);
+        output.writeLong(fSize);
+    }
+
+    static InputValidator read(DataInput input) throws IOException {
+        return new InputValidator(input.readUTF(), input.readLong(), input.readLong());
+    }
+    //endregion Binary format
+}
@@ -0,0 +1,79 @@
+package bigId.matcher;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Lock free histogram of durations in nanoseconds, with a bucket for every power of 2
+ * (bucket i hold the durations in [2^(i-1), 2^i)), so recording is a single atomic increment.
+ * The percentiles are estimated by the upper bound of their bucket, so they are at most twice the real value.
+ */
+class LatencyHistogram {
+    //region CONSTANTS
+    private static final int BUCKETS_COUNT = Long.SIZE;  // The durations are never negative
+    //endregion CONSTANTS
+
+    //region Fields
+    private final AtomicLongArray fBucketCounts = new AtomicLongArray(BUCKETS_COUNT);
+    private final LongAdder fCount = new LongAdder();
+    private final LongAdder fTotalNanos = new LongAdder();
+    private final LongAccumulator fMaxNanos = new LongAccumulator(Math::max, 0);
+    //endregion Fields
+
+    /***
+     * @param nanos the duration to record, negative durations are recorded as 0
+     */
+    public void record(long nanos) {
+        long duration = Math.max(nanos, 0);
+
+        fBucketCounts.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(duration));
+        fCount.increment();
+        fTotalNanos.add(duration);
+        fMaxNanos.accumulate(duration);
+    }
+
+    public long getCount() {
+        return fCount.sum();
+    }
+
+    public long getTotalNanos() {
+        return fTotalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return fMaxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    /***
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket that hold the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] bucketCounts = new long[BUCKETS_COUNT];
+        long count = 0;
+
+        for (int bucket = 0; bucket < BUCKETS_COUNT; bucket++) {
+            bucketCounts[bucket] = fBucketCounts.get(bucket);
+            count += bucketCounts[bucket];
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS_COUNT; bucket++) {
+            seen += bucketCounts[bucket];
+
+            if (seen > 0 && seen >= rank) {
+                return Math.min(getMaxNanos(), (1L << bucket) - 1);
+            }
+        }
+
+        return 0;
+    }
+}
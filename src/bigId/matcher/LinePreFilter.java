@@ -0,0 +1,123 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+
+/***
+ * This class is a cheap check that run before the MatchingEngine on every line, and drop the lines
+ * that can't have a match, so the full matching run only on the lines that have a candidate name.
+ * The filter keep a bit for every pair of units (chars, or bytes of encoded texts) that start a text to find,
+ * a line is a candidate only if one of its pairs has its bit set (a text of a single unit set the bit of its unit).
+ * A pair is hashed to 2^16 bits, so the check is a single lookup in a table of 8KB for every unit of the line,
+ * and the lookups don't depend on each other (unlike the transitions of the automaton).
+ * The filter never drop a line with a match, a collision only let through a line that has no match.
+ * Once built the filter is immutable and can be shared between threads.
+ */
+final class LinePreFilter {
+    //region CONSTANTS
+    private static final int HASH_BITS = 16;
+    private static final int HASH_MASK = (1 << HASH_BITS) - 1;
+    private static final int PAIR_HASH_MULTIPLIER = 0x9E37;  // Spread the first unit over the high bits
+    //endregion CONSTANTS
+
+    //region Fields
+    private final long[] fPairBits;  // Bit of the hash of the first two units of every text
+    private final long[] fSingleUnitBits;  // Bit of the hash of every text that has a single unit
+    private final boolean fHasSingleUnitTexts;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * @param texts the texts to find (plain chars, or encoded texts of a char per byte),
+     *              a null or an empty text is never matched
+     */
+    public LinePreFilter(String[] texts) {
+        fPairBits = new long[(1 << HASH_BITS) / Long.SIZE];
+        fSingleUnitBits = new long[(1 << HASH_BITS) / Long.SIZE];
+        boolean hasSingleUnitTexts = false;
+
+        for (String text : texts) {
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+
+            if (text.length() == 1) {
+                setBit(fSingleUnitBits, text.charAt(0) & HASH_MASK);
+                hasSingleUnitTexts = true;
+            } else {
+                setBit(fPairBits, hashPair(text.charAt(0), text.charAt(1)));
+            }
+        }
+
+        fHasSingleUnitTexts = hasSingleUnitTexts;
+    }
+
+    /***
+     * @param matchingEngine the engine the filter is in front of
+     * @return filter of all the texts of the engine, or null when the engine doesn't support a pre filter
+     */
+    static LinePreFilter create(MatchingEngine matchingEngine) {
+        if (!matchingEngine.isLinePreFilterSupported()) {
+            return null;
+        }
+
+        String[] texts = new String[matchingEngine.getTextToFindCount()];
+
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = matchingEngine.getTextToFind(i);
+        }
+
+        return new LinePreFilter(texts);
+    }
+    //endregion Constructor
+
+    private static int hashPair(int firstUnit, int secondUnit) {
+        return (firstUnit * PAIR_HASH_MULTIPLIER ^ secondUnit) & HASH_MASK;
+    }
+
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean isBitSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /***
+     * @param firstUnit the unit in the checked position
+     * @param secondUnit the unit after it (anything when the first unit is the last one)
+     * @return true if a text to find may start in the checked position
+     */
+    boolean isCandidate(int firstUnit, int secondUnit) {
+        return isBitSet(fPairBits, hashPair(firstUnit, secondUnit)) ||
+                (fHasSingleUnitTexts && isBitSet(fSingleUnitBits, firstUnit & HASH_MASK));
+    }
+
+    /***
+     * @param line a decoded line
+     * @return false if the line can't have a match of any text to find
+     */
+    public boolean mayMatch(CharSequence line) {
+        int lastIndex = line.length() - 1;
+
+        for (int i = 0; i < lastIndex; i++) {
+            if (isCandidate(line.charAt(i), line.charAt(i + 1))) {
+                return true;
+            }
+        }
+
+        return lastIndex >= 0 && fHasSingleUnitTexts && isBitSet(fSingleUnitBits, line.charAt(lastIndex) & HASH_MASK);
+    }
+
+    /***
+     * Must be built from the encoded texts (a char per byte)
+     * @param bytes the encoded line
+     * @param index byte index in the line
+     * @param lineEnd index after the line last byte
+     * @return true if an encoded text to find may start in the given index
+     */
+    boolean isCandidate(ByteBuffer bytes, int index, int lineEnd) {
+        int secondUnit = index + 1 < lineEnd ? bytes.get(index + 1) & 0xFF : 0;
+
+        return isCandidate(bytes.get(index) & 0xFF, secondUnit);
+    }
+}
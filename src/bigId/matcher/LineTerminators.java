@@ -0,0 +1,65 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/***
+ * Utils for finding lines in encoded bytes.
+ * The lines are split the same way as BufferedReader.readLine (by '\n', '\r' or "\r\n"),
+ * this is safe only for charsets that encode those chars as the single ASCII bytes.
+ */
+final class LineTerminators {
+    //region CONSTANTS
+    static final int LINE_END_NOT_FOUND = -1;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    //endregion CONSTANTS
+
+    private LineTerminators() {
+    }
+
+    /***
+     * Check if the line terminators can be found directly in the bytes of the given charset
+     * @param charset the charset of the input
+     * @return true if '\r' and '\n' are encoded as single ASCII bytes and every other char never use those bytes
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        byte[] encodedLineTerminators = "\r\nA".getBytes(charset);
+
+        return Arrays.equals(encodedLineTerminators, new byte[]{CARRIAGE_RETURN, LINE_FEED, 'A'}) &&
+                !charset.name().toUpperCase().startsWith("UTF-16") &&
+                !charset.name().toUpperCase().startsWith("UTF-32");
+    }
+
+    /***
+     * Find the end of the line that start in the given index
+     * @param bytes the bytes to search in (absolute indexes are used)
+     * @param lineStart index of the line first byte
+     * @param limit index after the last byte that is available
+     * @param isEndOfInput true if there are no more bytes after the limit
+     * @return index right after the line terminator, LINE_END_NOT_FOUND when more bytes are needed
+     *         in order to find the line end, or lineStart when there are no more lines
+     */
+    static int findLineEnd(ByteBuffer bytes, int lineStart, int limit, boolean isEndOfInput) {
+        for (int i = lineStart; i < limit; i++) {
+            byte currentByte = bytes.get(i);
+
+            if (currentByte == LINE_FEED) {
+                return i + 1;
+            }
+
+            if (currentByte == CARRIAGE_RETURN) {
+                boolean isLastAvailableByte = i + 1 == limit;
+                if (isLastAvailableByte) {
+                    // "\r\n" may be split, only the end of the input tell that this is a single '\r'
+                    return isEndOfInput ? limit : LINE_END_NOT_FOUND;
+                }
+
+                return bytes.get(i + 1) == LINE_FEED ? i + 2 : i + 1;
+            }
+        }
+
+        return isEndOfInput ? limit : LINE_END_NOT_FOUND;
+    }
+}
@@ -0,0 +1,131 @@
+package bigId.matcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/***
+ * This class split lines to the tokens of the TokenIndex: the runs of word chars, by the same rules as WordBoundary,
+ * so a text that start and end with a word char is matched exactly where its tokens follow each other in a line.
+ * Every token is reported with the separator that follow it (the non word chars until the next token),
+ * the separator of the last token of a line end with a LINE_END char, so a text never match across lines.
+ * The separators are kept in a shared dictionary and identified by their id (the common single space is
+ * SPACE_SEPARATOR), the tokenizer is shared by all the searching threads.
+ */
+final class LineTokenizer {
+    //region CONSTANTS
+    static final char LINE_END = '\n';  // Never part of a line
+    static final int SPACE_SEPARATOR = 0;
+    static final int LINE_END_SEPARATOR = 1;  // Token at the very end of its line
+    private static final String SPACE = " ";
+    //endregion CONSTANTS
+
+    //region Fields
+    private final Map<String, Integer> fSeparatorIds;
+    private final List<String> fSeparators;  // By their id
+    //endregion Fields
+
+    /***
+     * Receive the tokens of a line by their order
+     */
+    interface TokenListener {
+        /***
+         * @param line the tokenized line
+         * @param tokenStart char index of the token first char
+         * @param tokenEnd char index after the token last char
+         * @param separatorId the id of the separator that follow the token
+         */
+        void onToken(CharSequence line, int tokenStart, int tokenEnd, int separatorId);
+    }
+
+    //region Constructor
+    public LineTokenizer() {
+        fSeparatorIds = new ConcurrentHashMap<>();
+        fSeparators = new CopyOnWriteArrayList<>();
+        addSeparator(SPACE);
+        addSeparator(String.valueOf(LINE_END));
+    }
+    //endregion Constructor
+
+    private synchronized int addSeparator(String separator) {
+        Integer separatorId = fSeparatorIds.get(separator);
+
+        if (separatorId == null) {
+            separatorId = fSeparators.size();
+            fSeparators.add(separator);
+            fSeparatorIds.put(separator, separatorId);
+        }
+
+        return separatorId;
+    }
+
+    /***
+     * @return all the separators by their id
+     */
+    public List<String> getSeparators() {
+        return fSeparators;
+    }
+
+    /***
+     * Split a line to its tokens
+     * @param line the line (without the line terminators)
+     * @param listener get every token and the id of its separator
+     */
+    public void tokenize(CharSequence line, TokenListener listener) {
+        int lineLength = line.length();
+        int tokenStart = findNextToken(line, 0);
+
+        while (tokenStart < lineLength) {
+            int tokenEnd = findTokenEnd(line, tokenStart);
+            int nextTokenStart = findNextToken(line, tokenEnd);
+
+            listener.onToken(line, tokenStart, tokenEnd, getSeparatorId(line, tokenEnd, nextTokenStart));
+            tokenStart = nextTokenStart;
+        }
+    }
+
+    /***
+     * @return the id of the separator between the index and the next token (or the line end)
+     */
+    private int getSeparatorId(CharSequence line, int separatorStart, int separatorEnd) {
+        boolean isLineEnd = separatorEnd == line.length();
+
+        if (isLineEnd && separatorStart == separatorEnd) {
+            return LINE_END_SEPARATOR;
+        }
+
+        if (!isLineEnd && separatorEnd - separatorStart == 1 && line.charAt(separatorStart) == ' ') {
+            return SPACE_SEPARATOR;
+        }
+
+        String separator = line.subSequence(separatorStart, separatorEnd) + (isLineEnd ? String.valueOf(LINE_END) : "");
+        Integer separatorId = fSeparatorIds.get(separator);
+
+        return separatorId != null ? separatorId : addSeparator(separator);
+    }
+
+    /***
+     * @return index of the first word char from the given index, or the line length
+     */
+    static int findNextToken(CharSequence line, int index) {
+        while (index < line.length() && !WordBoundary.isWordAt(line, index)) {
+            index += Character.charCount(Character.codePointAt(line, index));
+        }
+
+        return index;
+    }
+
+    /***
+     * @return index after the last word char of the token that start in the given index
+     */
+    static int findTokenEnd(CharSequence line, int tokenStart) {
+        int index = tokenStart;
+
+        while (index < line.length() && WordBoundary.isWordAt(line, index)) {
+            index += Character.charCount(Character.codePointAt(line, index));
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,44 @@
+package bigId.matcher;
+
+import java.util.Iterator;
+import java.util.List;
+
+/***
+ * TextChunk of lines that were already decoded into Strings
+ */
+class LinesTextChunk extends TextChunk {
+    //region Fields
+    private final List<String> fLines;
+    private final long fCharsCount;
+    //endregion Fields
+
+    //region Constructor
+    public LinesTextChunk(long chunkIndex, long firstLineOffset, List<String> lines, long charsCount) {
+        super(chunkIndex, firstLineOffset, lines.size(), UNKNOWN_POSITION);
+        fLines = lines;
+        fCharsCount = charsCount;
+    }
+    //endregion Constructor
+
+    @Override
+    public long getSize() {
+        return fCharsCount;
+    }
+
+    @Override
+    public Iterator<CharSequence> iterator() {
+        Iterator<String> linesIterator = fLines.iterator();
+
+        return new Iterator<CharSequence>() {
+            @Override
+            public boolean hasNext() {
+                return linesIterator.hasNext();
+            }
+
+            @Override
+            public CharSequence next() {
+                return linesIterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * TextSource that read a local file by memory mapping it.
+ * The file is mapped in windows (a single mapping is limited to 2GB), each window is split to chunks
+ * by the TextChunker and every chunk is a slice of the mapped window, so no bytes are copied
+ * and the decoding of the lines is done by the searching tasks.
+ * A followed file (a log that keep growing) can be read again and again, every readChunks call read only the bytes
+ * that were appended since the last call, and the last line is taken only when its line terminator was written.
+ * A shard of a file is read from the start position of its TextChunker up to its end position (a line start).
+ */
+class MappedFileTextSource implements TextSource {
+    //region CONSTANTS
+    static final long FILE_END = -1;  // The end position of a source that read up to the end of the file
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;  // In bytes
+    //endregion CONSTANTS
+
+    //region Fields
+    private final Path fFilePath;
+    private final Charset fCharset;
+    private final TextChunker fTextChunker;
+    private final boolean fIsFollowing;
+    private final long fEndPosition;  // FILE_END to read up to the end of the file
+    private FileChannel fFileChannel;
+    //endregion Fields
+
+    //region Constructor
+    public MappedFileTextSource(Path filePath, Charset charset, TextChunker textChunker) {
+        this(filePath, charset, textChunker, false);
+    }
+
+    /***
+     * @param filePath the file to read
+     * @param charset the charset of the file
+     * @param textChunker split the file to chunks
+     * @param isFollowing true if the file keep growing, so its end is not the end of the input
+     */
+    public MappedFileTextSource(Path filePath, Charset charset, TextChunker textChunker, boolean isFollowing) {
+        this(filePath, charset, textChunker, isFollowing, FILE_END);
+    }
+
+    /***
+     * @param filePath the file to read
+     * @param charset the charset of the file
+     * @param textChunker split the shard to chunks, start from the shard start position
+     * @param endPosition the byte position right after the shard, must be a beginning of a line
+     */
+    public MappedFileTextSource(Path filePath, Charset charset, TextChunker textChunker, long endPosition) {
+        this(filePath, charset, textChunker, false, endPosition);
+    }
+
+    private MappedFileTextSource(Path filePath, Charset charset, TextChunker textChunker, boolean isFollowing,
+                                 long endPosition) {
+        fFilePath = filePath;
+        fCharset = charset;
+        fTextChunker = textChunker;
+        fIsFollowing = isFollowing;
+        fEndPosition = endPosition;
+    }
+    //endregion Constructor
+
+    @Override
+    public void open() throws IOException {
+        fFileChannel = FileChannel.open(fFilePath, StandardOpenOption.READ);
+    }
+
+    /***
+     * Map the file window by window and split each window to chunks.
+     * A window always start in a beginning of a chunk, a chunk that doesn't end inside its window
+     * is the beginning of the next window (the window is doubled if even a single chunk doesn't fit in it).
+     * A resumed scan start mapping from the start position of the TextChunker, and every later call of a followed
+     * file start from the position after the last chunk (the end of the file is not the end of its last line).
+     * A shard end in its end position, as if it was the end of the file
+     * @throws IOException in case of failure in mapping the file, if a followed file became shorter,
+     * or if a single chunk doesn't fit even in a window of the max size (2GB)
+     */
+    @Override
+    public void readChunks(TextChunkConsumer consumer) throws IOException {
+        long fileSize = fEndPosition != FILE_END ? Math.min(fEndPosition, fFileChannel.size()) : fFileChannel.size();
+        long windowStart = fTextChunker.getNextPosition();
+        int windowSize = WINDOW_SIZE;
+
+        if (fileSize < windowStart) {
+            throw new IOException("The followed file " + fFilePath + " was truncated to " + fileSize + " bytes");
+        }
+
+        while (windowStart < fileSize) {
+            int windowLength = (int) Math.min(windowSize, fileSize - windowStart);
+            boolean isLastWindow = windowStart + windowLength == fileSize;
+            ByteBuffer window = fFileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            int chunkStart = 0;
+            int chunkEnd;
+
+            while (chunkStart < windowLength &&
+                    (chunkEnd = findChunkEnd(window, chunkStart, windowLength, isLastWindow)) > chunkStart) {
+                consumer.accept(fTextChunker.createEncodedChunk(slice(window, chunkStart, chunkEnd), fCharset));
+                chunkStart = chunkEnd;
+            }
+
+            boolean isWindowTooSmall = chunkStart == 0 && !isLastWindow;
+            if (isWindowTooSmall) {
+                if (windowSize == Integer.MAX_VALUE) {
+                    throw new IOException("No chunk end was found in " + windowSize + " bytes of " + fFilePath +
+                            " from position " + windowStart + " (a line or a chunk that can't be mapped)");
+                }
+
+                windowSize = (int) Math.min(2L * windowSize, Integer.MAX_VALUE);
+            }
+
+            windowStart += chunkStart;
+            if (isLastWindow && fIsFollowing) {
+                break;  // The rest of the file is a line that was not fully written yet
+            }
+        }
+    }
+
+    /***
+     * @return index right after the chunk that start in the given index, LINE_END_NOT_FOUND (or chunkStart)
+     * when there is no chunk. The last chunk of a followed file hold only its whole lines
+     */
+    private int findChunkEnd(ByteBuffer window, int chunkStart, int windowLength, boolean isLastWindow) {
+        int chunkEnd = fTextChunker.findChunkEnd(window, chunkStart, windowLength, isLastWindow && !fIsFollowing);
+
+        if (chunkEnd == LineTerminators.LINE_END_NOT_FOUND && isLastWindow && fIsFollowing) {
+            chunkEnd = fTextChunker.findAvailableChunkEnd(window, chunkStart, windowLength);
+        }
+
+        return chunkEnd;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+
+        slice.position(start).limit(end);
+        return slice.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fFileChannel != null) {
+            fFileChannel.close();
+        }
+    }
+}
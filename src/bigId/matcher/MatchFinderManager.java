@@ -1,14 +1,35 @@
 package bigId.matcher;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.*;
 import java.util.concurrent.*;
 
 /***
  * This class is responsible to give simple matching service to a certain client.
  * The client provide a valid URL to read input from, set of string to search for and a valid output file path.
+ * A local file (a file url or a plain path) is memory mapped instead of being read through a single stream.
+ * The input is read with the charset of the options (UTF-8 by default, not the platform charset), UTF-8 and
+ * US-ASCII inputs are searched directly in their bytes.
+ * The input is searched in chunks of whole lines by the ChunkingMode of the options, the output is always
+ * reported by blocks of 1000 lines no matter how the input was split.
+ * When the metrics are enabled in the options the run is instrumented by MatchFinderMetrics
+ * (a JMX MXBean while the run is alive, and an optional periodic JSON snapshot file).
+ * When a checkpoint file is set in the options the scan is checkpointed every interval, a scan that failed in
+ * reading its input keep its last checkpoint, and running it again resume from the checkpoint input position
+ * (by a range request or a seek) instead of reading the whole input again.
+ * When an index file is set in the options the scan also build a TokenIndex of the input,
+ * that can answer later queries of any texts without a scan.
+ * When following is enabled in the options a local file that keep growing (a log) is not read once:
+ * after it was scanned the file is polled every interval, only the lines that were appended since the last poll
+ * are read (continuing the line offsets) and the new results of every refresh are written as soon as they were
+ * searched, until the idle timeout or stopFollowing. With a checkpoint file the next follow of the same file
+ * start after the lines that were already scanned.
+ * In the summary output modes (MATCH_COUNTS, TOP_MATCH_COUNTS, SAMPLED_LOCATIONS) the searching tasks only count
+ * the matches (and keep the first of them), so the memory and the aggregation don't depend on the matches count.
+ * When a result cache file is set in the options the results of every chunk are kept by a hash of its content,
+ * a rescan of an input that changed only a bit search only the chunks that are not in the cache.
+ * With the FUZZY matching engine the names are matched regardless of the case and the diacritics and with a single
+ * typo (approximate matches), every match is reported under the dictionary name it matched.
  * The class output is:
  *      for each chunk in length of 1000 lines and for each string in the set:
  *          <Name> --> [[lineOffset=<Match_1 relative chink offset>, charOffset=<Match_1 relative char in chunk offset]>*]
@@ -18,37 +39,184 @@ import java.util.concurrent.*;
  */
 public class MatchFinderManager {
     //region CONSTANTS
-    static final String POISON_PILL = "poisonPill";  // Poison pill unique key, using to kill aggregator thread
-    private static final String REQUEST_METHOD = "GET";
-    private static final int CONNECTION_TIMEOUT = 30 * 1000;  // In MS
-    private static final int READ_TIMEOUT = 10 * 1000;  // In MS
-    private static final int CHUNK_SIZE = 1000;  // How many lines to read for each search chunk
+    static final int CHUNK_SIZE = 1000;  // How many lines are in each reported block (and in a FIXED_LINES chunk)
+    static final long ESTIMATED_CHUNK_MEMORY = CHUNK_SIZE * 256L;  // Only size the queues, ~128 chars per line
     //endregion CONSTANTS
 
     //region Fields
-    private final Set<String> fTextToFindSet;
-    private final BlockingQueue<Map<String, List<MatchInLineLocation>>> fMatchingPairsToAggregate;
+    private final MatchingEngine fMatchingEngine;
+    private final LinePreFilter fLinePreFilter;  // null when the pre filter is disabled
+    private final MatchFinderOptions fOptions;
+    private final ChunkSizeTuner fChunkSizeTuner;
+    private final BlockingQueue<ChunkMatches> fMatchingPairsToAggregate;
+    private final PipelineStatistics fPipelineStatistics;
+    private final ChunkMemoryBudget fChunkMemoryBudget;
+    private final MatchFinderMetrics fMetrics;
+    private final ChunkMatchesSink fChunkMatchesSink;
+    private final ScanCheckpointer fCheckpointer;  // null when checkpoints are disabled
+    private final ChunkResultCache fResultCache;  // null when there is no result cache
+    private ScanCheckpoint fResumeCheckpoint;  // null when the scan start from the input beginning
+    private ChunksAggregator fChunksAggregator;
+    private TokenIndexWriter fTokenIndexWriter;  // null when no token index is built
+    private LineTokenizer fLineTokenizer;  // null when no token index is built
+    private ConcurrentChunkResults fConcurrentChunkResults;  // Used only in CONCURRENT aggregation mode
+    private final boolean fIsFollowing;
+    private final CountDownLatch fFollowStopSignal;
+    private TextChunker fTextChunker;
     private String fTextToReadUrl;
-    private ExecutorService fMatchSearcherExecutor;
-    private HttpURLConnection fUrlConnection;
+    private ThreadPoolExecutor fMatchSearcherExecutor;
+    private TextSource fTextSource;
+    private ExecutorService fReaderExecutor;  // The I/O thread of the execution model that read the text source
     private Thread fAggregator;
     private String fOutputFilePath;
+    private long fRunStartNanos;
+    private long fFirstChunkNanos;
+    private long fChunksCount;
     //endregion Fields
 
     //region Constructor
     public MatchFinderManager(Set<String> textToFindSet, String textToReadUrl, String outputFilePath) {
-        fTextToFindSet = textToFindSet;
+        this(textToFindSet, textToReadUrl, outputFilePath, new MatchFinderOptions());
+    }
+
+    public MatchFinderManager(Set<String> textToFindSet, String textToReadUrl, String outputFilePath,
+                              MatchFinderOptions options) {
+        fOptions = options;
+        fMatchingEngine = options.getMatchingEngineType().createEngine(textToFindSet);
+        fLinePreFilter = options.isLinePreFilterEnabled() ? LinePreFilter.create(fMatchingEngine) : null;
         fTextToReadUrl = textToReadUrl;
-        fMatchingPairsToAggregate = new LinkedBlockingDeque<>();
         fOutputFilePath = outputFilePath;
-        initializeMatchSearcherExecutor();
+        fChunkSizeTuner = new ChunkSizeTuner(options);
+        fMetrics = MatchFinderMetrics.create(options, fMatchingEngine);
+
+        int numOfCores = getSearchingThreadsCount();
+        fPipelineStatistics = initializePipelineStatistics(numOfCores);
+        fChunkMemoryBudget = new ChunkMemoryBudget(options.getPipelineMemoryBudget(), fPipelineStatistics);
+        fMatchingPairsToAggregate = new LinkedBlockingDeque<>(fPipelineStatistics.getAggregationQueueCapacity());
+        fChunkMatchesSink = initializeChunkMatchesSink();
+        fCheckpointer = initializeCheckpointer();
+        fResultCache = options.getResultCacheFilePath() != null ? new ChunkResultCache(options, fMatchingEngine) : null;
+        fIsFollowing = initializeFollowing();
+        fFollowStopSignal = new CountDownLatch(1);
+        initializeTokenIndexWriter();
+        initializeMatchSearcherExecutor(numOfCores);
+    }
+
+    /***
+     * Create the writer of the token index, when there is an index file and the aggregation mode is
+     * AGGREGATOR_THREAD (the CONCURRENT mode would keep the tokens of all the chunks until the end)
+     */
+    private void initializeTokenIndexWriter() {
+        if (fOptions.getIndexFilePath() == null) {
+            return;
+        }
+
+        if (!isAggregatorThreadUsed()) {
+            System.err.println("A token index is built only in AGGREGATOR_THREAD aggregation mode, disabled");
+            return;
+        }
+
+        fLineTokenizer = new LineTokenizer();
+        fTokenIndexWriter = new TokenIndexWriter(fOptions.getIndexFilePath(), fTextToReadUrl, fLineTokenizer);
+    }
+
+    /***
+     * @return The checkpointer of the scan, or null when there is no checkpoint file or the aggregation mode
+     * doesn't support checkpoints (the CONCURRENT mode aggregate only when all the input was read),
+     * or the output mode is a summary mode (a checkpoint hold the locations of the texts, not their counts)
+     */
+    private ScanCheckpointer initializeCheckpointer() {
+        if (fOptions.getCheckpointFilePath() == null) {
+            return null;
+        }
+
+        if (!isAggregatorThreadUsed()) {
+            System.err.println("Checkpoints are supported only in AGGREGATOR_THREAD aggregation mode, disabled");
+            return null;
+        }
+
+        if (fOptions.getOutputMode().isSummary()) {
+            System.err.println("Checkpoints are not supported in " + fOptions.getOutputMode() + " output mode, disabled");
+            return null;
+        }
+
+        return new ScanCheckpointer(fOptions, fTextToReadUrl, fMatchingEngine);
     }
 
-    private void initializeMatchSearcherExecutor() {
-        int numOfCores = Runtime.getRuntime().availableProcessors() - 1;  // -1 because of the Aggregator thread
+    /***
+     * @return true if the input is followed, following need a local file that is memory mapped
+     * and an aggregator thread (that write the results of every refresh)
+     */
+    private boolean initializeFollowing() {
+        if (!fOptions.isFollowEnabled()) {
+            return false;
+        }
+
+        if (!isAggregatorThreadUsed()) {
+            System.err.println("Following is supported only in AGGREGATOR_THREAD aggregation mode, scanning once");
+            return false;
+        }
 
-        numOfCores = Math.max(numOfCores, 1);
-        fMatchSearcherExecutor = Executors.newFixedThreadPool(numOfCores);
+        if (!TextSources.isFollowSupported(fTextToReadUrl, fOptions)) {
+            System.err.println("Only a local file in an ASCII compatible charset can be followed, scanning once");
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isAggregatorThreadUsed() {
+        return fOptions.getAggregationMode() == AggregationMode.AGGREGATOR_THREAD;
+    }
+
+    /***
+     * @return how many searching threads to use, a core is reserved only when there is an aggregator thread
+     */
+    private int getSearchingThreadsCount() {
+        int numOfCores = Runtime.getRuntime().availableProcessors();
+
+        if (isAggregatorThreadUsed()) {
+            numOfCores--;  // -1 because of the Aggregator thread
+        }
+
+        return Math.max(numOfCores, 1);
+    }
+
+    /***
+     * @return The sink the MatchSearcher tasks send their results to, depending on the aggregation mode
+     */
+    private ChunkMatchesSink initializeChunkMatchesSink() {
+        if (isAggregatorThreadUsed()) {
+            return new AggregationQueueSink(fMatchingPairsToAggregate, fPipelineStatistics);
+        }
+
+        fConcurrentChunkResults = new ConcurrentChunkResults();
+        return fConcurrentChunkResults;
+    }
+
+    /***
+     * Split the pipeline memory budget between the searching tasks queue and the aggregation queue,
+     * by the estimated chunk memory. The bytes of the waiting chunks are bounded by the ChunkMemoryBudget
+     * (the real chunks may be much bigger than the estimation, e.g. with long lines)
+     * @param numOfCores how many searching threads there are
+     * @return PipelineStatistics that hold the capacity of both queues
+     */
+    private PipelineStatistics initializePipelineStatistics(int numOfCores) {
+        long chunksInBudget = fOptions.getPipelineMemoryBudget() / fChunkSizeTuner.getEstimatedChunkMemory();
+        int queueCapacity = (int) Math.min(Math.max(chunksInBudget / 2, numOfCores), Integer.MAX_VALUE);
+
+        return new PipelineStatistics(queueCapacity, queueCapacity);
+    }
+
+    /***
+     * The executor has a bounded tasks queue, when it is full the reader is blocked until a task is taken
+     * @param numOfCores how many searching threads to use
+     */
+    private void initializeMatchSearcherExecutor(int numOfCores) {
+        fMatchSearcherExecutor = new ThreadPoolExecutor(numOfCores, numOfCores,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fPipelineStatistics.getSearchingTasksQueueCapacity()),
+                new BlockingSubmissionHandler(fPipelineStatistics));
     }
     //endregion Constructor
 
@@ -56,61 +224,176 @@ public class MatchFinderManager {
         searchAndAggregate();
     }
 
+    /***
+     * Stop following the input (follow mode), the run end when the lines that were already read were searched
+     * and their results were written. Can be called from any thread
+     */
+    public void stopFollowing() {
+        fFollowStopSignal.countDown();
+    }
+
+    /***
+     * @return the queues capacity, peak depth and stall times of the last run
+     */
+    public PipelineStatistics getPipelineStatistics() {
+        return fPipelineStatistics;
+    }
+
+    /***
+     * @return the runtime metrics of the last run, MatchFinderMetrics.isEnabled is false if they were not collected
+     */
+    public MatchFinderMetrics getMetrics() {
+        return fMetrics;
+    }
+
     /***
      * This method responsible to commit all the action that necessary
      * in order to make this class work correctly
-     * First initializing Aggregator thread of type ChunksAggregator
-     * Second open a http connection and read the input 1000 lines at a time
+     * First initializing Aggregator thread of type ChunksAggregator (unless the aggregation mode is CONCURRENT)
+     * Second open the text source (http connection or a local file) and read the input chunk by chunk
      * for each chunk of lines create a task of type MatchSearcher
      * and wait all the tasks to end (Including the aggregation task)
+     * In CONCURRENT aggregation mode the collected chunks are aggregated only when all the tasks are done
+     * When checkpoints are enabled the scan first load the checkpoint to resume from (if there is one)
+     * When there is a result cache it is loaded first and written back when all the tasks are done
+     * In follow mode the input is read again every poll interval until following is stopped
      */
     private void searchAndAggregate() {
+        fRunStartNanos = System.nanoTime();
+        fMetrics.start(fOptions, () -> fMatchSearcherExecutor.getQueue().size(), fMatchingPairsToAggregate::size);
+
         try {
-            initializeAggregator();
-            openUrlConnection();
+            if (fCheckpointer != null) {
+                fResumeCheckpoint = fCheckpointer.loadResumeCheckpoint(fIsFollowing);
+            }
+            if (fResultCache != null) {
+                fResultCache.load();
+            }
+            if (fResumeCheckpoint != null && fTokenIndexWriter != null) {
+                System.err.println("A resumed scan doesn't read all the input, the token index is not built");
+                fTokenIndexWriter = null;
+                fLineTokenizer = null;
+            }
+            if (isAggregatorThreadUsed()) {
+                initializeAggregator();
+            }
+            openTextSource();
             startAllSearchingTasks();
+            if (fIsFollowing) {
+                followAppendedLines();
+            }
             joinAllSearchingTasks();
+            saveResultCache();
+            if (!isAggregatorThreadUsed()) {
+                aggregateConcurrentResults();
+            }
         } catch (IOException | InterruptedException e) {
             e.printStackTrace();
             System.err.println(e.getMessage());
+            if (fCheckpointer != null && e instanceof IOException) {
+                keepFailedScanCheckpoint();
+            }
+            saveResultCache();  // The results of the chunks that were searched are kept for the next run
             System.exit(1);
         } finally {
-            terminateAggregator();
-            disconnectFromUrlConnection();
+            if (isAggregatorThreadUsed()) {
+                terminateAggregator();
+            }
+            closeTextSource();
+            fMetrics.stop();
+            System.err.println("Pipeline: " + fPipelineStatistics);
+            reportCompiledPatterns();
+            reportRunTimes();
+            if (fMetrics.isEnabled()) {
+                System.err.println("Metrics: " + fMetrics);
+            }
+        }
+
+        if (fChunksAggregator != null && !fChunksAggregator.isCompleted()) {
+            System.exit(1);  // A chunk was not searched (or the results were not written)
+        }
+    }
+
+    /***
+     * Report how many patterns the REGEX engine compiled
+     */
+    private void reportCompiledPatterns() {
+        if (fMatchingEngine instanceof RegexMatchingEngine) {
+            System.err.println("Compiled " + ((RegexMatchingEngine) fMatchingEngine).getCompiledPatternsCount() +
+                    " patterns");
         }
     }
 
+    /***
+     * Report the startup time (until the first chunk was read) and the throughput of the run's execution model
+     */
+    private void reportRunTimes() {
+        long runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fRunStartNanos);
+        long startupMillis = fChunksCount > 0 ? TimeUnit.NANOSECONDS.toMillis(fFirstChunkNanos - fRunStartNanos) : runMillis;
+        long chunksPerSecond = fChunksCount * 1000 / Math.max(runMillis, 1);
+
+        System.err.println("Execution model " + fOptions.getExecutionModel() + ": startup " + startupMillis + " ms, " +
+                fChunksCount + " chunks in " + runMillis + " ms (" + chunksPerSecond + " chunks/s), chunking " +
+                fChunkSizeTuner);
+    }
+
+    /***
+     * Write the result cache back to its file and report its hits and misses
+     */
+    private void saveResultCache() {
+        if (fResultCache == null) {
+            return;
+        }
+
+        fResultCache.save();
+        System.err.println("Result cache: " + fResultCache);
+    }
+
     //region MatchSearching Utils
     /***
-     * Read chunks of data from the HTTP connection (1000 lines)
-     * and create new MatchSearcher task
-     * @throws IOException in case of failure in getting the url InputStream
-     */
-    private void startAllSearchingTasks() throws IOException {
-        // read the output from the server
-        InputStream inputStream = getConnectionInputStream();
-        String line;
-        long currentLineOffset = 0;
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        ArrayList<String> textChunk = new ArrayList<>(CHUNK_SIZE);
-
-        while ((line = reader.readLine()) != null)
-        {
-            textChunk.add(line);
-
-            boolean isChunkSizeReached = textChunk.size() == CHUNK_SIZE;
-            if(isChunkSizeReached){
-                createSingleSearchingTask(textChunk, currentLineOffset);
-                // Update to the next task params
-                currentLineOffset += CHUNK_SIZE;
-                textChunk = new ArrayList<>(CHUNK_SIZE);
+     * Read chunks of data from the text source (by the chunking mode)
+     * and create new MatchSearcher task for each of them, on the reader thread
+     * @throws IOException in case of failure in reading the text source
+     * @throws InterruptedException in case the run was interrupted while waiting for the reader
+     */
+    private void startAllSearchingTasks() throws IOException, InterruptedException {
+        runOnReaderThread(() -> {
+            fTextSource.readChunks(this::createSingleSearchingTask);
+            return null;
+        });
+    }
+
+    /***
+     * Read the lines that were appended to the followed file every poll interval, the aggregator is told
+     * when all the chunks of a refresh were read (so it write their results when they were searched).
+     * Stop when following was stopped or when no line was appended for the idle timeout
+     * @throws IOException in case of failure in reading the file (or if it was truncated)
+     * @throws InterruptedException In case of operating-system or client interrupt
+     */
+    private void followAppendedLines() throws IOException, InterruptedException {
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(fOptions.getFollowIdleTimeoutMillis());
+        long lastAppendNanos = System.nanoTime();
+
+        endRefresh();
+        while (!fFollowStopSignal.await(fOptions.getFollowPollIntervalMillis(), TimeUnit.MILLISECONDS)) {
+            long refreshFirstChunkIndex = fTextChunker.getNextChunkIndex();
+
+            startAllSearchingTasks();
+            if (fTextChunker.getNextChunkIndex() > refreshFirstChunkIndex) {
+                endRefresh();
+                lastAppendNanos = System.nanoTime();
+            } else if (idleTimeoutNanos > 0 && System.nanoTime() - lastAppendNanos >= idleTimeoutNanos) {
+                break;
             }
         }
+    }
 
-        boolean isAnotherTaskNeeded = textChunk.size() > 0;
-        if(isAnotherTaskNeeded){
-            createSingleSearchingTask(textChunk, currentLineOffset);
-        }
+    /***
+     * Tell the aggregator that all the chunks of the refresh were read
+     * @throws InterruptedException In case of operating-system or client interrupt
+     */
+    private void endRefresh() throws InterruptedException {
+        fMatchingPairsToAggregate.put(ChunkMatches.createRefreshEnd(fTextChunker.getNextChunkIndex()));
     }
 
     /***
@@ -124,40 +407,102 @@ public class MatchFinderManager {
 
     /***
      * Create single MatchSearcher task
-     * and send an execution task to the Executor
+     * and send an execution task to the Executor (when the chunk bytes are in the pipeline memory budget)
      * @param textChunk All lines to search in
-     * @param currentLineOffset Relative line offset of all input text
      */
-    private void createSingleSearchingTask(ArrayList<String> textChunk, long currentLineOffset) {
-        MatchSearcher matcher = new MatchSearcher(fMatchingPairsToAggregate,
+    private void createSingleSearchingTask(TextChunk textChunk) {
+        if (fChunksCount++ == 0) {
+            fFirstChunkNanos = System.nanoTime();
+        }
+        fMetrics.onChunkRead(textChunk.getSize(), textChunk.getLinesCount());
+
+        MatchSearcher matcher = new MatchSearcher(fChunkMatchesSink,
                 textChunk,
-                fTextToFindSet,
-                currentLineOffset);
+                fMatchingEngine,
+                fLinePreFilter,
+                fChunkSizeTuner,
+                fMetrics,
+                fLineTokenizer,
+                fOptions.getMaxLocationsPerText(),
+                fResultCache);
 
-        fMatchSearcherExecutor.execute(matcher);
+        fChunkMemoryBudget.execute(fMatchSearcherExecutor, textChunk.getSize(), matcher);
+        fPipelineStatistics.updateSearchingTasksQueueDepth(fMatchSearcherExecutor.getQueue().size());
     }
     //endregion MatchSearching Utils
 
     //region Aggregator Utils
 
     /***
-     * Initialization of the ChunksAggregator thread
+     * Initialization of the ChunksAggregator thread, resumed from the checkpoint when there is one
      */
     private void initializeAggregator() {
-        fAggregator = new Thread(new ChunksAggregator(fMatchingPairsToAggregate, fOutputFilePath));
+        fChunksAggregator = new ChunksAggregator(fMatchingPairsToAggregate,
+                fMatchingEngine,
+                fOutputFilePath,
+                fOptions.getOutputMode(),
+                fMetrics);
+        fChunksAggregator.setSummarySizes(fOptions.getTopMatchCountsSize(), fOptions.getMaxLocationsPerText());
+        if (fCheckpointer != null) {
+            fChunksAggregator.enableCheckpoints(fCheckpointer, fResumeCheckpoint);
+        }
+        if (fTokenIndexWriter != null) {
+            fChunksAggregator.enableTokenIndex(fTokenIndexWriter);
+        }
+        if (fIsFollowing) {
+            fChunksAggregator.enableFollowing();
+        }
 
+        fAggregator = new Thread(fChunksAggregator);
         fAggregator.start();
     }
 
+    /***
+     * When reading the input failed, let the tasks of the chunks that were read end
+     * and the aggregator write a final checkpoint of them, so the scan can be resumed from it
+     */
+    private void keepFailedScanCheckpoint() {
+        if (fChunksAggregator == null) {
+            return;
+        }
+
+        fChunksAggregator.markInputFailed();
+
+        try {
+            joinAllSearchingTasks();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        terminateAggregator();
+        System.err.println("Run the scan again to resume it from the checkpoint " +
+                fCheckpointer.getCheckpointFilePath());
+    }
+
+    /***
+     * Aggregate and write the chunks that the MatchSearcher tasks stored in the ConcurrentChunkResults
+     */
+    private void aggregateConcurrentResults() {
+        fChunksAggregator = new ChunksAggregator(fMatchingEngine,
+                fOutputFilePath,
+                fOptions.getOutputMode(),
+                true,
+                fMetrics);
+
+        fChunksAggregator.setSummarySizes(fOptions.getTopMatchCountsSize(), fOptions.getMaxLocationsPerText());
+        fChunksAggregator.aggregateAndWrite(fConcurrentChunkResults.getChunksInOrder());
+    }
+
     /***
      * This method responsible on inserting a poison pill to the Blocking queue.
      * by doing so it announced to the ChunksAggregator consumer that there are no more producers
      */
     private void insertPoisonPillToAggregator() {
-        HashMap<String, List<MatchInLineLocation>> poisonPill =  new HashMap<>();
-
-        poisonPill.put(POISON_PILL, null);
-        fMatchingPairsToAggregate.add(poisonPill);
+        try {
+            fMatchingPairsToAggregate.put(ChunkMatches.POISON_PILL);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
     }
 
     /***
@@ -185,50 +530,71 @@ public class MatchFinderManager {
     }
     //endregion Aggregator Utils
 
-    //region HttpUrlConnection utils
+    //region TextSource utils
 
     /***
-     * Define the params of the http connection, and perform connection.
-     * @throws IOException in case of failure when setting the params or in the connection opening
+     * Create the text source that fit the url and open it on the reader thread.
+     * The reader thread is an I/O thread of the execution model (e.g. a virtual thread), so the source connect
+     * and read without holding a platform thread
+     * @throws IOException in case of failure in opening the source
+     * @throws InterruptedException in case the run was interrupted while waiting for the reader
      */
-    private void openUrlConnection() throws IOException {
-        URL source = new URL(fTextToReadUrl);
-        fUrlConnection = (HttpURLConnection) source.openConnection();
-        setConnectionParams();
-        fUrlConnection.connect();
+    private void openTextSource() throws IOException, InterruptedException {
+        fTextChunker = new TextChunker(fChunkSizeTuner, fResumeCheckpoint);
+        fTextSource = TextSources.create(fTextToReadUrl, fOptions, fTextChunker, fIsFollowing);
+        fReaderExecutor = fOptions.getExecutionModel().createIoExecutor(1);
+        runOnReaderThread(() -> {
+            fTextSource.open();
+            return null;
+        });
     }
 
     /***
-     * Set the http request params using the constant params:
-     * REQUEST_METHOD, CONNECTION_TIMEOUT, READ_TIMEOUT
-     * @throws IOException in case of failure when setting the params
+     * Run a work of the text source on the reader thread and wait for it to end
+     * @param work the work, its failure is thrown as it is
+     * @throws IOException in case of failure in the work
+     * @throws InterruptedException in case the run was interrupted while waiting (the work is interrupted too)
      */
-    private void setConnectionParams() throws IOException {
-        fUrlConnection.setRequestMethod(REQUEST_METHOD);
-        fUrlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
-        fUrlConnection.setReadTimeout(READ_TIMEOUT);
+    private void runOnReaderThread(Callable<Void> work) throws IOException, InterruptedException {
+        Future<Void> reading = fReaderExecutor.submit(work);
+
+        try {
+            reading.get();
+        } catch (InterruptedException e) {
+            reading.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     /***
-     * Get the actual input stream of the http connection
-     * @return InputStream og the fUrlConnection connection
-     * @throws IOException in case of failure on getting the input stream
+     * Close the text source when all task are done, or in case of a failure
      */
-    private InputStream getConnectionInputStream() throws IOException {
-        InputStream inputStream = fUrlConnection.getInputStream();
-
-        if(inputStream == null){
-            throw new IOException();
+    private void closeTextSource() {
+        if (fReaderExecutor != null) {
+            fReaderExecutor.shutdownNow();
         }
 
-        return inputStream;
-    }
+        if (fTextSource == null) {
+            return;
+        }
 
-    /***
-     * Terminate the http connection when all task are done, or in case of a failure
-     */
-    private void disconnectFromUrlConnection() {
-        fUrlConnection.disconnect();
+        try {
+            fTextSource.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
-    //endregion HttpUrlConnection utils
+    //endregion TextSource utils
 }
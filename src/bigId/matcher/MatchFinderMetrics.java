@@ -0,0 +1,420 @@
+package bigId.matcher;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/***
+ * This class collect the runtime metrics of a run: the reading rate, the search latency of every chunk,
+ * the matches of every name, the LinePreFilter hit rate, the ChunkResultCache hit rate, the queues depth,
+ * the aggregator lag and the output write time.
+ * The counters are LongAdders and atomic arrays, so the searching threads never wait for each other.
+ * When the metrics are disabled every recording method return right away (a single final field check),
+ * and nothing is registered in JMX or written to a file.
+ * The queues depth are not recorded, they are read from the given gauges only when the metrics are read.
+ */
+public class MatchFinderMetrics implements MatchFinderMetricsMXBean {
+    //region CONSTANTS
+    static final MatchFinderMetrics DISABLED = new MatchFinderMetrics(false, null);
+    private static final String OBJECT_NAME_PREFIX = "bigId.matcher:type=MatchFinderMetrics,name=run-";
+    private static final AtomicInteger RUNS_COUNT = new AtomicInteger();
+    private static final IntSupplier NO_QUEUE = () -> 0;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final boolean fIsEnabled;
+    private final MatchingEngine fMatchingEngine;
+    private final LongAdder fBytesRead = new LongAdder();
+    private final LongAdder fLinesRead = new LongAdder();
+    private final LatencyHistogram fSearchLatency = new LatencyHistogram();
+    private final AtomicLongArray fMatchesByTextIndex;
+    private final LongAdder fPreFilterCheckedLines = new LongAdder();
+    private final LongAdder fPreFilterDroppedLines = new LongAdder();
+    private final LongAdder fResultCacheHits = new LongAdder();
+    private final LongAdder fResultCacheMisses = new LongAdder();
+    private final LongAdder fChunksAggregated = new LongAdder();
+    private final LongAdder fOutputWriteNanos = new LongAdder();
+    private final long fStartNanos;
+    private IntSupplier fSearchingTasksQueueGauge = NO_QUEUE;
+    private IntSupplier fAggregationQueueGauge = NO_QUEUE;
+    private ObjectName fObjectName;  // Not null while the MXBean is registered
+    private MetricsSnapshotWriter fSnapshotWriter;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * @param options the run options, the metrics are collected only when they are enabled in the options
+     * @param matchingEngine the engine of the run, the matches are counted by its text indexes
+     * @return new metrics of a run, or DISABLED
+     */
+    static MatchFinderMetrics create(MatchFinderOptions options, MatchingEngine matchingEngine) {
+        return options.isMetricsEnabled() ? new MatchFinderMetrics(true, matchingEngine) : DISABLED;
+    }
+
+    private MatchFinderMetrics(boolean isEnabled, MatchingEngine matchingEngine) {
+        fIsEnabled = isEnabled;
+        fMatchingEngine = matchingEngine;
+        fMatchesByTextIndex = new AtomicLongArray(isEnabled ? matchingEngine.getTextToFindCount() : 0);
+        fStartNanos = System.nanoTime();
+    }
+    //endregion Constructor
+
+    public boolean isEnabled() {
+        return fIsEnabled;
+    }
+
+    //region Lifecycle
+    /***
+     * Register the MXBean and start writing the periodic snapshot file (if the options have one)
+     * @param options the run options
+     * @param searchingTasksQueueGauge the current depth of the searching tasks queue
+     * @param aggregationQueueGauge the current depth of the aggregation queue
+     */
+    void start(MatchFinderOptions options, IntSupplier searchingTasksQueueGauge, IntSupplier aggregationQueueGauge) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fSearchingTasksQueueGauge = searchingTasksQueueGauge;
+        fAggregationQueueGauge = aggregationQueueGauge;
+        registerMXBean();
+
+        if (options.getMetricsSnapshotFilePath() != null) {
+            fSnapshotWriter = new MetricsSnapshotWriter(this, options.getMetricsSnapshotFilePath(),
+                    options.getMetricsSnapshotIntervalMillis());
+        }
+    }
+
+    /***
+     * Write the last snapshot and unregister the MXBean
+     */
+    void stop() {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        if (fSnapshotWriter != null) {
+            fSnapshotWriter.close();
+            fSnapshotWriter = null;
+        }
+
+        unregisterMXBean();
+    }
+
+    private void registerMXBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + RUNS_COUNT.incrementAndGet());
+
+            mBeanServer.registerMBean(this, objectName);
+            fObjectName = objectName;
+        } catch (JMException e) {
+            System.err.println("Failed to register the metrics MXBean: " + e.getMessage());
+        }
+    }
+
+    private void unregisterMXBean() {
+        if (fObjectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(fObjectName);
+        } catch (JMException e) {
+            System.err.println("Failed to unregister the metrics MXBean: " + e.getMessage());
+        } finally {
+            fObjectName = null;
+        }
+    }
+    //endregion Lifecycle
+
+    //region Recording
+    /***
+     * Called by the reader for every chunk that was read
+     * @param chunkSize the size of the chunk (see TextChunk.getSize)
+     * @param linesCount how many lines the chunk has
+     */
+    void onChunkRead(long chunkSize, long linesCount) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fBytesRead.add(chunkSize);
+        fLinesRead.add(linesCount);
+    }
+
+    /***
+     * Called by a MatchSearcher task when its chunk was searched
+     * @param chunkMatches the matches of the chunk
+     * @param searchNanos how long the search took
+     */
+    void onChunkSearched(ChunkMatches chunkMatches, long searchNanos) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fSearchLatency.record(searchNanos);
+        for (int i = 0; i < chunkMatches.getFoundTextsCount(); i++) {
+            fMatchesByTextIndex.addAndGet(chunkMatches.getTextIndex(i), chunkMatches.getMatchesCount(i));
+        }
+    }
+
+    /***
+     * Called by a MatchSearcher task when its chunk was searched
+     * @param linesCount how many lines the chunk has
+     * @param filteredLinesCount how many of them were dropped by the LinePreFilter
+     */
+    void onLinesFiltered(long linesCount, long filteredLinesCount) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fPreFilterCheckedLines.add(linesCount);
+        fPreFilterDroppedLines.add(filteredLinesCount);
+    }
+
+    /***
+     * Called by a MatchSearcher task when the results of its chunk were looked up in the ChunkResultCache
+     * @param isHit true if the results were in the cache (the chunk was not searched)
+     */
+    void onResultCacheLookup(boolean isHit) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        (isHit ? fResultCacheHits : fResultCacheMisses).increment();
+    }
+
+    /***
+     * Called by the ChunksAggregator when a chunk was handled (by the chunks order)
+     */
+    void onChunkAggregated() {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fChunksAggregated.increment();
+    }
+
+    /***
+     * @param writeNanos time that was spent in writing results to the output
+     */
+    void addOutputWriteTime(long writeNanos) {
+        if (!fIsEnabled) {
+            return;
+        }
+
+        fOutputWriteNanos.add(writeNanos);
+    }
+    //endregion Recording
+
+    //region Getters
+    private long getElapsedMillis() {
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fStartNanos), 1);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return fBytesRead.sum();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return fLinesRead.sum();
+    }
+
+    @Override
+    public long getBytesReadPerSecond() {
+        return getBytesRead() * 1000 / getElapsedMillis();
+    }
+
+    @Override
+    public long getLinesReadPerSecond() {
+        return getLinesRead() * 1000 / getElapsedMillis();
+    }
+
+    @Override
+    public long getChunksSearched() {
+        return fSearchLatency.getCount();
+    }
+
+    @Override
+    public long getSearchLatencyMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(fSearchLatency.getMeanNanos());
+    }
+
+    @Override
+    public long getSearchLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(fSearchLatency.getPercentileNanos(50));
+    }
+
+    @Override
+    public long getSearchLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(fSearchLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getSearchLatencyMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(fSearchLatency.getMaxNanos());
+    }
+
+    @Override
+    public long getPreFilterDroppedLines() {
+        return fPreFilterDroppedLines.sum();
+    }
+
+    /***
+     * @return the percent of the searched lines that passed the LinePreFilter (were fully matched),
+     * 100 when the filter is not used
+     */
+    @Override
+    public double getPreFilterHitRatePercent() {
+        long checkedLines = fPreFilterCheckedLines.sum();
+        return checkedLines == 0 ? 100 : 100.0 * (checkedLines - getPreFilterDroppedLines()) / checkedLines;
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return fResultCacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return fResultCacheMisses.sum();
+    }
+
+    /***
+     * @return the percent of the looked up chunks that their results were in the ChunkResultCache,
+     * 0 when there is no result cache
+     */
+    @Override
+    public double getResultCacheHitRatePercent() {
+        long lookups = getResultCacheHits() + getResultCacheMisses();
+        return lookups == 0 ? 0 : 100.0 * getResultCacheHits() / lookups;
+    }
+
+    @Override
+    public int getSearchingTasksQueueDepth() {
+        return fSearchingTasksQueueGauge.getAsInt();
+    }
+
+    @Override
+    public int getAggregationQueueDepth() {
+        return fAggregationQueueGauge.getAsInt();
+    }
+
+    /***
+     * @return how many chunks were searched but were not handled by the aggregator yet
+     */
+    @Override
+    public long getAggregatorLagChunks() {
+        return getChunksSearched() - fChunksAggregated.sum();
+    }
+
+    @Override
+    public long getOutputWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(fOutputWriteNanos.sum());
+    }
+
+    /***
+     * @return the matches count of every name that was found so far
+     */
+    @Override
+    public Map<String, Long> getMatchesPerName() {
+        Map<String, Long> matchesPerName = new LinkedHashMap<>();
+
+        for (int textIndex = 0; textIndex < fMatchesByTextIndex.length(); textIndex++) {
+            long matchesCount = fMatchesByTextIndex.get(textIndex);
+
+            if (matchesCount > 0) {
+                matchesPerName.put(fMatchingEngine.getTextToFind(textIndex), matchesCount);
+            }
+        }
+
+        return matchesPerName;
+    }
+    //endregion Getters
+
+    //region Snapshot
+    /***
+     * @return a JSON object with the current value of all the metrics
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\"elapsedMillis\":").append(getElapsedMillis())
+                .append(",\"bytesRead\":").append(getBytesRead())
+                .append(",\"linesRead\":").append(getLinesRead())
+                .append(",\"bytesReadPerSecond\":").append(getBytesReadPerSecond())
+                .append(",\"linesReadPerSecond\":").append(getLinesReadPerSecond())
+                .append(",\"chunksSearched\":").append(getChunksSearched())
+                .append(",\"searchLatencyMicros\":{\"mean\":").append(getSearchLatencyMeanMicros())
+                .append(",\"p50\":").append(getSearchLatencyP50Micros())
+                .append(",\"p99\":").append(getSearchLatencyP99Micros())
+                .append(",\"max\":").append(getSearchLatencyMaxMicros())
+                .append("},\"preFilterDroppedLines\":").append(getPreFilterDroppedLines())
+                .append(",\"preFilterHitRatePercent\":")
+                .append(String.format(Locale.ROOT, "%.2f", getPreFilterHitRatePercent()))  // Not a decimal comma
+                .append(",\"resultCacheHits\":").append(getResultCacheHits())
+                .append(",\"resultCacheMisses\":").append(getResultCacheMisses())
+                .append(",\"resultCacheHitRatePercent\":")
+                .append(String.format(Locale.ROOT, "%.2f", getResultCacheHitRatePercent()))
+                .append(",\"searchingTasksQueueDepth\":").append(getSearchingTasksQueueDepth())
+                .append(",\"aggregationQueueDepth\":").append(getAggregationQueueDepth())
+                .append(",\"aggregatorLagChunks\":").append(getAggregatorLagChunks())
+                .append(",\"outputWriteMillis\":").append(getOutputWriteMillis())
+                .append(",\"matchesPerName\":{");
+
+        boolean isFirstName = true;
+        for (Map.Entry<String, Long> nameMatches : getMatchesPerName().entrySet()) {
+            if (!isFirstName) {
+                json.append(',');
+            }
+
+            appendJsonString(json, nameMatches.getKey());
+            json.append(':').append(nameMatches.getValue());
+            isFirstName = false;
+        }
+
+        return json.append("}}").toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String text) {
+        json.append('"');
+
+        for (int i = 0; i < text.length(); i++) {
+            char currentChar = text.charAt(i);
+
+            if (currentChar == '"' || currentChar == '\\') {
+                json.append('\\').append(currentChar);
+            } else if (currentChar < ' ') {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) currentChar));
+            } else {
+                json.append(currentChar);
+            }
+        }
+
+        json.append('"');
+    }
+    //endregion Snapshot
+
+    @Override
+    public String toString() {
+        return String.format("read [bytes=%d, lines=%d, bytesPerSecond=%d], search [chunks=%d, meanUs=%d, p99Us=%d, " +
+                        "maxUs=%d], preFilter [droppedLines=%d, hitRate=%.2f%%], " +
+                        "resultCache [hits=%d, hitRate=%.2f%%], aggregatorLagChunks=%d, outputWriteMs=%d",
+                getBytesRead(), getLinesRead(), getBytesReadPerSecond(), getChunksSearched(),
+                getSearchLatencyMeanMicros(), getSearchLatencyP99Micros(), getSearchLatencyMaxMicros(),
+                getPreFilterDroppedLines(), getPreFilterHitRatePercent(), getResultCacheHits(),
+                getResultCacheHitRatePercent(), getAggregatorLagChunks(), getOutputWriteMillis());
+    }
+}
@@ -0,0 +1,48 @@
+package bigId.matcher;
+
+import java.util.Map;
+
+/***
+ * The JMX view of the MatchFinderMetrics, registered as "bigId.matcher:type=MatchFinderMetrics,name=<run>"
+ * while a run (or a MatchFinderService) with enabled metrics is alive.
+ * The rates are averages from the start of the run, the latencies are in microseconds.
+ */
+public interface MatchFinderMetricsMXBean {
+    long getBytesRead();
+
+    long getLinesRead();
+
+    long getBytesReadPerSecond();
+
+    long getLinesReadPerSecond();
+
+    long getChunksSearched();
+
+    long getSearchLatencyMeanMicros();
+
+    long getSearchLatencyP50Micros();
+
+    long getSearchLatencyP99Micros();
+
+    long getSearchLatencyMaxMicros();
+
+    long getPreFilterDroppedLines();
+
+    double getPreFilterHitRatePercent();
+
+    long getResultCacheHits();
+
+    long getResultCacheMisses();
+
+    double getResultCacheHitRatePercent();
+
+    int getSearchingTasksQueueDepth();
+
+    int getAggregationQueueDepth();
+
+    long getAggregatorLagChunks();
+
+    long getOutputWriteMillis();
+
+    Map<String, Long> getMatchesPerName();
+}
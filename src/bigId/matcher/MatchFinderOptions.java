@@ -0,0 +1,355 @@
+package bigId.matcher;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * This class hold all the optional settings of the MatchFinderManager (and of the MatchFinderService).
+ * A new instance hold the default settings, and each setting can be changed before the manager is created.
+ */
+public class MatchFinderOptions {
+    //region Fields
+    private MatchingEngineType fMatchingEngineType = MatchingEngineType.AHO_CORASICK;
+    private int fParallelDownloadConnections = 1;  // 1 means a single stream download
+    private int fConcurrentDocumentReads = 1;  // 1 means the documents are read by their order
+    private OutputMode fOutputMode = OutputMode.GROUPED_BY_NAME;
+    private int fTopMatchCountsSize = 20;
+    private int fSampledLocationsCount = 10;
+    private AggregationMode fAggregationMode = AggregationMode.AGGREGATOR_THREAD;
+    private ExecutionModel fExecutionModel = ExecutionModel.PLATFORM_THREADS;
+    private long fPipelineMemoryBudget = Runtime.getRuntime().maxMemory() / 4;  // In bytes
+    private Charset fCharset = StandardCharsets.UTF_8;  // Not the platform default, so every host read the same
+    private ChunkingMode fChunkingMode = ChunkingMode.FIXED_LINES;
+    private long fTargetChunkBytes = 256 * 1024;  // The first target in ADAPTIVE chunking mode
+    private boolean fIsLinePreFilterEnabled = true;
+    private boolean fIsMetricsEnabled = false;
+    private String fMetricsSnapshotFilePath = null;  // null means no snapshot file
+    private long fMetricsSnapshotIntervalMillis = 1000;
+    private String fCheckpointFilePath = null;  // null means no checkpoints
+    private long fCheckpointIntervalMillis = 30 * 1000;
+    private String fIndexFilePath = null;  // null means no token index
+    private boolean fIsFollowEnabled = false;
+    private long fFollowPollIntervalMillis = 1000;
+    private long fFollowIdleTimeoutMillis = 0;  // 0 means until MatchFinderManager.stopFollowing
+    private String fResultCacheFilePath = null;  // null means no result cache
+    private long fResultCacheMaxBytes = 64L * 1024 * 1024;
+    private int fShardWorkersCount = 2;
+    private long fShardBytes = 64L * 1024 * 1024;
+    //endregion Fields
+
+    public MatchingEngineType getMatchingEngineType() {
+        return fMatchingEngineType;
+    }
+
+    public void setMatchingEngineType(MatchingEngineType matchingEngineType) {
+        fMatchingEngineType = matchingEngineType;
+    }
+
+    public int getParallelDownloadConnections() {
+        return fParallelDownloadConnections;
+    }
+
+    /***
+     * @param parallelDownloadConnections how many range requests are used at the same time when a http url is read,
+     *                                    the download fall back to a single stream if the server doesn't support ranges
+     */
+    public void setParallelDownloadConnections(int parallelDownloadConnections) {
+        fParallelDownloadConnections = parallelDownloadConnections;
+    }
+
+    public int getConcurrentDocumentReads() {
+        return fConcurrentDocumentReads;
+    }
+
+    /***
+     * @param concurrentDocumentReads how many documents a MatchFinderService read at the same time (a fan out over
+     *                                many remote sources), on the threads of the execution model. With more than one
+     *                                the documents are not read by the order they were submitted
+     */
+    public void setConcurrentDocumentReads(int concurrentDocumentReads) {
+        fConcurrentDocumentReads = concurrentDocumentReads;
+    }
+
+    public long getPipelineMemoryBudget() {
+        return fPipelineMemoryBudget;
+    }
+
+    /***
+     * @param pipelineMemoryBudget how many bytes the chunks that wait in the pipeline queues may take,
+     *                             the reader is blocked while the waiting chunks take all of it.
+     *                             The capacity of the searching tasks queue and of the aggregation queue
+     *                             is also derived from it
+     */
+    public void setPipelineMemoryBudget(long pipelineMemoryBudget) {
+        fPipelineMemoryBudget = pipelineMemoryBudget;
+    }
+
+    public OutputMode getOutputMode() {
+        return fOutputMode;
+    }
+
+    public void setOutputMode(OutputMode outputMode) {
+        fOutputMode = outputMode;
+    }
+
+    public int getTopMatchCountsSize() {
+        return fTopMatchCountsSize;
+    }
+
+    /***
+     * @param topMatchCountsSize how many texts are written in TOP_MATCH_COUNTS output mode
+     */
+    public void setTopMatchCountsSize(int topMatchCountsSize) {
+        fTopMatchCountsSize = topMatchCountsSize;
+    }
+
+    public int getSampledLocationsCount() {
+        return fSampledLocationsCount;
+    }
+
+    /***
+     * @param sampledLocationsCount how many of the first matches of every text are written
+     *                              in SAMPLED_LOCATIONS output mode (at least 1)
+     */
+    public void setSampledLocationsCount(int sampledLocationsCount) {
+        fSampledLocationsCount = sampledLocationsCount;
+    }
+
+    /***
+     * @return how many matches of every text a MatchSearcher task keep by the output mode,
+     * the other matches are only counted
+     */
+    int getMaxLocationsPerText() {
+        switch (fOutputMode) {
+            case MATCH_COUNTS:
+            case TOP_MATCH_COUNTS:
+                return 0;
+            case SAMPLED_LOCATIONS:
+                return Math.max(fSampledLocationsCount, 1);
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+
+    public AggregationMode getAggregationMode() {
+        return fAggregationMode;
+    }
+
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        fAggregationMode = aggregationMode;
+    }
+
+    public ExecutionModel getExecutionModel() {
+        return fExecutionModel;
+    }
+
+    /***
+     * @param executionModel the threads that fetch the input, the searching always use a fixed pool of platform threads
+     * @throws IllegalArgumentException if the model is not supported by this runtime (VIRTUAL_THREADS before java 21)
+     */
+    public void setExecutionModel(ExecutionModel executionModel) {
+        if (!executionModel.isSupported()) {
+            throw new IllegalArgumentException(ExecutionModel.UNSUPPORTED_VIRTUAL_THREADS_MESSAGE + Runtime.version());
+        }
+
+        fExecutionModel = executionModel;
+    }
+
+    public Charset getCharset() {
+        return fCharset;
+    }
+
+    /***
+     * @param charset the charset of the input text, UTF-8 and US-ASCII inputs are searched directly in their bytes
+     */
+    public void setCharset(Charset charset) {
+        fCharset = charset;
+    }
+
+    public ChunkingMode getChunkingMode() {
+        return fChunkingMode;
+    }
+
+    /***
+     * @param chunkingMode how the input is split to searching tasks, the output is always reported by 1000 lines
+     */
+    public void setChunkingMode(ChunkingMode chunkingMode) {
+        fChunkingMode = chunkingMode;
+    }
+
+    public long getTargetChunkBytes() {
+        return fTargetChunkBytes;
+    }
+
+    /***
+     * @param targetChunkBytes the size of a chunk in FIXED_BYTES chunking mode, and the first size in ADAPTIVE mode
+     *                         (a chunk always hold whole lines, so it may be a bit bigger)
+     */
+    public void setTargetChunkBytes(long targetChunkBytes) {
+        fTargetChunkBytes = targetChunkBytes;
+    }
+
+    public boolean isLinePreFilterEnabled() {
+        return fIsLinePreFilterEnabled;
+    }
+
+    /***
+     * @param isLinePreFilterEnabled true (the default) to drop the lines that can't have a match by a cheap check,
+     *                               before the full matching of the line
+     */
+    public void setLinePreFilterEnabled(boolean isLinePreFilterEnabled) {
+        fIsLinePreFilterEnabled = isLinePreFilterEnabled;
+    }
+
+    public boolean isMetricsEnabled() {
+        return fIsMetricsEnabled;
+    }
+
+    /***
+     * @param isMetricsEnabled true to collect the runtime metrics and register them as a JMX MXBean,
+     *                         when false (the default) the instrumentation cost a single check per recording
+     */
+    public void setMetricsEnabled(boolean isMetricsEnabled) {
+        fIsMetricsEnabled = isMetricsEnabled;
+    }
+
+    public String getMetricsSnapshotFilePath() {
+        return fMetricsSnapshotFilePath;
+    }
+
+    /***
+     * @param metricsSnapshotFilePath a file that get a JSON snapshot of the metrics every interval
+     *                                (only when the metrics are enabled), null for no snapshot file
+     */
+    public void setMetricsSnapshotFilePath(String metricsSnapshotFilePath) {
+        fMetricsSnapshotFilePath = metricsSnapshotFilePath;
+    }
+
+    public long getMetricsSnapshotIntervalMillis() {
+        return fMetricsSnapshotIntervalMillis;
+    }
+
+    public void setMetricsSnapshotIntervalMillis(long metricsSnapshotIntervalMillis) {
+        fMetricsSnapshotIntervalMillis = metricsSnapshotIntervalMillis;
+    }
+
+    public String getCheckpointFilePath() {
+        return fCheckpointFilePath;
+    }
+
+    /***
+     * @param checkpointFilePath a file that get a checkpoint of the scan every interval, a scan that failed in reading
+     *                           its input can be run again with the same url, texts and options to resume from it.
+     *                           Checkpoints need the AGGREGATOR_THREAD aggregation mode (and not a summary output
+     *                           mode), null (the default) for none
+     */
+    public void setCheckpointFilePath(String checkpointFilePath) {
+        fCheckpointFilePath = checkpointFilePath;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return fCheckpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        fCheckpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    public String getIndexFilePath() {
+        return fIndexFilePath;
+    }
+
+    /***
+     * @param indexFilePath a file that get a TokenIndex of the scanned input, so later queries of any texts
+     *                      are answered from it without reading the input again.
+     *                      The index is built only in AGGREGATOR_THREAD aggregation mode, null (the default) for none
+     */
+    public void setIndexFilePath(String indexFilePath) {
+        fIndexFilePath = indexFilePath;
+    }
+
+    public boolean isFollowEnabled() {
+        return fIsFollowEnabled;
+    }
+
+    /***
+     * @param isFollowEnabled true to follow a local file that keep growing (a log): after the file was scanned
+     *                        it is polled every interval and only the appended lines are scanned, the results of
+     *                        every refresh (only the new matches) are written as soon as it was searched.
+     *                        Following need a local file and the AGGREGATOR_THREAD aggregation mode
+     */
+    public void setFollowEnabled(boolean isFollowEnabled) {
+        fIsFollowEnabled = isFollowEnabled;
+    }
+
+    public long getFollowPollIntervalMillis() {
+        return fFollowPollIntervalMillis;
+    }
+
+    public void setFollowPollIntervalMillis(long followPollIntervalMillis) {
+        fFollowPollIntervalMillis = followPollIntervalMillis;
+    }
+
+    public long getFollowIdleTimeoutMillis() {
+        return fFollowIdleTimeoutMillis;
+    }
+
+    /***
+     * @param followIdleTimeoutMillis stop following when no line was appended for this long,
+     *                                0 (the default) to follow until MatchFinderManager.stopFollowing is called
+     */
+    public void setFollowIdleTimeoutMillis(long followIdleTimeoutMillis) {
+        fFollowIdleTimeoutMillis = followIdleTimeoutMillis;
+    }
+
+    public String getResultCacheFilePath() {
+        return fResultCacheFilePath;
+    }
+
+    /***
+     * @param resultCacheFilePath a file that keep the search results of every chunk by a hash of the chunk content,
+     *                            so a rescan of an input that changed only a bit search only the changed chunks.
+     *                            A chunk is found in the cache only when it is split the same way, so the
+     *                            FIXED_LINES and FIXED_BYTES chunking modes fit it (ADAPTIVE chunks change
+     *                            between runs), null (the default) for none
+     */
+    public void setResultCacheFilePath(String resultCacheFilePath) {
+        fResultCacheFilePath = resultCacheFilePath;
+    }
+
+    public long getResultCacheMaxBytes() {
+        return fResultCacheMaxBytes;
+    }
+
+    /***
+     * @param resultCacheMaxBytes the size limit of the result cache (it is all kept in memory during the run),
+     *                            the least recently used chunks are evicted first
+     */
+    public void setResultCacheMaxBytes(long resultCacheMaxBytes) {
+        fResultCacheMaxBytes = resultCacheMaxBytes;
+    }
+
+    public int getShardWorkersCount() {
+        return fShardWorkersCount;
+    }
+
+    /***
+     * @param shardWorkersCount how many ShardWorker processes the ShardedScanCoordinator start
+     *                          (every worker search with all the cores of the host)
+     */
+    public void setShardWorkersCount(int shardWorkersCount) {
+        fShardWorkersCount = shardWorkersCount;
+    }
+
+    public long getShardBytes() {
+        return fShardBytes;
+    }
+
+    /***
+     * @param shardBytes the size of a shard of a local file in the ShardedScanCoordinator (a shard always start in
+     *                   a beginning of a block of 1000 lines, so it may be a bit bigger)
+     */
+    public void setShardBytes(long shardBytes) {
+        fShardBytes = shardBytes;
+    }
+}
@@ -0,0 +1,213 @@
+package bigId.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/***
+ * This class is a long lived matching service for many documents and a single set of strings to search for.
+ * Unlike MatchFinderManager (a single url per instance) the MatchingEngine is built once and the searching threads
+ * are shared by all the documents, so adding a document cost only its reading and searching.
+ * The documents are read one after the other by a single reader thread, the reader move to the next document
+ * as soon as the current one was read, so the reading of a document overlap the searching of the previous ones.
+ * When the options allow a few concurrent document reads, that many documents are read at the same time.
+ * The readers are the I/O threads of the execution model of the options (virtual threads or platform threads).
+ * The results of every document are aggregated and written to its own output file (not to the StdOut)
+ * by a single writer thread, in the same format as MatchFinderManager.
+ * When the metrics are enabled in the options a single MatchFinderMetrics cover all the documents,
+ * until the service is closed.
+ * When a result cache file is set in the options it is shared by all the documents,
+ * it is loaded when the service is created and written back when it is closed.
+ *
+ * For example:
+ *      try (MatchFinderService service = new MatchFinderService(names, new MatchFinderOptions())) {
+ *          service.submit(MatchInput.fromUrl("http://norvig.com/big.txt"), "big.out");
+ *          service.submit(MatchInput.fromFile(Paths.get("local.txt")), "local.out");
+ *      }
+ */
+public class MatchFinderService implements Closeable {
+    //region Fields
+    private final MatchingEngine fMatchingEngine;
+    private final LinePreFilter fLinePreFilter;  // null when the pre filter is disabled
+    private final MatchFinderOptions fOptions;
+    private final ChunkSizeTuner fChunkSizeTuner;  // Shared by all the documents
+    private final PipelineStatistics fPipelineStatistics;
+    private final ChunkMemoryBudget fChunkMemoryBudget;  // Shared by all the documents
+    private final MatchFinderMetrics fMetrics;
+    private final ChunkResultCache fResultCache;  // null when there is no result cache
+    private final ThreadPoolExecutor fMatchSearcherExecutor;
+    private final ExecutorService fReaderExecutor;
+    private final ExecutorService fWriterExecutor;
+    //endregion Fields
+
+    //region Constructor
+    public MatchFinderService(Set<String> textToFindSet, MatchFinderOptions options) {
+        fOptions = options;
+        fMatchingEngine = options.getMatchingEngineType().createEngine(textToFindSet);
+        fLinePreFilter = options.isLinePreFilterEnabled() ? LinePreFilter.create(fMatchingEngine) : null;
+        fChunkSizeTuner = new ChunkSizeTuner(options);
+        fResultCache = options.getResultCacheFilePath() != null ? new ChunkResultCache(options, fMatchingEngine) : null;
+        if (fResultCache != null) {
+            fResultCache.load();
+        }
+
+        int numOfCores = Runtime.getRuntime().availableProcessors();
+        fPipelineStatistics = initializePipelineStatistics(numOfCores);
+        fChunkMemoryBudget = new ChunkMemoryBudget(options.getPipelineMemoryBudget(), fPipelineStatistics);
+        fMatchSearcherExecutor = new ThreadPoolExecutor(numOfCores, numOfCores,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fPipelineStatistics.getSearchingTasksQueueCapacity()),
+                new BlockingSubmissionHandler(fPipelineStatistics));
+        fReaderExecutor = options.getExecutionModel().createIoExecutor(options.getConcurrentDocumentReads());
+        fWriterExecutor = Executors.newSingleThreadExecutor();
+        fMetrics = MatchFinderMetrics.create(options, fMatchingEngine);
+        fMetrics.start(options, () -> fMatchSearcherExecutor.getQueue().size(), () -> 0);  // No aggregation queue
+    }
+
+    /***
+     * All the pipeline memory budget is given to the searching tasks queue, there is no aggregation queue
+     * @param numOfCores how many searching threads there are
+     * @return PipelineStatistics that hold the capacity of the searching tasks queue
+     */
+    private PipelineStatistics initializePipelineStatistics(int numOfCores) {
+        long chunksInBudget = fOptions.getPipelineMemoryBudget() / fChunkSizeTuner.getEstimatedChunkMemory();
+        int queueCapacity = (int) Math.min(Math.max(chunksInBudget, numOfCores), Integer.MAX_VALUE);
+
+        return new PipelineStatistics(queueCapacity, 0);
+    }
+    //endregion Constructor
+
+    /***
+     * Add a document to the service, the document is read after all the documents that were submitted before it
+     * (unless there are concurrent document reads)
+     * @param matchInput the document to search in
+     * @param outputFilePath the file the results of the document are written to
+     * @return future that is completed when the results of the document were written,
+     * or completed exceptionally if the document could not be read, searched or written
+     */
+    public CompletableFuture<Void> submit(MatchInput matchInput, String outputFilePath) {
+        DocumentSearch documentSearch = new DocumentSearch(matchInput, outputFilePath, this::writeDocumentResults);
+
+        fReaderExecutor.execute(() -> readDocument(documentSearch));
+        return documentSearch.getCompletion();
+    }
+
+    /***
+     * @return the queue capacity, peak depth and stall times of all the documents so far
+     */
+    public PipelineStatistics getPipelineStatistics() {
+        return fPipelineStatistics;
+    }
+
+    /***
+     * @return the runtime metrics of all the documents so far, MatchFinderMetrics.isEnabled is false
+     * if they are not collected
+     */
+    public MatchFinderMetrics getMetrics() {
+        return fMetrics;
+    }
+
+    //region Reading
+    /***
+     * Read the document chunks and create a MatchSearcher task for each of them (on the reader thread)
+     * @param documentSearch the document to read
+     */
+    private void readDocument(DocumentSearch documentSearch) {
+        Throwable failure = null;
+
+        try (TextSource textSource = documentSearch.getMatchInput().createTextSource(fOptions,
+                new TextChunker(fChunkSizeTuner))) {
+            textSource.open();
+            textSource.readChunks(textChunk -> createSingleSearchingTask(documentSearch, textChunk));
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            documentSearch.finishReading(failure);
+        }
+    }
+
+    private void createSingleSearchingTask(DocumentSearch documentSearch, TextChunk textChunk) {
+        documentSearch.startSearchingTask();
+        fMetrics.onChunkRead(textChunk.getSize(), textChunk.getLinesCount());
+        try {
+            fChunkMemoryBudget.execute(fMatchSearcherExecutor, textChunk.getSize(), new MatchSearcher(documentSearch,
+                    textChunk, fMatchingEngine, fLinePreFilter, fChunkSizeTuner, fMetrics, null,
+                    fOptions.getMaxLocationsPerText(), fResultCache));
+        } catch (RuntimeException e) {
+            documentSearch.cancelSearchingTask(e);  // The task will never send its chunk
+            throw e;
+        }
+        fPipelineStatistics.updateSearchingTasksQueueDepth(fMatchSearcherExecutor.getQueue().size());
+    }
+    //endregion Reading
+
+    //region Writing
+    /***
+     * Called by the thread that finished the last work of the document,
+     * the aggregation and the writing are done on the writer thread so the searching threads are not blocked
+     * @param documentSearch the document that was fully searched
+     */
+    private void writeDocumentResults(DocumentSearch documentSearch) {
+        fWriterExecutor.execute(() -> {
+            CompletableFuture<Void> completion = documentSearch.getCompletion();
+
+            if (documentSearch.getFailure() != null) {
+                System.err.println("Failed to search " + documentSearch.getMatchInput() + ": " +
+                        documentSearch.getFailure().getMessage());
+                completion.completeExceptionally(documentSearch.getFailure());
+                return;
+            }
+
+            try {
+                ChunksAggregator chunksAggregator = new ChunksAggregator(fMatchingEngine,
+                        documentSearch.getOutputFilePath(),
+                        fOptions.getOutputMode(),
+                        false,
+                        fMetrics);
+
+                chunksAggregator.setSummarySizes(fOptions.getTopMatchCountsSize(), fOptions.getMaxLocationsPerText());
+                chunksAggregator.aggregateAndWrite(documentSearch.getChunkResults().getChunksInOrder());
+                if (chunksAggregator.isCompleted()) {
+                    completion.complete(null);
+                } else {
+                    completion.completeExceptionally(new IOException("Failed to write the results of " +
+                            documentSearch.getMatchInput() + " to " + documentSearch.getOutputFilePath()));
+                }
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+    }
+    //endregion Writing
+
+    /***
+     * Wait for all the submitted documents to be written and stop the service threads
+     */
+    @Override
+    public void close() {
+        try {
+            awaitTermination(fReaderExecutor);
+            awaitTermination(fMatchSearcherExecutor);  // The searchers may still hand documents to the writer
+            awaitTermination(fWriterExecutor);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        } finally {
+            fMetrics.stop();
+            if (fResultCache != null) {
+                fResultCache.save();
+                System.err.println("Result cache: " + fResultCache);
+            }
+            System.err.println("Pipeline: " + fPipelineStatistics);
+            if (fMetrics.isEnabled()) {
+                System.err.println("Metrics: " + fMetrics);
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Integer.MAX_VALUE, TimeUnit.MICROSECONDS);
+    }
+}
@@ -0,0 +1,66 @@
+package bigId.matcher;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/***
+ * This class represent a single document that is given to the MatchFinderService,
+ * the document can be a url, a local file or an already open InputStream.
+ * The TextSource of the document is created only when the service start reading it.
+ */
+public class MatchInput {
+    //region Fields
+    private final String fName;
+    private final TextSourceFactory fTextSourceFactory;
+    //endregion Fields
+
+    /***
+     * Create the TextSource of the document by the service options
+     */
+    private interface TextSourceFactory {
+        TextSource create(MatchFinderOptions options, TextChunker textChunker);
+    }
+
+    //region Constructor
+    private MatchInput(String name, TextSourceFactory textSourceFactory) {
+        fName = name;
+        fTextSourceFactory = textSourceFactory;
+    }
+
+    /***
+     * @param textToReadUrl a url (or a local path) to read, read the same way as in MatchFinderManager
+     */
+    public static MatchInput fromUrl(String textToReadUrl) {
+        return new MatchInput(textToReadUrl, (options, textChunker) -> TextSources.create(textToReadUrl, options, textChunker));
+    }
+
+    /***
+     * @param filePath a local file to read, memory mapped when possible
+     */
+    public static MatchInput fromFile(Path filePath) {
+        return fromUrl(filePath.toUri().toString());
+    }
+
+    /***
+     * @param name the name of the document (used only in the log)
+     * @param inputStream the stream to read, it is closed when the document was read
+     */
+    public static MatchInput fromInputStream(String name, InputStream inputStream) {
+        return new MatchInput(name, (options, textChunker) ->
+                new InputStreamTextSource(inputStream, options.getCharset(), textChunker));
+    }
+    //endregion Constructor
+
+    public String getName() {
+        return fName;
+    }
+
+    TextSource createTextSource(MatchFinderOptions options, TextChunker textChunker) {
+        return fTextSourceFactory.create(options, textChunker);
+    }
+
+    @Override
+    public String toString() {
+        return fName;
+    }
+}
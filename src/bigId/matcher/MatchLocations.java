@@ -0,0 +1,165 @@
+package bigId.matcher;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/***
+ * This class hold the matches of a single text as a packed primitive array:
+ *      [lineOffset_0, charOffset_0, lineOffset_1, charOffset_1, ...]
+ * so a match is not an object and comparing matches never box the offsets.
+ * The matches are always kept sorted by line offset and then by char offset.
+ */
+class MatchLocations {
+    //region CONSTANTS
+    private static final int LONGS_PER_MATCH = 2;
+    private static final int INITIAL_CAPACITY = 8;  // In matches
+    //endregion CONSTANTS
+
+    //region Fields
+    private long[] fLocations;
+    private int fSize;  // How many matches there are
+    //endregion Fields
+
+    //region Constructor
+    public MatchLocations() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MatchLocations(int capacity) {
+        fLocations = new long[Math.max(capacity, 1) * LONGS_PER_MATCH];
+        fSize = 0;
+    }
+    //endregion Constructor
+
+    /***
+     * Add a match after all the existing matches, the match must not be smaller than the last match
+     * @param lineOffset the match line offset
+     * @param charOffset the match char offset
+     */
+    public void add(long lineOffset, long charOffset) {
+        int index = fSize * LONGS_PER_MATCH;
+
+        if (index == fLocations.length) {
+            fLocations = Arrays.copyOf(fLocations, fLocations.length * 2);
+        }
+
+        fLocations[index] = lineOffset;
+        fLocations[index + 1] = charOffset;
+        fSize++;
+    }
+
+    /***
+     * Add a delta to the char offset of all the matches in the given line offset,
+     * the line offset must be the smallest line offset of the matches
+     * @param lineOffset the line offset of the matches to change
+     * @param delta the chars to add
+     */
+    public void addToCharOffsets(long lineOffset, long delta) {
+        for (int matchIndex = 0; matchIndex < fSize && getLineOffset(matchIndex) == lineOffset; matchIndex++) {
+            fLocations[matchIndex * LONGS_PER_MATCH + 1] += delta;
+        }
+    }
+
+    public int size() {
+        return fSize;
+    }
+
+    public long getLineOffset(int matchIndex) {
+        return fLocations[matchIndex * LONGS_PER_MATCH];
+    }
+
+    public long getCharOffset(int matchIndex) {
+        return fLocations[matchIndex * LONGS_PER_MATCH + 1];
+    }
+
+    /***
+     * Compare between 2 matches.
+     * First it compare the line offset and in case of equality it will compare also the char offset
+     * @return positive - first is bigger, negative - second is bigger, 0 - equal
+     */
+    static int compare(long firstLineOffset, long firstCharOffset, long secondLineOffset, long secondCharOffset) {
+        int compareResult = Long.compare(firstLineOffset, secondLineOffset);
+
+        if (compareResult == 0) {
+            compareResult = Long.compare(firstCharOffset, secondCharOffset);
+        }
+
+        return compareResult;
+    }
+
+    private int compare(int matchIndex, MatchLocations other, int otherMatchIndex) {
+        return compare(getLineOffset(matchIndex), getCharOffset(matchIndex),
+                other.getLineOffset(otherMatchIndex), other.getCharOffset(otherMatchIndex));
+    }
+
+    //region Merge
+    /***
+     * Merge sorted runs of matches into a single sorted MatchLocations.
+     * The runs are ordered by their first match, runs that don't overlap (e.g. runs of different chunks)
+     * are simply concatenated and only overlapping runs are merged match by match.
+     * @param runs the runs to merge, each of them is sorted (the list order is changed)
+     * @return MatchLocations with all the matches of the runs, sorted
+     */
+    static MatchLocations merge(List<MatchLocations> runs) {
+        runs.removeIf(run -> run.size() == 0);
+        runs.sort(Comparator.comparingLong((MatchLocations run) -> run.getLineOffset(0))
+                .thenComparingLong(run -> run.getCharOffset(0)));
+
+        int totalSize = 0;
+        for (MatchLocations run : runs) {
+            totalSize += run.size();
+        }
+
+        MatchLocations merged = new MatchLocations(totalSize);
+        for (MatchLocations run : runs) {
+            merged.appendSorted(run);
+        }
+
+        return merged;
+    }
+
+    /***
+     * Add all the matches of a sorted run, when the run start after the last match it is just copied,
+     * otherwise the two are merged
+     * @param run sorted matches to add
+     */
+    private void appendSorted(MatchLocations run) {
+        boolean isRunAfterLastMatch = fSize == 0 || compare(fSize - 1, run, 0) <= 0;
+
+        if (isRunAfterLastMatch) {
+            ensureCapacity(fSize + run.fSize);
+            System.arraycopy(run.fLocations, 0, fLocations, fSize * LONGS_PER_MATCH, run.fSize * LONGS_PER_MATCH);
+            fSize += run.fSize;
+        } else {
+            mergeWith(run);
+        }
+    }
+
+    private void mergeWith(MatchLocations run) {
+        long[] mergedLocations = new long[Math.max(fLocations.length, (fSize + run.fSize) * LONGS_PER_MATCH)];
+        int index = 0;
+        int runIndex = 0;
+        int mergedIndex = 0;
+
+        while (index < fSize || runIndex < run.fSize) {
+            boolean isTakeFromThis = runIndex == run.fSize ||
+                    (index < fSize && compare(index, run, runIndex) <= 0);
+            long[] source = isTakeFromThis ? fLocations : run.fLocations;
+            int sourceIndex = (isTakeFromThis ? index++ : runIndex++) * LONGS_PER_MATCH;
+
+            mergedLocations[mergedIndex++] = source[sourceIndex];
+            mergedLocations[mergedIndex++] = source[sourceIndex + 1];
+        }
+
+        fLocations = mergedLocations;
+        fSize += run.fSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (fLocations.length < capacity * LONGS_PER_MATCH) {
+            fLocations = Arrays.copyOf(fLocations, Math.max(capacity, fSize * 2) * LONGS_PER_MATCH);
+        }
+    }
+    //endregion Merge
+}
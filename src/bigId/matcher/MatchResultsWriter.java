@@ -0,0 +1,286 @@
+package bigId.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * This class write the match results both to the StdOut and to the output file
+ * (or only to the output file, when many documents are written at the same time).
+ * The results are encoded into a single buffer that is flushed to both channels whenever it is full,
+ * so the results are never held as a single String and no String.format is done per match.
+ * A writer of a resumed scan keep the output file up to the position of the checkpoint and continue from it.
+ * The format of each line is:
+ *      <Name> --> [[lineOffset=<line offset>, charOffset=<char offset>],...]
+ * or in the summary output modes:
+ *      <Name> --> <matches count>
+ *      <Name> --> <matches count> [[lineOffset=<line offset>, charOffset=<char offset>],...]
+ */
+class MatchResultsWriter implements Closeable {
+    //region CONSTANTS
+    private static final int BUFFER_SIZE = 64 * 1024;  // In bytes
+    private static final byte[] KEY_SEPARATOR = " --> ".getBytes();
+    private static final byte COUNT_SEPARATOR = ' ';
+    private static final byte LOCATIONS_PREFIX = '[';
+    private static final byte[] LINE_OFFSET_PREFIX = "[lineOffset=".getBytes();
+    private static final byte[] CHAR_OFFSET_PREFIX = ", charOffset=".getBytes();
+    private static final byte LOCATION_SUFFIX = ']';
+    private static final byte LOCATIONS_SEPARATOR = ',';
+    private static final byte LOCATIONS_SUFFIX = ']';
+    private static final byte NEW_LINE = '\n';
+    private static final int MAX_LONG_DIGITS = 20;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final ByteBuffer fBuffer;
+    private final byte[] fDigits;
+    private final WritableByteChannel fStdOutChannel;  // null when the results are written only to the file
+    private final FileChannel fOutputFileChannel;  // null when the output file can't be opened
+    private final Charset fCharset;
+    private boolean fIsFirstLocation;
+    //endregion Fields
+
+    //region Constructor
+    public MatchResultsWriter(String outputFilePath) {
+        this(outputFilePath, true);
+    }
+
+    public MatchResultsWriter(String outputFilePath, boolean isStdOutUsed) {
+        this(outputFilePath, isStdOutUsed, 0);
+    }
+
+    /***
+     * @param outputFilePath the output file path
+     * @param isStdOutUsed false when the results are written only to the output file
+     * @param startPosition the output file position to continue writing from (0 to write a new file)
+     */
+    public MatchResultsWriter(String outputFilePath, boolean isStdOutUsed, long startPosition) {
+        fBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        fDigits = new byte[MAX_LONG_DIGITS];
+        fStdOutChannel = isStdOutUsed ? Channels.newChannel(System.out) : null;
+        fOutputFileChannel = openOutputFile(outputFilePath, startPosition);
+        fCharset = StandardCharsets.UTF_8;  // Not the platform default, so every host write the same
+    }
+
+    /***
+     * Open (or create) the output file and truncate it to the start position
+     * @param outputFilePath the output file path
+     * @param startPosition the position to write from, the bytes after it are dropped
+     * @return channel of the output file or null if the file can't be opened
+     */
+    private static FileChannel openOutputFile(String outputFilePath, long startPosition) {
+        try {
+            if (startPosition == 0) {
+                return FileChannel.open(Paths.get(outputFilePath),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+
+            FileChannel outputFileChannel = FileChannel.open(Paths.get(outputFilePath),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            outputFileChannel.truncate(startPosition);
+            outputFileChannel.position(startPosition);
+
+            return outputFileChannel;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    //endregion Constructor
+
+    //region Writing
+    /***
+     * Write a whole results line of a text and all its matches
+     * @param textToFind the text that was found
+     * @param matchLocations all the matches of the text, sorted
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void writeLine(String textToFind, MatchLocations matchLocations) throws IOException {
+        startLine(textToFind);
+        writeLocations(matchLocations);
+        endLine();
+    }
+
+    /***
+     * Write a whole results line of a text and its matches count (MATCH_COUNTS and TOP_MATCH_COUNTS output modes)
+     * @param textToFind the text that was found
+     * @param matchesCount how many times the text was found
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void writeCountLine(String textToFind, long matchesCount) throws IOException {
+        write(textToFind.getBytes(fCharset));
+        write(KEY_SEPARATOR);
+        write(matchesCount);
+        write(NEW_LINE);
+    }
+
+    /***
+     * Write a whole results line of a text, its matches count and its first matches (SAMPLED_LOCATIONS output mode)
+     * @param textToFind the text that was found
+     * @param matchesCount how many times the text was found
+     * @param sampledLocations the first matches of the text, sorted
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void writeSampledLine(String textToFind, long matchesCount, MatchLocations sampledLocations)
+            throws IOException {
+        write(textToFind.getBytes(fCharset));
+        write(KEY_SEPARATOR);
+        write(matchesCount);
+        write(COUNT_SEPARATOR);
+        write(LOCATIONS_PREFIX);
+        fIsFirstLocation = true;
+        writeLocations(sampledLocations);
+        endLine();
+    }
+
+    private void writeLocations(MatchLocations matchLocations) throws IOException {
+        for (int i = 0; i < matchLocations.size(); i++) {
+            writeLocation(matchLocations.getLineOffset(i), matchLocations.getCharOffset(i));
+        }
+    }
+
+    /***
+     * Start a new results line of the given text, must be followed by writeLocation calls and a single endLine call
+     * @param textToFind the text that was found
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void startLine(String textToFind) throws IOException {
+        write(textToFind.getBytes(fCharset));
+        write(KEY_SEPARATOR);
+        write(LOCATIONS_PREFIX);
+        fIsFirstLocation = true;
+    }
+
+    /***
+     * Write a single match location in the current line
+     * @param lineOffset the match line offset
+     * @param charOffset the match char offset
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void writeLocation(long lineOffset, long charOffset) throws IOException {
+        if (!fIsFirstLocation) {
+            write(LOCATIONS_SEPARATOR);
+        }
+
+        write(LINE_OFFSET_PREFIX);
+        write(lineOffset);
+        write(CHAR_OFFSET_PREFIX);
+        write(charOffset);
+        write(LOCATION_SUFFIX);
+        fIsFirstLocation = false;
+    }
+
+    /***
+     * End the current results line
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void endLine() throws IOException {
+        write(LOCATIONS_SUFFIX);
+        write(NEW_LINE);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            if (!fBuffer.hasRemaining()) {
+                flush();
+            }
+
+            int length = Math.min(bytes.length - offset, fBuffer.remaining());
+            fBuffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void write(byte singleByte) throws IOException {
+        if (!fBuffer.hasRemaining()) {
+            flush();
+        }
+
+        fBuffer.put(singleByte);
+    }
+
+    /***
+     * Write the decimal digits of a number without creating a String
+     */
+    private void write(long number) throws IOException {
+        if (fBuffer.remaining() < MAX_LONG_DIGITS) {
+            flush();
+        }
+
+        if (number < 0) {
+            fBuffer.put((byte) '-');
+        }
+
+        int digitsCount = 0;
+        do {
+            fDigits[digitsCount++] = (byte) ('0' + Math.abs(number % 10));
+            number /= 10;
+        } while (number != 0);
+
+        while (digitsCount > 0) {
+            fBuffer.put(fDigits[--digitsCount]);
+        }
+    }
+    //endregion Writing
+
+    /***
+     * Write the buffered bytes to the StdOut and to the output file
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    public void flush() throws IOException {
+        fBuffer.flip();
+
+        if (fStdOutChannel != null) {
+            ByteBuffer stdOutBuffer = fBuffer.duplicate();
+            while (stdOutBuffer.hasRemaining()) {
+                fStdOutChannel.write(stdOutBuffer);
+            }
+        }
+
+        if (fOutputFileChannel != null) {
+            while (fBuffer.hasRemaining()) {
+                fOutputFileChannel.write(fBuffer);
+            }
+        }
+
+        fBuffer.clear();
+    }
+
+    /***
+     * @return how many bytes were written to the output file (the buffered bytes are not counted until flushed),
+     * 0 when the output file can't be opened
+     * @throws IOException in case of failure in getting the file position
+     */
+    public long getOutputFilePosition() throws IOException {
+        return fOutputFileChannel != null ? fOutputFileChannel.position() : 0;
+    }
+
+    /***
+     * Flush the last results and close the output file,
+     * the StdOut get an additional new line at the end (the same as println of all the results)
+     * @throws IOException in case of failure in writing to one of the channels
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (fStdOutChannel != null) {
+                System.out.println();
+                System.out.flush();
+            }
+        } finally {
+            if (fOutputFileChannel != null) {
+                fOutputFileChannel.close();
+            }
+        }
+    }
+}
@@ -1,92 +1,128 @@
 package bigId.matcher;
 
-import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-
 /***
- * This class responsible of finding Mapping between String and a 1000 line text
+ * This class responsible of finding Mapping between String and a chunk of lines
+ * Lines that can't have a match are dropped by the LinePreFilter (when it is used) before the full matching.
  * Each match will be collected separately and when done the matched will be sent to an aggregator in order to reorder them
+ * (or stored directly in a concurrent structure, depending on the ChunkMatchesSink)
+ * The search time of the chunk is reported to the ChunkSizeTuner (for the ADAPTIVE chunking mode) and to the metrics
+ * When a token index is built the task also tokenize the chunk lines, the tokens go with the chunk matches.
+ * In the summary output modes the task keep only the first matches of every text (or none), the rest are counted.
+ * When there is a ChunkResultCache the results of a chunk with the same content are taken from it instead of
+ * searching the chunk (they are not reported to the ChunkSizeTuner), the results of a searched chunk are kept in it.
  */
 class MatchSearcher implements Runnable{
     //region Fields
-    private final List<String> fLinesToCheck;
-    private final Set<String> fTextToFindSet;
-    private final BlockingQueue<Map<String, List<MatchInLineLocation>>> fMatchingPairsToAggregate;
-    private long fFirstLineOffset;
+    private final TextChunk fLinesToCheck;
+    private final MatchingEngine fMatchingEngine;
+    private final ChunkMatchesSink fChunkMatchesSink;
+    private final ChunkSizeTuner fChunkSizeTuner;
+    private final LinePreFilter fLinePreFilter;  // null when every line is searched
+    private final MatchFinderMetrics fMetrics;
+    private final LineTokenizer fLineTokenizer;  // null when no token index is built
+    private final int fMaxLocationsPerText;
+    private final ChunkResultCache fResultCache;  // null when there is no result cache
     //endregion Fields
 
     //region constructor
-    public MatchSearcher(BlockingQueue<Map<String, List<MatchInLineLocation>>> matchingPairsToAggregate,
-                         List<String> linesToCheck,
-                         Set<String> textToMatchSet,
-                         long firstLineOffset){
-        fMatchingPairsToAggregate = matchingPairsToAggregate;
-        fLinesToCheck = linesToCheck;
-        fTextToFindSet = textToMatchSet;
-        fFirstLineOffset = firstLineOffset;
+    public MatchSearcher(ChunkMatchesSink chunkMatchesSink,
+                         TextChunk linesToCheck,
+                         MatchingEngine matchingEngine,
+                         LinePreFilter linePreFilter,
+                         ChunkSizeTuner chunkSizeTuner,
+                         MatchFinderMetrics metrics){
+        this(chunkMatchesSink, linesToCheck, matchingEngine, linePreFilter, chunkSizeTuner, metrics, null,
+                Integer.MAX_VALUE, null);
     }
-    //endregion constructor
 
-    @Override
-    public void run() {
-        searchForMatches();
+    public MatchSearcher(ChunkMatchesSink chunkMatchesSink,
+                         TextChunk linesToCheck,
+                         MatchingEngine matchingEngine,
+                         LinePreFilter linePreFilter,
+                         ChunkSizeTuner chunkSizeTuner,
+                         MatchFinderMetrics metrics,
+                         LineTokenizer lineTokenizer,
+                         int maxLocationsPerText,
+                         ChunkResultCache resultCache){
+        fChunkMatchesSink = chunkMatchesSink;
+        fLinesToCheck = linesToCheck;
+        fMatchingEngine = matchingEngine;
+        fLinePreFilter = linePreFilter;
+        fChunkSizeTuner = chunkSizeTuner;
+        fMetrics = metrics;
+        fLineTokenizer = lineTokenizer;
+        fMaxLocationsPerText = maxLocationsPerText;
+        fResultCache = resultCache;
     }
+    //endregion constructor
 
     /***
-     * Search the pattern regex text for a given chunk (1000 lines)
-     * create the relevant MatchInLineLocation
-     * and mapping between the matching text and MatchInLineLocation that correspond to him.
+     * The chunk is sent even when nothing was found, so the aggregator know it was searched.
+     * When the search failed a failure marker of the chunk is sent instead (and the failure is thrown),
+     * so the aggregator fail the scan instead of waiting for the chunk
      */
-    private void searchForMatches() {
-        Map<String, List<MatchInLineLocation>> matchingPairs = new HashMap<>();
-        long lineFirstCharOffset = 0;
-
-        for(String line : fLinesToCheck) {
-            getMatchMappingInSingleLine(matchingPairs, line, lineFirstCharOffset);
-            lineFirstCharOffset += line.length();  // Update lineFirstCharOffset, for the next iteration
-        }
+    @Override
+    public void run() {
+        ChunkMatches chunkMatches = null;
 
-        boolean isFoundMatchingPairs = matchingPairs.size() > 0;
-        if(isFoundMatchingPairs) {
-            fMatchingPairsToAggregate.add(matchingPairs);
+        try {
+            chunkMatches = searchForMatches();
+        } finally {
+            fChunkMatchesSink.accept(chunkMatches != null ? chunkMatches :
+                    ChunkMatches.createSearchFailed(fLinesToCheck.getChunkIndex()));
         }
     }
 
     /***
-     * This method search matches in a single line
-     * and  mapping between the matching text and MatchInLineLocation that correspond to him.
-     * @param matchingPairs Match mapping between String and match data
-     * @param line the line to search in
-     * @param lineFirstCharOffset the line relative offset comparing to the all text
+     * Search all the texts to find in a given chunk using the shared MatchingEngine
+     * and collect the matches of every text that was found
+     * @return the chunk results
      */
-    private void getMatchMappingInSingleLine(Map<String, List<MatchInLineLocation>> matchingPairs, String line, long lineFirstCharOffset) {
-        for (String textToFind : fTextToFindSet) {
-            String patternString = "\\b(" + textToFind + ")\\b";
-            Pattern pattern = Pattern.compile(patternString);
-            Matcher matcher = pattern.matcher(line);
-
-            while (matcher.find()) {
-                long currentMatchCharOffset = (lineFirstCharOffset + matcher.start(1));
-                MatchInLineLocation matchInLineLocation = new MatchInLineLocation(fFirstLineOffset, currentMatchCharOffset);
+    private ChunkMatches searchForMatches() {
+        long searchStartNanos = System.nanoTime();
+        ChunkResultCache.Key cacheKey = fResultCache != null ? fResultCache.createKey(fLinesToCheck) : null;
+        ChunkTokens chunkTokens = fLineTokenizer != null ? ChunkTokens.tokenize(fLinesToCheck, fLineTokenizer) : null;
+        ChunkMatches chunkMatches = cacheKey != null ? fResultCache.get(cacheKey, fLinesToCheck, chunkTokens) : null;
+        if (cacheKey != null) {
+            fMetrics.onResultCacheLookup(chunkMatches != null);
+        }
 
-                addSingleMatchRecord(textToFind, matchingPairs, matchInLineLocation);
+        if (chunkMatches == null) {
+            chunkMatches = searchChunk(searchStartNanos, chunkTokens);
+            if (cacheKey != null) {
+                fResultCache.put(cacheKey, chunkMatches);
             }
+        } else {
+            fMetrics.onChunkSearched(chunkMatches, System.nanoTime() - searchStartNanos);
         }
+
+        return chunkMatches;
     }
 
     /***
-     * This method appending specific single match to all
-     * the match that corresponding to text that we looking for
-     * @param key the text we looking for
-     * @param matchingPairs Match mapping between String and match data
-     * @param matchInLineLocation Match data
+     * Search the chunk with the MatchingEngine, and report the search time
+     * @param searchStartNanos when the task started
+     * @param chunkTokens the tokens of the chunk lines, null when no token index is built
+     * @return the chunk results
      */
-    private void addSingleMatchRecord(String key, Map<String, List<MatchInLineLocation>> matchingPairs, MatchInLineLocation matchInLineLocation) {
-        List<MatchInLineLocation> listToModify = matchingPairs.getOrDefault(key, new ArrayList<>());
+    private ChunkMatches searchChunk(long searchStartNanos, ChunkTokens chunkTokens) {
+        ChunkMatchesBuilder chunkMatchesBuilder = new ChunkMatchesBuilder(fLinesToCheck.getChunkIndex(),
+                fLinesToCheck.getFirstLineOffset(),
+                fMatchingEngine.getTextToFindCount(),
+                fMaxLocationsPerText);
+
+        ChunkMatches chunkMatches;
+        try {
+            long charsCount = fLinesToCheck.findMatches(fMatchingEngine, fLinePreFilter, chunkMatchesBuilder);
+            chunkMatches = chunkMatchesBuilder.build(charsCount, fLinesToCheck.getEndPosition(), chunkTokens);
+        } finally {
+            chunkMatchesBuilder.releaseSlots();  // A failed search must not leave its slots to the next chunk
+        }
+        long searchNanos = System.nanoTime() - searchStartNanos;
+        fChunkSizeTuner.onChunkSearched(fLinesToCheck.getSize(), searchNanos);
+        fMetrics.onChunkSearched(chunkMatches, searchNanos);
+        fMetrics.onLinesFiltered(chunkMatchesBuilder.getLinesCount(), chunkMatchesBuilder.getFilteredLinesCount());
 
-        listToModify.add(matchInLineLocation);
-        matchingPairs.put(key, listToModify);
+        return chunkMatches;
     }
 }
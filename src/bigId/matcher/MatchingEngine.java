@@ -0,0 +1,58 @@
+package bigId.matcher;
+
+import java.nio.charset.Charset;
+
+/***
+ * This interface represent a dictionary matching engine.
+ * An engine is built once from the set of text to find and then shared (read only)
+ * by all the MatchSearcher tasks, each text to find is identified by its index in the engine.
+ */
+interface MatchingEngine {
+    /***
+     * Callback that receive every match that was found in a single line
+     */
+    interface MatchListener {
+        /***
+         * @param textToFindIndex the index of the text that was matched
+         * @param matchStart the char index of the match start in the line
+         */
+        void onMatch(int textToFindIndex, int matchStart);
+    }
+
+    /***
+     * @return how many texts to find this engine know
+     */
+    int getTextToFindCount();
+
+    /***
+     * @param textToFindIndex index of text to find
+     * @return the text to find in the given index
+     */
+    String getTextToFind(int textToFindIndex);
+
+    /***
+     * Search all the texts to find in a single line.
+     * A match is reported only when it is not next to a word char (see WordBoundary.isMatchBounded)
+     * and matches of the same text never overlap each other.
+     * @param line the line to search in
+     * @param listener the listener that will get all the matches
+     */
+    void findMatches(CharSequence line, MatchListener listener);
+
+    /***
+     * @param charset the charset of the encoded chunks
+     * @return engine that search directly in the encoded bytes and find exactly the same matches,
+     * or null if the engine (or the charset) doesn't support searching in bytes
+     */
+    default ByteMatchingEngine getByteMatchingEngine(Charset charset) {
+        return null;
+    }
+
+    /***
+     * @return true if every match start with the first chars of its text, so the LinePreFilter can drop the lines
+     * that have none of them, false for an engine that find approximate matches
+     */
+    default boolean isLinePreFilterSupported() {
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package bigId.matcher;
+
+import java.util.Set;
+
+/***
+ * All the available matching engines that can be used by the MatchFinderManager
+ */
+public enum MatchingEngineType {
+    /***
+     * Scan every line once for every text to find using a regex
+     */
+    REGEX {
+        @Override
+        MatchingEngine createEngine(Set<String> textToFindSet) {
+            return new RegexMatchingEngine(textToFindSet);
+        }
+    },
+
+    /***
+     * Scan every line once for all the texts to find using an Aho-Corasick automaton
+     */
+    AHO_CORASICK {
+        @Override
+        MatchingEngine createEngine(Set<String> textToFindSet) {
+            return new AhoCorasickMatchingEngine(textToFindSet);
+        }
+    },
+
+    /***
+     * Split every line to words and look up every word once in an index of the texts to find,
+     * ignoring the case and the diacritics and allowing a single typo (approximate matches)
+     */
+    FUZZY {
+        @Override
+        MatchingEngine createEngine(Set<String> textToFindSet) {
+            return new FuzzyMatchingEngine(textToFindSet);
+        }
+    };
+
+    /***
+     * Build the engine of this type
+     * @param textToFindSet all the text we looking for
+     * @return new MatchingEngine that is ready to be shared between the searching tasks
+     */
+    abstract MatchingEngine createEngine(Set<String> textToFindSet);
+}
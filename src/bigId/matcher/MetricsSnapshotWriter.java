@@ -0,0 +1,67 @@
+package bigId.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * This class write a JSON snapshot of the MatchFinderMetrics to a file every interval, on its own daemon thread.
+ * The snapshot is written to a temporary file that is moved over the snapshot file,
+ * so a reader of the file never see a partly written snapshot.
+ * A last snapshot is written when the writer is closed.
+ */
+class MetricsSnapshotWriter implements Closeable {
+    //region Fields
+    private final MatchFinderMetrics fMetrics;
+    private final Path fSnapshotFilePath;
+    private final Path fTemporaryFilePath;
+    private final ScheduledExecutorService fScheduler;
+    //endregion Fields
+
+    //region Constructor
+    public MetricsSnapshotWriter(MatchFinderMetrics metrics, String snapshotFilePath, long intervalMillis) {
+        fMetrics = metrics;
+        fSnapshotFilePath = Paths.get(snapshotFilePath);
+        fTemporaryFilePath = Paths.get(snapshotFilePath + ".tmp");
+        fScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-snapshot-writer");
+            thread.setDaemon(true);  // Never keep the process alive
+            return thread;
+        });
+        fScheduler.scheduleAtFixedRate(this::writeSnapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    //endregion Constructor
+
+    private void writeSnapshot() {
+        try {
+            Files.write(fTemporaryFilePath, fMetrics.toJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(fTemporaryFilePath, fSnapshotFilePath,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write the metrics snapshot: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Stop the periodic snapshots and write the last one
+     */
+    @Override
+    public void close() {
+        fScheduler.shutdown();
+
+        try {
+            fScheduler.awaitTermination(Integer.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        writeSnapshot();
+    }
+}
@@ -0,0 +1,48 @@
+package bigId.matcher;
+
+/***
+ * The way the ChunksAggregator write the results
+ */
+public enum OutputMode {
+    /***
+     * A single line for each text that was found, with all of its matches in the input (the default).
+     * The results are written only when all the chunks were searched.
+     */
+    GROUPED_BY_NAME,
+
+    /***
+     * A line for each text that was found in a chunk, the chunks are written by their order as soon as
+     * all the chunks before them have arrived, so only the out of order chunks are kept in memory.
+     */
+    CHUNK_ORDER,
+
+    /***
+     * A single line for each text that was found, with only its matches count:
+     *      <Name> --> <matches count>
+     * The texts are written by their count (the most found first). The MatchSearcher tasks only count the matches,
+     * so the memory doesn't depend on how many matches there are.
+     */
+    MATCH_COUNTS,
+
+    /***
+     * The same as MATCH_COUNTS, but only for the texts that were found the most times
+     * (MatchFinderOptions.setTopMatchCountsSize), selected by a bounded heap.
+     */
+    TOP_MATCH_COUNTS,
+
+    /***
+     * A single line for each text that was found, with its matches count and only its first matches
+     * (MatchFinderOptions.setSampledLocationsCount):
+     *      <Name> --> <matches count> [[lineOffset=<line offset>, charOffset=<char offset>],...]
+     * The texts are written by the order of their first match. The MatchSearcher tasks keep only the first matches
+     * of every chunk, so the memory doesn't depend on how many matches there are.
+     */
+    SAMPLED_LOCATIONS;
+
+    /***
+     * @return true if the matches are only counted or sampled, so not all the locations are kept
+     */
+    boolean isSummary() {
+        return this == MATCH_COUNTS || this == TOP_MATCH_COUNTS || this == SAMPLED_LOCATIONS;
+    }
+}
@@ -0,0 +1,359 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/***
+ * InputStream of the decompressed bytes of a gzip stream.
+ * A gzip member can be decoded on its own, but its compressed size is usually known only after it was inflated.
+ * The members of a blocked gzip (BGZF, as written by bgzip) hold their size in a 'BC' extra field of the header,
+ * so they are read without inflating them and decoded in parallel, by batches, while the decoded batches are
+ * read by their order (a bounded number of batches are decoded ahead of the reader).
+ * From the first member without its size the rest of the stream is decoded by a GZIPInputStream on the reading
+ * thread (a single member, or members that were concatenated, can't be split).
+ * Every member that is decoded in parallel is checked by the CRC32 and the size of its trailer.
+ */
+class ParallelGzipInputStream extends InputStream {
+    //region CONSTANTS
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;  // CRC32 and the decompressed size
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int DEFLATE_METHOD = 8;
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+    private static final int BLOCK_SIZE_SUBFIELD_1 = 'B';
+    private static final int BLOCK_SIZE_SUBFIELD_2 = 'C';
+    private static final int BLOCK_SIZE_SUBFIELD_LENGTH = 2;
+    private static final int BATCH_SIZE = 1024 * 1024;  // Compressed bytes of a decoding task
+    private static final int MAX_DECODED_RATIO = 1024;  // Deflate can't compress more than about 1032:1
+    private static final int DECODERS_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_PENDING_BATCHES = 2 * DECODERS_COUNT;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final InputStream fCompressedStream;
+    private final ExecutorService fDecoders;
+    private final ArrayDeque<Future<byte[]>> fPendingBatches;  // By the order of the input
+    private InputStream fSequentialStream;  // The rest of the input after the first member without its size
+    private boolean fIsMembersEnd;  // No more members to read in parallel
+    private byte[] fBatch;
+    private int fBatchOffset;
+    //endregion Fields
+
+    //region Constructor
+    public ParallelGzipInputStream(InputStream compressedStream) {
+        fCompressedStream = compressedStream;
+        fDecoders = Executors.newFixedThreadPool(DECODERS_COUNT, task -> {
+            Thread thread = new Thread(task, "gzip-decoder");
+            thread.setDaemon(true);  // Never keep the process alive
+            return thread;
+        });
+        fPendingBatches = new ArrayDeque<>();
+        fIsMembersEnd = false;
+        fBatch = new byte[0];
+        fBatchOffset = 0;
+    }
+    //endregion Constructor
+
+    //region Reading
+    @Override
+    public int read() throws IOException {
+        byte[] singleByte = new byte[1];
+        return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (fBatchOffset == fBatch.length) {
+            if (!nextBatch()) {
+                return fSequentialStream != null ? fSequentialStream.read(buffer, offset, length) : -1;
+            }
+        }
+
+        int readBytes = Math.min(length, fBatch.length - fBatchOffset);
+        System.arraycopy(fBatch, fBatchOffset, buffer, offset, readBytes);
+        fBatchOffset += readBytes;
+
+        return readBytes;
+    }
+
+    /***
+     * Take the next decoded batch, after submitting the batches that can be decoded ahead
+     * @return false when there are no more batches (the rest of the input, if any, is the sequential stream)
+     * @throws IOException in case of failure in reading or decoding the input
+     */
+    private boolean nextBatch() throws IOException {
+        while (!fIsMembersEnd && fPendingBatches.size() < MAX_PENDING_BATCHES) {
+            submitNextBatch();
+        }
+
+        Future<byte[]> pendingBatch = fPendingBatches.poll();
+        if (pendingBatch == null) {
+            return false;
+        }
+
+        try {
+            fBatch = pendingBatch.get();
+            fBatchOffset = 0;
+            return true;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding the gzip input");
+        }
+    }
+
+    /***
+     * Read the next members (that hold their size) up to the batch size and submit them to be decoded together
+     */
+    private void submitNextBatch() throws IOException {
+        List<byte[]> members = new ArrayList<>();
+        long batchSize = 0;
+
+        while (batchSize < BATCH_SIZE && !fIsMembersEnd) {
+            byte[] member = readMember();
+
+            if (member != null) {
+                members.add(member);
+                batchSize += member.length;
+            }
+        }
+
+        if (!members.isEmpty()) {
+            fPendingBatches.add(fDecoders.submit(() -> decodeMembers(members)));
+        }
+    }
+
+    /***
+     * Read a whole member when its header hold its size, otherwise the member is left to the sequential stream
+     * @return the compressed member, or null when there are no more members to read in parallel
+     */
+    private byte[] readMember() throws IOException {
+        byte[] header = fCompressedStream.readNBytes(HEADER_SIZE);
+
+        if (header.length == 0) {
+            fIsMembersEnd = true;
+            return null;
+        }
+
+        if (header.length < HEADER_SIZE || (header[0] & 0xff) != GZIP_MAGIC_1 || (header[1] & 0xff) != GZIP_MAGIC_2 ||
+                header[2] != DEFLATE_METHOD) {
+            throw new IOException("Not in GZIP format");
+        }
+
+        byte[] extraField = new byte[0];
+        if ((header[3] & FLAG_EXTRA) != 0) {
+            byte[] extraLength = readFully(2);
+            extraField = concat(extraLength, readFully(readUnsignedShort(extraLength, 0)));
+        }
+
+        byte[] memberStart = concat(header, extraField);
+        int memberSize = getMemberSize(extraField);
+
+        if (memberSize < 0) {
+            startSequentialStream(memberStart);
+            return null;
+        }
+
+        return concat(memberStart, readFully(memberSize - memberStart.length));
+    }
+
+    /***
+     * Decode the rest of the input on the reading thread, after all the members that were already submitted
+     * @param memberStart the bytes of the member header that were already read
+     */
+    private void startSequentialStream(byte[] memberStart) throws IOException {
+        fIsMembersEnd = true;
+        fSequentialStream = new GZIPInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(memberStart), fCompressedStream), BATCH_SIZE);
+    }
+
+    /***
+     * @param extraField the extra field of the header, with its length
+     * @return the member size (of all its bytes) by the 'BC' subfield, or -1 when it is not in the header
+     */
+    private static int getMemberSize(byte[] extraField) {
+        int subfieldStart = 2;
+
+        while (subfieldStart + 4 <= extraField.length) {
+            int subfieldLength = readUnsignedShort(extraField, subfieldStart + 2);
+            boolean isBlockSize = extraField[subfieldStart] == BLOCK_SIZE_SUBFIELD_1 &&
+                    extraField[subfieldStart + 1] == BLOCK_SIZE_SUBFIELD_2 &&
+                    subfieldLength == BLOCK_SIZE_SUBFIELD_LENGTH && subfieldStart + 6 <= extraField.length;
+
+            if (isBlockSize) {
+                return readUnsignedShort(extraField, subfieldStart + 4) + 1;
+            }
+
+            subfieldStart += 4 + subfieldLength;
+        }
+
+        return -1;
+    }
+    //endregion Reading
+
+    //region Decoding
+    /***
+     * Decode the members of a batch, on a decoder thread
+     * @param members whole compressed members
+     * @return the decompressed bytes of all the members
+     * @throws IOException in case a member is corrupted
+     */
+    private static byte[] decodeMembers(List<byte[]> members) throws IOException {
+        long decodedSize = 0;
+        for (byte[] member : members) {
+            decodedSize += Integer.toUnsignedLong(readInt(member, member.length - 4));
+        }
+
+        if (decodedSize > BATCH_SIZE * MAX_DECODED_RATIO) {
+            throw new IOException("Corrupt GZIP member: unexpected size");
+        }
+
+        byte[] decoded = new byte[(int) decodedSize];
+        Inflater inflater = new Inflater(true);  // The gzip header and trailer are not zlib wrapped
+        int decodedOffset = 0;
+
+        try {
+            for (byte[] member : members) {
+                decodedOffset = decodeMember(inflater, member, decoded, decodedOffset);
+                inflater.reset();
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return decoded;
+    }
+
+    private static int decodeMember(Inflater inflater, byte[] member, byte[] decoded, int decodedOffset)
+            throws IOException {
+        int memberSize = readInt(member, member.length - 4);
+        int dataStart = getDataStart(member);
+
+        inflater.setInput(member, dataStart, member.length - TRAILER_SIZE - dataStart);
+        try {
+            int inflatedBytes = 0;
+            byte[] overflow = new byte[1];  // Inflate after the expected size, so the end of the data is reached
+
+            while (!inflater.finished()) {
+                int remainingBytes = memberSize - inflatedBytes;
+                int bytes = remainingBytes > 0 ?
+                        inflater.inflate(decoded, decodedOffset + inflatedBytes, remainingBytes) :
+                        inflater.inflate(overflow);
+
+                if (bytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflatedBytes += bytes;
+            }
+
+            if (inflatedBytes != memberSize || !inflater.finished()) {
+                throw new IOException("Corrupt GZIP member: unexpected size");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt GZIP member: " + e.getMessage(), e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(decoded, decodedOffset, memberSize);
+        if ((int) crc.getValue() != readInt(member, member.length - TRAILER_SIZE)) {
+            throw new IOException("Corrupt GZIP member: CRC mismatch");
+        }
+
+        return decodedOffset + memberSize;
+    }
+
+    /***
+     * @return the index of the deflate data, after the header and its optional fields
+     */
+    private static int getDataStart(byte[] member) {
+        int flags = member[3];
+        int dataStart = HEADER_SIZE;
+
+        if ((flags & FLAG_EXTRA) != 0) {
+            dataStart += 2 + readUnsignedShort(member, dataStart);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            dataStart = skipZeroTerminated(member, dataStart);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            dataStart = skipZeroTerminated(member, dataStart);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            dataStart += 2;
+        }
+
+        return dataStart;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int index) {
+        while (bytes[index] != 0) {
+            index++;
+        }
+
+        return index + 1;
+    }
+    //endregion Decoding
+
+    //region Bytes utils
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = fCompressedStream.readNBytes(length);
+
+        if (bytes.length < length) {
+            throw new EOFException("Unexpected end of the GZIP input");
+        }
+
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int index) {  // Little endian
+        return (bytes[index] & 0xff) | (bytes[index + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int index) {  // Little endian
+        return readUnsignedShort(bytes, index) | readUnsignedShort(bytes, index + 2) << 16;
+    }
+    //endregion Bytes utils
+
+    /***
+     * Stop the decoders and close the compressed stream
+     * @throws IOException in case of failure in closing the stream
+     */
+    @Override
+    public void close() throws IOException {
+        fDecoders.shutdownNow();
+        fPendingBatches.clear();
+
+        if (fSequentialStream != null) {
+            fSequentialStream.close();
+        } else {
+            fCompressedStream.close();
+        }
+    }
+}
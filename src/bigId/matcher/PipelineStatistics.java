@@ -0,0 +1,79 @@
+package bigId.matcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * This class collect the backpressure statistics of the bounded pipeline:
+ * reader --> searching tasks queue --> MatchSearcher tasks --> aggregation queue --> ChunksAggregator
+ * A stall is the time a producer was blocked because the next queue was full.
+ */
+public class PipelineStatistics {
+    //region Fields
+    private final int fSearchingTasksQueueCapacity;
+    private final int fAggregationQueueCapacity;
+    private final LongAdder fReaderStallNanos = new LongAdder();
+    private final LongAdder fSearchersStallNanos = new LongAdder();
+    private final AtomicInteger fSearchingTasksQueuePeakDepth = new AtomicInteger();
+    private final AtomicInteger fAggregationQueuePeakDepth = new AtomicInteger();
+    //endregion Fields
+
+    //region Constructor
+    PipelineStatistics(int searchingTasksQueueCapacity, int aggregationQueueCapacity) {
+        fSearchingTasksQueueCapacity = searchingTasksQueueCapacity;
+        fAggregationQueueCapacity = aggregationQueueCapacity;
+    }
+    //endregion Constructor
+
+    //region Recording
+    void addReaderStall(long stallNanos) {
+        fReaderStallNanos.add(stallNanos);
+    }
+
+    void addSearcherStall(long stallNanos) {
+        fSearchersStallNanos.add(stallNanos);
+    }
+
+    void updateSearchingTasksQueueDepth(int depth) {
+        fSearchingTasksQueuePeakDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    void updateAggregationQueueDepth(int depth) {
+        fAggregationQueuePeakDepth.accumulateAndGet(depth, Math::max);
+    }
+    //endregion Recording
+
+    //region Getters
+    public int getSearchingTasksQueueCapacity() {
+        return fSearchingTasksQueueCapacity;
+    }
+
+    public int getAggregationQueueCapacity() {
+        return fAggregationQueueCapacity;
+    }
+
+    public long getReaderStallMillis() {
+        return fReaderStallNanos.sum() / 1_000_000;
+    }
+
+    public long getSearchersStallMillis() {
+        return fSearchersStallNanos.sum() / 1_000_000;
+    }
+
+    public int getSearchingTasksQueuePeakDepth() {
+        return fSearchingTasksQueuePeakDepth.get();
+    }
+
+    public int getAggregationQueuePeakDepth() {
+        return fAggregationQueuePeakDepth.get();
+    }
+    //endregion Getters
+
+    @Override
+    public String toString() {
+        return String.format("searching tasks queue [capacity=%d, peakDepth=%d, readerStallMs=%d], " +
+                        "aggregation queue [capacity=%d, peakDepth=%d, searchersStallMs=%d]",
+                fSearchingTasksQueueCapacity, getSearchingTasksQueuePeakDepth(), getReaderStallMillis(),
+                fAggregationQueueCapacity, getAggregationQueuePeakDepth(), getSearchersStallMillis());
+    }
+}
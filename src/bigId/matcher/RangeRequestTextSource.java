@@ -0,0 +1,246 @@
+package bigId.matcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/***
+ * TextSource that download a http url using several parallel range requests.
+ * The url is split to byte ranges that are downloaded at the same time, and the ranges are
+ * split to chunks by their order, a chunk that cross the end of a range is completed by the next range,
+ * so the line and char offsets are the same as the ones of a serial read.
+ * Every range is asked by If-Range of the input validator that was probed, so all the ranges are of the same version
+ * of the input, and a resumed scan start only when the input is still the input of the checkpoint.
+ * When the server doesn't support range requests (or the charset is not ascii compatible)
+ * the source fall back to a single stream UrlTextSource.
+ */
+class RangeRequestTextSource implements TextSource {
+    //region CONSTANTS
+    private static final int RANGE_SIZE = 8 * 1024 * 1024;  // In bytes
+    private static final int RANGES_IN_FLIGHT_PER_CONNECTION = 2;  // Bound the memory of the downloaded ranges
+    private static final String PROBE_REQUEST_METHOD = "HEAD";
+    private static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String RANGE_HEADER = "Range";
+    private static final String IF_RANGE_HEADER = "If-Range";
+    private static final String BYTES_RANGE_UNIT = "bytes";
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String fTextToReadUrl;
+    private final int fConnectionsCount;
+    private final Charset fCharset;
+    private final ExecutionModel fExecutionModel;
+    private final TextChunker fTextChunker;
+    private long fContentLength;
+    private InputValidator fInputValidator;  // Of the input that was probed
+    private TextSource fFallbackSource;  // Not null when range requests are not supported
+    private ExecutorService fDownloadExecutor;
+    //endregion Fields
+
+    //region Constructor
+    public RangeRequestTextSource(String textToReadUrl, int connectionsCount, Charset charset,
+                                  ExecutionModel executionModel, TextChunker textChunker) {
+        fTextToReadUrl = textToReadUrl;
+        fConnectionsCount = connectionsCount;
+        fCharset = charset;
+        fExecutionModel = executionModel;
+        fTextChunker = textChunker;
+    }
+    //endregion Constructor
+
+    /***
+     * Check if the server support range requests, if not open the fallback single stream source
+     * @throws IOException in case of failure in the connection to the server, or when a resumed scan read an input
+     * that was changed since the checkpoint was taken
+     */
+    @Override
+    public void open() throws IOException {
+        boolean isRangeRequestSupported = LineTerminators.isAsciiCompatible(fCharset) && probeRangeSupport();
+
+        if (isRangeRequestSupported) {
+            if (fTextChunker.getStartPosition() > 0 && !fInputValidator.isSameInput(fTextChunker.getStartValidator())) {
+                throw new IOException("The input was changed since the checkpoint was taken: " + fTextToReadUrl);
+            }
+
+            fDownloadExecutor = fExecutionModel.createIoExecutor(fConnectionsCount);
+        } else {
+            fFallbackSource = new UrlTextSource(fTextToReadUrl, fCharset, fTextChunker);
+            fFallbackSource.open();
+        }
+    }
+
+    /***
+     * Send a HEAD request and check the Content-Length and Accept-Ranges headers
+     * @return true if the content length is known and the server accept bytes ranges
+     * @throws IOException in case of failure in the connection to the server
+     */
+    private boolean probeRangeSupport() throws IOException {
+        HttpURLConnection connection = openConnection(PROBE_REQUEST_METHOD);
+
+        try {
+            fContentLength = connection.getContentLengthLong();
+            fInputValidator = InputValidator.fromResponse(connection);
+            String acceptRanges = connection.getHeaderField(ACCEPT_RANGES_HEADER);
+            String contentEncoding = connection.getHeaderField(CONTENT_ENCODING_HEADER);
+
+            return connection.getResponseCode() == HttpURLConnection.HTTP_OK &&
+                    fContentLength > 0 &&
+                    BYTES_RANGE_UNIT.equalsIgnoreCase(acceptRanges) &&
+                    contentEncoding == null;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /***
+     * Download the ranges in parallel (a bounded number of ranges at a time)
+     * and split them to chunks by their order, a resumed scan start from the start position of the TextChunker.
+     * Every range is appended to a carry buffer after the bytes of the chunk that the previous range didn't complete
+     * (the buffer is doubled when they don't fit in it), and the bytes of every chunk are copied out of the buffer,
+     * so a chunk never hold a whole range and a long line is never copied again for every range
+     * @throws IOException in case of failure in downloading one of the ranges
+     */
+    @Override
+    public void readChunks(TextChunkConsumer consumer) throws IOException {
+        if (fFallbackSource != null) {
+            fFallbackSource.readChunks(consumer);
+            return;
+        }
+
+        Queue<Future<byte[]>> downloadingRanges = new ArrayDeque<>();
+        int maxRangesInFlight = fConnectionsCount * RANGES_IN_FLIGHT_PER_CONNECTION;
+        long nextRangeStart = fTextChunker.getStartPosition();
+        byte[] buffer = new byte[RANGE_SIZE];
+        int bufferedBytes = 0;  // Bytes of the last chunk that was not completed by the previous range
+
+        while (nextRangeStart < fContentLength || !downloadingRanges.isEmpty()) {
+            while (nextRangeStart < fContentLength && downloadingRanges.size() < maxRangesInFlight) {
+                long rangeStart = nextRangeStart;
+                long rangeEnd = Math.min(rangeStart + RANGE_SIZE, fContentLength);
+
+                downloadingRanges.add(fDownloadExecutor.submit(() -> downloadRange(rangeStart, rangeEnd)));
+                nextRangeStart = rangeEnd;
+            }
+
+            byte[] range = waitForRange(downloadingRanges.poll());
+            boolean isLastRange = nextRangeStart == fContentLength && downloadingRanges.isEmpty();
+            buffer = ensureCapacity(buffer, bufferedBytes + range.length);
+            System.arraycopy(range, 0, buffer, bufferedBytes, range.length);
+            bufferedBytes += range.length;
+
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, bufferedBytes);
+            int chunkStart = 0;
+            int chunkEnd;
+
+            while (chunkStart < bufferedBytes &&
+                    (chunkEnd = fTextChunker.findChunkEnd(bytes, chunkStart, bufferedBytes, isLastRange))
+                            != LineTerminators.LINE_END_NOT_FOUND) {
+                ByteBuffer chunkBytes = ByteBuffer.wrap(Arrays.copyOfRange(buffer, chunkStart, chunkEnd));
+
+                consumer.accept(fTextChunker.createEncodedChunk(chunkBytes, fCharset));
+                chunkStart = chunkEnd;
+            }
+
+            System.arraycopy(buffer, chunkStart, buffer, 0, bufferedBytes - chunkStart);
+            bufferedBytes -= chunkStart;
+        }
+    }
+
+    /***
+     * @return the buffer, or a copy of it that its length was doubled until it has at least the given capacity
+     * @throws IOException when the capacity is above the max array length (a line of more than 2GB)
+     */
+    private static byte[] ensureCapacity(byte[] buffer, long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("A chunk of more than " + Integer.MAX_VALUE + " bytes, no line end was found");
+        }
+
+        long newLength = buffer.length;
+        while (newLength < capacity) {
+            newLength = Math.min(newLength * 2, Integer.MAX_VALUE);
+        }
+
+        return newLength == buffer.length ? buffer : Arrays.copyOf(buffer, (int) newLength);
+    }
+
+    private static byte[] waitForRange(Future<byte[]> downloadingRange) throws IOException {
+        try {
+            return downloadingRange.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /***
+     * Download a single bytes range
+     * @param rangeStart first byte of the range
+     * @param rangeEnd the byte after the last byte of the range
+     * @return the bytes of the range
+     * @throws IOException in case of failure in the download, or when the server didn't return the exact range
+     */
+    private byte[] downloadRange(long rangeStart, long rangeEnd) throws IOException {
+        HttpURLConnection connection = openConnection(UrlTextSource.REQUEST_METHOD);
+
+        try {
+            connection.setRequestProperty(RANGE_HEADER, BYTES_RANGE_UNIT + "=" + rangeStart + "-" + (rangeEnd - 1));
+
+            String ifRangeValue = fInputValidator.getIfRangeValue();
+            if (ifRangeValue != null) {
+                connection.setRequestProperty(IF_RANGE_HEADER, ifRangeValue);  // Otherwise the whole input is returned
+            }
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Range request was not accepted, response code: " + connection.getResponseCode());
+            }
+
+            int rangeLength = (int) (rangeEnd - rangeStart);
+            ByteArrayOutputStream rangeBytes = new ByteArrayOutputStream(rangeLength);
+            try (InputStream inputStream = connection.getInputStream()) {
+                inputStream.transferTo(rangeBytes);
+            }
+
+            if (rangeBytes.size() != rangeLength) {
+                throw new IOException("Expected " + rangeLength + " bytes in range but got " + rangeBytes.size());
+            }
+
+            return rangeBytes.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(String requestMethod) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(fTextToReadUrl).openConnection();
+
+        connection.setRequestMethod(requestMethod);
+        connection.setConnectTimeout(UrlTextSource.CONNECTION_TIMEOUT);
+        connection.setReadTimeout(UrlTextSource.READ_TIMEOUT);
+
+        return connection;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fDownloadExecutor != null) {
+            fDownloadExecutor.shutdownNow();
+        }
+
+        if (fFallbackSource != null) {
+            fFallbackSource.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bigId.matcher;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/***
+ * This class is the regex based MatchingEngine.
+ * All the patterns are compiled once when the engine is created (the texts are quoted, so names like
+ * O'Brien or C++ are matched literally) and the compiled patterns are shared by all the searching tasks.
+ * A match must not be next to a word char: the pattern has '\b' in a word char edge of the text and '\B' in a non
+ * word char edge (a '\b' after C++ would require a word char after it), the same as WordBoundary.isMatchBounded.
+ * It still scan every line once for every text to find, so the search time grow with the size of the dictionary.
+ */
+class RegexMatchingEngine implements MatchingEngine {
+    //region Fields
+    private final String[] fTextsToFind;
+    private final Pattern[] fPatterns;  // fPatterns[i] is the compiled pattern of fTextsToFind[i], null if empty
+    private final int fCompiledPatternsCount;
+    //endregion Fields
+
+    //region Constructor
+    public RegexMatchingEngine(Set<String> textToFindSet) {
+        fTextsToFind = textToFindSet.toArray(new String[0]);
+        fPatterns = new Pattern[fTextsToFind.length];
+        fCompiledPatternsCount = compilePatterns();
+    }
+
+    /***
+     * Compile a single word bounded pattern for each text to find
+     * @return how many patterns were compiled
+     */
+    private int compilePatterns() {
+        int compiledPatternsCount = 0;
+
+        for (int i = 0; i < fTextsToFind.length; i++) {
+            String textToFind = fTextsToFind[i];
+            if (textToFind.isEmpty()) {
+                continue;  // An empty text has no meaning as a name, ignore it
+            }
+
+            String patternString = getBoundary(textToFind, 0) + "(" + Pattern.quote(textToFind) + ")" +
+                    getBoundary(textToFind, textToFind.offsetByCodePoints(textToFind.length(), -1));
+            fPatterns[i] = Pattern.compile(patternString);
+            compiledPatternsCount++;
+        }
+
+        return compiledPatternsCount;
+    }
+
+    /***
+     * @param textToFind the text to find
+     * @param edgeIndex the index of the text first or last code point
+     * @return the boundary that make sure the char next to the edge is not a word char
+     */
+    private static String getBoundary(String textToFind, int edgeIndex) {
+        return WordBoundary.isWordAt(textToFind, edgeIndex) ? "\\b" : "\\B";
+    }
+    //endregion Constructor
+
+    /***
+     * @return how many patterns were compiled (the empty texts have no pattern)
+     */
+    public int getCompiledPatternsCount() {
+        return fCompiledPatternsCount;
+    }
+
+    @Override
+    public int getTextToFindCount() {
+        return fTextsToFind.length;
+    }
+
+    @Override
+    public String getTextToFind(int textToFindIndex) {
+        return fTextsToFind[textToFindIndex];
+    }
+
+    @Override
+    public void findMatches(CharSequence line, MatchListener listener) {
+        for (int i = 0; i < fPatterns.length; i++) {
+            Pattern pattern = fPatterns[i];
+            if (pattern == null) {
+                continue;
+            }
+
+            Matcher matcher = pattern.matcher(line);
+            while (matcher.find()) {
+                listener.onMatch(i, matcher.start(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/***
+ * This class is a checkpoint of a scan: the state after the last chunk that was fully aggregated.
+ * It hold the next chunk index, line offset and byte position in the input (where a resumed scan start reading),
+ * the chars of the last block of 1000 lines that were already counted, the output file position
+ * (CHUNK_ORDER mode or following) and the partial results of every text that was found so far (GROUPED_BY_NAME mode).
+ * A checkpoint belong to a single url and search (the dictionary, the matching engine type and the charset),
+ * a checkpoint of another scan is never resumed.
+ * It also hold the InputValidator of the input, so a checkpoint of an input that was changed is not resumed.
+ * The binary format is:
+ *      magic, version, url, input validator (ETag, last modified, size), search fingerprint, output mode,
+ *      next chunk index, next line offset, input position, last block chars count, output position, found texts count,
+ *      and for every found text: the text, matches count, and the matches as (line offset delta, char offset)
+ * where the numbers of the matches are written as VarLongs.
+ */
+final class ScanCheckpoint {
+    //region CONSTANTS
+    private static final int MAGIC = 0x42494443;  // "BIDC"
+    private static final int VERSION = 2;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String fTextToReadUrl;
+    private final InputValidator fInputValidator;
+    private final long fSearchFingerprint;
+    private final OutputMode fOutputMode;
+    private final long fNextChunkIndex;
+    private final long fNextLineOffset;
+    private final long fInputPosition;
+    private final long fLastBlockCharsCount;
+    private final long fOutputPosition;
+    private final Map<String, MatchLocations> fPartialResults;  // By the order of the texts first match
+    //endregion Fields
+
+    //region Constructor
+    public ScanCheckpoint(String textToReadUrl, InputValidator inputValidator, long searchFingerprint,
+                          OutputMode outputMode, long nextChunkIndex, long nextLineOffset, long inputPosition,
+                          long lastBlockCharsCount, long outputPosition, Map<String, MatchLocations> partialResults) {
+        fTextToReadUrl = textToReadUrl;
+        fInputValidator = inputValidator;
+        fSearchFingerprint = searchFingerprint;
+        fOutputMode = outputMode;
+        fNextChunkIndex = nextChunkIndex;
+        fNextLineOffset = nextLineOffset;
+        fInputPosition = inputPosition;
+        fLastBlockCharsCount = lastBlockCharsCount;
+        fOutputPosition = outputPosition;
+        fPartialResults = partialResults;
+    }
+    //endregion Constructor
+
+    /***
+     * The partial results of another engine type (e.g. FUZZY) or of another charset are not the results of this scan
+     * @param options the options of the scan
+     * @param matchingEngine the engine of the scan
+     * @return a fingerprint of the matching engine type, the charset and all the texts to find
+     * (not depending on their order)
+     */
+    static long getSearchFingerprint(MatchFinderOptions options, MatchingEngine matchingEngine) {
+        String[] texts = new String[matchingEngine.getTextToFindCount()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = matchingEngine.getTextToFind(i);
+        }
+        Arrays.sort(texts);
+
+        CRC32 crc = new CRC32();
+        crc.update(options.getMatchingEngineType().name().getBytes(StandardCharsets.UTF_8));
+        crc.update(0);
+        crc.update(options.getCharset().name().getBytes(StandardCharsets.UTF_8));
+        crc.update(0);
+        for (String text : texts) {
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            crc.update(0);  // Separate the texts, so {"ab"} and {"a", "b"} are different
+        }
+
+        return (long) texts.length << 32 | crc.getValue();
+    }
+
+    /***
+     * @return true if the checkpoint was taken by a scan of the same url, search and output mode
+     */
+    boolean isResumableBy(String textToReadUrl, long searchFingerprint, OutputMode outputMode) {
+        return fTextToReadUrl.equals(textToReadUrl) && fSearchFingerprint == searchFingerprint &&
+                fOutputMode == outputMode;
+    }
+
+    //region Getters
+    public InputValidator getInputValidator() {
+        return fInputValidator;
+    }
+
+    public long getNextChunkIndex() {
+        return fNextChunkIndex;
+    }
+
+    public long getNextLineOffset() {
+        return fNextLineOffset;
+    }
+
+    public long getInputPosition() {
+        return fInputPosition;
+    }
+
+    public long getLastBlockCharsCount() {
+        return fLastBlockCharsCount;
+    }
+
+    public long getOutputPosition() {
+        return fOutputPosition;
+    }
+
+    public Map<String, MatchLocations> getPartialResults() {
+        return fPartialResults;
+    }
+    //endregion Getters
+
+    //region Binary format
+    /***
+     * Write the checkpoint to a temporary file that is moved over the checkpoint file,
+     * so a crash while writing never leave a partly written checkpoint
+     * @param checkpointFilePath the checkpoint file
+     * @throws IOException in case of failure in writing the file
+     */
+    public void write(Path checkpointFilePath) throws IOException {
+        Path temporaryFilePath = checkpointFilePath.resolveSibling(checkpointFilePath.getFileName() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFilePath)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(fTextToReadUrl);
+            fInputValidator.write(output);
+            output.writeLong(fSearchFingerprint);
+            output.writeByte(fOutputMode.ordinal());
+            output.writeLong(fNextChunkIndex);
+            output.writeLong(fNextLineOffset);
+            output.writeLong(fInputPosition);
+            output.writeLong(fLastBlockCharsCount);
+            output.writeLong(fOutputPosition);
+            output.writeInt(fPartialResults.size());
+
+            for (Map.Entry<String, MatchLocations> textResults : fPartialResults.entrySet()) {
+                MatchLocations matchLocations = textResults.getValue();
+                long previousLineOffset = 0;
+
+                output.writeUTF(textResults.getKey());
+                output.writeInt(matchLocations.size());
+                for (int i = 0; i < matchLocations.size(); i++) {
+                    VarLongs.write(output, matchLocations.getLineOffset(i) - previousLineOffset);
+                    VarLongs.write(output, matchLocations.getCharOffset(i));
+                    previousLineOffset = matchLocations.getLineOffset(i);
+                }
+            }
+        }
+
+        Files.move(temporaryFilePath, checkpointFilePath,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * @param checkpointFilePath the checkpoint file
+     * @return the checkpoint in the file
+     * @throws IOException in case of failure in reading the file, or if it is not a checkpoint of this version
+     */
+    public static ScanCheckpoint read(Path checkpointFilePath) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(checkpointFilePath)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a checkpoint file of this version: " + checkpointFilePath);
+            }
+
+            String textToReadUrl = input.readUTF();
+            InputValidator inputValidator = InputValidator.read(input);
+            long searchFingerprint = input.readLong();
+            OutputMode outputMode = OutputMode.values()[input.readByte()];
+            long nextChunkIndex = input.readLong();
+            long nextLineOffset = input.readLong();
+            long inputPosition = input.readLong();
+            long lastBlockCharsCount = input.readLong();
+            long outputPosition = input.readLong();
+            int foundTextsCount = input.readInt();
+            Map<String, MatchLocations> partialResults = new LinkedHashMap<>();
+
+            for (int text = 0; text < foundTextsCount; text++) {
+                String textToFind = input.readUTF();
+                int matchesCount = input.readInt();
+                MatchLocations matchLocations = new MatchLocations(matchesCount);
+                long lineOffset = 0;
+
+                for (int i = 0; i < matchesCount; i++) {
+                    lineOffset += VarLongs.read(input);
+                    matchLocations.add(lineOffset, VarLongs.read(input));
+                }
+
+                partialResults.put(textToFind, matchLocations);
+            }
+
+            return new ScanCheckpoint(textToReadUrl, inputValidator, searchFingerprint, outputMode, nextChunkIndex,
+                    nextLineOffset, inputPosition, lastBlockCharsCount, outputPosition, partialResults);
+        }
+    }
+    //endregion Binary format
+}
@@ -0,0 +1,138 @@
+package bigId.matcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/***
+ * This class manage the checkpoint file of a single scan (a url, a search and an output mode).
+ * It load the checkpoint a scan can resume from, tell the ChunksAggregator when the next checkpoint is due
+ * (every interval), write the checkpoints and delete the file when the scan was completed.
+ * The input is probed when the checkpoint is loaded, a checkpoint of an input that was changed since it was taken
+ * is not resumed, and the checkpoints of the scan hold the validator of the input that is scanned.
+ */
+class ScanCheckpointer {
+    //region Fields
+    private final Path fCheckpointFilePath;
+    private final long fIntervalNanos;
+    private final String fTextToReadUrl;
+    private final long fSearchFingerprint;
+    private final OutputMode fOutputMode;
+    private InputValidator fInputValidator;  // Of the input that is scanned
+    private long fLastCheckpointNanos;
+    //endregion Fields
+
+    //region Constructor
+    public ScanCheckpointer(MatchFinderOptions options, String textToReadUrl, MatchingEngine matchingEngine) {
+        fCheckpointFilePath = Paths.get(options.getCheckpointFilePath());
+        fIntervalNanos = options.getCheckpointIntervalMillis() * 1_000_000;
+        fTextToReadUrl = textToReadUrl;
+        fSearchFingerprint = ScanCheckpoint.getSearchFingerprint(options, matchingEngine);
+        fOutputMode = options.getOutputMode();
+        fInputValidator = InputValidator.UNKNOWN;
+        fLastCheckpointNanos = System.nanoTime();
+    }
+    //endregion Constructor
+
+    /***
+     * Probe the input, and load the checkpoint to resume from.
+     * When the input can't be probed (e.g. the server is not available) the checkpoint is resumed
+     * and the TextSource check the input validator when it read the input
+     * @param isInputGrowing true if the input is followed, so it may have grown since the checkpoint was taken
+     * @return the checkpoint that was left by a failed scan of the same url, search, output mode and input,
+     * or null if the scan must start from the beginning
+     */
+    public ScanCheckpoint loadResumeCheckpoint(boolean isInputGrowing) {
+        InputValidator inputValidator = probeInputValidator();
+        fInputValidator = inputValidator != null ? inputValidator : InputValidator.UNKNOWN;
+
+        if (!Files.exists(fCheckpointFilePath)) {
+            return null;
+        }
+
+        try {
+            ScanCheckpoint checkpoint = ScanCheckpoint.read(fCheckpointFilePath);
+
+            if (!checkpoint.isResumableBy(fTextToReadUrl, fSearchFingerprint, fOutputMode)) {
+                System.err.println("Checkpoint " + fCheckpointFilePath + " belong to another scan, starting over");
+                return null;
+            }
+
+            if (inputValidator == null) {
+                fInputValidator = checkpoint.getInputValidator();  // Still the input of the checkpoint
+            } else if (isInputGrowing ? !inputValidator.isGrownInput(checkpoint.getInputValidator()) :
+                    !inputValidator.isSameInput(checkpoint.getInputValidator())) {
+                System.err.println("The input was changed since checkpoint " + fCheckpointFilePath +
+                        " was taken, starting over");
+                return null;
+            }
+
+            System.err.println("Resuming from checkpoint " + fCheckpointFilePath + ": line " +
+                    checkpoint.getNextLineOffset() + ", byte " + checkpoint.getInputPosition());
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read checkpoint " + fCheckpointFilePath + ", starting over: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /***
+     * @return the validator of the input as it is now, or null if the input can't be probed
+     */
+    private InputValidator probeInputValidator() {
+        try {
+            return InputValidator.probe(fTextToReadUrl);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to probe " + fTextToReadUrl + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /***
+     * @return true if the interval since the last checkpoint has passed
+     */
+    public boolean isCheckpointDue() {
+        return System.nanoTime() - fLastCheckpointNanos >= fIntervalNanos;
+    }
+
+    /***
+     * Write the checkpoint of the given scan state, a failure in writing is reported and the scan go on
+     * @param nextChunkIndex the index of the first chunk that was not aggregated
+     * @param nextLineOffset the first line of that chunk
+     * @param inputPosition the byte position of that chunk in the input
+     * @param lastBlockCharsCount the chars of the last block that were in the aggregated chunks
+     * @param outputPosition the output file size (CHUNK_ORDER output mode or following)
+     * @param partialResults the merged matches of every text that was found
+     */
+    public void writeCheckpoint(long nextChunkIndex, long nextLineOffset, long inputPosition, long lastBlockCharsCount,
+                                long outputPosition, Map<String, MatchLocations> partialResults) {
+        ScanCheckpoint checkpoint = new ScanCheckpoint(fTextToReadUrl, fInputValidator, fSearchFingerprint,
+                fOutputMode, nextChunkIndex, nextLineOffset, inputPosition, lastBlockCharsCount, outputPosition,
+                partialResults);
+
+        try {
+            checkpoint.write(fCheckpointFilePath);
+        } catch (IOException e) {
+            System.err.println("Failed to write checkpoint " + fCheckpointFilePath + ": " + e.getMessage());
+        } finally {
+            fLastCheckpointNanos = System.nanoTime();
+        }
+    }
+
+    /***
+     * Delete the checkpoint file, called when the scan was completed
+     */
+    public void deleteCheckpoint() {
+        try {
+            Files.deleteIfExists(fCheckpointFilePath);
+        } catch (IOException e) {
+            System.err.println("Failed to delete checkpoint " + fCheckpointFilePath + ": " + e.getMessage());
+        }
+    }
+
+    public Path getCheckpointFilePath() {
+        return fCheckpointFilePath;
+    }
+}
@@ -0,0 +1,143 @@
+package bigId.matcher;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Utils for the messages between the ShardedScanCoordinator and its ShardWorker processes (over a local socket).
+ * A worker connect and send a hello with the token it got from its environment (so only the workers that the
+ * coordinator started are accepted) and its process id, the coordinator answer with the setup of the search: the options that the
+ * searching depend on and the texts to find by the order of their indexes.
+ * Then the coordinator send the shards one by one, for every shard the worker send the results of its chunks
+ * by their order and then SHARD_DONE (or SHARD_FAILED when the shard could not be read), until STOP.
+ * The messages are:
+ *      hello: magic, version, token, worker process id
+ *      setup: engine type, charset, chunking mode, target chunk bytes, pre filter, output mode,
+ *             sampled locations count, parallel download connections, execution model, texts count, texts
+ *      SHARD: url, start position, start line offset, end position
+ *      CHUNK: results length, results (as kept by InputShard)
+ *      SHARD_DONE, SHARD_FAILED: failure message, STOP
+ */
+final class ShardProtocol {
+    //region CONSTANTS
+    static final String TOKEN_ENVIRONMENT_VARIABLE = "BIG_ID_SHARD_TOKEN";
+    static final byte SHARD = 1;
+    static final byte STOP = 2;
+    static final byte CHUNK = 3;
+    static final byte SHARD_DONE = 4;
+    static final byte SHARD_FAILED = 5;
+    private static final int MAGIC = 0x42494453;  // "BIDS"
+    private static final int VERSION = 2;
+    static final long INVALID_HELLO = -1;
+    //endregion CONSTANTS
+
+    private ShardProtocol() {
+    }
+
+    //region Hello
+    static void writeHello(DataOutputStream output, String token) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(token);
+        output.writeLong(ProcessHandle.current().pid());
+        output.flush();
+    }
+
+    /***
+     * @return the process id of the worker if the hello came from a worker of this version that has the given token,
+     * otherwise INVALID_HELLO
+     */
+    static long readHello(DataInputStream input, String token) throws IOException {
+        boolean isValid = input.readInt() == MAGIC && input.readInt() == VERSION && input.readUTF().equals(token);
+
+        return isValid ? input.readLong() : INVALID_HELLO;
+    }
+    //endregion Hello
+
+    //region Setup
+    /***
+     * @param output the connection of the worker
+     * @param options the options of the coordinator
+     * @param matchingEngine the engine of the coordinator, its texts are sent by the order of their indexes
+     */
+    static void writeSetup(DataOutputStream output, MatchFinderOptions options, MatchingEngine matchingEngine)
+            throws IOException {
+        output.writeUTF(options.getMatchingEngineType().name());
+        output.writeUTF(options.getCharset().name());
+        output.writeUTF(options.getChunkingMode().name());
+        output.writeLong(options.getTargetChunkBytes());
+        output.writeBoolean(options.isLinePreFilterEnabled());
+        output.writeUTF(options.getOutputMode().name());
+        output.writeInt(options.getSampledLocationsCount());
+        output.writeInt(options.getParallelDownloadConnections());
+        output.writeUTF(options.getExecutionModel().name());
+
+        output.writeInt(matchingEngine.getTextToFindCount());
+        for (int textIndex = 0; textIndex < matchingEngine.getTextToFindCount(); textIndex++) {
+            output.writeUTF(matchingEngine.getTextToFind(textIndex));
+        }
+        output.flush();
+    }
+
+    /***
+     * @return the options of the coordinator (only the ones that the searching depend on)
+     */
+    static MatchFinderOptions readOptions(DataInputStream input) throws IOException {
+        MatchFinderOptions options = new MatchFinderOptions();
+
+        options.setMatchingEngineType(MatchingEngineType.valueOf(input.readUTF()));
+        options.setCharset(Charset.forName(input.readUTF()));
+        options.setChunkingMode(ChunkingMode.valueOf(input.readUTF()));
+        options.setTargetChunkBytes(input.readLong());
+        options.setLinePreFilterEnabled(input.readBoolean());
+        options.setOutputMode(OutputMode.valueOf(input.readUTF()));
+        options.setSampledLocationsCount(input.readInt());
+        options.setParallelDownloadConnections(input.readInt());
+        options.setExecutionModel(ExecutionModel.valueOf(input.readUTF()));
+        return options;
+    }
+
+    /***
+     * Must be called right after readOptions
+     * @return the texts to find by the order of their indexes
+     */
+    static List<String> readTexts(DataInputStream input) throws IOException {
+        int textsCount = input.readInt();
+        List<String> texts = new ArrayList<>(textsCount);
+
+        for (int textIndex = 0; textIndex < textsCount; textIndex++) {
+            texts.add(input.readUTF());
+        }
+
+        return texts;
+    }
+    //endregion Setup
+
+    //region Shards
+    static void writeShard(DataOutputStream output, InputShard shard) throws IOException {
+        output.writeByte(SHARD);
+        output.writeUTF(shard.getShardedInput().getTextToReadUrl());
+        output.writeLong(shard.getStartPosition());
+        output.writeLong(shard.getStartLineOffset());
+        output.writeLong(shard.getEndPosition());
+        output.flush();
+    }
+
+    static void writeChunk(DataOutputStream output, byte[] chunkResults) throws IOException {
+        output.writeByte(CHUNK);
+        output.writeInt(chunkResults.length);
+        output.write(chunkResults);
+    }
+
+    static byte[] readChunk(DataInputStream input) throws IOException {
+        byte[] chunkResults = new byte[input.readInt()];
+
+        input.readFully(chunkResults);
+        return chunkResults;
+    }
+    //endregion Shards
+}
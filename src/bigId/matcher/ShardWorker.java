@@ -0,0 +1,195 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * This class is a worker process of the ShardedScanCoordinator, it is started by the coordinator with the port
+ * of the coordinator local socket (and the connection token in its environment).
+ * The worker build the MatchingEngine once from the setup of the coordinator, and then search the shards that
+ * the coordinator send one by one with the same pipeline as MatchFinderManager: the shard is split to chunks by
+ * a TextChunker and every chunk is searched by a MatchSearcher task, on all the cores of the worker.
+ * A byte range shard of a local file is memory mapped from its start position to its end position, a whole input
+ * shard is read by the TextSource that fit its url. The results of the chunks are sent back by their order.
+ * The worker exit when the coordinator send STOP or close the connection.
+ */
+public class ShardWorker {
+    //region Fields
+    private final DataInputStream fInput;
+    private final DataOutputStream fOutput;
+    private final MatchFinderOptions fOptions;
+    private final MatchingEngine fMatchingEngine;
+    private final LinePreFilter fLinePreFilter;  // null when the pre filter is disabled
+    private final ChunkSizeTuner fChunkSizeTuner;  // Shared by all the shards
+    private final int fSearchingThreadsCount;
+    //endregion Fields
+
+    //region Constructor
+    /***
+     * Read the setup of the coordinator and build the MatchingEngine
+     * @throws IOException in case of failure in reading the setup, or if the engine doesn't keep the texts order
+     */
+    private ShardWorker(DataInputStream input, DataOutputStream output) throws IOException {
+        fInput = input;
+        fOutput = output;
+        fOptions = ShardProtocol.readOptions(input);
+
+        List<String> texts = ShardProtocol.readTexts(input);
+        fMatchingEngine = fOptions.getMatchingEngineType().createEngine(new LinkedHashSet<>(texts));
+        for (int textIndex = 0; textIndex < texts.size(); textIndex++) {
+            // The results hold the text indexes, they must be the indexes of the coordinator
+            if (!texts.get(textIndex).equals(fMatchingEngine.getTextToFind(textIndex))) {
+                throw new IOException("The matching engine of the worker changed the order of the texts");
+            }
+        }
+
+        fLinePreFilter = fOptions.isLinePreFilterEnabled() ? LinePreFilter.create(fMatchingEngine) : null;
+        fChunkSizeTuner = new ChunkSizeTuner(fOptions);
+        fSearchingThreadsCount = Runtime.getRuntime().availableProcessors();
+    }
+    //endregion Constructor
+
+    /***
+     * @param args the port of the coordinator local socket
+     */
+    public static void main(String[] args) {
+        String token = System.getenv(ShardProtocol.TOKEN_ENVIRONMENT_VARIABLE);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            ShardProtocol.writeHello(output, token != null ? token : "");
+            new ShardWorker(input, output).run();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Shard worker failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /***
+     * Search the shards that the coordinator send, until STOP
+     * @throws IOException in case of failure in the connection to the coordinator
+     */
+    private void run() throws IOException {
+        byte messageType;
+
+        while ((messageType = fInput.readByte()) == ShardProtocol.SHARD) {
+            InputShard shard = new InputShard(new ShardedInput(fInput.readUTF(), null),
+                    fInput.readLong(), fInput.readLong(), fInput.readLong());
+            List<ChunkMatches> chunksInOrder;
+
+            try {
+                chunksInOrder = searchShard(shard);
+            } catch (IOException | RuntimeException e) {
+                fOutput.writeByte(ShardProtocol.SHARD_FAILED);
+                fOutput.writeUTF("Failed to read " + shard + ": " + e.getMessage());
+                fOutput.flush();
+                continue;
+            }
+
+            for (ChunkMatches chunkMatches : chunksInOrder) {
+                ShardProtocol.writeChunk(fOutput, InputShard.encodeChunkResults(chunkMatches));
+            }
+            fOutput.writeByte(ShardProtocol.SHARD_DONE);
+            fOutput.flush();
+        }
+
+        if (messageType != ShardProtocol.STOP) {
+            throw new IOException("Unknown message type " + messageType);
+        }
+    }
+
+    /***
+     * Read the shard chunks and search every chunk in a MatchSearcher task
+     * @param shard the shard to search
+     * @return the results of the shard chunks, ordered by the chunk index
+     * @throws IOException in case of failure in reading the shard
+     */
+    private List<ChunkMatches> searchShard(InputShard shard) throws IOException {
+        String textToReadUrl = shard.getShardedInput().getTextToReadUrl();
+        TextChunker textChunker = new TextChunker(fChunkSizeTuner, shard.getStartLineOffset(),
+                shard.getStartPosition());
+        ConcurrentChunkResults chunkResults = new ConcurrentChunkResults();
+        PipelineStatistics pipelineStatistics = createPipelineStatistics();
+        ChunkMemoryBudget chunkMemoryBudget = new ChunkMemoryBudget(fOptions.getPipelineMemoryBudget(),
+                pipelineStatistics);
+        ThreadPoolExecutor matchSearcherExecutor = createMatchSearcherExecutor(pipelineStatistics);
+
+        try (TextSource textSource = createTextSource(shard, textChunker)) {
+            textSource.open();
+            textSource.readChunks(textChunk -> chunkMemoryBudget.execute(matchSearcherExecutor, textChunk.getSize(),
+                    new MatchSearcher(chunkResults, textChunk, fMatchingEngine, fLinePreFilter, fChunkSizeTuner,
+                            MatchFinderMetrics.DISABLED, null, fOptions.getMaxLocationsPerText(), null)));
+        } finally {
+            awaitTermination(matchSearcherExecutor);
+        }
+
+        List<ChunkMatches> chunksInOrder = chunkResults.getChunksInOrder();
+        if (chunksInOrder.size() != textChunker.getNextChunkIndex()) {
+            throw new IOException("Only " + chunksInOrder.size() + " of " + textChunker.getNextChunkIndex() +
+                    " chunks of " + textToReadUrl + " were searched");
+        }
+        for (ChunkMatches chunkMatches : chunksInOrder) {
+            if (chunkMatches.isSearchFailed()) {
+                throw new IOException("The search of chunk " + chunkMatches.getChunkIndex() + " of " +
+                        textToReadUrl + " failed");
+            }
+        }
+
+        return chunksInOrder;
+    }
+
+    private TextSource createTextSource(InputShard shard, TextChunker textChunker) throws IOException {
+        String textToReadUrl = shard.getShardedInput().getTextToReadUrl();
+        if (shard.isWholeInput()) {
+            return TextSources.create(textToReadUrl, fOptions, textChunker);
+        }
+
+        Path filePath = TextSources.getMappedFilePath(textToReadUrl, fOptions);
+        if (filePath == null) {
+            throw new IOException(textToReadUrl + " is not a local file that can be read by byte ranges");
+        }
+
+        return new MappedFileTextSource(filePath, fOptions.getCharset(), textChunker, shard.getEndPosition());
+    }
+
+    /***
+     * @return the statistics of a shard, the searching tasks queue capacity is derived from the pipeline memory budget
+     * (as in MatchFinderService), there is no aggregation queue
+     */
+    private PipelineStatistics createPipelineStatistics() {
+        long chunksInBudget = fOptions.getPipelineMemoryBudget() / fChunkSizeTuner.getEstimatedChunkMemory();
+        int queueCapacity = (int) Math.min(Math.max(chunksInBudget, fSearchingThreadsCount), Integer.MAX_VALUE);
+
+        return new PipelineStatistics(queueCapacity, 0);
+    }
+
+    /***
+     * The searching tasks queue is bounded (and the chunk bytes by the ChunkMemoryBudget),
+     * so the reading of a shard is blocked while the searching threads are behind
+     */
+    private ThreadPoolExecutor createMatchSearcherExecutor(PipelineStatistics pipelineStatistics) {
+        return new ThreadPoolExecutor(fSearchingThreadsCount, fSearchingThreadsCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pipelineStatistics.getSearchingTasksQueueCapacity()),
+                new BlockingSubmissionHandler(pipelineStatistics));
+    }
+
+    private static void awaitTermination(ThreadPoolExecutor executor) throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Integer.MAX_VALUE, TimeUnit.MICROSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching the shard");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bigId.matcher;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * This class is the coordinator side of the connection to a single ShardWorker, it run on its own coordinator thread.
+ * The connection take the pending shards from the coordinator one by one, send every shard to its worker and
+ * collect the results of the shard chunks, until there are no more shards.
+ * A shard that the worker failed to read, or that was lost because the connection failed (the worker crashed),
+ * is given back to the coordinator, that retry it on any worker.
+ */
+class ShardWorkerConnection implements Runnable {
+    //region Fields
+    private final Socket fSocket;
+    private final DataInputStream fInput;
+    private final DataOutputStream fOutput;
+    private final ShardedScanCoordinator fCoordinator;
+    private final long fWorkerPid;  // The process id of the worker, as sent in its hello
+    //endregion Fields
+
+    //region Constructor
+    public ShardWorkerConnection(Socket socket, DataInputStream input, DataOutputStream output,
+                                 ShardedScanCoordinator coordinator, long workerPid) {
+        fSocket = socket;
+        fInput = input;
+        fOutput = output;
+        fCoordinator = coordinator;
+        fWorkerPid = workerPid;
+    }
+    //endregion Constructor
+
+    @Override
+    public void run() {
+        InputShard shard = null;
+
+        try {
+            while ((shard = fCoordinator.takeShard(fWorkerPid)) != null) {
+                searchShard(shard);
+                shard = null;
+            }
+
+            fOutput.writeByte(ShardProtocol.STOP);
+            fOutput.flush();
+        } catch (IOException e) {
+            if (shard != null) {
+                fCoordinator.onShardFailed(fWorkerPid, shard, "The worker of " + shard + " was lost: " + e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /***
+     * Send the shard to the worker and wait for the results of all its chunks
+     * @param shard the shard to search
+     * @throws IOException in case of failure in the connection to the worker
+     */
+    private void searchShard(InputShard shard) throws IOException {
+        List<byte[]> chunkResults = new ArrayList<>();
+        byte messageType;
+
+        ShardProtocol.writeShard(fOutput, shard);
+        while ((messageType = fInput.readByte()) == ShardProtocol.CHUNK) {
+            chunkResults.add(ShardProtocol.readChunk(fInput));
+        }
+
+        if (messageType == ShardProtocol.SHARD_DONE) {
+            fCoordinator.onShardSearched(fWorkerPid, shard, chunkResults);
+        } else if (messageType == ShardProtocol.SHARD_FAILED) {
+            fCoordinator.onShardFailed(fWorkerPid, shard, fInput.readUTF());
+        } else {
+            throw new IOException("Unknown message type " + messageType);
+        }
+    }
+
+    private void close() {
+        try {
+            fSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bigId.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/***
+ * This class represent a single input of the ShardedScanCoordinator: its shards, how many of them are not done yet
+ * and the failure of the input (a shard that failed too many times fail its whole input).
+ * The state is changed only under the lock of the coordinator, the completion is awaited by the coordinator thread
+ * that aggregate the inputs by their order.
+ */
+class ShardedInput {
+    //region Fields
+    private final String fTextToReadUrl;
+    private final String fOutputFilePath;
+    private final List<InputShard> fShards;
+    private final CountDownLatch fCompletion;
+    private int fRemainingShardsCount;
+    private String fFailure;  // null while the input didn't fail
+    //endregion Fields
+
+    //region Constructor
+    ShardedInput(String textToReadUrl, String outputFilePath) {
+        fTextToReadUrl = textToReadUrl;
+        fOutputFilePath = outputFilePath;
+        fShards = new ArrayList<>();
+        fCompletion = new CountDownLatch(1);
+        fRemainingShardsCount = 0;
+        fFailure = null;
+    }
+    //endregion Constructor
+
+    public String getTextToReadUrl() {
+        return fTextToReadUrl;
+    }
+
+    public String getOutputFilePath() {
+        return fOutputFilePath;
+    }
+
+    /***
+     * @return the shards of the input by their order
+     */
+    public List<InputShard> getShards() {
+        return fShards;
+    }
+
+    void setShards(List<InputShard> shards) {
+        fShards.addAll(shards);
+        fRemainingShardsCount = shards.size();
+    }
+
+    /***
+     * Called when a shard was searched (or failed), the input is complete when all its shards are done
+     */
+    void onShardDone() {
+        fRemainingShardsCount--;
+        if (fRemainingShardsCount == 0) {
+            fCompletion.countDown();
+        }
+    }
+
+    /***
+     * Fail the input, its other shards are still counted by onShardDone (or dropped before they are searched)
+     * @param failure the reason of the failure
+     */
+    void fail(String failure) {
+        if (fFailure == null) {
+            fFailure = failure;
+        }
+
+        if (fRemainingShardsCount == 0) {
+            fCompletion.countDown();
+        }
+    }
+
+    public boolean isFailed() {
+        return fFailure != null;
+    }
+
+    public String getFailure() {
+        return fFailure;
+    }
+
+    /***
+     * Wait until all the shards of the input are done
+     * @throws InterruptedException In case of operating-system or client interrupt
+     */
+    public void awaitCompletion() throws InterruptedException {
+        fCompletion.await();
+    }
+}
@@ -0,0 +1,436 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * This class scan many inputs with a few ShardWorker processes on the same host, so a scan is not limited by
+ * a single JVM (its heap, its GC and its threads).
+ * The coordinator start the worker processes (with the same java and class path), every worker connect to a
+ * local socket of the coordinator and is accepted only with the random token the coordinator gave it.
+ * Every input is split to shards (byte ranges of about the shard bytes of the options for a local file,
+ * the whole input for any other url), the shards are given to the workers one by one, and every worker search
+ * its shard with the MatchSearcher pipeline and send back the compact results of its chunks.
+ * When all the shards of an input were searched, the coordinator renumber the chunks of the input by their order
+ * and aggregate them with a ChunksAggregator, so every output file is the same as the output of a single scan.
+ * A shard of a worker that crashed (or that failed to read it) is given again to another worker, a crashed worker
+ * is replaced by a new process. An input is failed when one of its shards failed too many times or when there
+ * are no workers left.
+ *
+ * For example:
+ *      ShardedScanCoordinator coordinator = new ShardedScanCoordinator(names, new MatchFinderOptions());
+ *      coordinator.addInput("big1.txt", "big1.out");
+ *      coordinator.addInput("big2.txt", "big2.out");
+ *      coordinator.run();
+ */
+public class ShardedScanCoordinator {
+    //region CONSTANTS
+    private static final int MAX_SHARD_ATTEMPTS = 3;
+    private static final int MAX_RESTARTS_PER_WORKER = 3;
+    private static final int HELLO_TIMEOUT_MILLIS = 10 * 1000;
+    private static final long STOP_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int TOKEN_BYTES = 16;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final MatchingEngine fMatchingEngine;
+    private final MatchFinderOptions fOptions;
+    private final List<ShardedInput> fInputs;
+    private final String fToken;
+    private final ExecutorService fConnectionsExecutor;
+    private final Deque<InputShard> fPendingShards;  // All the state below is guarded by the coordinator lock
+    private final List<Process> fWorkers;
+    private final Map<Long, InputShard> fShardsByWorkerPid;  // The shard that every worker search now
+    private int fRemainingShardsCount;
+    private boolean fIsSplitDone;
+    private boolean fIsStopped;
+    private int fAliveWorkersCount;
+    private int fRestartsCount;
+    private int fRetriesCount;
+    private ServerSocket fServerSocket;
+    //endregion Fields
+
+    //region Constructor
+    public ShardedScanCoordinator(Set<String> textToFindSet, MatchFinderOptions options) {
+        fOptions = options;
+        fMatchingEngine = options.getMatchingEngineType().createEngine(textToFindSet);
+        fInputs = new ArrayList<>();
+        fToken = createToken();
+        fConnectionsExecutor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "shard-worker-connection");
+            thread.setDaemon(true);  // Never keep the process alive
+            return thread;
+        });
+        fPendingShards = new ArrayDeque<>();
+        fWorkers = new ArrayList<>();
+        fShardsByWorkerPid = new HashMap<>();
+        fRemainingShardsCount = 0;
+        fIsSplitDone = false;
+        fIsStopped = false;
+        fAliveWorkersCount = 0;
+        fRestartsCount = 0;
+        fRetriesCount = 0;
+    }
+
+    private static String createToken() {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        StringBuilder token = new StringBuilder();
+
+        new SecureRandom().nextBytes(tokenBytes);
+        for (byte tokenByte : tokenBytes) {
+            token.append(String.format("%02x", tokenByte));
+        }
+
+        return token.toString();
+    }
+    //endregion Constructor
+
+    /***
+     * Add an input to the scan, must be called before run
+     * @param textToReadUrl the url (or local path) to read
+     * @param outputFilePath the file the results of the input are written to
+     */
+    public void addInput(String textToReadUrl, String outputFilePath) {
+        fInputs.add(new ShardedInput(textToReadUrl, outputFilePath));
+    }
+
+    /***
+     * Scan all the inputs and write the results of every input (by the order they were added),
+     * return when all the inputs were written (or failed) and the workers were stopped
+     */
+    public void run() {
+        try {
+            fServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            fConnectionsExecutor.execute(this::acceptWorkers);
+            synchronized (this) {
+                for (int worker = 0; worker < fOptions.getShardWorkersCount(); worker++) {
+                    startWorker();
+                }
+            }
+
+            splitInputs();  // While the workers start
+            for (ShardedInput shardedInput : fInputs) {
+                shardedInput.awaitCompletion();
+                writeInputResults(shardedInput);
+            }
+        } catch (IOException e) {
+            System.err.println("Sharded scan failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        } finally {
+            stop();
+        }
+    }
+
+    //region Workers
+    /***
+     * Start a worker process, its output and errors go to the output and errors of the coordinator.
+     * Must be called under the coordinator lock
+     * @throws IOException in case of failure in starting the process
+     */
+    private void startWorker() throws IOException {
+        String javaPath = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder processBuilder = new ProcessBuilder(javaPath,
+                "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(),
+                Integer.toString(fServerSocket.getLocalPort()));
+
+        processBuilder.environment().put(ShardProtocol.TOKEN_ENVIRONMENT_VARIABLE, fToken);
+        processBuilder.inheritIO();
+
+        Process worker = processBuilder.start();
+        fWorkers.add(worker);
+        fAliveWorkersCount++;
+        worker.onExit().thenAccept(this::onWorkerExit);
+    }
+
+    /***
+     * A worker that exit while there are still shards to search is replaced by a new process (up to a limit),
+     * when there are no workers left the pending shards fail
+     * @param worker the process that exited
+     */
+    private synchronized void onWorkerExit(Process worker) {
+        fAliveWorkersCount--;
+
+        boolean isWorkLeft = !fIsStopped && !(fIsSplitDone && fRemainingShardsCount == 0);
+        boolean isRestartAllowed = fRestartsCount < fOptions.getShardWorkersCount() * MAX_RESTARTS_PER_WORKER;
+        if (isWorkLeft && isRestartAllowed) {
+            System.err.println("Shard worker exited with code " + worker.exitValue() + ", starting a new one");
+            fRestartsCount++;
+            try {
+                startWorker();
+            } catch (IOException e) {
+                System.err.println("Failed to start a shard worker: " + e.getMessage());
+            }
+        }
+
+        failPendingShardsWithoutWorkers();
+    }
+
+    /***
+     * Accept the connections of the workers (on a connection thread) until the server socket is closed,
+     * the handshake of every connection is done on its own connection thread, so a connection that doesn't send
+     * its hello never delay the workers that connect after it
+     */
+    private void acceptWorkers() {
+        while (!fServerSocket.isClosed()) {
+            try {
+                Socket socket = fServerSocket.accept();
+                fConnectionsExecutor.execute(() -> handshakeWorker(socket));
+            } catch (IOException e) {
+                if (!fServerSocket.isClosed()) {
+                    System.err.println("Failed to accept a shard worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /***
+     * Read the hello of a connection and send it the setup, then serve the worker on this connection thread.
+     * A connection without the hello of a worker of this coordinator (in the hello timeout) is closed
+     * @param socket the accepted connection
+     */
+    private void handshakeWorker(Socket socket) {
+        DataInputStream input;
+        DataOutputStream output;
+        long workerPid;
+
+        try {
+            socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            workerPid = ShardProtocol.readHello(input, fToken);
+            if (workerPid == ShardProtocol.INVALID_HELLO) {
+                throw new IOException("A connection without a valid worker token was rejected");
+            }
+
+            ShardProtocol.writeSetup(output, fOptions, fMatchingEngine);
+            socket.setSoTimeout(0);  // A shard may take long
+        } catch (IOException e) {
+            if (!fServerSocket.isClosed()) {
+                System.err.println("Failed to accept a shard worker: " + e.getMessage());
+            }
+            closeQuietly(socket);
+            return;
+        }
+
+        new ShardWorkerConnection(socket, input, output, this, workerPid).run();
+    }
+
+    /***
+     * Stop the workers: the connections send STOP when they ask for the next shard,
+     * a worker that didn't exit after the timeout is killed
+     */
+    private void stop() {
+        List<Process> workers;
+        synchronized (this) {
+            fIsStopped = true;
+            notifyAll();
+            workers = new ArrayList<>(fWorkers);
+        }
+
+        closeQuietly(fServerSocket);
+        for (Process worker : workers) {
+            try {
+                if (!worker.waitFor(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    worker.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        fConnectionsExecutor.shutdownNow();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    //endregion Workers
+
+    //region Shards
+    /***
+     * Split the inputs to shards by their order, the shards of every input are pending as soon as it was split
+     */
+    private void splitInputs() {
+        for (ShardedInput shardedInput : fInputs) {
+            try {
+                List<InputShard> shards = InputShard.split(shardedInput, fOptions);
+
+                synchronized (this) {
+                    shardedInput.setShards(shards);
+                    fPendingShards.addAll(shards);
+                    fRemainingShardsCount += shards.size();
+                    failPendingShardsWithoutWorkers();
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    shardedInput.fail(e.toString());
+                }
+            }
+        }
+
+        synchronized (this) {
+            fIsSplitDone = true;
+            notifyAll();
+        }
+    }
+
+    /***
+     * Called by the worker connections, wait until there is a pending shard
+     * @param workerPid the process id of the worker of the connection
+     * @return the next shard to search, or null when there are no more shards (or the scan was stopped)
+     * @throws InterruptedException In case of operating-system or client interrupt
+     */
+    synchronized InputShard takeShard(long workerPid) throws InterruptedException {
+        while (!fIsStopped) {
+            InputShard shard = fPendingShards.pollFirst();
+
+            if (shard == null) {
+                if (fIsSplitDone && fRemainingShardsCount == 0) {
+                    return null;
+                }
+                wait();
+            } else if (shard.getShardedInput().isFailed()) {
+                completeShard(shard);  // Another shard of the input failed, its results are not needed
+            } else {
+                fShardsByWorkerPid.put(workerPid, shard);
+                return shard;
+            }
+        }
+
+        return null;
+    }
+
+    /***
+     * @param workerPid the process id of the worker that searched the shard
+     * @param shard a shard that was searched
+     * @param chunkResults the results of the shard chunks by their order
+     */
+    synchronized void onShardSearched(long workerPid, InputShard shard, List<byte[]> chunkResults) {
+        fShardsByWorkerPid.remove(workerPid);
+        shard.setChunkResults(chunkResults);
+        completeShard(shard);
+    }
+
+    /***
+     * A failed shard is searched again (before the other pending shards), unless it failed too many times
+     * or there are no workers left, then its input fail
+     * @param workerPid the process id of the worker that failed
+     * @param shard a shard that a worker failed to search
+     * @param failure the reason of the failure
+     */
+    synchronized void onShardFailed(long workerPid, InputShard shard, String failure) {
+        boolean isRetryAllowed = shard.addFailedAttempt() < MAX_SHARD_ATTEMPTS && fAliveWorkersCount > 0;
+
+        fShardsByWorkerPid.remove(workerPid);
+        if (isRetryAllowed) {
+            System.err.println(failure + ", retrying");
+            fRetriesCount++;
+            fPendingShards.addFirst(shard);
+            notifyAll();
+        } else {
+            shard.getShardedInput().fail(failure);
+            completeShard(shard);
+        }
+    }
+
+    private void failPendingShardsWithoutWorkers() {
+        while (fAliveWorkersCount == 0 && !fPendingShards.isEmpty()) {
+            InputShard shard = fPendingShards.pollFirst();
+
+            shard.getShardedInput().fail("No shard worker is alive");
+            completeShard(shard);
+        }
+    }
+
+    private void completeShard(InputShard shard) {
+        fRemainingShardsCount--;
+        shard.getShardedInput().onShardDone();
+        if (fRemainingShardsCount == 0) {
+            notifyAll();
+        }
+    }
+    //endregion Shards
+
+    //region Status
+    /***
+     * @return the worker processes that search a shard now
+     */
+    synchronized List<ProcessHandle> getWorkersWithShards() {
+        List<ProcessHandle> workersWithShards = new ArrayList<>();
+
+        for (Process worker : fWorkers) {
+            if (worker.isAlive() && fShardsByWorkerPid.containsKey(worker.pid())) {
+                workersWithShards.add(worker.toHandle());
+            }
+        }
+
+        return workersWithShards;
+    }
+
+    /***
+     * @return how many times a failed shard was given again to the workers
+     */
+    synchronized int getRetriesCount() {
+        return fRetriesCount;
+    }
+
+    /***
+     * @return how many workers that exited were replaced by a new process
+     */
+    synchronized int getRestartsCount() {
+        return fRestartsCount;
+    }
+    //endregion Status
+
+    /***
+     * Aggregate the chunks of all the input shards (by their order, renumbered to the chunk indexes of the input)
+     * and write the results, the same way as MatchFinderService
+     * @param shardedInput an input that all its shards are done
+     */
+    private void writeInputResults(ShardedInput shardedInput) {
+        if (shardedInput.isFailed()) {
+            System.err.println("Failed to read " + shardedInput.getTextToReadUrl() + ": " + shardedInput.getFailure());
+            return;
+        }
+
+        List<ChunkMatches> chunksInOrder = new ArrayList<>();
+        for (InputShard shard : shardedInput.getShards()) {
+            for (byte[] chunkResults : shard.getChunkResults()) {
+                chunksInOrder.add(InputShard.decodeChunkResults(chunkResults, chunksInOrder.size()));
+            }
+            shard.setChunkResults(null);  // Only the decoded chunks are kept
+        }
+
+        ChunksAggregator chunksAggregator = new ChunksAggregator(fMatchingEngine,
+                shardedInput.getOutputFilePath(),
+                fOptions.getOutputMode(),
+                false,
+                MatchFinderMetrics.DISABLED);
+
+        chunksAggregator.setSummarySizes(fOptions.getTopMatchCountsSize(), fOptions.getMaxLocationsPerText());
+        chunksAggregator.aggregateAndWrite(chunksInOrder);
+        if (!chunksAggregator.isCompleted()) {
+            System.err.println("Failed to write the results of " + shardedInput.getTextToReadUrl());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bigId.matcher;
+
+/***
+ * This class represent a single chunk of whole lines that is searched by a single MatchSearcher task
+ * (1000 lines, or a target size in bytes, depending on the ChunkingMode).
+ * The lines are exposed as CharSequence so a chunk doesn't have to hold a String for each line.
+ * A chunk that can be searched without its lines (e.g. in its encoded bytes) override findMatches.
+ */
+abstract class TextChunk implements Iterable<CharSequence> {
+    //region CONSTANTS
+    static final long UNKNOWN_POSITION = -1;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final long fChunkIndex;
+    private final long fFirstLineOffset;
+    private final int fLinesCount;
+    private final long fEndPosition;
+    //endregion Fields
+
+    //region Constructor
+    protected TextChunk(long chunkIndex, long firstLineOffset, int linesCount, long endPosition) {
+        fChunkIndex = chunkIndex;
+        fFirstLineOffset = firstLineOffset;
+        fLinesCount = linesCount;
+        fEndPosition = endPosition;
+    }
+    //endregion Constructor
+
+    /***
+     * @return The order of the chunk in the input text (0 for the first chunk)
+     */
+    public long getChunkIndex() {
+        return fChunkIndex;
+    }
+
+    /***
+     * @return Relative line offset of the first line in the chunk comparing to all the input text
+     */
+    public long getFirstLineOffset() {
+        return fFirstLineOffset;
+    }
+
+    public int getLinesCount() {
+        return fLinesCount;
+    }
+
+    /***
+     * @return the byte position in the input right after the chunk last byte,
+     * UNKNOWN_POSITION when the chunk was decoded while it was read
+     */
+    public long getEndPosition() {
+        return fEndPosition;
+    }
+
+    /***
+     * @return the size of the chunk text in bytes (in chars for lines that were already decoded)
+     */
+    public abstract long getSize();
+
+    /***
+     * @return hash of the chunk content (the key of the chunk in the ChunkResultCache),
+     * chunks that can be hashed without decoding their lines override it
+     */
+    public long getContentHash() {
+        return ContentHashes.hash(this);
+    }
+
+    /***
+     * Search all the texts to find in the chunk, line by line
+     * @param matchingEngine the shared MatchingEngine
+     * @param linePreFilter the filter that drop the lines without a candidate, null to search all the lines
+     * @param chunkMatchesBuilder the builder that collect the chunk matches
+     * @return how many chars the chunk lines have (without the line terminators)
+     */
+    public long findMatches(MatchingEngine matchingEngine, LinePreFilter linePreFilter,
+                            ChunkMatchesBuilder chunkMatchesBuilder) {
+        long lineFirstCharOffset = 0;
+
+        for(CharSequence line : this) {
+            chunkMatchesBuilder.startLine(lineFirstCharOffset);
+            if (linePreFilter == null || linePreFilter.mayMatch(line)) {
+                matchingEngine.findMatches(line, chunkMatchesBuilder);
+            } else {
+                chunkMatchesBuilder.onLineFiltered();
+            }
+            lineFirstCharOffset += line.length();  // Update lineFirstCharOffset, for the next iteration
+        }
+
+        return lineFirstCharOffset;
+    }
+}
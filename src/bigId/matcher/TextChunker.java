@@ -0,0 +1,211 @@
+package bigId.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/***
+ * This class split the input of a single TextSource to TextChunks, by the chunking mode of the ChunkSizeTuner.
+ * A chunk always hold whole lines, it is given its index (the order of the chunks)
+ * and the line offset of its first line in the input.
+ * The chunk bytes are found by the TextSource, the TextChunker only decide where every chunk end.
+ * The chunks of encoded bytes follow each other, so the chunker also track the byte position of every chunk
+ * in the input. A chunker that resume from a ScanCheckpoint start from the checkpoint chunk, line and byte position,
+ * and the TextSource must start reading the input from getStartPosition, of the input of getStartValidator.
+ * A chunker of a shard (a byte range of a file that start in a beginning of a line) start from the shard line
+ * and byte position, its chunk indexes start from 0.
+ * A followed input (a growing file) is read again and again by the same chunker, every time from getNextPosition,
+ * so the chunks of the appended bytes continue the chunk index and line offset of the chunks before them.
+ */
+class TextChunker {
+    //region Fields
+    private final ChunkSizeTuner fChunkSizeTuner;
+    private long fNextChunkIndex;
+    private long fNextLineOffset;
+    private final long fStartPosition;
+    private final InputValidator fStartValidator;  // Of the input the start position belong to
+    private long fNextPosition;  // Byte position of the next chunk, UNKNOWN_POSITION once a chunk was decoded
+    private int fFoundChunkLinesCount;  // Lines of the chunk that was found by the last findChunkEnd call
+    //endregion Fields
+
+    //region Constructor
+    public TextChunker(ChunkSizeTuner chunkSizeTuner) {
+        this(chunkSizeTuner, null);
+    }
+
+    /***
+     * @param chunkSizeTuner the chunk size of the run
+     * @param resumeCheckpoint the checkpoint to resume from, or null to start from the input beginning
+     */
+    public TextChunker(ChunkSizeTuner chunkSizeTuner, ScanCheckpoint resumeCheckpoint) {
+        this(chunkSizeTuner,
+                resumeCheckpoint != null ? resumeCheckpoint.getNextChunkIndex() : 0,
+                resumeCheckpoint != null ? resumeCheckpoint.getNextLineOffset() : 0,
+                resumeCheckpoint != null ? resumeCheckpoint.getInputPosition() : 0,
+                resumeCheckpoint != null ? resumeCheckpoint.getInputValidator() : InputValidator.UNKNOWN);
+    }
+
+    /***
+     * @param chunkSizeTuner the chunk size of the run
+     * @param startLineOffset the line offset of the shard first line
+     * @param startPosition the byte position of the shard in the input
+     */
+    public TextChunker(ChunkSizeTuner chunkSizeTuner, long startLineOffset, long startPosition) {
+        this(chunkSizeTuner, 0, startLineOffset, startPosition, InputValidator.UNKNOWN);
+    }
+
+    private TextChunker(ChunkSizeTuner chunkSizeTuner, long startChunkIndex, long startLineOffset,
+                        long startPosition, InputValidator startValidator) {
+        fChunkSizeTuner = chunkSizeTuner;
+        fNextChunkIndex = startChunkIndex;
+        fNextLineOffset = startLineOffset;
+        fStartPosition = startPosition;
+        fStartValidator = startValidator;
+        fNextPosition = fStartPosition;
+    }
+    //endregion Constructor
+
+    /***
+     * @return the byte position in the input the TextSource must start reading from (0 unless resuming)
+     */
+    public long getStartPosition() {
+        return fStartPosition;
+    }
+
+    /***
+     * @return the validator of the input the start position belong to (UNKNOWN unless resuming)
+     */
+    public InputValidator getStartValidator() {
+        return fStartValidator;
+    }
+
+    /***
+     * @return the byte position in the input right after the last chunk that was created
+     * (UNKNOWN_POSITION once a chunk was decoded)
+     */
+    public long getNextPosition() {
+        return fNextPosition;
+    }
+
+    /***
+     * @return the index the next chunk will get
+     */
+    public long getNextChunkIndex() {
+        return fNextChunkIndex;
+    }
+
+    private boolean isLinesChunking() {
+        return fChunkSizeTuner.getChunkingMode() == ChunkingMode.FIXED_LINES;
+    }
+
+    //region Encoded chunks
+    /***
+     * Find the end of the chunk that start in the given index, must be followed by createEncodedChunk
+     * when the chunk end was found
+     * @param bytes the bytes to search in (absolute indexes are used)
+     * @param chunkStart index of the chunk first byte
+     * @param limit index after the last byte that is available
+     * @param isEndOfInput true if there are no more bytes after the limit
+     * @return index right after the chunk last line terminator, LINE_END_NOT_FOUND when more bytes are needed,
+     *         or chunkStart when there are no more lines
+     */
+    public int findChunkEnd(ByteBuffer bytes, int chunkStart, int limit, boolean isEndOfInput) {
+        boolean isLinesChunking = isLinesChunking();
+        long targetChunkBytes = fChunkSizeTuner.getTargetChunkBytes();
+        int chunkEnd = chunkStart;
+        int lines = 0;
+
+        while (chunkEnd < limit && !isChunkFull(isLinesChunking, targetChunkBytes, lines, chunkEnd - chunkStart)) {
+            chunkEnd = LineTerminators.findLineEnd(bytes, chunkEnd, limit, isEndOfInput);
+
+            if (chunkEnd == LineTerminators.LINE_END_NOT_FOUND) {
+                return LineTerminators.LINE_END_NOT_FOUND;
+            }
+
+            lines++;
+        }
+
+        if (!isEndOfInput && !isChunkFull(isLinesChunking, targetChunkBytes, lines, chunkEnd - chunkStart)) {
+            return LineTerminators.LINE_END_NOT_FOUND;
+        }
+
+        fFoundChunkLinesCount = lines;
+        return chunkEnd;
+    }
+
+    /***
+     * Find the end of the chunk of all the whole lines that are available, when the input keep growing
+     * (the bytes after the last line terminator may be a line that was not fully written yet).
+     * Must be followed by createEncodedChunk when a chunk end was found
+     * @param bytes the bytes to search in (absolute indexes are used)
+     * @param chunkStart index of the chunk first byte
+     * @param limit index after the last byte that is available
+     * @return index right after the last whole line of the chunk, or chunkStart when there is no whole line
+     */
+    public int findAvailableChunkEnd(ByteBuffer bytes, int chunkStart, int limit) {
+        boolean isLinesChunking = isLinesChunking();
+        long targetChunkBytes = fChunkSizeTuner.getTargetChunkBytes();
+        int chunkEnd = chunkStart;
+        int lines = 0;
+
+        while (chunkEnd < limit && !isChunkFull(isLinesChunking, targetChunkBytes, lines, chunkEnd - chunkStart)) {
+            int lineEnd = LineTerminators.findLineEnd(bytes, chunkEnd, limit, false);
+
+            if (lineEnd == LineTerminators.LINE_END_NOT_FOUND) {
+                break;
+            }
+
+            chunkEnd = lineEnd;
+            lines++;
+        }
+
+        fFoundChunkLinesCount = lines;
+        return chunkEnd;
+    }
+
+    private static boolean isChunkFull(boolean isLinesChunking, long targetChunkBytes, int lines, long chunkBytes) {
+        return isLinesChunking ? lines == MatchFinderManager.CHUNK_SIZE : lines > 0 && chunkBytes >= targetChunkBytes;
+    }
+
+    /***
+     * @param chunkBytes the bytes of the chunk that was found by the last findChunkEnd call
+     * @param charset the charset of the bytes
+     * @return the next chunk
+     */
+    public TextChunk createEncodedChunk(ByteBuffer chunkBytes, Charset charset) {
+        if (fNextPosition != TextChunk.UNKNOWN_POSITION) {
+            fNextPosition += chunkBytes.remaining();
+        }
+
+        TextChunk textChunk = new EncodedTextChunk(fNextChunkIndex++, fNextLineOffset, fFoundChunkLinesCount,
+                fNextPosition, chunkBytes, charset);
+
+        fNextLineOffset += fFoundChunkLinesCount;
+        return textChunk;
+    }
+    //endregion Encoded chunks
+
+    //region Lines chunks
+    /***
+     * @param lines how many lines the chunk already has
+     * @param chars how many chars the lines have
+     * @return true if the chunk should not get more lines
+     */
+    public boolean isLinesChunkFull(int lines, long chars) {
+        return isChunkFull(isLinesChunking(), fChunkSizeTuner.getTargetChunkBytes(), lines, chars);
+    }
+
+    /***
+     * @param lines the lines of the chunk
+     * @param chars how many chars the lines have
+     * @return the next chunk
+     */
+    public TextChunk createLinesChunk(List<String> lines, long chars) {
+        TextChunk textChunk = new LinesTextChunk(fNextChunkIndex++, fNextLineOffset, lines, chars);
+
+        fNextPosition = TextChunk.UNKNOWN_POSITION;  // The bytes of the decoded lines are not known
+        fNextLineOffset += lines.size();
+        return textChunk;
+    }
+    //endregion Lines chunks
+}
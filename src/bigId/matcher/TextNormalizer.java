@@ -0,0 +1,125 @@
+package bigId.matcher;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Utils for the normalized form of words that the FuzzyMatchingEngine compare: the case is folded and the
+ * diacritics are dropped, so "JOSE", "Jose" and "Jose" with an acute accent on the e (as a single char or as
+ * a decomposed accent) are the same word.
+ * Every char is folded by a table that is built once (the base char of its canonical decomposition, in lower case),
+ * a combining mark in the text is dropped. A char is never folded to more than one char (the sharp s is not
+ * expanded to "ss").
+ */
+final class TextNormalizer {
+    //region CONSTANTS
+    static final char DROPPED_CHAR = 0;  // The fold of a char that is dropped from the normalized word
+    private static final char DECOMPOSED_CHARS_END = 0x3000;  // The letters with diacritics are all before it
+    private static final char ASCII_END = 0x80;
+    private static final char[] FOLDED_CHARS = createFoldedChars();
+    //endregion CONSTANTS
+
+    private TextNormalizer() {
+    }
+
+    private static char[] createFoldedChars() {
+        char[] foldedChars = new char[Character.MAX_VALUE + 1];
+
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            foldedChars[c] = foldChar((char) c);
+        }
+
+        return foldedChars;
+    }
+
+    private static char foldChar(char c) {
+        if (Character.isSurrogate(c)) {
+            return c;  // Supplementary chars are compared as they are
+        }
+
+        if (Character.getType(c) == Character.NON_SPACING_MARK) {
+            return DROPPED_CHAR;
+        }
+
+        char baseChar = c;
+        if (c >= ASCII_END && c < DECOMPOSED_CHARS_END) {
+            baseChar = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);  // The marks follow it
+        }
+
+        return Character.toLowerCase(Character.toUpperCase(baseChar));
+    }
+
+    /***
+     * @param c a char of a word
+     * @return the char in the normalized word, or DROPPED_CHAR if it is not in the normalized word
+     */
+    static char fold(char c) {
+        return FOLDED_CHARS[c];
+    }
+
+    /***
+     * Split a text to its words by the same rules as the FuzzyMatchingEngine split a line: a word is a run of word
+     * chars (as in WordBoundary) and the non spacing marks that are attached to them
+     * @param text the text to split
+     * @return the normalized words of the text
+     */
+    static List<String> normalizeWords(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        int index = 0;
+
+        while ((index = findWordStart(text, index)) < text.length()) {
+            int wordEnd = findWordEnd(text, index);
+
+            for (; index < wordEnd; index++) {
+                char foldedChar = fold(text.charAt(index));
+                if (foldedChar != DROPPED_CHAR) {
+                    word.append(foldedChar);
+                }
+            }
+
+            words.add(word.toString());
+            word.setLength(0);
+        }
+
+        return words;
+    }
+
+    /***
+     * @return the index of the first word char from the given index, or the text length if there is none
+     */
+    static int findWordStart(CharSequence text, int index) {
+        while (index < text.length()) {
+            int codePoint = Character.codePointAt(text, index);
+
+            if (WordBoundary.isWord(codePoint)) {
+                return index;
+            }
+
+            index += Character.charCount(codePoint);
+        }
+
+        return index;
+    }
+
+    /***
+     * @param wordStart the index of a word char
+     * @return the index right after the word that start in the given index
+     */
+    static int findWordEnd(CharSequence text, int wordStart) {
+        int index = wordStart;
+
+        while (index < text.length()) {
+            int codePoint = Character.codePointAt(text, index);
+
+            if (!WordBoundary.isWord(codePoint) && Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+                return index;
+            }
+
+            index += Character.charCount(codePoint);
+        }
+
+        return index;
+    }
+}
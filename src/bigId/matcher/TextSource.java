@@ -0,0 +1,31 @@
+package bigId.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/***
+ * This interface represent an input that can be read as chunks of lines (1000 lines each).
+ * The MatchFinderManager create a MatchSearcher task for every chunk the source provide.
+ */
+interface TextSource extends Closeable {
+    /***
+     * Callback that receive the chunks of the source by their order
+     */
+    interface TextChunkConsumer {
+        void accept(TextChunk textChunk);
+    }
+
+    /***
+     * Open the source, must be called before readChunks
+     * @throws IOException in case of failure in opening the source
+     */
+    void open() throws IOException;
+
+    /***
+     * Read all the source and split it to chunks of lines,
+     * a source of encoded bytes start reading from the start position of its TextChunker (a resumed scan)
+     * @param consumer the consumer that get all the chunks by their order
+     * @throws IOException in case of failure in reading the source
+     */
+    void readChunks(TextChunkConsumer consumer) throws IOException;
+}
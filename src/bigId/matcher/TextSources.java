@@ -0,0 +1,103 @@
+package bigId.matcher;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/***
+ * This class choose the TextSource that fit a url to read, by the url type and the options
+ */
+class TextSources {
+    //region CONSTANTS
+    private static final String FILE_URL_PREFIX = "file:";
+    private static final String HTTP_URL_PREFIX = "http";  // Match both http and https
+    //endregion CONSTANTS
+
+    private TextSources() {
+    }
+
+    /***
+     * A compressed url or local file (by its extension) is read and decompressed through a single url connection,
+     * a local file is memory mapped when its lines can be found directly in its bytes,
+     * a http url is downloaded with parallel range requests when more than one connection is allowed,
+     * any other url is read through a single url connection
+     * @param textToReadUrl the url (or local path) to read
+     * @param options the options of the run
+     * @param textChunker split the input to chunks, a new one for every input
+     * @return TextSource that fit the url to read
+     */
+    public static TextSource create(String textToReadUrl, MatchFinderOptions options, TextChunker textChunker) {
+        return create(textToReadUrl, options, textChunker, false);
+    }
+
+    /***
+     * @param textToReadUrl the url (or local path) to read
+     * @param options the options of the run
+     * @param textChunker split the input to chunks, a new one for every input
+     * @param isFollowing true to follow a growing local file (must be supported by isFollowSupported)
+     * @return TextSource that fit the url to read
+     */
+    public static TextSource create(String textToReadUrl, MatchFinderOptions options, TextChunker textChunker,
+                                    boolean isFollowing) {
+        Path localFilePath = getLocalFilePath(textToReadUrl);
+        String streamUrl = localFilePath != null ? localFilePath.toUri().toString() : textToReadUrl;
+
+        if (CompressionFormat.fromUrl(textToReadUrl) != CompressionFormat.NONE) {
+            return new UrlTextSource(streamUrl, options.getCharset(), textChunker);
+        }
+
+        boolean isMappedFileSupported = localFilePath != null && LineTerminators.isAsciiCompatible(options.getCharset());
+        if (isMappedFileSupported) {
+            return new MappedFileTextSource(localFilePath, options.getCharset(), textChunker, isFollowing);
+        }
+
+        int connectionsCount = options.getParallelDownloadConnections();
+        boolean isParallelDownload = textToReadUrl.startsWith(HTTP_URL_PREFIX) && connectionsCount > 1;
+        if (isParallelDownload) {
+            return new RangeRequestTextSource(textToReadUrl, connectionsCount, options.getCharset(),
+                    options.getExecutionModel(), textChunker);
+        }
+
+        return new UrlTextSource(streamUrl, options.getCharset(), textChunker);  // Also a local UTF-16 file
+    }
+
+    /***
+     * @param textToReadUrl the url (or local path) to read
+     * @param options the options of the run
+     * @return true if the url can be followed while it grow: a local file that is memory mapped (not compressed)
+     */
+    public static boolean isFollowSupported(String textToReadUrl, MatchFinderOptions options) {
+        return getMappedFilePath(textToReadUrl, options) != null;
+    }
+
+    /***
+     * @param textToReadUrl the url (or local path) to read
+     * @param options the options of the run
+     * @return the path of the file when the url is read by a MappedFileTextSource (a local file that is not
+     * compressed, with an ASCII compatible charset), otherwise null
+     */
+    static Path getMappedFilePath(String textToReadUrl, MatchFinderOptions options) {
+        boolean isMappedFileSupported = LineTerminators.isAsciiCompatible(options.getCharset()) &&
+                CompressionFormat.fromUrl(textToReadUrl) == CompressionFormat.NONE;
+
+        return isMappedFileSupported ? getLocalFilePath(textToReadUrl) : null;
+    }
+
+    /***
+     * @return The path of the file to read in case the url is a file url or a path of an existing file,
+     * otherwise null
+     */
+    static Path getLocalFilePath(String textToReadUrl) {
+        try {
+            if (textToReadUrl.startsWith(FILE_URL_PREFIX)) {
+                return Paths.get(URI.create(textToReadUrl));
+            }
+
+            Path path = Paths.get(textToReadUrl);
+            return Files.isRegularFile(path) ? path : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
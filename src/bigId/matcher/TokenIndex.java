@@ -0,0 +1,393 @@
+package bigId.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * This class answer queries of any set of strings from a token index that was built by a scan
+ * (see MatchFinderOptions.setIndexFilePath), without reading or searching the input again.
+ * The index file is memory mapped, it hold the posting list of every token of the input
+ * (every occurrence as the block line offset, the char offset in the block and the separator that follow it),
+ * so a text is found where its tokens (and the separators between them) follow each other.
+ * The results are exactly the ones of a scan of the same input in GROUPED_BY_NAME output mode, and are written
+ * to the StdOut and to the output file in the same format.
+ * A text that doesn't start and end with a word char can't be answered by the index, it is reported and skipped.
+ * The file layout is:
+ *      header: magic, version, tokens count, metadata offset, tokens texts offset, directory offset
+ *      postings: for every token VarLongs of (line offset delta, char offset, separator id) per occurrence
+ *      metadata: the scanned url, the separators count and every separator (by its id)
+ *      tokens texts: the UTF-8 bytes of all the tokens, by the tokens order
+ *      directory: for every token (sorted by its UTF-8 bytes) its text offset and length,
+ *                 and its postings offset and count
+ *
+ * For example:
+ *      try (TokenIndex tokenIndex = TokenIndex.open("big.index")) {
+ *          tokenIndex.writeMatches(names, "output.txt");
+ *      }
+ */
+public class TokenIndex implements Closeable {
+    //region CONSTANTS
+    static final int MAGIC = 0x42494458;  // "BIDX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int WINDOW_BITS = 30;  // A mapping is limited to 2GB, the file is mapped in 1GB windows
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+    private static final int NOT_FOUND = -1;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final FileChannel fFileChannel;
+    private final ByteBuffer[] fWindows;
+    private final int fTokensCount;
+    private final long fDirectoryOffset;
+    private final String fTextToReadUrl;
+    private final Map<String, Integer> fSeparatorIds;
+    //endregion Fields
+
+    //region Constructor
+    private TokenIndex(FileChannel fileChannel) throws IOException {
+        fFileChannel = fileChannel;
+        fWindows = mapWindows(fileChannel);
+
+        if (fileChannel.size() < HEADER_SIZE || getInt(0) != MAGIC || getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Not a token index file of this version");
+        }
+
+        fTokensCount = getInt(2 * Integer.BYTES);
+        long metadataOffset = getLong(3 * Integer.BYTES);
+        fDirectoryOffset = getLong(3 * Integer.BYTES + 2 * Long.BYTES);
+
+        fTextToReadUrl = getString(metadataOffset);
+        long separatorsOffset = metadataOffset + Integer.BYTES + getInt(metadataOffset);
+        int separatorsCount = getInt(separatorsOffset);
+        fSeparatorIds = new HashMap<>();
+        long separatorOffset = separatorsOffset + Integer.BYTES;
+        for (int separatorId = 0; separatorId < separatorsCount; separatorId++) {
+            fSeparatorIds.put(getString(separatorOffset), separatorId);
+            separatorOffset += Integer.BYTES + getInt(separatorOffset);
+        }
+    }
+
+    /***
+     * @param indexFilePath the index file that was built by a scan
+     * @return the opened index, must be closed
+     * @throws IOException in case of failure in mapping the file, or if it is not an index of this version
+     */
+    public static TokenIndex open(String indexFilePath) throws IOException {
+        FileChannel fileChannel = FileChannel.open(Paths.get(indexFilePath), StandardOpenOption.READ);
+
+        try {
+            return new TokenIndex(fileChannel);
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer[] mapWindows(FileChannel fileChannel) throws IOException {
+        long fileSize = fileChannel.size();
+        ByteBuffer[] windows = new ByteBuffer[(int) ((fileSize + WINDOW_MASK) >>> WINDOW_BITS)];
+
+        for (int i = 0; i < windows.length; i++) {
+            long windowStart = (long) i << WINDOW_BITS;
+            windows[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(1L << WINDOW_BITS, fileSize - windowStart));
+        }
+
+        return windows;
+    }
+    //endregion Constructor
+
+    /***
+     * @return the url of the input the index was built from
+     */
+    public String getTextToReadUrl() {
+        return fTextToReadUrl;
+    }
+
+    /***
+     * Find all the texts in the index and write the results to the StdOut and to the output file,
+     * in the same format (and order) as a scan in GROUPED_BY_NAME output mode
+     * @param textToFindSet all the texts to find
+     * @param outputFilePath the file the results are written to
+     * @throws IOException in case of failure in writing the results
+     */
+    public void writeMatches(Set<String> textToFindSet, String outputFilePath) throws IOException {
+        long queryStartNanos = System.nanoTime();
+        String[] textsToFind = textToFindSet.toArray(new String[0]);  // The same order as the engines
+        MatchLocations[] textsMatches = new MatchLocations[textsToFind.length];
+        Map<String, TokenPostings> postingsCache = new HashMap<>();  // Common tokens are part of many texts
+
+        for (int textIndex = 0; textIndex < textsToFind.length; textIndex++) {
+            if (!isAnswerable(textsToFind[textIndex])) {
+                System.err.println("Can't find '" + textsToFind[textIndex] + "' in the token index, skipped");
+                continue;
+            }
+
+            MatchLocations textMatches = findMatches(textsToFind[textIndex], postingsCache);
+            textsMatches[textIndex] = textMatches.size() > 0 ? textMatches : null;
+        }
+
+        try (MatchResultsWriter resultsWriter = new MatchResultsWriter(outputFilePath)) {
+            Map<String, MatchLocations> results = ChunksAggregator.getResultsByFirstMatch(textsMatches,
+                    textIndex -> textsToFind[textIndex]);
+
+            for (Map.Entry<String, MatchLocations> textResults : results.entrySet()) {
+                resultsWriter.writeLine(textResults.getKey(), textResults.getValue());
+            }
+        }
+
+        System.err.println("Token index query: " + textsToFind.length + " texts in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queryStartNanos) + " ms");
+    }
+
+    //region Query
+    /***
+     * @param textToFind a text to find
+     * @return true if the text start and end with a word char (so it always start and end a token)
+     */
+    static boolean isAnswerable(String textToFind) {
+        return !textToFind.isEmpty() && LineTokenizer.findNextToken(textToFind, 0) == 0 &&
+                lastTokenEnd(textToFind) == textToFind.length();
+    }
+
+    private static int lastTokenEnd(String textToFind) {
+        int tokenEnd = 0;
+
+        for (int tokenStart = 0; tokenStart < textToFind.length();
+             tokenStart = LineTokenizer.findNextToken(textToFind, tokenEnd)) {
+            tokenEnd = LineTokenizer.findTokenEnd(textToFind, tokenStart);
+        }
+
+        return tokenEnd;
+    }
+
+    /***
+     * Find an answerable text: start from the occurrences of its first token, and keep only the ones that are
+     * followed by the next separator and token of the text (at the same distance as in the text)
+     * @param textToFind a text that start and end with a word char
+     * @param postingsCache the postings that were already read by the query
+     * @return the sorted matches of the text
+     */
+    MatchLocations findMatches(String textToFind, Map<String, TokenPostings> postingsCache) {
+        MatchLocations candidates = null;
+        int tokenStart = 0;
+
+        while (tokenStart < textToFind.length()) {
+            int tokenEnd = LineTokenizer.findTokenEnd(textToFind, tokenStart);
+            int nextTokenStart = LineTokenizer.findNextToken(textToFind, tokenEnd);
+            int separatorId = nextTokenStart < textToFind.length() ?
+                    getSeparatorId(textToFind.substring(tokenEnd, nextTokenStart)) : NOT_FOUND;
+            boolean isLastToken = nextTokenStart == textToFind.length();
+
+            if (!isLastToken && separatorId == NOT_FOUND) {
+                return new MatchLocations();  // The separator is not anywhere in the input
+            }
+
+            TokenPostings tokenPostings = postingsCache.computeIfAbsent(textToFind.substring(tokenStart, tokenEnd),
+                    this::readPostings);
+            candidates = candidates == null ?
+                    filterFirstToken(tokenPostings, isLastToken, separatorId) :
+                    intersect(candidates, tokenPostings, tokenStart, isLastToken, separatorId);
+            tokenStart = nextTokenStart;
+        }
+
+        return candidates;
+    }
+
+    private int getSeparatorId(String separator) {
+        Integer separatorId = fSeparatorIds.get(separator);
+        return separatorId != null ? separatorId : NOT_FOUND;
+    }
+
+    /***
+     * @return the occurrences of the first token (that are followed by the separator, if it is not the last token)
+     */
+    private static MatchLocations filterFirstToken(TokenPostings tokenPostings, boolean isLastToken, int separatorId) {
+        MatchLocations candidates = new MatchLocations(tokenPostings.size());
+
+        for (int i = 0; i < tokenPostings.size(); i++) {
+            if (isLastToken || tokenPostings.getSeparatorId(i) == separatorId) {
+                candidates.add(tokenPostings.getLineOffset(i), tokenPostings.getCharOffset(i));
+            }
+        }
+
+        return candidates;
+    }
+
+    /***
+     * Keep the candidates that have an occurrence of the token at the given distance (both lists are sorted)
+     * @param tokenDistance the token char offset in the text
+     */
+    private static MatchLocations intersect(MatchLocations candidates, TokenPostings tokenPostings, int tokenDistance,
+                                            boolean isLastToken, int separatorId) {
+        MatchLocations matches = new MatchLocations(candidates.size());
+        int postingIndex = 0;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            long lineOffset = candidates.getLineOffset(i);
+            long tokenCharOffset = candidates.getCharOffset(i) + tokenDistance;
+
+            while (postingIndex < tokenPostings.size() && MatchLocations.compare(
+                    tokenPostings.getLineOffset(postingIndex), tokenPostings.getCharOffset(postingIndex),
+                    lineOffset, tokenCharOffset) < 0) {
+                postingIndex++;
+            }
+
+            boolean isTokenFound = postingIndex < tokenPostings.size() &&
+                    tokenPostings.getLineOffset(postingIndex) == lineOffset &&
+                    tokenPostings.getCharOffset(postingIndex) == tokenCharOffset &&
+                    (isLastToken || tokenPostings.getSeparatorId(postingIndex) == separatorId);
+            if (isTokenFound) {
+                matches.add(lineOffset, candidates.getCharOffset(i));
+            }
+        }
+
+        return matches;
+    }
+    //endregion Query
+
+    //region Index file
+    /***
+     * @param token a single token
+     * @return all the occurrences of the token, empty if it is not in the index
+     */
+    TokenPostings readPostings(String token) {
+        int entryIndex = findToken(token.getBytes(StandardCharsets.UTF_8));
+
+        if (entryIndex == NOT_FOUND) {
+            return new TokenPostings();
+        }
+
+        long entryOffset = fDirectoryOffset + (long) entryIndex * DIRECTORY_ENTRY_SIZE;
+        long position = getLong(entryOffset + Long.BYTES + Integer.BYTES);
+        int postingsCount = getInt(entryOffset + 2 * Long.BYTES + Integer.BYTES);
+        TokenPostings tokenPostings = new TokenPostings(postingsCount);
+        long lineOffset = 0;
+        long[] value = new long[1];
+
+        for (int i = 0; i < postingsCount; i++) {
+            position = readVarLong(position, value);
+            lineOffset += value[0];
+            position = readVarLong(position, value);
+            long charOffset = value[0];
+            position = readVarLong(position, value);
+            tokenPostings.add(lineOffset, charOffset, (int) value[0]);
+        }
+
+        return tokenPostings;
+    }
+
+    /***
+     * Binary search of the token in the directory
+     * @return the directory entry index of the token, or NOT_FOUND
+     */
+    private int findToken(byte[] token) {
+        int low = 0;
+        int high = fTokensCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = compareToken(middle, token);
+
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    /***
+     * Compare the UTF-8 bytes of the token of a directory entry with the given token
+     */
+    private int compareToken(int entryIndex, byte[] token) {
+        long entryOffset = fDirectoryOffset + (long) entryIndex * DIRECTORY_ENTRY_SIZE;
+        long textOffset = getLong(entryOffset);
+        int textLength = getInt(entryOffset + Long.BYTES);
+
+        for (int i = 0; i < Math.min(textLength, token.length); i++) {
+            int order = Integer.compare(getByte(textOffset + i) & 0xFF, token[i] & 0xFF);
+            if (order != 0) {
+                return order;
+            }
+        }
+
+        return Integer.compare(textLength, token.length);
+    }
+
+    private byte getByte(long position) {
+        return fWindows[(int) (position >>> WINDOW_BITS)].get((int) (position & WINDOW_MASK));
+    }
+
+    private int getInt(long position) {
+        int value = 0;
+
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << Byte.SIZE) | (getByte(position + i) & 0xFF);
+        }
+
+        return value;
+    }
+
+    private long getLong(long position) {
+        return (long) getInt(position) << Integer.SIZE | (getInt(position + Integer.BYTES) & 0xFFFFFFFFL);
+    }
+
+    /***
+     * @return the string (UTF-8 bytes after their length) in the position
+     */
+    private String getString(long position) {
+        byte[] bytes = new byte[getInt(position)];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = getByte(position + Integer.BYTES + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***
+     * Read a long that was written by VarLongs
+     * @param position the position of the long first byte
+     * @param value get the long
+     * @return the position after the long
+     */
+    private long readVarLong(long position, long[] value) {
+        long result = 0;
+        int shift = 0;
+        int currentByte;
+
+        do {
+            currentByte = getByte(position++) & 0xFF;
+            result |= (long) (currentByte & VarLongs.MASK) << shift;
+            shift += VarLongs.BITS;
+        } while ((currentByte & VarLongs.CONTINUE) != 0);
+
+        value[0] = result;
+        return position;
+    }
+    //endregion Index file
+
+    @Override
+    public void close() throws IOException {
+        fFileChannel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenIndex of " + fTextToReadUrl + " (" + fTokensCount + " tokens)";
+    }
+}
@@ -0,0 +1,514 @@
+package bigId.matcher;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/***
+ * This class build the TokenIndex file of a scan, from the ChunkTokens of every chunk by the chunks order
+ * (it is used only by the aggregator thread).
+ * The postings of every token are kept encoded in memory (VarLongs of the line offset delta, char offset and
+ * separator id). When they take more than the memory budget they are spilled to a sorted segment file,
+ * and in the end the segments are merged (by the tokens order) to the index file, so building the index of
+ * a huge input take a bounded memory. The postings of a token in a later segment follow the postings of the
+ * earlier segments, so merging a token is only concatenating its postings.
+ * The index is written to a temporary file that is moved over the index file when it is complete.
+ */
+class TokenIndexWriter {
+    //region CONSTANTS
+    private static final long MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 8;  // In bytes
+    private static final int TOKEN_MEMORY_OVERHEAD = 96;  // Estimated bytes of every token kept in memory
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;  // In bytes
+    private static final Comparator<byte[]> TOKEN_ORDER = Arrays::compareUnsigned;
+    //endregion CONSTANTS
+
+    //region Fields
+    private final Path fIndexFilePath;
+    private final String fTextToReadUrl;
+    private final LineTokenizer fLineTokenizer;
+    private final Map<String, PostingsBuffer> fBufferedPostings;
+    private final List<Path> fSegmentFilePaths;
+    private long fBufferedBytes;
+    //endregion Fields
+
+    /***
+     * The encoded postings of a single token
+     */
+    private static final class PostingsBuffer {
+        private byte[] fBytes = new byte[16];
+        private int fLength;
+        private int fCount;
+        private long fLastLineOffset;  // The deltas of the line offsets start from 0
+
+        /***
+         * @return how many bytes the buffer grow by
+         */
+        int add(long lineOffset, long charOffset, int separatorId) {
+            int oldCapacity = fBytes.length;
+
+            if (fLength + 3 * VarLongs.MAX_BYTES > fBytes.length) {
+                fBytes = Arrays.copyOf(fBytes, Math.max(fBytes.length * 2, fLength + 3 * VarLongs.MAX_BYTES));
+            }
+
+            fLength = VarLongs.write(fBytes, fLength, lineOffset - fLastLineOffset);
+            fLength = VarLongs.write(fBytes, fLength, charOffset);
+            fLength = VarLongs.write(fBytes, fLength, separatorId);
+            fLastLineOffset = lineOffset;
+            fCount++;
+
+            return fBytes.length - oldCapacity;
+        }
+    }
+
+    /***
+     * The postings of a single token in a single segment
+     */
+    private static final class SegmentEntry {
+        private final byte[] fToken;  // UTF-8
+        private final int fCount;
+        private final long fLastLineOffset;
+        private final byte[] fPostings;
+        private final int fPostingsLength;
+
+        SegmentEntry(byte[] token, int count, long lastLineOffset, byte[] postings, int postingsLength) {
+            fToken = token;
+            fCount = count;
+            fLastLineOffset = lastLineOffset;
+            fPostings = postings;
+            fPostingsLength = postingsLength;
+        }
+    }
+
+    /***
+     * The postings of a single token in the index file
+     */
+    private static final class DirectoryEntry {
+        private final byte[] fToken;  // UTF-8
+        private final long fPostingsOffset;
+        private final int fPostingsCount;
+
+        DirectoryEntry(byte[] token, long postingsOffset, int postingsCount) {
+            fToken = token;
+            fPostingsOffset = postingsOffset;
+            fPostingsCount = postingsCount;
+        }
+    }
+
+    /***
+     * Read the entries of a single segment by the tokens order
+     */
+    private interface SegmentReader extends Closeable {
+        /***
+         * @return the next entry, or null after the last entry
+         * @throws IOException in case of failure in reading a segment file
+         */
+        SegmentEntry next() throws IOException;
+    }
+
+    /***
+     * The current entry of a segment, the cursors are ordered by their entry token and then by the segments order
+     */
+    private static final class SegmentCursor implements Comparable<SegmentCursor> {
+        private final SegmentReader fSegmentReader;
+        private final int fSegmentIndex;
+        private SegmentEntry fEntry;
+
+        SegmentCursor(SegmentReader segmentReader, int segmentIndex) throws IOException {
+            fSegmentReader = segmentReader;
+            fSegmentIndex = segmentIndex;
+            fEntry = segmentReader.next();
+        }
+
+        /***
+         * @return false if there are no more entries in the segment
+         */
+        boolean advance() throws IOException {
+            fEntry = fSegmentReader.next();
+            return fEntry != null;
+        }
+
+        @Override
+        public int compareTo(SegmentCursor other) {
+            int tokenOrder = TOKEN_ORDER.compare(fEntry.fToken, other.fEntry.fToken);
+            return tokenOrder != 0 ? tokenOrder : Integer.compare(fSegmentIndex, other.fSegmentIndex);
+        }
+    }
+
+    /***
+     * Write the index file through a single buffer, and keep the file position of the written bytes
+     */
+    private static final class IndexFileOutput implements Closeable {
+        private final FileChannel fFileChannel;
+        private final ByteBuffer fBuffer;
+        private final byte[] fVarLongBytes;
+
+        IndexFileOutput(Path filePath) throws IOException {
+            fFileChannel = FileChannel.open(filePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            fBuffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+            fVarLongBytes = new byte[VarLongs.MAX_BYTES];
+        }
+
+        long position() throws IOException {
+            return fFileChannel.position() + fBuffer.position();
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!fBuffer.hasRemaining()) {
+                    flush();
+                }
+
+                int writeLength = Math.min(length, fBuffer.remaining());
+                fBuffer.put(bytes, offset, writeLength);
+                offset += writeLength;
+                length -= writeLength;
+            }
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            fBuffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            fBuffer.putLong(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            write(fVarLongBytes, 0, VarLongs.write(fVarLongBytes, 0, value));
+        }
+
+        /***
+         * Write the length of the UTF-8 bytes of the string and the bytes
+         */
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        /***
+         * Write the header in the file start, after all the rest was written
+         */
+        void writeHeader(ByteBuffer header) throws IOException {
+            flush();
+            while (header.hasRemaining()) {
+                fFileChannel.write(header, header.position());
+            }
+        }
+
+        private void ensureRemaining(int length) throws IOException {
+            if (fBuffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            fBuffer.flip();
+            while (fBuffer.hasRemaining()) {
+                fFileChannel.write(fBuffer);
+            }
+            fBuffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                fFileChannel.close();
+            }
+        }
+    }
+
+    //region Constructor
+    /***
+     * @param indexFilePath the index file to write
+     * @param textToReadUrl the url of the scanned input
+     * @param lineTokenizer the tokenizer of the searching tasks, it hold the separators
+     */
+    public TokenIndexWriter(String indexFilePath, String textToReadUrl, LineTokenizer lineTokenizer) {
+        fIndexFilePath = Paths.get(indexFilePath);
+        fTextToReadUrl = textToReadUrl;
+        fLineTokenizer = lineTokenizer;
+        fBufferedPostings = new HashMap<>();
+        fSegmentFilePaths = new ArrayList<>();
+        fBufferedBytes = 0;
+    }
+    //endregion Constructor
+
+    public LineTokenizer getLineTokenizer() {
+        return fLineTokenizer;
+    }
+
+    /***
+     * Add the postings of the next chunk (by the chunks order), its char offsets must be already aligned
+     * @param chunkTokens the tokens of the chunk
+     * @throws IOException in case of failure in spilling a segment
+     */
+    public void addChunk(ChunkTokens chunkTokens) throws IOException {
+        for (Map.Entry<String, TokenPostings> tokenPostings : chunkTokens.getPostingsByToken().entrySet()) {
+            PostingsBuffer postingsBuffer = fBufferedPostings.get(tokenPostings.getKey());
+            TokenPostings postings = tokenPostings.getValue();
+
+            if (postingsBuffer == null) {
+                postingsBuffer = new PostingsBuffer();
+                fBufferedPostings.put(tokenPostings.getKey(), postingsBuffer);
+                fBufferedBytes += TOKEN_MEMORY_OVERHEAD + 2L * tokenPostings.getKey().length() + postingsBuffer.fBytes.length;
+            }
+
+            for (int i = 0; i < postings.size(); i++) {
+                fBufferedBytes += postingsBuffer.add(postings.getLineOffset(i), postings.getCharOffset(i),
+                        postings.getSeparatorId(i));
+            }
+        }
+
+        if (fBufferedBytes > MEMORY_BUDGET) {
+            spillSegment();
+        }
+    }
+
+    //region Segments
+    /***
+     * @return the entries of the postings in memory, sorted by their tokens
+     */
+    private List<SegmentEntry> getBufferedEntries() {
+        List<SegmentEntry> entries = new ArrayList<>(fBufferedPostings.size());
+
+        for (Map.Entry<String, PostingsBuffer> bufferedPostings : fBufferedPostings.entrySet()) {
+            PostingsBuffer postingsBuffer = bufferedPostings.getValue();
+
+            entries.add(new SegmentEntry(bufferedPostings.getKey().getBytes(StandardCharsets.UTF_8),
+                    postingsBuffer.fCount, postingsBuffer.fLastLineOffset,
+                    postingsBuffer.fBytes, postingsBuffer.fLength));
+        }
+
+        entries.sort((first, second) -> TOKEN_ORDER.compare(first.fToken, second.fToken));
+        return entries;
+    }
+
+    /***
+     * Write the postings in memory to a new segment file and clear them
+     * @throws IOException in case of failure in writing the segment file
+     */
+    private void spillSegment() throws IOException {
+        Path segmentFilePath = fIndexFilePath.resolveSibling(fIndexFilePath.getFileName() + ".segment" +
+                fSegmentFilePaths.size());
+        List<SegmentEntry> entries = getBufferedEntries();
+
+        fSegmentFilePaths.add(segmentFilePath);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(segmentFilePath), OUTPUT_BUFFER_SIZE))) {
+            output.writeInt(entries.size());
+
+            for (SegmentEntry entry : entries) {
+                output.writeInt(entry.fToken.length);
+                output.write(entry.fToken);
+                output.writeInt(entry.fCount);
+                output.writeLong(entry.fLastLineOffset);
+                output.writeInt(entry.fPostingsLength);
+                output.write(entry.fPostings, 0, entry.fPostingsLength);
+            }
+        }
+
+        fBufferedPostings.clear();
+        fBufferedBytes = 0;
+    }
+
+    private static SegmentReader readSegmentFile(Path segmentFilePath) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(segmentFilePath), OUTPUT_BUFFER_SIZE));
+        int entriesCount = input.readInt();
+
+        return new SegmentReader() {
+            private int fReadEntries = 0;
+
+            @Override
+            public SegmentEntry next() throws IOException {
+                if (fReadEntries++ == entriesCount) {
+                    return null;
+                }
+
+                byte[] token = new byte[input.readInt()];
+                input.readFully(token);
+                int count = input.readInt();
+                long lastLineOffset = input.readLong();
+                byte[] postings = new byte[input.readInt()];
+                input.readFully(postings);
+
+                return new SegmentEntry(token, count, lastLineOffset, postings, postings.length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                input.close();
+            }
+        };
+    }
+
+    private static SegmentReader readEntries(List<SegmentEntry> entries) {
+        Iterator<SegmentEntry> iterator = entries.iterator();
+
+        return new SegmentReader() {
+            @Override
+            public SegmentEntry next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to close
+            }
+        };
+    }
+
+    /***
+     * Delete the segment files, called when the index is complete or when the scan failed
+     */
+    public void deleteSegments() {
+        for (Path segmentFilePath : fSegmentFilePaths) {
+            try {
+                Files.deleteIfExists(segmentFilePath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        fSegmentFilePaths.clear();
+    }
+    //endregion Segments
+
+    //region Index file
+    /***
+     * Merge the segments (and the postings in memory) to the index file, must be called after the last chunk
+     * @throws IOException in case of failure in reading the segments or writing the index file
+     */
+    public void finish() throws IOException {
+        Path temporaryFilePath = fIndexFilePath.resolveSibling(fIndexFilePath.getFileName() + ".tmp");
+        List<SegmentReader> segmentReaders = new ArrayList<>();
+
+        try {
+            for (Path segmentFilePath : fSegmentFilePaths) {
+                segmentReaders.add(readSegmentFile(segmentFilePath));
+            }
+            segmentReaders.add(readEntries(getBufferedEntries()));  // The last segment is still in memory
+
+            try (IndexFileOutput output = new IndexFileOutput(temporaryFilePath)) {
+                writeIndexFile(output, segmentReaders);
+            }
+        } finally {
+            for (SegmentReader segmentReader : segmentReaders) {
+                segmentReader.close();
+            }
+            deleteSegments();
+            fBufferedPostings.clear();
+        }
+
+        Files.move(temporaryFilePath, fIndexFilePath,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * Write the index file: the header, the merged postings of every token, the metadata (url and separators),
+     * the tokens texts and the directory of the tokens (by the tokens order), see TokenIndex
+     */
+    private void writeIndexFile(IndexFileOutput output, List<SegmentReader> segmentReaders) throws IOException {
+        output.write(new byte[TokenIndex.HEADER_SIZE], 0, TokenIndex.HEADER_SIZE);  // Written when all is known
+        List<DirectoryEntry> directory = mergeSegments(output, segmentReaders);
+
+        long metadataOffset = output.position();
+        output.writeString(fTextToReadUrl);
+        List<String> separators = fLineTokenizer.getSeparators();
+        output.writeInt(separators.size());
+        for (String separator : separators) {
+            output.writeString(separator);
+        }
+
+        long tokenTextsOffset = output.position();
+        for (DirectoryEntry entry : directory) {
+            output.write(entry.fToken, 0, entry.fToken.length);
+        }
+
+        long directoryOffset = output.position();
+        long tokenTextOffset = tokenTextsOffset;
+        for (DirectoryEntry entry : directory) {
+            output.writeLong(tokenTextOffset);
+            output.writeInt(entry.fToken.length);
+            output.writeLong(entry.fPostingsOffset);
+            output.writeInt(entry.fPostingsCount);
+            tokenTextOffset += entry.fToken.length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(TokenIndex.HEADER_SIZE);
+        header.putInt(TokenIndex.MAGIC).putInt(TokenIndex.VERSION).putInt(directory.size())
+                .putLong(metadataOffset).putLong(tokenTextsOffset).putLong(directoryOffset).flip();
+        output.writeHeader(header);
+    }
+
+    /***
+     * Write the postings of every token, the postings of a token that is in several segments are concatenated
+     * by the segments order
+     * @return the directory entry of every token, by the tokens order
+     */
+    private static List<DirectoryEntry> mergeSegments(IndexFileOutput output, List<SegmentReader> segmentReaders)
+            throws IOException {
+        List<DirectoryEntry> directory = new ArrayList<>();
+        PriorityQueue<SegmentCursor> cursors = new PriorityQueue<>();
+
+        for (int segmentIndex = 0; segmentIndex < segmentReaders.size(); segmentIndex++) {
+            SegmentCursor cursor = new SegmentCursor(segmentReaders.get(segmentIndex), segmentIndex);
+            if (cursor.fEntry != null) {
+                cursors.add(cursor);
+            }
+        }
+
+        while (!cursors.isEmpty()) {
+            byte[] token = cursors.peek().fEntry.fToken;
+            long postingsOffset = output.position();
+            int postingsCount = 0;
+            long lastLineOffset = 0;
+
+            while (!cursors.isEmpty() && TOKEN_ORDER.compare(cursors.peek().fEntry.fToken, token) == 0) {
+                SegmentCursor cursor = cursors.poll();
+                SegmentEntry entry = cursor.fEntry;
+
+                writeFollowingPostings(output, entry, lastLineOffset);
+                postingsCount += entry.fCount;
+                lastLineOffset = entry.fLastLineOffset;
+
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+
+            directory.add(new DirectoryEntry(token, postingsOffset, postingsCount));
+        }
+
+        return directory;
+    }
+
+    /***
+     * Write the postings of a segment after the postings of the earlier segments, only the delta of the first
+     * line offset is changed (it is comparing to 0 in the segment)
+     * @param lastLineOffset the line offset of the last posting that was written
+     */
+    private static void writeFollowingPostings(IndexFileOutput output, SegmentEntry entry, long lastLineOffset)
+            throws IOException {
+        long firstLineOffset = VarLongs.read(entry.fPostings, 0);
+        int firstLineOffsetLength = VarLongs.length(entry.fPostings, 0);
+
+        output.writeVarLong(firstLineOffset - lastLineOffset);
+        output.write(entry.fPostings, firstLineOffsetLength, entry.fPostingsLength - firstLineOffsetLength);
+    }
+    //endregion Index file
+}
@@ -0,0 +1,79 @@
+package bigId.matcher;
+
+import java.util.Arrays;
+
+/***
+ * This class hold the postings of a single token of the TokenIndex as a packed primitive array:
+ *      [lineOffset_0, charOffset_0, separatorId_0, lineOffset_1, charOffset_1, separatorId_1, ...]
+ * the same way MatchLocations hold the matches of a text, with the id of the separator that follow every occurrence.
+ * The postings are always kept sorted by line offset and then by char offset.
+ */
+class TokenPostings {
+    //region CONSTANTS
+    private static final int LONGS_PER_POSTING = 3;
+    private static final int INITIAL_CAPACITY = 4;  // In postings
+    //endregion CONSTANTS
+
+    //region Fields
+    private long[] fPostings;
+    private int fSize;  // How many postings there are
+    //endregion Fields
+
+    //region Constructor
+    public TokenPostings() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TokenPostings(int capacity) {
+        fPostings = new long[Math.max(capacity, 1) * LONGS_PER_POSTING];
+        fSize = 0;
+    }
+    //endregion Constructor
+
+    /***
+     * Add a posting after all the existing postings, the posting must not be smaller than the last posting
+     * @param lineOffset the first line of the block of the token
+     * @param charOffset the token char offset comparing to its block
+     * @param separatorId the id of the separator that follow the token
+     */
+    public void add(long lineOffset, long charOffset, int separatorId) {
+        int index = fSize * LONGS_PER_POSTING;
+
+        if (index == fPostings.length) {
+            fPostings = Arrays.copyOf(fPostings, fPostings.length * 2);
+        }
+
+        fPostings[index] = lineOffset;
+        fPostings[index + 1] = charOffset;
+        fPostings[index + 2] = separatorId;
+        fSize++;
+    }
+
+    /***
+     * Add a delta to the char offset of all the postings in the given line offset,
+     * the line offset must be the smallest line offset of the postings
+     * @param lineOffset the line offset of the postings to change
+     * @param delta the chars to add
+     */
+    public void addToCharOffsets(long lineOffset, long delta) {
+        for (int index = 0; index < fSize && getLineOffset(index) == lineOffset; index++) {
+            fPostings[index * LONGS_PER_POSTING + 1] += delta;
+        }
+    }
+
+    public int size() {
+        return fSize;
+    }
+
+    public long getLineOffset(int index) {
+        return fPostings[index * LONGS_PER_POSTING];
+    }
+
+    public long getCharOffset(int index) {
+        return fPostings[index * LONGS_PER_POSTING + 1];
+    }
+
+    public int getSeparatorId(int index) {
+        return (int) fPostings[index * LONGS_PER_POSTING + 2];
+    }
+}
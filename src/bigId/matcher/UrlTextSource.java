@@ -0,0 +1,283 @@
+package bigId.matcher;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+
+/***
+ * TextSource that read the input text from a url (usually a http url), using a single connection.
+ * A resumed scan ask a http server for the input from the start position of the TextChunker by a range request,
+ * when the server ignore the range (or the url is not a http url) the bytes before the start position are skipped.
+ * The range is asked by If-Range of the input validator of the checkpoint, a response of another version of the input
+ * fail the scan (so it is not resumed in the middle of a line of another input).
+ * A connection that ended before all the bytes of the response (by its Content-Length or Content-Range) were read
+ * fail the scan, instead of looking like the end of the input.
+ * A compressed input (by the Content-Encoding of the response or by the url extension) is decompressed while it is
+ * read, so the positions of the TextChunker are of the decompressed bytes, and a resumed scan of a compressed input
+ * skip the decompressed bytes before the start position (a range of the compressed bytes can't be decoded).
+ */
+class UrlTextSource implements TextSource {
+    //region CONSTANTS
+    static final String REQUEST_METHOD = "GET";
+    static final int CONNECTION_TIMEOUT = 30 * 1000;  // In MS
+    static final int READ_TIMEOUT = 10 * 1000;  // In MS
+    private static final String RANGE_HEADER = "Range";
+    private static final String IF_RANGE_HEADER = "If-Range";
+    private static final String CONTENT_RANGE_HEADER = "Content-Range";
+    private static final long UNKNOWN_LENGTH = -1;
+    private static final String BYTES_RANGE_UNIT = "bytes";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String GZIP_ENCODING = "gzip";
+    //endregion CONSTANTS
+
+    //region Fields
+    private final String fTextToReadUrl;
+    private final Charset fCharset;
+    private final TextChunker fTextChunker;
+    private final CompressionFormat fUrlCompressionFormat;  // By the url extension
+    private URLConnection fUrlConnection;
+    //endregion Fields
+
+    //region Constructor
+    public UrlTextSource(String textToReadUrl, Charset charset, TextChunker textChunker) {
+        fTextToReadUrl = textToReadUrl;
+        fCharset = charset;
+        fTextChunker = textChunker;
+        fUrlCompressionFormat = CompressionFormat.fromUrl(textToReadUrl);
+    }
+    //endregion Constructor
+
+    @Override
+    public void open() throws IOException {
+        openUrlConnection();
+    }
+
+    /***
+     * Read chunks of data from the HTTP connection
+     * @throws IOException in case of failure in getting the url InputStream, or when the connection ended
+     * before all the bytes of the response were read
+     */
+    @Override
+    public void readChunks(TextChunkConsumer consumer) throws IOException {
+        InputStream connectionInputStream = new ContentLengthInputStream(getConnectionInputStream(),
+                getResponseLength());
+
+        // read the output from the server, the decoded stream is closed to stop its decoders
+        try (InputStream inputStream = getCompressionFormat().decode(connectionInputStream)) {
+            skipToStartPosition(inputStream);
+
+            new InputStreamTextSource(inputStream, fCharset, fTextChunker).readChunks(consumer);
+        }
+    }
+
+    @Override
+    public void close() {
+        disconnectFromUrlConnection();
+    }
+
+    //region HttpUrlConnection utils
+
+    /***
+     * Define the params of the http connection, and perform connection.
+     * @throws IOException in case of failure when setting the params or in the connection opening
+     */
+    private void openUrlConnection() throws IOException {
+        URL source = new URL(fTextToReadUrl);
+        fUrlConnection = source.openConnection();
+        setConnectionParams();
+        fUrlConnection.connect();
+    }
+
+    /***
+     * Set the request params using the constant params:
+     * REQUEST_METHOD (http only), CONNECTION_TIMEOUT, READ_TIMEOUT,
+     * and the range from the start position when a resumed scan read a http url that is not compressed
+     * (only if the input is still the input of the checkpoint, when its validator is known).
+     * A gzip encoded response is accepted only when reading from the start, so a range is never of encoded bytes
+     * @throws IOException in case of failure when setting the params
+     */
+    private void setConnectionParams() throws IOException {
+        if (fUrlConnection instanceof HttpURLConnection) {
+            ((HttpURLConnection) fUrlConnection).setRequestMethod(REQUEST_METHOD);
+
+            if (fTextChunker.getStartPosition() == 0) {
+                fUrlConnection.setRequestProperty(ACCEPT_ENCODING_HEADER, GZIP_ENCODING);
+            } else if (fUrlCompressionFormat == CompressionFormat.NONE) {
+                fUrlConnection.setRequestProperty(RANGE_HEADER,
+                        BYTES_RANGE_UNIT + "=" + fTextChunker.getStartPosition() + "-");
+
+                String ifRangeValue = fTextChunker.getStartValidator().getIfRangeValue();
+                if (ifRangeValue != null) {
+                    fUrlConnection.setRequestProperty(IF_RANGE_HEADER, ifRangeValue);
+                }
+            }
+        }
+        fUrlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
+        fUrlConnection.setReadTimeout(READ_TIMEOUT);
+    }
+
+    /***
+     * Get the actual input stream of the http connection
+     * @return InputStream og the fUrlConnection connection
+     * @throws IOException in case of failure on getting the input stream
+     */
+    private InputStream getConnectionInputStream() throws IOException {
+        InputStream inputStream = fUrlConnection.getInputStream();
+
+        if(inputStream == null){
+            throw new IOException();
+        }
+
+        return inputStream;
+    }
+
+    /***
+     * @return the bytes of the response (before decoding) by its Content-Length, or by its Content-Range
+     * when a range was returned without a length, UNKNOWN_LENGTH when the response has neither
+     * @throws IOException in case of failure in getting the response, or when the range doesn't start
+     * in the start position
+     */
+    private long getResponseLength() throws IOException {
+        long contentLength = fUrlConnection.getContentLengthLong();
+
+        if (!isRangeReturned()) {
+            return contentLength;
+        }
+
+        String contentRange = fUrlConnection.getHeaderField(CONTENT_RANGE_HEADER);
+        try {
+            // "bytes first-last/total"
+            int firstStart = contentRange.indexOf(' ') + 1;
+            int lastStart = contentRange.indexOf('-', firstStart) + 1;
+            long first = Long.parseLong(contentRange.substring(firstStart, lastStart - 1).trim());
+            long last = Long.parseLong(contentRange.substring(lastStart, contentRange.indexOf('/', lastStart)).trim());
+
+            if (first != fTextChunker.getStartPosition()) {
+                throw new IOException("Range from " + fTextChunker.getStartPosition() + " was asked but got " +
+                        contentRange);
+            }
+
+            return contentLength != UNKNOWN_LENGTH ? contentLength : last - first + 1;
+        } catch (NullPointerException | IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Invalid Content-Range of a range response: " + contentRange);
+        }
+    }
+
+    private boolean isRangeReturned() throws IOException {
+        return fUrlConnection instanceof HttpURLConnection &&
+                ((HttpURLConnection) fUrlConnection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+    }
+
+    /***
+     * @return the compression of the response by its Content-Encoding, otherwise by the url extension
+     */
+    private CompressionFormat getCompressionFormat() {
+        CompressionFormat encodingFormat = CompressionFormat.fromContentEncoding(fUrlConnection.getContentEncoding());
+
+        return encodingFormat != CompressionFormat.NONE ? encodingFormat : fUrlCompressionFormat;
+    }
+
+    /***
+     * Skip the bytes before the start position, unless the server already returned the input from it.
+     * The whole input is returned also when it was changed since the checkpoint (by If-Range),
+     * so it is skipped only when it is still the input of the checkpoint
+     * @param inputStream the connection input stream
+     * @throws IOException in case of failure in reading the skipped bytes, or when the input was changed
+     */
+    private void skipToStartPosition(InputStream inputStream) throws IOException {
+        if (fTextChunker.getStartPosition() == 0 || isRangeReturned()) {
+            return;
+        }
+
+        if (!InputValidator.fromResponse(fUrlConnection).isSameInput(fTextChunker.getStartValidator())) {
+            throw new IOException("The input was changed since the checkpoint was taken: " + fTextToReadUrl);
+        }
+
+        inputStream.skipNBytes(fTextChunker.getStartPosition());
+    }
+
+    /***
+     * Terminate the http connection when all task are done, or in case of a failure
+     */
+    private void disconnectFromUrlConnection() {
+        if (fUrlConnection instanceof HttpURLConnection) {
+            ((HttpURLConnection) fUrlConnection).disconnect();
+        } else if (fUrlConnection != null) {
+            try {
+                fUrlConnection.getInputStream().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    //endregion HttpUrlConnection utils
+
+    /***
+     * Count the bytes of the response, and fail when the connection ended before all of them were read
+     * (a connection that was closed by the server otherwise look like the end of the input)
+     */
+    private static class ContentLengthInputStream extends FilterInputStream {
+        //region Fields
+        private final long fExpectedLength;  // UNKNOWN_LENGTH when the response has no length
+        private long fReadLength;
+        //endregion Fields
+
+        //region Constructor
+        public ContentLengthInputStream(InputStream inputStream, long expectedLength) {
+            super(inputStream);
+            fExpectedLength = expectedLength;
+            fReadLength = 0;
+        }
+        //endregion Constructor
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b < 0) {
+                checkEnd();
+            } else {
+                fReadLength++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int readLength = super.read(buffer, offset, length);
+
+            if (readLength < 0) {
+                checkEnd();
+            } else {
+                fReadLength += readLength;
+            }
+
+            return readLength;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skippedLength = super.skip(n);
+            fReadLength += skippedLength;
+
+            return skippedLength;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void checkEnd() throws IOException {
+            if (fExpectedLength != UNKNOWN_LENGTH && fReadLength < fExpectedLength) {
+                throw new IOException("The connection ended after " + fReadLength + " of " + fExpectedLength +
+                        " bytes of the response");
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bigId.matcher;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/***
+ * Utils for the variable length longs of the binary files (the ScanCheckpoint and the TokenIndex):
+ * a non negative long is written 7 bits in every byte, the high bit mark that more bytes follow,
+ * so the small numbers (the deltas between sorted offsets) take a single byte.
+ */
+final class VarLongs {
+    //region CONSTANTS
+    static final int MAX_BYTES = 10;  // Of a single long
+    static final int BITS = 7;
+    static final int MASK = (1 << BITS) - 1;
+    static final int CONTINUE = 1 << BITS;  // The high bit of every byte but the last
+    //endregion CONSTANTS
+
+    private VarLongs() {
+    }
+
+    static void write(DataOutput output, long value) throws IOException {
+        while ((value & ~MASK) != 0) {
+            output.writeByte((int) (value & MASK) | CONTINUE);
+            value >>>= BITS;
+        }
+
+        output.writeByte((int) value);
+    }
+
+    static long read(DataInput input) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int currentByte;
+
+        do {
+            currentByte = input.readUnsignedByte();
+            value |= (long) (currentByte & MASK) << shift;
+            shift += BITS;
+        } while ((currentByte & CONTINUE) != 0);
+
+        return value;
+    }
+
+    /***
+     * @param bytes the array to write to, must have MAX_BYTES from the offset
+     * @param offset the index to write from
+     * @param value non negative long
+     * @return the index after the written bytes
+     */
+    static int write(byte[] bytes, int offset, long value) {
+        while ((value & ~MASK) != 0) {
+            bytes[offset++] = (byte) ((value & MASK) | CONTINUE);
+            value >>>= BITS;
+        }
+
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /***
+     * @param bytes the array to read from
+     * @param offset the index of the long first byte
+     * @return how many bytes the long at the offset take
+     */
+    static int length(byte[] bytes, int offset) {
+        int length = 1;
+
+        while ((bytes[offset + length - 1] & CONTINUE) != 0) {
+            length++;
+        }
+
+        return length;
+    }
+
+    /***
+     * @param bytes the array to read from
+     * @param offset the index of the long first byte
+     * @return the long at the offset
+     */
+    static long read(byte[] bytes, int offset) {
+        long value = 0;
+        int shift = 0;
+        int currentByte;
+
+        do {
+            currentByte = bytes[offset++] & 0xFF;
+            value |= (long) (currentByte & MASK) << shift;
+            shift += BITS;
+        } while ((currentByte & CONTINUE) != 0);
+
+        return value;
+    }
+}
@@ -0,0 +1,76 @@
+package bigId.matcher;
+
+/***
+ * Utils for word boundary detection.
+ * A match is bounded when the chars right before it and right after it are not word chars, so a text with
+ * a non word char in its edge (like C++) is found too. The word chars follow the same rules as the java regex
+ * '\b' (without the UNICODE_CHARACTER_CLASS flag), this is the same as the RegexMatchingEngine patterns
+ * ('\b' in a word char edge of the text and '\B' in a non word char edge), so the engines that are not regex based
+ * will find exactly the same matches.
+ */
+final class WordBoundary {
+    private WordBoundary() {
+    }
+
+    /***
+     * Check if a match is bounded in the text
+     * @param text the text of the match
+     * @param matchStart char index of the match first char
+     * @param matchEnd char index right after the match last char
+     * @return true if neither the char before the match nor the char after it is a word char
+     */
+    static boolean isMatchBounded(CharSequence text, int matchStart, int matchEnd) {
+        boolean isWordBefore = false;
+        boolean isWordAfter = false;
+
+        if (matchStart > 0) {
+            int codePoint = Character.codePointBefore(text, matchStart);
+            isWordBefore = isWord(codePoint) ||
+                    (isNonSpacingMark(codePoint) && hasBaseCharacter(text, matchStart - 1));
+        }
+
+        if (matchEnd < text.length()) {
+            isWordAfter = isWordAt(text, matchEnd);
+        }
+
+        return !isWordBefore && !isWordAfter;
+    }
+
+    /***
+     * @param text the text to check
+     * @param index char index of a code point in the text
+     * @return true if the code point is a word char, or a non spacing mark that is attached to a word char
+     */
+    static boolean isWordAt(CharSequence text, int index) {
+        int codePoint = Character.codePointAt(text, index);
+
+        return isWord(codePoint) || (isNonSpacingMark(codePoint) && hasBaseCharacter(text, index));
+    }
+
+    static boolean isWord(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static boolean isNonSpacingMark(int codePoint) {
+        return Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    /***
+     * Check if a non spacing mark is attached to a letter or a digit
+     */
+    private static boolean hasBaseCharacter(CharSequence text, int index) {
+        for (int i = index; i >= 0; i--) {
+            int codePoint = Character.codePointAt(text, i);
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+
+            if (!isNonSpacingMark(codePoint)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}